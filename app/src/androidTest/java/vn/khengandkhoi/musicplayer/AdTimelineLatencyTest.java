@@ -0,0 +1,114 @@
+package vn.khengandkhoi.musicplayer;
+
+import android.app.Instrumentation;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.RawResourceDataSource;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/**
+ * Đo trên máy thật / emulator: quảng cáo chèn vào timeline của player chính.
+ * - Playlist 3 "bài" là file raw cục bộ (không cần mạng), AD_TEST_MODE hẹn ad mỗi 10 giây.
+ * - In ra logcat (tag AdTimelineLatency): độ trễ từ lúc hết ad tới khi nhạc phát lại + khoảng lặng giữa các bài.
+ * - Kiểm tra hết ad thì phát tiếp đúng bài sau bài mà ad đứng sau (không quay về bài cũ / nhảy sai bài).
+ */
+@UnstableApi
+@RunWith(AndroidJUnit4.class)
+public class AdTimelineLatencyTest {
+
+    private static final String TAG = "AdTimelineLatency";
+    private static final long TIMEOUT_MS = 120_000L;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private MusicService service;
+    private ServiceConnection connection;
+
+    @Before
+    public void bind() throws Exception {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        CountDownLatch bound = new CountDownLatch(1);
+        connection = new ServiceConnection() {
+            @Override public void onServiceConnected(ComponentName name, IBinder binder) {
+                service = ((MusicService.MusicBinder) binder).getService();
+                bound.countDown();
+            }
+            @Override public void onServiceDisconnected(ComponentName name) {}
+        };
+        context.bindService(new Intent(context, MusicService.class), connection, Context.BIND_AUTO_CREATE);
+        assertTrue("bind MusicService", bound.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void unbind() {
+        instrumentation.runOnMainSync(() -> {
+            if (service != null && service.isPlaying()) service.togglePlay();
+        });
+        context.unbindService(connection);
+    }
+
+    @Test
+    public void adResumesNextSongInPlayOrder() throws Exception {
+        String uri = RawResourceDataSource.buildRawResourceUri(R.raw.ad_clip).toString();
+        List<SongRemote> songs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) songs.add(new SongRemote("t" + i, "Track " + i, "Test", uri, null, i + 1));
+
+        instrumentation.runOnMainSync(() -> {
+            service.setPlaylist(songs, 0, false);
+            if (!service.isPlaying()) service.togglePlay();
+        });
+
+        // Chờ 1 quảng cáo phát xong và nhạc phát lại
+        AtomicInteger ads = new AtomicInteger();
+        AtomicLong latency = new AtomicLong(-1L);
+        AtomicInteger indexAfterAd = new AtomicInteger(-1);
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            instrumentation.runOnMainSync(() -> {
+                ads.set(service.getAdsPlayed());
+                latency.set(service.getLastAdResumeLatencyMs());
+                indexAfterAd.set(service.getIndex());
+            });
+            if (ads.get() > 0 && latency.get() >= 0) break;
+            SystemClock.sleep(200);
+        }
+        assertTrue("no ad played within " + TIMEOUT_MS + "ms", ads.get() > 0);
+        assertTrue("resume latency not measured", latency.get() >= 0);
+
+        long[] gaps = new long[2];
+        instrumentation.runOnMainSync(() -> {
+            gaps[0] = service.getLastTrackGapMs();
+            gaps[1] = service.getAverageTrackGapMs();
+        });
+        Log.i(TAG, "ad resume latency=" + latency.get() + "ms, track gap last=" + gaps[0]
+                + "ms avg=" + gaps[1] + "ms, ads=" + ads.get() + " index after ad=" + indexAfterAd.get());
+
+        // Ad chèn sau bài đầu (không shuffle, không lặp) -> hết ad phải sang bài kế tiếp
+        assertTrue("resumed on index " + indexAfterAd.get(), indexAfterAd.get() >= 1);
+    }
+}
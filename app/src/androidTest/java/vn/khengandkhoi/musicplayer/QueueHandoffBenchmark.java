@@ -0,0 +1,101 @@
+package vn.khengandkhoi.musicplayer;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Parcel;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/**
+ * Đo trên máy thật / emulator: chuyển hàng đợi 100 / 1k / 10k bài từ UI sang MusicService.
+ * - Cũ: ArrayList<SongRemote> làm extra Serializable -> Intent được ghi vào Parcel (như khi qua Binder),
+ *   đọc lại rồi getSerializableExtra().
+ * - Mới: MusicService.newPlayIntent() chỉ mang handle + index, bên nhận QueueRegistry.take().
+ * - Mỗi cỡ: trung vị thời gian đầu-cuối (ghi + đọc Parcel + lấy danh sách) và kích thước Parcel;
+ *   in ra logcat (tag QueueHandoff). Parcel > ~1MB là cỡ mà startService() cũ văng TransactionTooLargeException.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueueHandoffBenchmark {
+
+    private static final String TAG = "QueueHandoff";
+    private static final int[] SIZES = {100, 1_000, 10_000};
+    private static final int RUNS = 15;
+    private static final int BINDER_LIMIT = 1024 * 1024;
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Test
+    public void registryVersusSerializableExtra() {
+        for (int n : SIZES) {
+            ArrayList<SongRemote> songs = songs(n);
+            long[] legacy = new long[RUNS], registry = new long[RUNS];
+            int legacyBytes = 0, registryBytes = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long t0 = System.nanoTime();
+                Intent old = new Intent(context, MusicService.class);
+                old.putExtra("songs", songs);
+                old.putExtra(MusicService.EXTRA_INDEX, 0);
+                Parcel p = Parcel.obtain();
+                old.writeToParcel(p, 0);
+                legacyBytes = p.dataSize();
+                Intent received = readIntent(p);
+                List<?> list = (List<?>) received.getSerializableExtra("songs");
+                legacy[run] = System.nanoTime() - t0;
+                assertEquals(n, list.size());
+
+                t0 = System.nanoTime();
+                Intent next = MusicService.newPlayIntent(context, songs, 0);
+                p = Parcel.obtain();
+                next.writeToParcel(p, 0);
+                registryBytes = p.dataSize();
+                received = readIntent(p);
+                List<SongRemote> taken = QueueRegistry.take(received.getLongExtra(MusicService.EXTRA_QUEUE_HANDLE, -1L));
+                registry[run] = System.nanoTime() - t0;
+                assertSame(songs, taken);
+            }
+            long legacyUs = median(legacy) / 1000, registryUs = median(registry) / 1000;
+            Log.i(TAG, n + " songs: serializable extra " + legacyUs + "us / " + legacyBytes + " bytes"
+                    + (legacyBytes > BINDER_LIMIT ? " (over binder limit)" : "")
+                    + ", registry handle " + registryUs + "us / " + registryBytes + " bytes");
+            assertTrue("handle parcel must stay tiny", registryBytes < 4096);
+        }
+    }
+
+    private static Intent readIntent(Parcel p) {
+        p.setDataPosition(0);
+        Intent i = Intent.CREATOR.createFromParcel(p);
+        i.setExtrasClassLoader(SongRemote.class.getClassLoader());
+        p.recycle();
+        return i;
+    }
+
+    private static ArrayList<SongRemote> songs(int n) {
+        ArrayList<SongRemote> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(new SongRemote("song-" + i, "Bài hát số " + i, "Nghệ sĩ " + (i % 50),
+                    "https://firebasestorage.googleapis.com/v0/b/app/o/audio%2F" + i + ".mp3?alt=media",
+                    "https://firebasestorage.googleapis.com/v0/b/app/o/cover%2F" + (i % 500) + ".jpg?alt=media",
+                    i % 20 + 1));
+        }
+        return out;
+    }
+
+    private static long median(long[] v) {
+        long[] s = v.clone();
+        Arrays.sort(s);
+        return s[s.length / 2];
+    }
+}
@@ -0,0 +1,143 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.FirestoreMapper;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/**
+ * Đo trên máy thật / emulator: khởi động lạnh từ snapshot so với đường mạng cũ.
+ * - snapshot: mở file ánh xạ (catalog 10k bài) + truy vấn đầu tiên của Home (album, thể loại, bài của 1 album),
+ *   và duyệt toàn bộ bài như lúc SongSearchEngine dựng index.
+ * - mạng: đọc albums + collectionGroup("songs") từ server rồi map như trước khi có snapshot
+ *   (bỏ qua nếu máy không có mạng / không đăng nhập được Firestore).
+ * - In ra logcat (tag CatalogColdStart), lấy trung vị của nhiều lần đo.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogColdStartBenchmark {
+
+    private static final String TAG = "CatalogColdStart";
+    private static final int ALBUMS = 500, SONGS_PER_ALBUM = 20, RUNS = 15;
+
+    private File file;
+
+    @Before
+    public void writeSnapshot() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        file = new File(context.getCacheDir(), "bench-catalog.snap");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            CatalogSnapshot.write(replica(), out);
+        }
+    }
+
+    @After
+    public void deleteSnapshot() {
+        file.delete();
+    }
+
+    @Test
+    public void snapshotOpenAndFirstQuery() throws Exception {
+        long[] firstQuery = new long[RUNS], fullScan = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long t0 = System.nanoTime();
+            CatalogSnapshot snap = CatalogSnapshot.open(file);
+            List<Album> albums = snap.albumList();
+            List<Category> cats = snap.categoryList();
+            List<SongRemote> songs = snap.songsOf(albums.get(0).getId());
+            long t1 = System.nanoTime();
+            int[] count = {0};
+            snap.forEachSong((albumId, docId, s) -> count[0]++);
+            long t2 = System.nanoTime();
+
+            assertEquals(ALBUMS, albums.size());
+            assertEquals(1, cats.size());
+            assertEquals(SONGS_PER_ALBUM, songs.size());
+            assertEquals(ALBUMS * SONGS_PER_ALBUM, count[0]);
+            firstQuery[run] = t1 - t0;
+            fullScan[run] = t2 - t1;
+        }
+        Log.i(TAG, "snapshot " + file.length() / 1024 + "KB, " + ALBUMS * SONGS_PER_ALBUM + " songs: open + first query "
+                + median(firstQuery) / 1000 + "us, full scan " + median(fullScan) / 1000 + "us (median of " + RUNS + ")");
+    }
+
+    @Test
+    public void networkPath() {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        long t0 = SystemClock.elapsedRealtime();
+        int albums = 0, songs = 0;
+        try {
+            QuerySnapshot a = Tasks.await(db.collection("albums").get(Source.SERVER), 60, TimeUnit.SECONDS);
+            for (DocumentSnapshot d : a.getDocuments()) if (FirestoreMapper.album(d) != null) albums++;
+            long t1 = SystemClock.elapsedRealtime();
+            QuerySnapshot s = Tasks.await(db.collectionGroup("songs").get(Source.SERVER), 60, TimeUnit.SECONDS);
+            for (DocumentSnapshot d : s.getDocuments()) if (FirestoreMapper.song(d) != null) songs++;
+            long t2 = SystemClock.elapsedRealtime();
+            Log.i(TAG, "network: albums " + albums + " in " + (t1 - t0) + "ms, songs " + songs + " in "
+                    + (t2 - t1) + "ms, total " + (t2 - t0) + "ms");
+        } catch (Exception e) {
+            Assume.assumeNoException("Firestore không truy cập được", e);
+        }
+    }
+
+    // Catalog giả ALBUMS x SONGS_PER_ALBUM, tác giả / ảnh bìa lặp lại như dữ liệu thật
+    private static CatalogSync.Replica replica() {
+        TreeMap<String, Album> albums = new TreeMap<>();
+        Map<String, TreeMap<String, SongRemote>> songs = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < ALBUMS; i++) {
+            String id = String.format("album%04d", i);
+            String author = "Nghệ sĩ " + (i % 50), cover = "https://img.example/" + id + ".jpg";
+            albums.put(id, new Album(id, "Tuyển tập " + i, author, cover));
+            TreeMap<String, SongRemote> m = new TreeMap<>();
+            for (int k = 0; k < SONGS_PER_ALBUM; k++) {
+                m.put("song" + k, new SongRemote(id + "-" + k, "Bài hát số " + k + " của " + id, author,
+                        "https://audio.example/" + id + "/" + k + ".mp3", cover, k + 1));
+            }
+            songs.put(id, m);
+            if (i % 10 == 0) ids.add(id);
+        }
+        TreeMap<String, CatalogSync.CategoryRecord> cats = new TreeMap<>();
+        cats.put("pop", new CatalogSync.CategoryRecord(new Category("pop", "Pop", "#FF5722", null), ids));
+        Map<String, Timestamp> marks = Collections.singletonMap("songs", new Timestamp(1700000000L, 0));
+        return new CatalogSync.Replica(null, albums, cats, songs, marks, 0L, 0L);
+    }
+
+    private static long median(long[] v) {
+        long[] c = v.clone();
+        Arrays.sort(c);
+        return c[c.length / 2];
+    }
+}
@@ -0,0 +1,244 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+
+import static org.junit.Assert.*;
+
+/**
+ * Đo trên máy thật / emulator: lần mở app đầu tiên (chưa có snapshot, cache Firestore rỗng) đến lúc có nội dung.
+ * - Mỗi lần đo dựng lại trạng thái "mới cài": FirebaseApp riêng (cache Firestore riêng, xoá bằng clearPersistence()),
+ *   thư mục catalog riêng trong cacheDir, CatalogSync + CatalogRepository mới -> không đụng dữ liệu thật của app.
+ * - Đo từ CatalogSync.requestSync() (như lúc app lên foreground) đến lần trả đầu tiên của CatalogRepository.albums()
+ *   (danh sách album của Home).
+ * - bundle: nạp catalog.bundle dựng sẵn (500 album x 20 bài, dựng trong test theo định dạng của
+ *   `./gradlew :tools:buildCatalogBundle`), tắt mạng -> chỉ đo phần nạp bundle + dựng bản sao, không phụ thuộc mạng.
+ * - server: không có bundle, đọc từ server như trước khi có bundle
+ *   (bỏ qua nếu máy không có mạng / không đọc được Firestore, như CatalogColdStartBenchmark).
+ * - In ra logcat (tag CatalogFirstLaunch), lấy trung vị của nhiều lần đo.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogFirstLaunchBenchmark {
+
+    private static final String TAG = "CatalogFirstLaunch";
+    private static final int ALBUMS = 500, SONGS_PER_ALBUM = 20, RUNS = 5;
+    private static final long TIMEOUT_S = 120;
+    private static final String BUILT_AT = "2024-01-01T00:00:00Z";
+
+    private static Context context;
+    private static FirebaseOptions options;
+    private static byte[] bundle;
+
+    @BeforeClass
+    public static void buildBundle() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        options = FirebaseApp.initializeApp(context).getOptions();
+        bundle = catalogBundle(options.getProjectId());
+    }
+
+    @Test
+    public void bundlePath() throws Exception {
+        long[] ms = new long[RUNS];
+        int albums = 0;
+        for (int run = 0; run < RUNS; run++) {
+            Result r = firstLaunch(true);
+            assertNull(r.error);
+            albums = r.albums;
+            assertEquals(ALBUMS, albums);
+            ms[run] = r.ms;
+        }
+        Log.i(TAG, "bundle (" + bundle.length / 1024 + "KB, " + ALBUMS * SONGS_PER_ALBUM + " songs, offline): "
+                + albums + " albums after " + median(ms) + "ms (median of " + RUNS + ")");
+    }
+
+    @Test
+    public void serverPath() throws Exception {
+        Result r = firstLaunch(false);
+        Assume.assumeTrue("Firestore không truy cập được", r.error == null && r.albums > 0);
+        Log.i(TAG, "server: " + r.albums + " albums after " + r.ms + "ms");
+    }
+
+    private static final class Result {
+        long ms;
+        int albums;
+        Exception error;
+    }
+
+    // 1 lần mở app đầu tiên; withBundle = có bundle + tắt mạng, ngược lại = không bundle + mạng thật
+    private static Result firstLaunch(boolean withBundle) throws Exception {
+        FirebaseApp app = FirebaseApp.initializeApp(context, options, "first-launch-" + System.nanoTime());
+        FirebaseFirestore db = FirebaseFirestore.getInstance(app);
+        File dir = new File(context.getCacheDir(), app.getName());
+        try {
+            if (withBundle) Tasks.await(db.disableNetwork(), 10, TimeUnit.SECONDS);
+            CatalogBundle source = new CatalogBundle(db, withBundle
+                    ? () -> new ByteArrayInputStream(bundle)
+                    : () -> { throw new FileNotFoundException(CatalogBundle.ASSET); }, "");
+            CatalogSync sync = new CatalogSync(db, source, dir);
+            CatalogRepository repo = new CatalogRepository(db, sync, dir);
+
+            Result r = new Result();
+            CountDownLatch content = new CountDownLatch(1), synced = new CountDownLatch(1);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                long t0 = System.nanoTime();
+                sync.requestSync(synced::countDown);
+                repo.albums(new CatalogRepository.Callback<List<Album>>() {
+                    @Override public void onData(List<Album> data, boolean fromCache) {
+                        if (content.getCount() == 0) return;
+                        r.ms = (System.nanoTime() - t0) / 1_000_000;
+                        r.albums = data.size();
+                        content.countDown();
+                    }
+
+                    @Override public void onError(Exception e) {
+                        r.error = e;
+                        content.countDown();
+                    }
+                });
+            });
+            assertTrue("albums() không trả kết quả", content.await(TIMEOUT_S, TimeUnit.SECONDS));
+            // Chờ lần đồng bộ kết thúc trước khi dọn -> worker không ghi vào thư mục đã xoá
+            synced.await(TIMEOUT_S, TimeUnit.SECONDS);
+            return r;
+        } finally {
+            Tasks.await(db.terminate(), 10, TimeUnit.SECONDS);
+            Tasks.await(db.clearPersistence(), 10, TimeUnit.SECONDS);
+            app.delete();
+            delete(dir);
+        }
+    }
+
+    // ================== BUNDLE ==================
+
+    /**
+     * Firestore data bundle ALBUMS x SONGS_PER_ALBUM + 1 thể loại: mỗi phần tử là độ dài (byte, UTF-8) rồi JSON,
+     * 3 named query trùng tên CatalogBundle.Q_* như CatalogBundleBuilder dựng.
+     */
+    private static byte[] catalogBundle(String projectId) throws JSONException {
+        String root = "projects/" + projectId + "/databases/(default)/documents";
+        List<JSONObject> elements = new ArrayList<>();
+        elements.add(namedQuery(root, CatalogBundle.Q_ALBUMS, "albums", false));
+        elements.add(namedQuery(root, CatalogBundle.Q_CATEGORIES, "categories", false));
+        elements.add(namedQuery(root, CatalogBundle.Q_SONGS, "songs", true));
+        JSONArray popAlbums = new JSONArray();
+        int docs = 0;
+        for (int i = 0; i < ALBUMS; i++) {
+            String id = String.format("album%04d", i);
+            String author = "Nghệ sĩ " + (i % 50), cover = "https://img.example/" + id + ".jpg";
+            addDocument(elements, root + "/albums/" + id, CatalogBundle.Q_ALBUMS, new JSONObject()
+                    .put("title", string("Tuyển tập " + i))
+                    .put("author", string(author))
+                    .put("coverUrl", string(cover))
+                    .put(CatalogSync.UPDATED_AT, new JSONObject().put("timestampValue", BUILT_AT)));
+            docs++;
+            for (int k = 0; k < SONGS_PER_ALBUM; k++) {
+                addDocument(elements, root + "/albums/" + id + "/songs/song" + k, CatalogBundle.Q_SONGS, new JSONObject()
+                        .put("id", string(id + "-" + k))
+                        .put("title", string("Bài hát số " + k + " của " + id))
+                        .put("author", string(author))
+                        .put("url", string("https://audio.example/" + id + "/" + k + ".mp3"))
+                        .put("coverUrl", string(cover))
+                        .put("trackNum", new JSONObject().put("integerValue", String.valueOf(k + 1)))
+                        .put(CatalogSync.UPDATED_AT, new JSONObject().put("timestampValue", BUILT_AT)));
+                docs++;
+            }
+            if (i % 10 == 0) popAlbums.put(string(id));
+        }
+        addDocument(elements, root + "/categories/pop", CatalogBundle.Q_CATEGORIES, new JSONObject()
+                .put("name", string("Pop"))
+                .put("colorHex", string("#FF5722"))
+                .put("albumIds", new JSONObject().put("arrayValue", new JSONObject().put("values", popAlbums)))
+                .put(CatalogSync.UPDATED_AT, new JSONObject().put("timestampValue", BUILT_AT)));
+        docs++;
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (JSONObject e : elements) writeElement(body, e);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeElement(out, new JSONObject().put("metadata", new JSONObject()
+                .put("id", "first-launch-bench")
+                .put("createTime", BUILT_AT)
+                .put("version", 1)
+                .put("totalDocuments", docs)
+                .put("totalBytes", body.size())));
+        out.write(body.toByteArray(), 0, body.size());
+        return out.toByteArray();
+    }
+
+    private static JSONObject namedQuery(String root, String name, String collection, boolean group)
+            throws JSONException {
+        JSONObject from = new JSONObject().put("collectionId", collection);
+        if (group) from.put("allDescendants", true);
+        return new JSONObject().put("namedQuery", new JSONObject()
+                .put("name", name)
+                .put("readTime", BUILT_AT)
+                .put("bundledQuery", new JSONObject()
+                        .put("parent", root)
+                        .put("structuredQuery", new JSONObject().put("from", new JSONArray().put(from)))));
+    }
+
+    private static void addDocument(List<JSONObject> out, String name, String query, JSONObject fields)
+            throws JSONException {
+        out.add(new JSONObject().put("documentMetadata", new JSONObject()
+                .put("name", name)
+                .put("readTime", BUILT_AT)
+                .put("exists", true)
+                .put("queries", new JSONArray().put(query))));
+        out.add(new JSONObject().put("document", new JSONObject()
+                .put("name", name)
+                .put("fields", fields)
+                .put("createTime", BUILT_AT)
+                .put("updateTime", BUILT_AT)));
+    }
+
+    private static JSONObject string(String s) throws JSONException {
+        return new JSONObject().put("stringValue", s);
+    }
+
+    private static void writeElement(ByteArrayOutputStream out, JSONObject e) {
+        byte[] json = e.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] len = String.valueOf(json.length).getBytes(StandardCharsets.UTF_8);
+        out.write(len, 0, len.length);
+        out.write(json, 0, json.length);
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) delete(c);
+        f.delete();
+    }
+
+    private static long median(long[] v) {
+        long[] c = v.clone();
+        Arrays.sort(c);
+        return c[c.length / 2];
+    }
+}
@@ -0,0 +1,128 @@
+package vn.khengandkhoi.musicplayer.object;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import vn.khengandkhoi.musicplayer.search.SearchTokens;
+
+import static org.junit.Assert.*;
+
+/**
+ * Đo trên máy thật / emulator: map 10k document bài hát bằng toObject() so với FirestoreMapper.
+ * - Dùng 1 FirebaseApp riêng đã tắt mạng: ghi 10k document (kèm searchTokens như dữ liệu thật) vào cache cục bộ,
+ *   đọc lại bằng Source.CACHE -> chỉ đo phần map, không đo mạng.
+ * - Mỗi vòng map toàn bộ snapshot bằng cả 2 cách; in trung vị ra logcat (tag FirestoreMapping).
+ * - Dọn sạch: terminate() + clearPersistence() -> các lượt ghi đang chờ không bao giờ lên server.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirestoreMappingBenchmark {
+
+    private static final String TAG = "FirestoreMapping";
+    private static final int DOCS = 10_000, RUNS = 9, BATCH = 500;
+
+    private FirebaseApp app;
+    private FirebaseFirestore db;
+    private List<DocumentSnapshot> docs;
+
+    @Before
+    public void writeOfflineDocs() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseOptions options = FirebaseApp.initializeApp(context).getOptions();
+        app = FirebaseApp.initializeApp(context, options, "mapping-bench-" + System.nanoTime());
+        db = FirebaseFirestore.getInstance(app);
+        Tasks.await(db.disableNetwork(), 10, TimeUnit.SECONDS);
+
+        // Không chờ commit(): khi tắt mạng task chỉ xong lúc server xác nhận; dữ liệu đã vào cache ngay
+        CollectionReference songs = db.collection("albums").document("bench").collection("songs");
+        for (int from = 0; from < DOCS; from += BATCH) {
+            WriteBatch batch = db.batch();
+            for (int i = from; i < Math.min(DOCS, from + BATCH); i++) batch.set(songs.document("s" + i), song(i));
+            batch.commit();
+        }
+        QuerySnapshot snap = Tasks.await(songs.get(Source.CACHE), 120, TimeUnit.SECONDS);
+        docs = snap.getDocuments();
+        assertEquals(DOCS, docs.size());
+    }
+
+    @After
+    public void discard() throws Exception {
+        Tasks.await(db.terminate(), 10, TimeUnit.SECONDS);
+        Tasks.await(db.clearPersistence(), 10, TimeUnit.SECONDS);
+        app.delete();
+    }
+
+    @Test
+    public void toObjectVersusHandMapping() {
+        long[] reflection = new long[RUNS], manual = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long t0 = System.nanoTime();
+            int a = 0;
+            for (DocumentSnapshot d : docs) if (d.toObject(SongRemote.class) != null) a++;
+            long t1 = System.nanoTime();
+            int b = 0;
+            for (DocumentSnapshot d : docs) if (FirestoreMapper.song(d) != null) b++;
+            long t2 = System.nanoTime();
+            assertEquals(DOCS, a);
+            assertEquals(DOCS, b);
+            reflection[run] = t1 - t0;
+            manual[run] = t2 - t1;
+        }
+        // Cùng kết quả với toObject() trên mọi trường
+        for (int i = 0; i < DOCS; i += 997) {
+            SongRemote x = docs.get(i).toObject(SongRemote.class), y = FirestoreMapper.song(docs.get(i));
+            assertEquals(x.getId(), y.getId());
+            assertEquals(x.getTitle(), y.getTitle());
+            assertEquals(x.getAuthor(), y.getAuthor());
+            assertEquals(x.getUrl(), y.getUrl());
+            assertEquals(x.getCoverUrl(), y.getCoverUrl());
+            assertEquals(x.getTrackNum(), y.getTrackNum());
+        }
+        long r = median(reflection) / 1_000_000, m = median(manual) / 1_000_000;
+        Log.i(TAG, DOCS + " docs: toObject " + r + "ms, FirestoreMapper " + m + "ms"
+                + (m > 0 ? String.format(" (x%.1f)", (double) r / m) : "") + ", median of " + RUNS);
+    }
+
+    private static Map<String, Object> song(int i) {
+        String title = "Bài hát số " + i, author = "Nghệ sĩ " + (i % 50);
+        Map<String, Object> m = new HashMap<>();
+        m.put("id", "song-" + i);
+        m.put("title", title);
+        m.put("author", author);
+        m.put("url", "https://audio.example/" + i + ".mp3");
+        m.put("coverUrl", "https://img.example/" + (i % 500) + ".jpg");
+        m.put("trackNum", (long) (i % 20 + 1));
+        m.put(SearchTokens.FIELD, SearchTokens.forSong(title, author));
+        m.put(SearchTokens.VERSION_FIELD, (long) SearchTokens.VERSION);
+        return m;
+    }
+
+    private static long median(long[] v) {
+        long[] c = v.clone();
+        Arrays.sort(c);
+        return c[c.length / 2];
+    }
+}
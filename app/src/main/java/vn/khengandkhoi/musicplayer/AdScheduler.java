@@ -0,0 +1,124 @@
+package vn.khengandkhoi.musicplayer;
+
+import android.os.Handler;
+
+import java.util.function.LongSupplier;
+
+/**
+ * AdScheduler:
+ * - Lịch chèn quảng cáo theo "deadline": chỉ hẹn ĐÚNG 1 lần đánh thức tại thời điểm đến hạn
+ *   (thay cho vòng tick mỗi giây trước đây) -> giữa 2 lần quảng cáo không có wakeup nào.
+ * - Thời gian tính theo đồng hồ đơn điệu (elapsedRealtime) do MusicService truyền vào,
+ *   không bị ảnh hưởng khi người dùng đổi giờ hệ thống.
+ *
+ * Vòng đời trạng thái:
+ *   IDLE --resume()--> ARMED --pause()--> PAUSED --resume()--> ARMED (phần còn lại chính xác tới ms)
+ *   ARMED --đến hạn--> FIRING --onAdFinished()--> ARMED (chu kỳ mới)
+ *   bất kỳ --setEnabled(false)--> DISABLED (premium) --setEnabled(true)--> IDLE
+ *
+ * Lưu ý:
+ * - Mọi hàm phải gọi trên thread của handler (main looper của MusicService).
+ * - Các getter trạng thái (getState, getRemainingMs, getWakeupCount...) phục vụ kiểm thử/log.
+ */
+public final class AdScheduler {
+
+    public enum State { DISABLED, IDLE, ARMED, PAUSED, FIRING }
+
+    /** Được gọi khi đến hạn phát quảng cáo. */
+    public interface Listener { void onAdDue(); }
+
+    private final Handler handler;
+    private final LongSupplier clock;     // elapsedRealtime
+    private final LongSupplier interval;  // khoảng cách giữa 2 quảng cáo (có thể random mỗi chu kỳ)
+    private final Listener listener;
+
+    private State state = State.IDLE;
+    private long deadlineMs = -1L;   // mốc đến hạn khi ARMED
+    private long remainingMs = -1L;  // phần còn lại khi PAUSED
+    private int wakeups = 0;         // số lần handler thực sự đánh thức
+
+    private final Runnable fire = new Runnable() {
+        @Override public void run() {
+            wakeups++;
+            if (state != State.ARMED) return;
+            state = State.FIRING;
+            deadlineMs = -1L;
+            listener.onAdDue();
+        }
+    };
+
+    public AdScheduler(Handler handler, LongSupplier clock, LongSupplier interval, Listener listener) {
+        this.handler = handler;
+        this.clock = clock;
+        this.interval = interval;
+        this.listener = listener;
+    }
+
+    // Nhạc bắt đầu/tiếp tục phát: hẹn giờ cho phần còn lại (hoặc chu kỳ mới nếu chưa có)
+    public void resume() {
+        switch (state) {
+            case IDLE:   arm(interval.getAsLong()); break;
+            case PAUSED: arm(remainingMs); break;
+            default:     break; // ARMED: giữ nguyên deadline; FIRING/DISABLED: bỏ qua
+        }
+    }
+
+    // Nhạc tạm dừng: chốt phần còn lại, huỷ hẹn giờ
+    public void pause() {
+        if (state != State.ARMED) return;
+        remainingMs = Math.max(0, deadlineMs - clock.getAsLong());
+        deadlineMs = -1L;
+        handler.removeCallbacks(fire);
+        state = State.PAUSED;
+    }
+
+    // Quảng cáo phát xong (hoặc lỗi): bắt đầu chu kỳ mới
+    public void onAdFinished() {
+        if (state != State.FIRING) return;
+        arm(interval.getAsLong());
+    }
+
+    // Premium bật -> tắt hẳn lịch; premium hết -> quay về IDLE chờ resume()
+    public void setEnabled(boolean enabled) {
+        if (!enabled) {
+            cancel();
+            state = State.DISABLED;
+        } else if (state == State.DISABLED) {
+            state = State.IDLE;
+        }
+    }
+
+    // Huỷ mọi hẹn giờ và quên phần còn lại (dừng service)
+    public void cancel() {
+        handler.removeCallbacks(fire);
+        deadlineMs = -1L;
+        remainingMs = -1L;
+        if (state != State.DISABLED) state = State.IDLE;
+    }
+
+    private void arm(long delayMs) {
+        long delay = Math.max(0, delayMs);
+        deadlineMs = clock.getAsLong() + delay;
+        remainingMs = -1L;
+        state = State.ARMED;
+        handler.removeCallbacks(fire);
+        handler.postDelayed(fire, delay); // đúng 1 lần đánh thức tại deadline
+    }
+
+    // ====== Trạng thái cho kiểm thử/log ======
+
+    public State getState() { return state; }
+
+    // Mốc đến hạn (elapsedRealtime), -1 nếu không ARMED
+    public long getDeadlineMs() { return deadlineMs; }
+
+    // Thời gian còn lại tới quảng cáo, -1 nếu không có lịch
+    public long getRemainingMs() {
+        if (state == State.ARMED) return Math.max(0, deadlineMs - clock.getAsLong());
+        if (state == State.PAUSED) return remainingMs;
+        return -1L;
+    }
+
+    // Số lần handler đánh thức (kỳ vọng: đúng 1 lần cho mỗi quảng cáo)
+    public int getWakeupCount() { return wakeups; }
+}
@@ -0,0 +1,180 @@
+package vn.khengandkhoi.musicplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AppExecutors:
+ * - Lớp executor dùng chung cho cả app thay cho mỗi lớp tự tạo Executors.newSingleThreadExecutor() riêng:
+ *   + ui():      việc nền mà người dùng đang chờ thấy kết quả (lọc/xếp hạng kết quả tìm kiếm...) - ưu tiên cao nhất.
+ *   + compute(): map snapshot Firestore, lọc, sắp xếp, dựng index - dùng CPU, ưu tiên nền.
+ *   + io():      đọc/ghi file, chờ Tasks.await / mạng - phần lớn thời gian là chờ, ưu tiên nền.
+ *   + main():    quay về main thread (chỉ để submit vào adapter / cập nhật view).
+ * - Mỗi lane là 1 pool riêng (ưu tiên thread khác nhau) -> 1 đợt dựng index lớn trên compute không chặn
+ *   việc đọc đĩa trên io hay lọc kết quả trên ui.
+ * - serial(lane, name): hàng đợi tuần tự chạy trên 1 lane (thay cho single-thread executor riêng của từng lớp,
+ *   giữ nguyên đảm bảo "chỉ 1 thread chạm vào dữ liệu tại 1 thời điểm").
+ * - Đo theo lane: độ sâu hàng đợi (hiện tại / cao nhất), thời gian chờ trong hàng đợi và thời gian chạy
+ *   (trung bình / lớn nhất) -> stats(); log mỗi LOG_EVERY tác vụ, và cảnh báo khi 1 tác vụ chờ quá slowWaitMs.
+ *
+ * Lưu ý:
+ * - Executor dùng chung, không bao giờ shutdown: lớp nào có release() thì tự đặt cờ để bỏ việc về sau.
+ * - Truyền thẳng lane vào Task API (addOnSuccessListener(executor, ...), continueWith(executor, ...))
+ *   để callback Firestore không chạy trên main thread.
+ */
+public final class AppExecutors {
+
+    private static final String TAG = "AppExecutors";
+    private static final int LOG_EVERY = 500;
+
+    private static volatile AppExecutors instance;
+
+    public static AppExecutors get() {
+        if (instance == null) {
+            synchronized (AppExecutors.class) {
+                if (instance == null) instance = new AppExecutors();
+            }
+        }
+        return instance;
+    }
+
+    private final Lane ui, compute, io;
+    private final Executor main;
+
+    private AppExecutors() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ui = new Lane("ui", 2, Process.THREAD_PRIORITY_DEFAULT, 32);
+        compute = new Lane("compute", Math.max(2, Math.min(4, cpus - 1)), Process.THREAD_PRIORITY_BACKGROUND, 250);
+        io = new Lane("io", 4, Process.THREAD_PRIORITY_BACKGROUND, 500);
+        Handler handler = new Handler(Looper.getMainLooper());
+        main = handler::post;
+    }
+
+    public Lane ui() { return ui; }
+
+    public Lane compute() { return compute; }
+
+    public Lane io() { return io; }
+
+    public Executor main() { return main; }
+
+    /** Hàng đợi tuần tự mới chạy trên lane (tác vụ chạy lần lượt, không bao giờ song song). */
+    public Executor serial(Lane lane, String name) {
+        return new Serial(lane, name);
+    }
+
+    public String stats() {
+        return ui.stats() + " | " + compute.stats() + " | " + io.stats();
+    }
+
+    /** 1 làn thực thi: pool cố định số thread cùng mức ưu tiên + số liệu đo. */
+    public static final class Lane implements Executor {
+        private final String name;
+        private final long slowWaitMs;
+        private final ThreadPoolExecutor pool;
+
+        // Số liệu (ms); pending gồm cả tác vụ còn nằm trong hàng đợi serial
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger maxPending = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong waitSum = new AtomicLong(), waitMax = new AtomicLong();
+        private final AtomicLong runSum = new AtomicLong(), runMax = new AtomicLong();
+
+        Lane(String name, int threads, int priority, long slowWaitMs) {
+            this.name = name;
+            this.slowWaitMs = slowWaitMs;
+            AtomicInteger seq = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> new Thread(() -> {
+                        Process.setThreadPriority(priority);
+                        r.run();
+                    }, "app-" + name + "-" + seq.incrementAndGet()));
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable r) {
+            long at = enqueued();
+            pool.execute(() -> run(r, at));
+        }
+
+        /** Số tác vụ đang chờ chạy. */
+        public int queueDepth() { return pending.get(); }
+
+        public String stats() {
+            long n = Math.max(1, completed.get());
+            return name + ": queue=" + pending.get() + " (max " + maxPending.get() + ") done=" + completed.get()
+                    + " wait avg=" + waitSum.get() / n + "ms max=" + waitMax.get() + "ms"
+                    + " run avg=" + runSum.get() / n + "ms max=" + runMax.get() + "ms";
+        }
+
+        long enqueued() {
+            int depth = pending.incrementAndGet();
+            if (depth > maxPending.get()) maxPending.set(depth); // gần đúng là đủ cho số liệu
+            return SystemClock.elapsedRealtime();
+        }
+
+        void run(Runnable r, long enqueuedAt) {
+            pending.decrementAndGet();
+            long start = SystemClock.elapsedRealtime();
+            long wait = start - enqueuedAt;
+            try {
+                r.run();
+            } finally {
+                long took = SystemClock.elapsedRealtime() - start;
+                waitSum.addAndGet(wait);
+                runSum.addAndGet(took);
+                if (wait > waitMax.get()) waitMax.set(wait);
+                if (took > runMax.get()) runMax.set(took);
+                if (wait > slowWaitMs) Log.w(TAG, name + " task waited " + wait + "ms (queue=" + pending.get() + ")");
+                if (completed.incrementAndGet() % LOG_EVERY == 0) Log.d(TAG, stats());
+            }
+        }
+    }
+
+    // Tuần tự trên 1 lane: chỉ đẩy tác vụ kế tiếp vào lane khi tác vụ trước chạy xong
+    private static final class Serial implements Executor {
+        private final Lane lane;
+        private final String name;
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private boolean active = false;
+
+        Serial(Lane lane, String name) {
+            this.lane = lane;
+            this.name = name;
+        }
+
+        @Override
+        public synchronized void execute(Runnable r) {
+            long at = lane.enqueued(); // thời gian chờ tính cả lúc nằm trong hàng đợi serial
+            queue.add(() -> {
+                try {
+                    lane.run(r, at);
+                } finally {
+                    next();
+                }
+            });
+            if (!active) next();
+        }
+
+        private synchronized void next() {
+            Runnable r = queue.poll();
+            active = r != null;
+            if (r != null) lane.pool.execute(r);
+        }
+
+        @Override
+        public String toString() { return name + "@" + lane.name; }
+    }
+}
@@ -5,6 +5,7 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Build;
@@ -18,26 +19,29 @@ import androidx.media3.common.AudioAttributes;
 import androidx.media3.common.C;
 import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackException;
+import androidx.media3.common.PlaybackParameters;
 import androidx.media3.common.Player;
+import androidx.media3.common.Timeline;
 import androidx.media3.common.util.UnstableApi;
 import androidx.media3.datasource.RawResourceDataSource;
 import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
+import androidx.media3.exoplayer.source.ShuffleOrder;
 import androidx.media3.session.MediaSession;
 import androidx.media3.ui.PlayerNotificationManager;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicReference;
 
 import vn.khengandkhoi.musicplayer.activity.PlayerActivity;
+import vn.khengandkhoi.musicplayer.cache.AudioCache;
+import vn.khengandkhoi.musicplayer.cache.TrackPreloader;
 import vn.khengandkhoi.musicplayer.object.SongRemote;
 
 @UnstableApi
@@ -46,16 +50,69 @@ public class MusicService extends Service implements Player.Listener {
     /**
      * Giao diện callback để Activity/Fragment nhận snapshot trạng thái
      * - onMetaChanged: đổi bài/metadata (tiêu đề/tác giả/duration/index)
-     * - onPlayStateChanged: thay đổi state play/pause/seek (để cập nhật UI progress)
+     * - onPlayStateChanged: thay đổi state play/pause/seek (chỉ gửi khi có thay đổi, không còn gửi định kỳ)
+     * - onPositionAnchor: mốc vị trí để UI tự ngoại suy tiến độ (chỉ gửi cho callback đăng ký UPDATES_POSITION)
      */
     public interface Callback {
         void onMetaChanged(SongRemote song, int index, long durationMs);
         void onPlayStateChanged(boolean playing, long positionMs, long durationMs);
+        default void onPositionAnchor(PositionAnchor anchor) {}
     }
 
+    /**
+     * Mốc vị trí phát: (position, elapsedRealtime, speed) tại thời điểm chụp.
+     * - Service chỉ gửi mốc mới khi có gián đoạn (seek/đổi bài), play/pause hoặc đổi tốc độ.
+     * - Giữa 2 mốc, UI tự tính vị trí hiện tại bằng positionAt(SystemClock.elapsedRealtime())
+     *   -> Service không phải đánh thức main looper định kỳ để báo tiến độ.
+     */
+    public static final class PositionAnchor {
+        public final long positionMs;
+        public final long elapsedRealtimeMs;
+        public final float speed;
+        public final boolean playing;
+        public final long durationMs;
+
+        PositionAnchor(long positionMs, long elapsedRealtimeMs, float speed, boolean playing, long durationMs) {
+            this.positionMs = positionMs;
+            this.elapsedRealtimeMs = elapsedRealtimeMs;
+            this.speed = speed;
+            this.playing = playing;
+            this.durationMs = durationMs;
+        }
+
+        // Vị trí ngoại suy tại thời điểm nowElapsedMs (chặn trong [0, duration])
+        public long positionAt(long nowElapsedMs) {
+            if (!playing) return positionMs;
+            long pos = positionMs + (long) ((nowElapsedMs - elapsedRealtimeMs) * speed);
+            if (durationMs > 0 && durationMs != C.TIME_UNSET) pos = Math.min(pos, durationMs);
+            return Math.max(0, pos);
+        }
+    }
+
+    // Chế độ nhận cập nhật khi addCallback
+    public static final int UPDATES_META_ONLY = 0; // chỉ metadata + play/pause (vd: mini player)
+    public static final int UPDATES_POSITION = 1;  // thêm mốc vị trí khi seek/đổi tốc độ (vd: PlayerActivity)
+
     // Action để tắt Service từ Notification hoặc bên ngoài
     public static final String ACTION_STOP = "vn.khengandkhoi.musicplayer.ACTION_STOP";
 
+    // Extra của Intent phát nhạc: handle hàng đợi trong QueueRegistry + vị trí bắt đầu
+    public static final String EXTRA_QUEUE_HANDLE = "queueHandle";
+    public static final String EXTRA_INDEX = "index";
+
+    /**
+     * Tạo Intent phát danh sách songs từ vị trí index.
+     * - Danh sách được gửi qua QueueRegistry (cùng process), Intent chỉ mang handle kiểu long
+     *   -> không serialize, không đụng giới hạn ~1MB của Binder dù danh sách 10k bài.
+     * - Người gọi nên truyền bản chụp (snapshot) của danh sách, không phải list đang hiển thị/thay đổi.
+     */
+    public static Intent newPlayIntent(Context context, List<SongRemote> songs, int index) {
+        Intent i = new Intent(context, MusicService.class);
+        i.putExtra(EXTRA_QUEUE_HANDLE, QueueRegistry.submit(songs));
+        i.putExtra(EXTRA_INDEX, index);
+        return i;
+    }
+
     // Thông số kênh thông báo + id notification foreground
     private static final String CH_ID = "music_channel";
     private static final int NOTI_ID = 9001;
@@ -68,6 +125,8 @@ public class MusicService extends Service implements Player.Listener {
 
     // Firebase để log recent play
     private FirebaseAuth auth;
+    // Hàng đợi ghi sau cho recent play (gộp bài trùng, ghi batch, journal cục bộ)
+    private RecentPlayLog recentLog;
     private FirebaseFirestore db;
 
     // Player chính, MediaSession cho tương tác hệ thống (lockscreen, BT, Assistant),
@@ -76,28 +135,57 @@ public class MusicService extends Service implements Player.Listener {
     private MediaSession mediaSession;
     private PlayerNotificationManager notificationManager;
 
-    // Handler chạy vòng lặp update tiến độ phát nhạc cho UI (emitStateAll mỗi 500ms)
-    private Handler progressHandler;
+    // Cache đĩa cho nhạc stream (replay/repeat không tải lại từ mạng)
+    private AudioCache audioCache;
+
+    // Tải trước đầu các bài kế tiếp vào cache để chuyển bài không bị khoảng lặng
+    // Cấu hình qua prefs: "preloadDepth" (0 = tắt, tối đa 2) và "preloadSeconds"
+    private TrackPreloader preloader;
+    private static final int DEFAULT_PRELOAD_DEPTH = 1;
+    private static final int MAX_PRELOAD_DEPTH = 2;
+    private static final int DEFAULT_PRELOAD_SECONDS = 15;
+    private int preloadedForIndex = -1;      // đã preload cho bài nào (tránh lặp lại mỗi lần buffer đầy)
+
+    // Đo khoảng lặng khi chuyển bài: từ onMediaItemTransition tới lúc player thực sự phát
+    private long transitionAtElapsedMs = -1L;
+    private long lastTrackGapMs = -1L;
+    private long totalTrackGapMs = 0L;
+    private int trackGapSamples = 0;
 
     // Danh sách & trạng thái phát
     private ArrayList<SongRemote> playlist = new ArrayList<>();
-    private ArrayList<SongRemote> shuffledPlaylist = new ArrayList<>();
     private int currentIndex = 0;
     private boolean isShuffle = false;
     private boolean isRepeat = false;
     private final Random rng = new Random();
+    // Seed của hoán vị shuffle hiện tại (thứ tự trộn được quyết định hoàn toàn bởi seed + bài neo)
+    private long shuffleSeed = 0L;
+    // Hoán vị hiện tại theo index bài hát trong playlist (chưa tính media item quảng cáo)
+    private int[] shuffleSongOrder = null;
 
     // Danh sách callback thread-safe (UI có thể đăng ký/huỷ)
     private final java.util.concurrent.CopyOnWriteArrayList<Callback> callbacks = new java.util.concurrent.CopyOnWriteArrayList<>();
+    // Tập con callback muốn nhận mốc vị trí (UPDATES_POSITION)
+    private final java.util.Set<Callback> positionCallbacks = java.util.concurrent.ConcurrentHashMap.newKeySet();
 
     // ====== Cấu hình chèn quảng cáo (ad injection) ======
     // Handler & lịch ad theo elapsedRealtime để không bị ảnh hưởng bởi time change
+    // AdScheduler chỉ hẹn 1 lần đánh thức đúng deadline (không tick mỗi giây)
     private final Handler adHandler = new Handler(Looper.getMainLooper());
-    private long nextAdAtElapsedMs = -1L;    // thời điểm (elapsedRealtime) sẽ phát ad tiếp theo
-    private long adRemainingMs = -1L;        // thời gian còn lại đến ad khi bị pause (để resume)
+    private final AdScheduler adScheduler = new AdScheduler(
+            adHandler, SystemClock::elapsedRealtime, this::nextAdIntervalMs, this::onAdDue);
+    private long premiumUntil = 0L;          // cache "premiumUntil" (epoch ms), cập nhật qua listener prefs
     private boolean isPlayingAd = false;     // cờ đang phát quảng cáo
-    private ExoPlayer adPlayer = null;       // Player riêng phát ad, tách khỏi player chính
-    private long resumePosMsAfterAd = 0;     // lưu vị trí bài hát để resume sau khi ad kết thúc
+    // Quảng cáo được chèn thẳng vào timeline của player chính như 1 MediaItem, ngay sau bài đang phát:
+    // - player tự buffer trước ad (file raw cục bộ) trong khi bài hiện tại vẫn phát, buffer nhạc giữ nguyên
+    // - không tạo ExoPlayer thứ 2, không xin audio focus lần 2, không seekTo lại (không rebuffer) khi hết ad
+    private static final String AD_MEDIA_ID = "__ad__";
+    private int adItemIndex = -1;            // vị trí media item quảng cáo trong timeline, -1 nếu không có
+    private int adAfterSongIndex = -1;       // ad được chèn sau bài nào (index trong playlist)
+    private int adsPlayed = 0;               // số quảng cáo đã phát hết
+    private int adSkipAttempts = 0;          // số lần người dùng bấm next/prev/seek khi đang phát ad (bị chặn)
+    private long adEndedAtElapsedMs = -1L;   // đo độ trễ từ lúc hết ad tới khi nhạc phát ra
+    private long lastAdResumeLatencyMs = -1L;
 
     // Chế độ test: 10 giây phát 1 lần. Bật false => random 10–15 phút
     private static final boolean AD_TEST_MODE = true;         // đổi false để dùng 10–15 phút
@@ -114,22 +202,29 @@ public class MusicService extends Service implements Player.Listener {
         // Khởi tạo Firebase
         auth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
+        recentLog = new RecentPlayLog(this, db);
 
         // Tạo notification channel (Android 8+)
         createChannel();
         // Tạo ExoPlayer chính + listener
         initPlayer();
-        // Handler cho vòng lặp cập nhật progress
-        progressHandler = new Handler(Looper.getMainLooper());
         // MediaSession để hệ thống điều khiển (bluetooth, headset, Assistant)
         setupMediaSession();
         // Notification media controls
         setupNotification();
+        // Đọc premium 1 lần + lắng nghe thay đổi (SubscriptionActivity/MainActivity ghi prefs)
+        android.content.SharedPreferences prefs = getSharedPreferences("prefs", MODE_PRIVATE);
+        premiumUntil = prefs.getLong("premiumUntil", 0L);
+        prefs.registerOnSharedPreferenceChangeListener(premiumListener);
+        applyPremiumState();
     }
 
     private void initPlayer() {
+        audioCache = AudioCache.get(this);
         // Tạo player với AudioAttributes: USAGE_MEDIA + CONTENT_TYPE_MUSIC (để điều khiển audio focus đúng chuẩn)
+        // MediaSourceFactory đọc qua AudioCache thay vì tải thẳng URL mỗi lần phát
         player = new ExoPlayer.Builder(this)
+                .setMediaSourceFactory(new DefaultMediaSourceFactory(audioCache.dataSourceFactory()))
                 .setAudioAttributes(
                         new AudioAttributes.Builder()
                                 .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
@@ -139,6 +234,7 @@ public class MusicService extends Service implements Player.Listener {
                 )
                 .build();
         player.addListener(this); // lắng nghe sự kiện player (transition, state, error, ...)
+        preloader = new TrackPreloader(audioCache);
     }
 
     private void setupMediaSession() {
@@ -206,10 +302,15 @@ public class MusicService extends Service implements Player.Listener {
         }
 
         // Nhận playlist & index từ Intent (khi người dùng chọn phát từ UI)
-        if (intent != null && intent.hasExtra("songs")) {
-            Object rawList = intent.getSerializableExtra("songs");
-            ArrayList<SongRemote> list = parsePlaylist(rawList);
-            int index = intent.getIntExtra("index", 0);
+        // Ưu tiên handle QueueRegistry; "songs" (Serializable) giữ lại cho tương thích cũ
+        List<SongRemote> list = null;
+        if (intent != null && intent.hasExtra(EXTRA_QUEUE_HANDLE)) {
+            list = QueueRegistry.take(intent.getLongExtra(EXTRA_QUEUE_HANDLE, -1L));
+        } else if (intent != null && intent.hasExtra("songs")) {
+            list = parsePlaylist(intent.getSerializableExtra("songs"));
+        }
+        if (list != null) {
+            int index = intent.getIntExtra(EXTRA_INDEX, 0);
 
             setPlaylist(list, index, isShuffle);
             play();
@@ -234,31 +335,35 @@ public class MusicService extends Service implements Player.Listener {
         return new ArrayList<>();
     }
 
-    // Thiết lập playlist + trộn (nếu cần) + chuẩn bị media items
-    public void setPlaylist(ArrayList<SongRemote> list, int startIndex, boolean shuffle) {
+    // Thiết lập playlist + chuẩn bị media items (+ thứ tự trộn nếu cần)
+    public void setPlaylist(List<SongRemote> list, int startIndex, boolean shuffle) {
+        isShuffle = shuffle; // setShuffle() / preload / chọn bài kế đọc cờ này -> luôn khớp với player
         playlist = new ArrayList<>(list);
-        currentIndex = startIndex < playlist.size() ? startIndex : 0;
+        currentIndex = startIndex >= 0 && startIndex < playlist.size() ? startIndex : 0;
 
-        if (shuffle) {
-            // Tạo bản trộn và xác định index tương ứng bài hiện tại trong list đã trộn
-            shuffledPlaylist = new ArrayList<>(playlist);
-            Collections.shuffle(shuffledPlaylist, rng);
-            currentIndex = shuffledPlaylist.indexOf(playlist.get(startIndex));
-        } else {
-            shuffledPlaylist = playlist;
-        }
+        // Queue mới thay toàn bộ timeline -> ad đang chờ/đang phát (nếu có) bị xoá theo
+        boolean adWasQueued = adItemIndex >= 0;
+        clearAdState();
 
-        // Đẩy danh sách media items vào ExoPlayer
+        // Đẩy danh sách media items vào ExoPlayer (luôn theo thứ tự gốc)
         buildMediaSource();
 
-        // Ghi log "recent play" ngay bài đầu (phòng khi auto-transition chưa xảy ra)
+        // Shuffle chỉ là thứ tự duyệt của player, không đụng tới danh sách media items
+        if (shuffle) applyShuffleOrder();
+        player.setShuffleModeEnabled(shuffle);
+
+        // Ad còn nợ -> chèn lại sau bài vừa chọn (không để đổi queue thành cách né quảng cáo)
+        if (adWasQueued) insertAdAfterCurrent();
+
+        // Ghi log "recent play" ngay bài đầu (phòng khi auto-transition chưa xảy ra);
+        // onMediaItemTransition ghi lại cùng bài thì được RecentPlayLog gộp -> vẫn chỉ 1 lần ghi
         SongRemote cur = getCurrent();
         if (cur != null) logRecentPlay(cur);
     }
 
     // Map playlist -> MediaItem, set vào player và prepare (seek tới currentIndex)
     private void buildMediaSource() {
-        player.setMediaItems(shuffledPlaylist.stream()
+        player.setMediaItems(playlist.stream()
                 .map(song -> new MediaItem.Builder()
                         .setUri(song.getUrl())
                         .setMediaMetadata(new androidx.media3.common.MediaMetadata.Builder()
@@ -268,6 +373,103 @@ public class MusicService extends Service implements Player.Listener {
                         .build())
                 .collect(java.util.stream.Collectors.toList()), currentIndex, 0);
         player.prepare();
+        // Queue mới -> kết quả preload cũ không còn đúng
+        preloader.cancel();
+        preloadedForIndex = -1;
+    }
+
+    /**
+     * Tạo hoán vị trộn từ seed mới, neo bài hiện tại ở vị trí đầu
+     * -> mọi bài còn lại đều phát sau bài hiện tại, bài đang phát không bị đổi chỗ.
+     * - Fisher–Yates trên Random(seed): cùng seed + cùng bài neo cho ra cùng thứ tự (tái lập được).
+     * - Chỉ set ShuffleOrder cho player: O(1) với timeline, không setMediaItems/prepare lại.
+     */
+    private void applyShuffleOrder() {
+        int n = playlist.size();
+        if (n == 0) return;
+        shuffleSeed = rng.nextLong();
+        shuffleSongOrder = buildShufflePermutation(n, currentIndex, shuffleSeed);
+        pushShuffleOrder();
+    }
+
+    // Đổi hoán vị theo index bài hát -> index media item (chèn ad ngay sau bài mà nó đứng sau) rồi set cho player
+    private void pushShuffleOrder() {
+        if (shuffleSongOrder == null || shuffleSongOrder.length != playlist.size()) return;
+        int[] order = new int[player.getMediaItemCount()];
+        int k = 0;
+        for (int song : shuffleSongOrder) {
+            order[k++] = mediaIndexOf(song);
+            if (song == adAfterSongIndex && adItemIndex >= 0) order[k++] = adItemIndex;
+        }
+        if (k != order.length) return; // timeline không khớp (không nên xảy ra)
+        player.setShuffleOrder(new ShuffleOrder.DefaultShuffleOrder(order, shuffleSeed));
+    }
+
+    // Chuyển đổi index giữa playlist (bài hát) và timeline của player (có thể có 1 item quảng cáo chen vào)
+    private int songIndexOf(int mediaIndex) {
+        return adItemIndex >= 0 && mediaIndex > adItemIndex ? mediaIndex - 1 : mediaIndex;
+    }
+
+    private int mediaIndexOf(int songIndex) {
+        return adItemIndex >= 0 && songIndex >= adItemIndex ? songIndex + 1 : songIndex;
+    }
+
+    private static int[] buildShufflePermutation(int n, int anchor, long seed) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        // đưa bài neo lên đầu
+        order[anchor] = 0;
+        order[0] = anchor;
+        Random r = new Random(seed);
+        for (int i = n - 1; i > 1; i--) {
+            int j = 1 + r.nextInt(i); // chỉ trộn đoạn [1, i]
+            int tmp = order[i]; order[i] = order[j]; order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Tải trước N giây đầu của 1–2 bài kế tiếp theo đúng thứ tự phát của player (tính cả shuffle order).
+     * - Gọi khi player vừa nạp đủ buffer cho bài hiện tại (onIsLoadingChanged(false)) để không tranh băng thông.
+     * - Repeat-one: bài kế tiếp chính là bài hiện tại (đã có trong cache) -> bỏ qua.
+     */
+    private void schedulePreload() {
+        if (isPlayingAd || isRepeat || preloadedForIndex == currentIndex) return;
+        android.content.SharedPreferences prefs = getSharedPreferences("prefs", MODE_PRIVATE);
+        int depth = Math.min(MAX_PRELOAD_DEPTH, prefs.getInt("preloadDepth", DEFAULT_PRELOAD_DEPTH));
+        int seconds = prefs.getInt("preloadSeconds", DEFAULT_PRELOAD_SECONDS);
+        if (depth <= 0) return;
+
+        ArrayList<String> urls = new ArrayList<>();
+        Timeline timeline = player.getCurrentTimeline();
+        boolean shuffle = player.getShuffleModeEnabled();
+        int i = player.getCurrentMediaItemIndex();
+        while (urls.size() < depth && !timeline.isEmpty()) {
+            i = timeline.getNextWindowIndex(i, Player.REPEAT_MODE_OFF, shuffle);
+            if (i == C.INDEX_UNSET) break;
+            if (i == adItemIndex) continue; // ad là file cục bộ, không cần preload
+            int song = songIndexOf(i);
+            if (song >= playlist.size()) break;
+            urls.add(playlist.get(song).getUrl());
+        }
+        preloadedForIndex = currentIndex;
+        preloader.preload(urls, seconds);
+    }
+
+    // Khoảng lặng đo được ở lần chuyển bài gần nhất (ms), -1 nếu chưa có
+    public long getLastTrackGapMs() { return lastTrackGapMs; }
+
+    // Khoảng lặng trung bình giữa các bài (ms), -1 nếu chưa có
+    public long getAverageTrackGapMs() {
+        return trackGapSamples == 0 ? -1L : totalTrackGapMs / trackGapSamples;
+    }
+
+    private void recordTrackGap(long gapMs) {
+        lastTrackGapMs = gapMs;
+        totalTrackGapMs += gapMs;
+        trackGapSamples++;
+        transitionAtElapsedMs = -1L;
+        android.util.Log.d("MusicService", "track gap=" + gapMs + "ms avg=" + getAverageTrackGapMs() + "ms");
     }
 
     // Bắt đầu phát
@@ -275,12 +477,20 @@ public class MusicService extends Service implements Player.Listener {
         player.setPlayWhenReady(true);
     }
 
-    // Gửi snapshot đầy đủ cho 1 callback mới đăng ký (metadata + play state)
+    // Gửi snapshot đầy đủ cho 1 callback mới đăng ký (metadata + play state + mốc vị trí nếu có đăng ký)
     private void emitSnapshot(Callback cb) {
         if (cb == null) return;
         SongRemote s = getCurrent();
         if (s != null) cb.onMetaChanged(s, currentIndex, player.getDuration());
-        cb.onPlayStateChanged(isPlaying(), player.getCurrentPosition(), player.getDuration());
+        PositionAnchor a = currentAnchor();
+        cb.onPlayStateChanged(a.playing, a.positionMs, a.durationMs);
+        if (positionCallbacks.contains(cb)) cb.onPositionAnchor(a);
+    }
+
+    // Chụp mốc vị trí hiện tại của player
+    private PositionAnchor currentAnchor() {
+        return new PositionAnchor(player.getCurrentPosition(), SystemClock.elapsedRealtime(),
+                player.getPlaybackParameters().speed, isPlaying(), player.getDuration());
     }
 
     // Gửi metadata tới tất cả callback (khi đổi bài)
@@ -291,40 +501,52 @@ public class MusicService extends Service implements Player.Listener {
         for (Callback cb : callbacks) cb.onMetaChanged(s, currentIndex, dur);
     }
 
-    // Gửi trạng thái play/pause/seek tới tất cả callback
+    // Gửi trạng thái play/pause tới tất cả callback (+ mốc vị trí cho callback UPDATES_POSITION)
     private void emitStateAll() {
-        boolean playing = isPlaying();
-        long pos = player.getCurrentPosition();
-        long dur = player.getDuration();
-        for (Callback cb : callbacks) cb.onPlayStateChanged(playing, pos, dur);
+        emitState(true);
+    }
+
+    // Chỉ vị trí thay đổi (seek, đổi tốc độ, duration vừa biết) -> chỉ gửi cho callback UPDATES_POSITION
+    private void emitPositionAll() {
+        emitState(false);
     }
 
-    // Đảm bảo vòng lặp cập nhật progress đang chạy (500ms/lần khi STATE_READY)
-    private void ensureProgressLoop() {
-        if (player != null && player.getPlaybackState() == Player.STATE_READY) {
-            progressHandler.removeCallbacks(progressRunnable);
-            progressHandler.post(progressRunnable);
+    private void emitState(boolean includeMetaOnly) {
+        if (callbacks.isEmpty()) return;
+        PositionAnchor a = currentAnchor();
+        for (Callback cb : callbacks) {
+            boolean wantsPosition = positionCallbacks.contains(cb);
+            if (!wantsPosition && !includeMetaOnly) continue;
+            cb.onPlayStateChanged(a.playing, a.positionMs, a.durationMs);
+            if (wantsPosition) cb.onPositionAnchor(a);
         }
     }
 
-    // Cho UI đăng ký nhận callback
+    // Cho UI đăng ký nhận callback (mặc định nhận cả mốc vị trí như trước)
     public void addCallback(Callback cb) {
+        addCallback(cb, UPDATES_POSITION);
+    }
+
+    // Đăng ký kèm chế độ: UPDATES_META_ONLY hoặc UPDATES_POSITION
+    public void addCallback(Callback cb, int updates) {
         if (cb == null) return;
         if (!callbacks.contains(cb)) callbacks.add(cb);
+        if (updates == UPDATES_POSITION) positionCallbacks.add(cb);
+        else positionCallbacks.remove(cb);
         emitSnapshot(cb);
-        ensureProgressLoop();
     }
 
     // UI huỷ nhận callback
     public void removeCallback(Callback cb) {
         if (cb == null) return;
         callbacks.remove(cb);
+        positionCallbacks.remove(cb);
     }
 
-    // Lấy bài hiện tại từ danh sách (đã trộn nếu shuffle)
+    // Lấy bài hiện tại từ danh sách (index theo thứ tự gốc, shuffle không đổi vị trí media item)
     public SongRemote getCurrent() {
-        if (shuffledPlaylist.isEmpty() || currentIndex >= shuffledPlaylist.size()) return null;
-        return shuffledPlaylist.get(currentIndex);
+        if (playlist.isEmpty() || currentIndex >= playlist.size()) return null;
+        return playlist.get(currentIndex);
     }
 
     // Một số tiện ích cho UI
@@ -332,17 +554,18 @@ public class MusicService extends Service implements Player.Listener {
     public boolean isPlaying() { return player.getPlaybackState() == Player.STATE_READY && player.getPlayWhenReady(); }
     public long getPosition() { return player.getCurrentPosition(); }
     public long getDuration() { return player.getDuration(); }
+    public AudioCache.Stats getCacheStats() { return audioCache.getStats(); }
 
     // Toggle play/pause
     public void togglePlay() {
         boolean willPlay = !player.getPlayWhenReady();
-        player.setPlayWhenReady(willPlay);
-        emitStateAll();
+        player.setPlayWhenReady(willPlay); // onPlayWhenReadyChanged sẽ gửi state cho UI
         if (willPlay) resumeAdCountdown(); else pauseAdCountdown();
     }
 
     // Bài tiếp theo (nếu hết danh sách và repeat bật -> quay về đầu)
     public void next() {
+        if (blockDuringAd()) return;
         if (player.hasNextMediaItem()) {
             player.seekToNextMediaItem();
         } else if (isRepeat) {
@@ -353,6 +576,7 @@ public class MusicService extends Service implements Player.Listener {
 
     // Bài trước: nếu đang >3s trong bài -> về đầu; nếu không -> lùi bài trước đó
     public void prev() {
+        if (blockDuringAd()) return;
         if (player.getCurrentPosition() > 3000) {
             player.seekTo(0);
         } else if (player.hasPreviousMediaItem()) {
@@ -363,40 +587,64 @@ public class MusicService extends Service implements Player.Listener {
 
     // Tua đến vị trí ms
     public void seekTo(long ms) {
+        if (blockDuringAd()) return;
         player.seekTo(ms);
     }
 
     // Lặp 1 bài
     public void setRepeat(boolean on) {
         isRepeat = on;
+        // Ad đang chờ/đang phát -> giữ lặp tắt tới khi ad xong (onAdEnded sẽ bật lại)
+        if (adItemIndex >= 0) return;
         player.setRepeatMode(on ? Player.REPEAT_MODE_ONE : Player.REPEAT_MODE_OFF);
     }
 
-    // Bật/tắt shuffle: tái tạo playlist trộn & phát lại tại bài hiện tại
+    // Bật/tắt shuffle: chỉ đổi thứ tự duyệt của player, bài đang phát & buffer giữ nguyên
     public void setShuffle(boolean on) {
         isShuffle = on;
         if (playlist.isEmpty()) return;
 
-        int currentSongId = -1;
-        SongRemote current = getCurrent();
-        if (current != null) {
-            currentSongId = playlist.indexOf(current);
-        }
+        // Mỗi lần bật lại -> hoán vị mới neo tại bài hiện tại
+        if (on) applyShuffleOrder();
+        player.setShuffleModeEnabled(on);
 
-        setPlaylist(playlist, currentSongId, on);
-        play();
-        scheduleNextAdIfNeeded(false);
+        // Bài kế tiếp đã đổi -> preload lại theo thứ tự mới
+        preloader.cancel();
+        preloadedForIndex = -1;
+        schedulePreload();
     }
 
     // Khi chuyển MediaItem (đổi bài)
     @Override
     public void onMediaItemTransition(@Nullable MediaItem mediaItem, int reason) {
-        currentIndex = player.getCurrentMediaItemIndex();
+        // Tới item quảng cáo: không log recent, không tính tần suất cache, không đo gap
+        if (mediaItem != null && AD_MEDIA_ID.equals(mediaItem.mediaId)) {
+            isPlayingAd = true;
+            emitStateAll();
+            return;
+        }
+        // Vừa rời khỏi ad -> gỡ ad khỏi timeline (index các bài phía sau trở lại như cũ)
+        // Ad còn chờ mà người dùng chuyển bài -> dời ad ra sau bài vừa chuyển tới (đọc từ player, không từ currentIndex cũ)
+        if (isPlayingAd) onAdEnded();
+        else relocatePendingAd();
+
+        currentIndex = songIndexOf(player.getCurrentMediaItemIndex());
         emitMetaAll(); // UI cập nhật tiêu đề/duration
 
+        // Đo khoảng lặng: tự chuyển bài mà player vẫn đang phát -> gap = 0; ngược lại chờ onIsPlayingChanged(true)
+        // (chỉ đo khi đang ở chế độ phát, tránh tính cả thời gian người dùng tạm dừng)
+        if (player.getPlayWhenReady() && (reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO
+                || reason == Player.MEDIA_ITEM_TRANSITION_REASON_SEEK)) {
+            if (player.isPlaying()) recordTrackGap(0);
+            else transitionAtElapsedMs = SystemClock.elapsedRealtime();
+        }
+
         // Log recent play lên Firestore
         SongRemote cur = getCurrent();
         logRecentPlay(cur);
+
+        // Ghi nhận tần suất phát cho cache (cả vòng lặp repeat-one cũng đi qua đây)
+        if (cur != null) audioCache.recordPlay(cur.getUrl());
     }
 
     // Khi trạng thái playWhenReady đổi (play/pause)
@@ -406,31 +654,60 @@ public class MusicService extends Service implements Player.Listener {
         if (playWhenReady) resumeAdCountdown(); else pauseAdCountdown();
     }
 
-    // Khi position bị gián đoạn (seek/next/prev) -> cập nhật UI progress
+    // Player bắt đầu/ngừng phát thực sự (buffer xong, hết buffer...) -> mốc vị trí mới
+    // và chốt khoảng lặng nếu đang đo
     @Override
-    public void onPositionDiscontinuity(Player.PositionInfo oldPos, Player.PositionInfo newPos, int reason) {
+    public void onIsPlayingChanged(boolean isPlaying) {
         emitStateAll();
+        if (isPlaying && transitionAtElapsedMs > 0) {
+            recordTrackGap(SystemClock.elapsedRealtime() - transitionAtElapsedMs);
+        }
+        if (isPlaying && adEndedAtElapsedMs > 0) {
+            lastAdResumeLatencyMs = SystemClock.elapsedRealtime() - adEndedAtElapsedMs;
+            adEndedAtElapsedMs = -1L;
+            android.util.Log.d("MusicService", "ad resume latency=" + lastAdResumeLatencyMs + "ms");
+        }
     }
 
-    // Vòng lặp gửi state mỗi 500ms cho tất cả callback (khi READY)
-    private final Runnable progressRunnable = new Runnable() {
-        @Override public void run() {
-            if (player.getPlaybackState() == Player.STATE_READY && !callbacks.isEmpty()) {
-                emitStateAll();
-            }
-            progressHandler.postDelayed(this, 500);
+    // Lỗi khi đang phát ad -> bỏ ad, phát tiếp nhạc (không để quảng cáo chặn playback)
+    // Bài tiếp theo lấy theo thứ tự phát của player (shuffle order + lặp), không phải vị trí kế bên trong playlist
+    @Override
+    public void onPlayerError(PlaybackException error) {
+        if (!isPlayingAd) return;
+        int afterSong = adAfterSongIndex;
+        isPlayingAd = false; // lỗi không tính là đã phát
+        onAdEnded();
+        Timeline timeline = player.getCurrentTimeline();
+        if (afterSong >= 0 && afterSong < timeline.getWindowCount()) {
+            int next = timeline.getNextWindowIndex(afterSong, player.getRepeatMode(), player.getShuffleModeEnabled());
+            if (next != C.INDEX_UNSET) player.seekTo(next, 0);
         }
-    };
+        player.prepare();
+        player.play();
+    }
+
+    // Player ngừng tải (buffer bài hiện tại đã đủ) -> tranh thủ băng thông rảnh để preload bài kế
+    @Override
+    public void onIsLoadingChanged(boolean isLoading) {
+        if (!isLoading && player.getPlaybackState() == Player.STATE_READY) schedulePreload();
+    }
+
+    // Khi position bị gián đoạn (seek/next/prev/lặp bài) -> mốc vị trí mới
+    @Override
+    public void onPositionDiscontinuity(Player.PositionInfo oldPos, Player.PositionInfo newPos, int reason) {
+        emitPositionAll();
+    }
+
+    // Đổi tốc độ phát -> mốc cũ ngoại suy sai, gửi mốc mới
+    @Override
+    public void onPlaybackParametersChanged(PlaybackParameters params) {
+        emitPositionAll();
+    }
 
-    // Quản lý vòng lặp theo state Player
+    // READY: duration đã biết -> gửi mốc để UI cập nhật thanh tiến độ
     @Override
     public void onPlaybackStateChanged(int state) {
-        if (state == Player.STATE_READY) {
-            progressHandler.removeCallbacks(progressRunnable);
-            progressHandler.post(progressRunnable);
-        } else if (state == Player.STATE_IDLE || state == Player.STATE_ENDED) {
-            progressHandler.removeCallbacks(progressRunnable);
-        }
+        if (state == Player.STATE_READY) emitPositionAll();
     }
 
     // Tạo notification channel (Android 8+ bắt buộc)
@@ -443,224 +720,186 @@ public class MusicService extends Service implements Player.Listener {
 
     // ===================== QUẢNG CÁO: LỊCH & PHÁT =====================
 
-    // Kiểm tra premium (dựa trên shared prefs "premiumUntil")
+    // Kiểm tra premium (dựa trên giá trị "premiumUntil" đã cache, không đọc SharedPreferences mỗi lần)
     private boolean isPremium() {
-        long until = getSharedPreferences("prefs", MODE_PRIVATE)
-                .getLong("premiumUntil", 0L);
-        return System.currentTimeMillis() < until;
+        return System.currentTimeMillis() < premiumUntil;
+    }
+
+    // Prefs "premiumUntil" đổi (mua gói/đồng bộ từ server) -> bật/tắt lịch ad ngay
+    private final android.content.SharedPreferences.OnSharedPreferenceChangeListener premiumListener =
+            (prefs, key) -> {
+                if (!"premiumUntil".equals(key)) return;
+                premiumUntil = prefs.getLong("premiumUntil", 0L);
+                applyPremiumState();
+            };
+
+    // Hết hạn premium giữa phiên nghe -> bật lại lịch ad (1 lần đánh thức đúng lúc hết hạn)
+    private final Runnable premiumExpiry = this::applyPremiumState;
+
+    private void applyPremiumState() {
+        adHandler.removeCallbacks(premiumExpiry);
+        long left = premiumUntil - System.currentTimeMillis();
+        if (left > 0) {
+            adScheduler.setEnabled(false);
+            adHandler.postDelayed(premiumExpiry, left);
+        } else {
+            adScheduler.setEnabled(true);
+            if (player != null && player.getPlayWhenReady()) adScheduler.resume();
+        }
     }
 
-    // Lên lịch ad tiếp theo (nếu chưa có) hoặc cưỡng bức đặt lại (force)
-    private void scheduleNextAdIfNeeded(boolean force) {
+    // Khoảng cách tới quảng cáo kế tiếp: test 10s, thật random 10–15 phút
+    private long nextAdIntervalMs() {
+        if (AD_TEST_MODE) return AD_TEST_INTERVAL_MS;
+        int minutes = AD_MIN_MINUTES + rng.nextInt(AD_MAX_MINUTES - AD_MIN_MINUTES + 1);
+        return minutes * 60_000L;
+    }
+
+    // AdScheduler báo đến hạn
+    private void onAdDue() {
         if (isPremium()) {
-            // Premium: không chạy lịch ad
-            nextAdAtElapsedMs = -1L;
-            adHandler.removeCallbacks(adTick);
+            adScheduler.setEnabled(false);
             return;
         }
-        long now = SystemClock.elapsedRealtime();
-        if (force || nextAdAtElapsedMs <= 0) {
-            if (AD_TEST_MODE) {
-                nextAdAtElapsedMs = now + AD_TEST_INTERVAL_MS; // 10s
-            } else {
-                int minutes = AD_MIN_MINUTES + rng.nextInt(AD_MAX_MINUTES - AD_MIN_MINUTES + 1);
-                nextAdAtElapsedMs = now + minutes * 60_000L;   // 10–15 phút
-            }
-        }
-        adHandler.removeCallbacks(adTick);
-        adHandler.postDelayed(adTick, 1000); // tick mỗi giây để kiểm tra đến hạn ad
-    }
-
-    // Tick ad: đến hạn -> phát ad; chưa đến -> hẹn tick tiếp
-    private final Runnable adTick = new Runnable() {
-        @Override public void run() {
-            if (isPremium()) return;
-            long now = SystemClock.elapsedRealtime();
-            if (!isPlayingAd && nextAdAtElapsedMs > 0 && now >= nextAdAtElapsedMs) {
-                playAd();
-            } else {
-                adHandler.postDelayed(this, 1000);
-            }
-        }
-    };
-
-    // Phát quảng cáo: tạo player ad riêng, pause player chính, nghe END/ERROR để resume
-    private void playAd() {
-        try {
-            // Lưu vị trí hiện tại & tạm dừng player chính để chèn quảng cáo
-            if (player != null) {
-                resumePosMsAfterAd = player.getCurrentPosition();
-                if (player.getPlayWhenReady()) player.pause();
-            } else {
-                resumePosMsAfterAd = 0;
-            }
+        playAd();
+    }
 
-            isPlayingAd = true;
+    // Trạng thái lịch quảng cáo (phục vụ kiểm thử/log)
+    public AdScheduler getAdScheduler() { return adScheduler; }
 
-            // Player riêng cho quảng cáo để không làm xáo trộn queue player chính
-            adPlayer = new ExoPlayer.Builder(this)
-                    .setAudioAttributes(
-                            new AudioAttributes.Builder()
-                                    .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
-                                    .setUsage(C.USAGE_MEDIA)
-                                    .build(),
-                            true
-                    )
-                    .build();
+    // Thống kê quảng cáo (phục vụ kiểm thử/log)
+    public int getAdsPlayed() { return adsPlayed; }
+    public int getAdSkipAttempts() { return adSkipAttempts; }
+    // Độ trễ từ lúc ad kết thúc tới khi nhạc thực sự phát lại (ms), -1 nếu chưa có
+    public long getLastAdResumeLatencyMs() { return lastAdResumeLatencyMs; }
 
-            // Quảng cáo lấy từ raw resource (R.raw.ad_clip)
-            MediaItem adItem = MediaItem.fromUri(
-                    RawResourceDataSource.buildRawResourceUri(R.raw.ad_clip)
-            );
-            adPlayer.setMediaItem(adItem);
-            adPlayer.prepare();
-
-            adPlayer.addListener(new Player.Listener() {
-                // Hết quảng cáo -> resume player chính
-                @Override public void onPlaybackStateChanged(int state) {
-                    if (state == Player.STATE_ENDED) {
-                        stopAdAndResume();
-                    }
-                }
-                // Lỗi quảng cáo -> bỏ qua, resume player chính
-                @Override public void onPlayerError(PlaybackException error) {
-                    stopAdAndResume();
-                }
-            });
-
-            adPlayer.setPlayWhenReady(true); // bắt đầu phát ad ngay
+    /**
+     * Đến hạn quảng cáo: chèn ad vào timeline NGAY SAU bài đang phát (không cắt ngang bài).
+     * - Bài hiện tại phát tiếp, player tự nạp trước ad ở ranh giới bài -> không pause/seek, không mất buffer nhạc.
+     * - Shuffle: đẩy lại ShuffleOrder để ad đứng ngay sau bài hiện tại trong thứ tự phát.
+     * - Repeat-one: tạm tắt lặp để player đi tiếp sang ad, hết ad sẽ quay lại bài cũ.
+     */
+    private void playAd() {
+        if (player == null || playlist.isEmpty()) {
+            adScheduler.onAdFinished(); // không có gì để chèn -> chu kỳ mới
+            return;
+        }
+        insertAdAfterCurrent();
+    }
 
+    private void insertAdAfterCurrent() {
+        if (adItemIndex >= 0) return;
+        try {
+            MediaItem adItem = new MediaItem.Builder()
+                    .setMediaId(AD_MEDIA_ID)
+                    .setUri(RawResourceDataSource.buildRawResourceUri(R.raw.ad_clip))
+                    .setMediaMetadata(new androidx.media3.common.MediaMetadata.Builder()
+                            .setTitle("Quảng cáo")
+                            .build())
+                    .build();
+            // Lấy thẳng từ player (chưa có ad trong timeline -> index media = index bài), không dựa vào currentIndex
+            int mediaIndex = player.getCurrentMediaItemIndex();
+            adAfterSongIndex = mediaIndex;
+            adItemIndex = mediaIndex + 1;
+            player.addMediaItem(adItemIndex, adItem);
+            if (player.getShuffleModeEnabled()) pushShuffleOrder();
+            if (isRepeat) player.setRepeatMode(Player.REPEAT_MODE_OFF);
+            // Bài kế tiếp giờ là ad -> preload lại khi tới bài sau ad
+            preloader.cancel();
+            preloadedForIndex = -1;
         } catch (Exception e) {
-            // Nếu lỗi bất kỳ -> bỏ qua ad để không chặn playback
-            stopAdAndResume();
+            // Lỗi bất kỳ -> bỏ qua ad để không chặn playback
+            clearAdState();
+            adScheduler.onAdFinished();
         }
     }
 
-    // Dừng ad + resume nhạc tại vị trí cũ + lên lịch ad tiếp theo
-    private void stopAdAndResume() {
-        isPlayingAd = false;
-
-        if (adPlayer != null) {
-            try { adPlayer.stop(); } catch (Exception ignore) {}
-            try { adPlayer.release(); } catch (Exception ignore) {}
-            adPlayer = null;
+    // Người dùng tự chuyển sang bài khác khi ad còn đang chờ -> dời ad ra sau bài mới (vẫn ở ranh giới bài)
+    private void relocatePendingAd() {
+        int mediaIndex = player.getCurrentMediaItemIndex();
+        if (adItemIndex < 0 || isPlayingAd || songIndexOf(mediaIndex) == adAfterSongIndex) return;
+        player.removeMediaItem(adItemIndex);
+        adItemIndex = -1;
+        adAfterSongIndex = -1;
+        insertAdAfterCurrent();
+    }
+
+    // Player vừa rời khỏi item quảng cáo (phát hết hoặc lỗi): gỡ ad khỏi timeline, lên lịch chu kỳ mới
+    private void onAdEnded() {
+        int afterSong = adAfterSongIndex;
+        boolean wasPlayingAd = isPlayingAd;
+        int index = adItemIndex;
+        clearAdState();
+        if (index >= 0 && index < player.getMediaItemCount()) {
+            // Không phải item đang phát -> gỡ không ảnh hưởng buffer của bài hiện tại
+            player.removeMediaItem(index);
         }
-
-        if (player != null) {
-            try {
-                player.seekTo(resumePosMsAfterAd);
-                player.setPlayWhenReady(true);
-            } catch (Exception ignore) {}
+        if (player.getShuffleModeEnabled()) pushShuffleOrder();
+        // Lên lịch chu kỳ mới TRƯỚC khi nhạc phát lại (resume() khi đó sẽ giữ nguyên deadline)
+        adScheduler.onAdFinished();
+        if (!wasPlayingAd) return;
+
+        adsPlayed++;
+        // Repeat-one: quay lại đúng bài trước ad
+        if (isRepeat && afterSong >= 0 && afterSong < playlist.size()) {
+            player.seekTo(afterSong, 0);
+        }
+        if (player.isPlaying()) {
+            lastAdResumeLatencyMs = 0;
+        } else {
+            adEndedAtElapsedMs = SystemClock.elapsedRealtime();
         }
+    }
 
-        // Sau khi phát xong ad -> đặt lại lịch cho lần tiếp theo
-        scheduleNextAdIfNeeded(true);
+    // Xoá trạng thái ad (không đụng timeline), khôi phục chế độ lặp nếu đã tạm tắt
+    private void clearAdState() {
+        adItemIndex = -1;
+        adAfterSongIndex = -1;
+        isPlayingAd = false;
+        if (isRepeat && player != null) player.setRepeatMode(Player.REPEAT_MODE_ONE);
     }
 
-    // Tạm dừng đếm ngược ad (khi pause nhạc) và ghi lại thời gian còn lại
+    // Đang phát ad: chặn next/prev/seek và đếm số lần thử bỏ qua
+    private boolean blockDuringAd() {
+        if (!isPlayingAd) return false;
+        adSkipAttempts++;
+        return true;
+    }
+
+    // Tạm dừng đếm ngược ad (khi pause nhạc): scheduler chốt phần còn lại chính xác tới ms
     private void pauseAdCountdown() {
-        if (isPremium()) return;
         if (isPlayingAd) return;                       // đang phát ad thì để ad phát xong
-        if (nextAdAtElapsedMs > 0) {
-            long now = SystemClock.elapsedRealtime();
-            adRemainingMs = Math.max(0, nextAdAtElapsedMs - now);
-            nextAdAtElapsedMs = -1L;                   // huỷ mốc thời gian cũ
-            adHandler.removeCallbacks(adTick);
-        }
+        adScheduler.pause();
     }
 
-    // Tiếp tục đếm ngược ad (khi play lại)
+    // Tiếp tục đếm ngược ad (khi play lại): đang đếm thì giữ nguyên deadline, không reset
     private void resumeAdCountdown() {
-        if (isPremium()) return;
-        long delay;
-        if (adRemainingMs > 0) {
-            delay = adRemainingMs;                     // tiếp tục phần còn lại
-        } else {
-            if (AD_TEST_MODE) {
-                delay = AD_TEST_INTERVAL_MS;           // 10 giây
-            } else {
-                int minutes = AD_MIN_MINUTES + rng.nextInt(AD_MAX_MINUTES - AD_MIN_MINUTES + 1);
-                delay = minutes * 60_000L;             // random 10–15 phút
-            }
-        }
-        long now = SystemClock.elapsedRealtime();
-        nextAdAtElapsedMs = now + delay;
-        adRemainingMs = -1L;
-        adHandler.removeCallbacks(adTick);
-        adHandler.postDelayed(adTick, 1000);
-    }
-
-    // Tạo docId ổn định cho "recent" (ưu tiên id, fallback từ url/title|author -> MD5)
-    private String stableSongDocId(SongRemote s){
-        if (s == null) return "unknown";
-        if (s.getId() != null && !s.getId().isEmpty()) return s.getId();
-        String key = s.getUrl() == null ? (s.getTitle() + "|" + s.getAuthor()) : s.getUrl();
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(key.getBytes());
-            BigInteger bi = new BigInteger(1, digest);
-            return String.format("%032x", bi);
-        } catch (Exception e) {
-            return String.valueOf(key.hashCode());
-        }
+        adScheduler.resume();
     }
 
-    // Giới hạn tối đa số recent lưu lại
-    private static final int RECENT_LIMIT = 50;
-
-    // Ghi "recent play" lên Firestore: users/{uid}/recent/{docId}
+    // Ghi nhận "recent play": chỉ đưa vào hàng đợi write-behind, RecentPlayLog gom rồi ghi vào
+    // document lịch sử có giới hạn RECENT_LIMIT bài (users/{uid}/meta/recent)
     private void logRecentPlay(SongRemote s){
         var user = auth.getCurrentUser();
         if (user == null || s == null) return;
         // Không log nếu đang phát quảng cáo (tránh làm bẩn lịch sử)
         if (isPlayingAd) return;
-
-        String uid = user.getUid();
-        String docId = stableSongDocId(s);
-
-        Map<String, Object> data = new java.util.HashMap<>();
-        data.put("title",     s.getTitle());
-        data.put("author",    s.getAuthor());
-        data.put("url",       s.getUrl());
-        data.put("coverUrl",  s.getCoverUrl());
-        data.put("lastPlayed", FieldValue.serverTimestamp()); // server time để orderBy chính xác
-
-        db.collection("users").document(uid)
-                .collection("recent").document(docId)
-                .set(data, com.google.firebase.firestore.SetOptions.merge())
-                .addOnSuccessListener(v -> trimRecentIfNeeded(uid)) // sau khi ghi, kiểm tra giới hạn
-                .addOnFailureListener(e -> { /* optional log */ });
-    }
-
-    // Cắt bớt recent nếu vượt RECENT_LIMIT (giữ mới nhất theo lastPlayed)
-    private void trimRecentIfNeeded(String uid){
-        db.collection("users").document(uid)
-                .collection("recent")
-                .orderBy("lastPlayed", com.google.firebase.firestore.Query.Direction.DESCENDING)
-                .get()
-                .addOnSuccessListener(snap -> {
-                    if (snap.size() <= RECENT_LIMIT) return;
-                    for (int i = RECENT_LIMIT; i < snap.size(); i++){
-                        snap.getDocuments().get(i).getReference().delete();
-                    }
-                });
+        recentLog.record(user.getUid(), s);
     }
 
     // ======================== DỌN SERVICE & TÀI NGUYÊN ========================
 
     // Dừng toàn bộ & tự huỷ service (được gọi khi action STOP hoặc huỷ notification)
     public void stopAndQuit() {
-        // dừng vòng lặp progress & ad
-        if (progressHandler != null) progressHandler.removeCallbacks(progressRunnable);
-        adHandler.removeCallbacks(adTick);
-
-        // dừng quảng cáo (nếu đang phát)
-        if (adPlayer != null) {
-            try { adPlayer.stop(); } catch (Exception ignore) {}
-            try { adPlayer.release(); } catch (Exception ignore) {}
-            adPlayer = null;
-            isPlayingAd = false;
-        }
+        audioCache.logStats();
+        preloader.cancel();
+        recentLog.flush();
+        // dừng lịch ad
+        adScheduler.cancel();
+        adHandler.removeCallbacks(premiumExpiry);
+
+        // quảng cáo nằm trong timeline player chính -> clearMediaItems bên dưới gỡ luôn
+        clearAdState();
 
         // dừng player chính và xóa media items (giải phóng queue)
         if (player != null) {
@@ -682,11 +921,10 @@ public class MusicService extends Service implements Player.Listener {
 
     @Override
     public void onDestroy() {
-        // Huỷ các runnable
-        if (progressHandler != null) {
-            progressHandler.removeCallbacks(progressRunnable);
-        }
-        adHandler.removeCallbacks(adTick);
+        // Huỷ các runnable + listener premium
+        adScheduler.cancel();
+        adHandler.removeCallbacks(premiumExpiry);
+        getSharedPreferences("prefs", MODE_PRIVATE).unregisterOnSharedPreferenceChangeListener(premiumListener);
 
         // Tách player khỏi notification
         if (notificationManager != null) {
@@ -696,16 +934,12 @@ public class MusicService extends Service implements Player.Listener {
         if (mediaSession != null) {
             mediaSession.release();
         }
-        // Dừng & thả ad player nếu còn
-        if (adPlayer != null) {
-            try { adPlayer.stop(); } catch (Exception ignore) {}
-            try { adPlayer.release(); } catch (Exception ignore) {}
-            adPlayer = null;
-        }
         // Thả player chính
         if (player != null) {
             player.release();
         }
+        if (preloader != null) preloader.release();
+        if (recentLog != null) recentLog.release();
         super.onDestroy();
     }
 }
@@ -0,0 +1,50 @@
+package vn.khengandkhoi.musicplayer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * QueueRegistry:
+ * - Nơi trung chuyển hàng đợi phát trong cùng process giữa UI (Fragment/Activity) và MusicService.
+ * - UI submit() danh sách 1 lần, nhận về handle (long) và chỉ đặt handle + index vào Intent.
+ * - MusicService take() đúng handle đó để lấy lại chính đối tượng List (không serialize, không copy).
+ *
+ * Lý do:
+ * - Trước đây cả ArrayList<SongRemote> được nhét vào Intent extra -> Java serialization qua Binder,
+ *   chậm với danh sách lớn và văng TransactionTooLargeException khi vượt ~1MB.
+ *
+ * Lưu ý:
+ * - Chỉ giữ tối đa MAX_PENDING hàng đợi chưa được lấy (phòng Intent không bao giờ tới Service) -> không rò rỉ.
+ * - MusicService chạy cùng process với UI (không khai báo android:process) nên handle luôn hợp lệ.
+ */
+public final class QueueRegistry {
+
+    private static final int MAX_PENDING = 4;
+
+    private static long nextHandle = 1L;
+    private static final LinkedHashMap<Long, List<SongRemote>> pending = new LinkedHashMap<>();
+
+    private QueueRegistry() {}
+
+    // Gửi hàng đợi, trả về handle để truyền qua Intent
+    public static synchronized long submit(List<SongRemote> songs) {
+        long handle = nextHandle++;
+        pending.put(handle, songs);
+        // Bỏ các hàng đợi cũ nhất nếu quá nhiều (không ai lấy)
+        Iterator<Map.Entry<Long, List<SongRemote>>> it = pending.entrySet().iterator();
+        while (pending.size() > MAX_PENDING && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        return handle;
+    }
+
+    // Lấy (và gỡ) hàng đợi theo handle; null nếu handle không tồn tại/đã hết hạn
+    public static synchronized List<SongRemote> take(long handle) {
+        return pending.remove(handle);
+    }
+}
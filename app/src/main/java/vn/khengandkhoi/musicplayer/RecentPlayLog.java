@@ -0,0 +1,365 @@
+package vn.khengandkhoi.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * RecentPlayLog:
+ * - Hàng đợi ghi sau (write-behind) cho "recent play": record() chỉ ghi vào bộ nhớ + journal cục bộ,
+ *   việc ghi Firestore được gom lại và đẩy lên bằng 1 transaction.
+ * - Lịch sử lưu dạng danh sách có giới hạn trong 1 document (users/{uid}/meta/recent, xem historyDoc()):
+ *   mỗi lần flush chỉ 1 lần đọc + 1 lần ghi dù lịch sử dài bao nhiêu, đọc lại cũng chỉ 1 round trip.
+ * - Gộp (coalesce) theo bài: phát lại/skip qua cùng 1 bài nhiều lần trước khi flush chỉ tốn 1 lần ghi,
+ *   giữ mốc lastPlayed mới nhất.
+ * - Flush khi đủ FLUSH_MAX_PENDING bài khác nhau hoặc sau FLUSH_DELAY_MS kể từ lần ghi đầu tiên chưa flush
+ *   -> skip nhanh qua cả playlist chỉ tốn vài batch thay vì hàng chục lần set().
+ * - Journal (filesDir/recent_journal.json, AtomicFile) giữ các bài chưa flush -> process bị kill vẫn không mất lịch sử,
+ *   lần khởi động sau sẽ nạp lại và flush.
+ * - Tài khoản cũ (chưa có document, lịch sử nằm ở subcollection users/{uid}/recent): lần flush đầu tiên đọc
+ *   RECENT_LIMIT bài mới nhất kiểu cũ rồi gộp vào document mới -> chuyển đổi 1 lần, không mất lịch sử.
+ *
+ * Lưu ý:
+ * - Mọi hàm public gọi trên main thread (MusicService); chỉ việc ghi journal chạy trên thread nền.
+ * - lastPlayed lấy theo giờ máy tại thời điểm phát (không dùng serverTimestamp vì flush có thể trễ vài chục giây).
+ */
+public final class RecentPlayLog {
+
+    private static final String TAG = "RecentPlayLog";
+
+    private static final int FLUSH_MAX_PENDING = 10;        // đủ 10 bài khác nhau -> flush ngay
+    private static final long FLUSH_DELAY_MS = 30_000L;     // hoặc sau 30s
+    private static final long RETRY_MAX_DELAY_MS = 5 * 60_000L;
+
+    /** Số bài tối đa giữ trong lịch sử của 1 user. */
+    public static final int RECENT_LIMIT = 50;
+
+    // 1 bài chờ ghi (đã gộp)
+    private static final class Entry {
+        final String uid, docId, title, author, url, coverUrl;
+        final long playedAtMs;
+
+        Entry(String uid, String docId, String title, String author, String url, String coverUrl, long playedAtMs) {
+            this.uid = uid;
+            this.docId = docId;
+            this.title = title;
+            this.author = author;
+            this.url = url;
+            this.coverUrl = coverUrl;
+            this.playedAtMs = playedAtMs;
+        }
+
+        String key() { return uid + "/" + docId; }
+    }
+
+    private final FirebaseFirestore db;
+    private final AtomicFile journal;
+    private final Executor io = AppExecutors.get().serial(AppExecutors.get().io(), "recent-journal");
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Theo thứ tự ghi nhận; record lại cùng key -> chuyển xuống cuối
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+    private boolean flushing = false;
+    // uid -> lịch sử kiểu cũ đã đọc (mới -> cũ), chờ gộp vào document mới ở lần flush kế tiếp
+    private final Map<String, List<Map<String, Object>>> legacy = new HashMap<>();
+    private boolean released = false;       // sau release(): không hẹn flush mới
+    private long retryDelayMs = FLUSH_DELAY_MS;
+
+    // Thống kê: số lượt record so với số document thực ghi (phục vụ log)
+    private long recorded = 0;
+    private long written = 0;
+    private long batches = 0;
+
+    private final Runnable flushTask = this::flush;
+
+    public RecentPlayLog(Context context, FirebaseFirestore db) {
+        this.db = db;
+        this.journal = new AtomicFile(new File(context.getFilesDir(), "recent_journal.json"));
+        io.execute(this::loadJournal);
+    }
+
+    /** Ghi nhận 1 lượt phát (gộp với lượt chưa flush của cùng bài). */
+    public void record(String uid, SongRemote s) {
+        if (uid == null || s == null) return;
+        Entry e = new Entry(uid, stableSongDocId(s), s.getTitle(), s.getAuthor(),
+                s.getUrl(), s.getCoverUrl(), System.currentTimeMillis());
+        recorded++;
+        boolean first = pending.isEmpty();
+        pending.remove(e.key());
+        pending.put(e.key(), e);
+        persist();
+
+        if (pending.size() >= FLUSH_MAX_PENDING) {
+            flush();
+        } else if (first && !flushing) {
+            schedule(FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Đẩy các bài đang chờ của 1 user lên document lịch sử (1 transaction = 1 lần đọc + 1 lần ghi).
+     * - Bài mới chèn lên đầu, bỏ bản cũ trùng id, cắt còn RECENT_LIMIT bài -> giới hạn lưu trữ luôn được đảm bảo
+     *   mà không phải đọc/xoá từng document như trước.
+     * - Còn bài của user khác (đổi tài khoản giữa chừng) -> flush tiếp ngay sau.
+     * - Chưa có document: transaction không ghi gì, đọc lịch sử kiểu cũ (loadLegacy) rồi flush lại để gộp.
+     */
+    public void flush() {
+        handler.removeCallbacks(flushTask);
+        if (flushing || pending.isEmpty()) return;
+        flushing = true;
+
+        // Snapshot để so sánh khi commit xong (bài có thể được record lại trong lúc chờ)
+        final String uid = pending.values().iterator().next().uid;
+        final List<Entry> sent = new ArrayList<>();
+        for (Entry e : pending.values()) if (e.uid.equals(uid)) sent.add(e);
+
+        final DocumentReference ref = historyDoc(db, uid);
+        final List<Map<String, Object>> legacyItems = legacy.get(uid); // null = chưa đọc kiểu cũ
+        db.runTransaction(tx -> {
+                    DocumentSnapshot snap = tx.get(ref);
+                    Object old;
+                    if (snap.exists()) old = snap.get("items");
+                    else if (legacyItems == null) return Boolean.FALSE; // cần đọc lịch sử kiểu cũ trước
+                    else old = legacyItems;
+                    List<Map<String, Object>> items = new ArrayList<>(RECENT_LIMIT);
+                    Set<String> seen = new HashSet<>();
+                    // pending theo thứ tự cũ -> mới, lịch sử lưu mới -> cũ
+                    for (int i = sent.size() - 1; i >= 0 && items.size() < RECENT_LIMIT; i--) {
+                        Entry e = sent.get(i);
+                        if (seen.add(e.docId)) items.add(toItem(e));
+                    }
+                    if (old instanceof List) {
+                        for (Object o : (List<?>) old) {
+                            if (items.size() >= RECENT_LIMIT) break;
+                            if (!(o instanceof Map)) continue;
+                            @SuppressWarnings("unchecked") Map<String, Object> m = (Map<String, Object>) o;
+                            Object id = m.get("id");
+                            if (id != null && seen.add(id.toString())) items.add(m);
+                        }
+                    }
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("items", items);
+                    data.put("updatedAt", FieldValue.serverTimestamp());
+                    tx.set(ref, data);
+                    return Boolean.TRUE;
+                })
+                .addOnSuccessListener(done -> {
+                    flushing = false;
+                    if (!done) {
+                        loadLegacy(uid);
+                        return;
+                    }
+                    legacy.remove(uid);
+                    retryDelayMs = FLUSH_DELAY_MS;
+                    written += sent.size();
+                    batches++;
+                    // Chỉ gỡ những bài chưa bị record lại sau khi snapshot
+                    for (Entry e : sent) {
+                        if (pending.get(e.key()) == e) pending.remove(e.key());
+                    }
+                    persist();
+                    Log.d(TAG, "flushed " + sent.size() + " (recorded=" + recorded
+                            + " written=" + written + " commits=" + batches + ")");
+                    if (!pending.isEmpty()) {
+                        // Bài của user khác -> flush luôn; bài mới record trong lúc chờ -> đợi chu kỳ sau
+                        if (!pending.values().iterator().next().uid.equals(uid)) flush();
+                        else schedule(FLUSH_DELAY_MS);
+                    }
+                })
+                .addOnFailureListener(err -> {
+                    flushing = false;
+                    // Giữ nguyên pending + journal, thử lại với backoff
+                    Log.d(TAG, "flush failed, retry in " + retryDelayMs + "ms: " + err.getMessage());
+                    schedule(retryDelayMs);
+                    retryDelayMs = Math.min(retryDelayMs * 2, RETRY_MAX_DELAY_MS);
+                });
+    }
+
+    /**
+     * Đọc RECENT_LIMIT bài mới nhất của lịch sử kiểu cũ (users/{uid}/recent, mỗi bài 1 document) rồi flush lại.
+     * Chỉ chạy 1 lần cho tài khoản chưa có document mới; subcollection cũ để nguyên (HomeFragment không đọc nữa
+     * khi document mới đã có).
+     */
+    private void loadLegacy(String uid) {
+        flushing = true;
+        db.collection("users").document(uid)
+                .collection("recent")
+                .orderBy("lastPlayed", Query.Direction.DESCENDING)
+                .limit(RECENT_LIMIT)
+                .get()
+                .addOnSuccessListener(snap -> {
+                    flushing = false;
+                    List<Map<String, Object>> items = new ArrayList<>(snap.size());
+                    for (DocumentSnapshot d : snap.getDocuments()) {
+                        Map<String, Object> m = new HashMap<>();
+                        m.put("id",         d.getId());
+                        m.put("title",      d.getString("title"));
+                        m.put("author",     d.getString("author"));
+                        m.put("url",        d.getString("url"));
+                        m.put("coverUrl",   d.getString("coverUrl"));
+                        m.put("lastPlayed", d.getTimestamp("lastPlayed"));
+                        items.add(m);
+                    }
+                    legacy.put(uid, items);
+                    Log.d(TAG, "migrating " + items.size() + " legacy recent plays");
+                    flush();
+                })
+                .addOnFailureListener(err -> {
+                    flushing = false;
+                    Log.d(TAG, "legacy read failed, retry in " + retryDelayMs + "ms: " + err.getMessage());
+                    schedule(retryDelayMs);
+                    retryDelayMs = Math.min(retryDelayMs * 2, RETRY_MAX_DELAY_MS);
+                });
+    }
+
+    /** Document chứa lịch sử phát gần đây của user (đọc 1 lần là đủ cho màn Home). */
+    public static DocumentReference historyDoc(FirebaseFirestore db, String uid) {
+        return db.collection("users").document(uid).collection("meta").document("recent");
+    }
+
+    private static Map<String, Object> toItem(Entry e) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("id",         e.docId);
+        m.put("title",      e.title);
+        m.put("author",     e.author);
+        m.put("url",        e.url);
+        m.put("coverUrl",   e.coverUrl);
+        m.put("lastPlayed", new Timestamp(new Date(e.playedAtMs)));
+        return m;
+    }
+
+    /**
+     * Flush lần cuối và ngừng hẹn flush mới (gọi khi service bị huỷ).
+     * Flush đang chạy vẫn hoàn tất và dọn journal; thất bại thì bài còn trong journal, lần khởi động sau flush lại.
+     */
+    public void release() {
+        flush();
+        handler.removeCallbacks(flushTask);
+        released = true;
+    }
+
+    // Hẹn flush sau delayMs (bỏ qua sau release())
+    private void schedule(long delayMs) {
+        if (!released) handler.postDelayed(flushTask, delayMs);
+    }
+
+    // ====== Journal cục bộ ======
+
+    // Ghi snapshot pending ra đĩa trên thread nền (chuỗi JSON dựng trên main thread để không cần khoá)
+    private void persist() {
+        final String json = toJson(pending.values());
+        io.execute(() -> {
+            FileOutputStream out = null;
+            try {
+                out = journal.startWrite();
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+                journal.finishWrite(out);
+            } catch (Exception e) {
+                if (out != null) journal.failWrite(out);
+                Log.d(TAG, "journal write failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // Chạy trên thread nền khi khởi tạo: nạp các bài chưa kịp flush ở lần chạy trước
+    private void loadJournal() {
+        final List<Entry> restored = new ArrayList<>();
+        try (FileInputStream in = journal.openRead()) {
+            byte[] bytes = new byte[in.available()];
+            int n = in.read(bytes);
+            JSONArray arr = new JSONArray(new String(bytes, 0, Math.max(n, 0), StandardCharsets.UTF_8));
+            for (int i = 0; i < arr.length(); i++) {
+                JSONObject o = arr.getJSONObject(i);
+                restored.add(new Entry(o.getString("uid"), o.getString("docId"),
+                        o.optString("title", null), o.optString("author", null),
+                        o.optString("url", null), o.optString("coverUrl", null),
+                        o.getLong("playedAt")));
+            }
+        } catch (java.io.FileNotFoundException ignore) {
+            return; // chưa có journal
+        } catch (Exception e) {
+            Log.d(TAG, "journal read failed: " + e.getMessage());
+            return;
+        }
+        if (restored.isEmpty()) return;
+
+        handler.post(() -> {
+            // Lượt phát mới (nếu đã có) được ưu tiên hơn bản khôi phục
+            LinkedHashMap<String, Entry> merged = new LinkedHashMap<>();
+            for (Entry e : restored) merged.put(e.key(), e);
+            for (Entry e : pending.values()) {
+                merged.remove(e.key());
+                merged.put(e.key(), e);
+            }
+            pending.clear();
+            pending.putAll(merged);
+            Log.d(TAG, "restored " + restored.size() + " plays from journal");
+            flush();
+        });
+    }
+
+    private static String toJson(Iterable<Entry> entries) {
+        JSONArray arr = new JSONArray();
+        try {
+            for (Entry e : entries) {
+                JSONObject o = new JSONObject();
+                o.put("uid", e.uid);
+                o.put("docId", e.docId);
+                o.put("title", e.title);
+                o.put("author", e.author);
+                o.put("url", e.url);
+                o.put("coverUrl", e.coverUrl);
+                o.put("playedAt", e.playedAtMs);
+                arr.put(o);
+            }
+        } catch (Exception ignore) {
+            // JSONObject.put chỉ ném với số NaN/Infinity -> không xảy ra
+        }
+        return arr.toString();
+    }
+
+    // Tạo docId ổn định cho "recent" (ưu tiên id, fallback từ url/title|author -> MD5)
+    static String stableSongDocId(SongRemote s) {
+        if (s == null) return "unknown";
+        if (s.getId() != null && !s.getId().isEmpty()) return s.getId();
+        String key = s.getUrl() == null ? (s.getTitle() + "|" + s.getAuthor()) : s.getUrl();
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(key.getBytes());
+            BigInteger bi = new BigInteger(1, digest);
+            return String.format("%032x", bi);
+        } catch (Exception e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+}
@@ -25,6 +25,7 @@ import vn.khengandkhoi.musicplayer.fragment.ProfileFragment;
 import vn.khengandkhoi.musicplayer.R;
 import vn.khengandkhoi.musicplayer.fragment.SearchFragment;
 import vn.khengandkhoi.musicplayer.object.SongRemote;
+import vn.khengandkhoi.musicplayer.catalog.CatalogSync;
 
 @UnstableApi
 public class MainActivity extends AppCompatActivity implements MusicService.Callback {
@@ -48,7 +49,8 @@ public class MainActivity extends AppCompatActivity implements MusicService.Call
         public void onServiceConnected(ComponentName n, IBinder b) {
             music = ((MusicService.MusicBinder) b).getService();
             bound = true;
-            music.addCallback(MainActivity.this);
+            // Mini player không hiển thị tiến độ -> chỉ cần metadata + play/pause
+            music.addCallback(MainActivity.this, MusicService.UPDATES_META_ONLY);
 
             SongRemote current = music.getCurrent();
             if (current != null) {
@@ -148,6 +150,7 @@ public class MainActivity extends AppCompatActivity implements MusicService.Call
         bindService(new Intent(this, MusicService.class), conn, BIND_AUTO_CREATE);
         refreshPremiumFromServer();
         updateUiForPremium();
+        CatalogSync.get(this).syncSoon(); // delta sync catalog khi app lên foreground (tự bỏ qua nếu vừa sync)
     }
 
     @Override
@@ -4,7 +4,10 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.ImageView;
@@ -41,6 +44,20 @@ public class PlayerActivity extends AppCompatActivity {
     private MusicService service;
     private boolean bound = false;
 
+    // ====== Tiến độ ngoại suy từ mốc vị trí (Service không còn gửi định kỳ) ======
+    // Chỉ tick khi Activity đang hiển thị và nhạc đang phát; dừng hẳn khi onStop (tắt màn hình/thoát)
+    private static final long UI_TICK_MS = 250;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private MusicService.PositionAnchor anchor;
+    private boolean userSeeking = false;
+
+    private final Runnable progressTick = new Runnable() {
+        @Override public void run() {
+            renderProgress();
+            if (anchor != null && anchor.playing) uiHandler.postDelayed(this, UI_TICK_MS);
+        }
+    };
+
     // ====== Callback nhận sự kiện từ Service (bài hát đổi, tiến độ phát thay đổi) ======
     private final MusicService.Callback callback = new MusicService.Callback() {
 
@@ -99,8 +116,29 @@ public class PlayerActivity extends AppCompatActivity {
                 btnPlayPause.setImageResource(playing ? R.drawable.ic_pause : R.drawable.ic_play);
             });
         }
+
+        // Mốc vị trí mới (seek/play/pause/đổi tốc độ): lưu lại và (re)start tick nội bộ
+        @Override
+        public void onPositionAnchor(MusicService.PositionAnchor a) {
+            runOnUiThread(() -> {
+                anchor = a;
+                uiHandler.removeCallbacks(progressTick);
+                uiHandler.post(progressTick);
+            });
+        }
     };
 
+    // Vẽ tiến độ hiện tại = mốc + thời gian trôi qua * speed
+    private void renderProgress() {
+        if (anchor == null || userSeeking) return;
+        long dur = anchor.durationMs;
+        if (dur <= 0 || dur == C.TIME_UNSET) return;
+        long pos = anchor.positionAt(SystemClock.elapsedRealtime());
+        seekBar.setMax((int) Math.min(dur, Integer.MAX_VALUE));
+        seekBar.setProgress((int) Math.min(pos, Integer.MAX_VALUE));
+        tvCur.setText(format(pos));
+    }
+
     // ====== Kết nối tới MusicService ======
     private final ServiceConnection conn = new ServiceConnection() {
         @Override
@@ -110,8 +148,8 @@ public class PlayerActivity extends AppCompatActivity {
             service = binder.getService();
             bound = true;
 
-            // Đăng ký callback để nhận sự kiện phát nhạc
-            service.addCallback(callback);
+            // Đăng ký callback để nhận sự kiện phát nhạc (kèm mốc vị trí để vẽ tiến độ)
+            service.addCallback(callback, MusicService.UPDATES_POSITION);
         }
 
         @Override
@@ -218,11 +256,13 @@ public class PlayerActivity extends AppCompatActivity {
 
         // Theo dõi thao tác kéo SeekBar để tua
         seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
-            @Override public void onStartTrackingTouch(SeekBar seekBar) { /* không cần xử lý */ }
+            // Đang kéo: tạm ngừng vẽ tiến độ ngoại suy để thumb không nhảy
+            @Override public void onStartTrackingTouch(SeekBar seekBar) { userSeeking = true; }
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
-                // Khi người dùng thả tay: tua tới vị trí mới
+                userSeeking = false;
+                // Khi người dùng thả tay: tua tới vị trí mới (Service sẽ gửi mốc mới)
                 if (service != null) service.seekTo(seekBar.getProgress());
             }
 
@@ -260,6 +300,8 @@ public class PlayerActivity extends AppCompatActivity {
     @Override
     protected void onStop() {
         super.onStop();
+        // Dừng tick tiến độ nội bộ (không đánh thức main thread khi Activity không hiển thị)
+        uiHandler.removeCallbacks(progressTick);
         // Hủy đăng ký callback và unbind Service để tránh rò rỉ (leak)
         if (bound && service != null) {
             service.removeCallback(callback);
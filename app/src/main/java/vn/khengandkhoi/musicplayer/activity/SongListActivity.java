@@ -15,13 +15,14 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
-import com.google.firebase.firestore.*;
 import java.util.*;
 
 import vn.khengandkhoi.musicplayer.MusicService;
 import vn.khengandkhoi.musicplayer.R;
+import vn.khengandkhoi.musicplayer.object.Album;
 import vn.khengandkhoi.musicplayer.object.SongRemote;
 import vn.khengandkhoi.musicplayer.adapter.SongsAdapter;
+import vn.khengandkhoi.musicplayer.catalog.CatalogRepository;
 
 /**
  * Activity hiển thị danh sách bài hát trong 1 album cụ thể
@@ -40,9 +41,6 @@ public class SongListActivity extends AppCompatActivity {
     // Adapter cho RecyclerView
     private SongsAdapter adapter;
 
-    // Firestore instance
-    private FirebaseFirestore db;
-
     // === CÁC VIEW TRÊN HEADER (ảnh bìa, tên album, tác giả, nút back) ===
     private TextView tvReturnBack;   // Nút quay lại
     private TextView tvSongName;     // Tên album
@@ -65,8 +63,7 @@ public class SongListActivity extends AppCompatActivity {
 
         rv = findViewById(R.id.rvSongs);
         rv.setLayoutManager(new LinearLayoutManager(this)); // Danh sách dọc
-
-        db = FirebaseFirestore.getInstance(); // Khởi tạo Firestore
+        setupAdapter();
 
         // === LẤY albumId TỪ INTENT ===
         albumId = getIntent().getStringExtra("albumId");
@@ -85,103 +82,100 @@ public class SongListActivity extends AppCompatActivity {
     }
 
     /**
-     * Tải thông tin album (tên, tác giả, ảnh bìa)
-     * Từ collection: albums/{albumId}
+     * Tải thông tin album (tên, tác giả, ảnh bìa) qua CatalogRepository
+     * - Nguồn: albums/{albumId} (hoặc danh sách "albums" Home đã tải, nếu có trong bộ nhớ)
+     * - Có cache -> hiện ngay, bản mới từ server (nếu đổi) gọi lại callback
      */
     private void loadAlbumInfo() {
-        db.collection("albums").document(albumId)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    if (doc.exists()) {
-                        // Lấy dữ liệu từ Firestore document
-                        String name = doc.getString("title");
-                        String author = doc.getString("author");
-                        String coverUrl = doc.getString("coverUrl");
-
-                        // Cập nhật UI
-                        tvSongName.setText(name != null ? name : "Unknown Album");
-                        tvAuthor.setText(author != null ? author : "Unknown Artist");
-
-                        // Load ảnh bìa bằng Glide
-                        if (coverUrl != null && !coverUrl.isEmpty()) {
-                            Glide.with(this)
-                                    .load(coverUrl)
-                                    .placeholder(R.drawable.ic_music_note) // Ảnh chờ
-                                    .error(R.drawable.ic_music_note)       // Ảnh lỗi
-                                    .into(imgCover);
-                        } else {
-                            imgCover.setImageResource(R.drawable.ic_music_note);
-                        }
-                    } else {
-                        Toast.makeText(this, "Album không tồn tại", Toast.LENGTH_SHORT).show();
-                    }
-                })
-                .addOnFailureListener(e ->
-                        Toast.makeText(this, "Lỗi tải album: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-                );
+        CatalogRepository.get(this).album(albumId, new CatalogRepository.Callback<Album>() {
+            @Override public void onData(Album album, boolean fromCache) {
+                if (isFinishing() || isDestroyed()) return;
+                String name = album.getTitle();
+                String author = album.getAuthor();
+                String coverUrl = album.getCoverUrl();
+
+                // Cập nhật UI
+                tvSongName.setText(name != null ? name : "Unknown Album");
+                tvAuthor.setText(author != null ? author : "Unknown Artist");
+
+                // Load ảnh bìa bằng Glide
+                if (coverUrl != null && !coverUrl.isEmpty()) {
+                    Glide.with(SongListActivity.this)
+                            .load(coverUrl)
+                            .placeholder(R.drawable.ic_music_note) // Ảnh chờ
+                            .error(R.drawable.ic_music_note)       // Ảnh lỗi
+                            .into(imgCover);
+                } else {
+                    imgCover.setImageResource(R.drawable.ic_music_note);
+                }
+            }
+
+            @Override public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                if (CatalogRepository.isNotFound(e)) {
+                    Toast.makeText(SongListActivity.this, "Album không tồn tại", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(SongListActivity.this, "Lỗi tải album: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     /**
-     * Tải danh sách bài hát trong album
-     * Từ: albums/{albumId}/songs/{songId}
-     * Sắp xếp theo trackNum (thứ tự bài hát)
+     * Tải danh sách bài hát trong album qua CatalogRepository
+     * Từ: albums/{albumId}/songs/{songId}, sắp xếp theo trackNum (thứ tự bài hát)
+     * - Adapter đã tạo sẵn trong onCreate -> callback gọi 2 lần (cache rồi server) chỉ cần submit lại
+     * - Toast "chưa có bài hát" chỉ khi chắc chắn (bản từ server), tránh báo sai từ cache cũ
      */
-    @OptIn(markerClass = UnstableApi.class)
     private void loadSongs() {
-        db.collection("albums").document(albumId)
-                .collection("songs")
-                .orderBy("trackNum", Query.Direction.ASCENDING) // Sắp xếp tăng dần
-                .get()
-                .addOnSuccessListener(snap -> {
-                    // Danh sách bài hát
-                    List<SongRemote> songList = new ArrayList<>();
-
-                    // Duyệt từng document → chuyển thành SongRemote
-                    for (DocumentSnapshot d : snap.getDocuments()) {
-                        SongRemote song = d.toObject(SongRemote.class);
-                        if (song != null) {
-                            songList.add(song);
-                        }
-                    }
-
-                    // === KIỂM TRA RỖNG ===
-                    if (songList.isEmpty()) {
-                        Toast.makeText(this, "Album chưa có bài hát", Toast.LENGTH_SHORT).show();
-                    }
-
-                    // === TẠO ADAPTER ===
-                    adapter = new SongsAdapter(song -> {
-                        // === KHI BẤM VÀO BÀI HÁT ===
-                        // 1. Tạo playlist từ danh sách hiện tại
-                        List<SongRemote> playlist = new ArrayList<>(adapter.getCurrentList());
-                        int index = playlist.indexOf(song);
-
-                        // 2. Gửi dữ liệu vào MusicService
-                        Intent serviceIntent = new Intent(this, MusicService.class);
-                        serviceIntent.putExtra("songs", new ArrayList<>(playlist)); // Phải là ArrayList
-                        serviceIntent.putExtra("index", index);
-
-                        // 3. Khởi động Service (Foreground nếu Android 8+)
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                            startForegroundService(serviceIntent);
-                        } else {
-                            startService(serviceIntent);
-                        }
-
-                        // 4. Mở PlayerActivity sau 200ms (đợi Service khởi tạo)
-                        new android.os.Handler(Looper.getMainLooper()).postDelayed(() -> {
-                            Intent playerIntent = new Intent(this, PlayerActivity.class);
-                            startActivity(playerIntent);
-                            overridePendingTransition(R.anim.slide_in_up, 0); // Hiệu ứng trượt lên
-                        }, 200);
-                    });
-
-                    // === GÁN ADAPTER VÀO RECYCLERVIEW ===
-                    rv.setAdapter(adapter);
-                    adapter.submit(songList); // Cập nhật dữ liệu
-                })
-                .addOnFailureListener(e ->
-                        Toast.makeText(this, "Lỗi tải bài hát: " + e.getMessage(), Toast.LENGTH_LONG).show()
-                );
+        CatalogRepository.get(this).albumSongs(albumId, new CatalogRepository.Callback<List<SongRemote>>() {
+            @Override public void onData(List<SongRemote> songList, boolean fromCache) {
+                if (isFinishing() || isDestroyed()) return;
+
+                // === KIỂM TRA RỖNG ===
+                if (songList.isEmpty() && !fromCache) {
+                    Toast.makeText(SongListActivity.this, "Album chưa có bài hát", Toast.LENGTH_SHORT).show();
+                }
+                adapter.submit(songList); // Cập nhật dữ liệu
+            }
+
+            @Override public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(SongListActivity.this, "Lỗi tải bài hát: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Tạo adapter danh sách bài hát (1 lần, trong onCreate)
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    private void setupAdapter() {
+        adapter = new SongsAdapter(song -> {
+            // === KHI BẤM VÀO BÀI HÁT ===
+            // 1. Tạo playlist từ danh sách hiện tại
+            List<SongRemote> playlist = new ArrayList<>(adapter.getCurrentList());
+            int index = playlist.indexOf(song);
+
+            // 2. Gửi dữ liệu vào MusicService (danh sách qua QueueRegistry, Intent chỉ mang handle)
+            Intent serviceIntent = MusicService.newPlayIntent(this, playlist, index);
+
+            // 3. Khởi động Service (Foreground nếu Android 8+)
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                startForegroundService(serviceIntent);
+            } else {
+                startService(serviceIntent);
+            }
+
+            // 4. Mở PlayerActivity sau 200ms (đợi Service khởi tạo)
+            new android.os.Handler(Looper.getMainLooper()).postDelayed(() -> {
+                Intent playerIntent = new Intent(this, PlayerActivity.class);
+                startActivity(playerIntent);
+                overridePendingTransition(R.anim.slide_in_up, 0); // Hiệu ứng trượt lên
+            }, 200);
+        });
+
+        // === GÁN ADAPTER VÀO RECYCLERVIEW ===
+        rv.setAdapter(adapter);
     }
-}
\ No newline at end of file
+}
@@ -40,8 +40,17 @@ public class CategoriesAdapter extends RecyclerView.Adapter<CategoriesAdapter.VH
     /** Callback truyền từ Activity/Fragment để xử lý sự kiện click */
     private final OnClick onClick;
 
+    /** Chiều rộng cố định cho mỗi thẻ (px); 0 = theo layout (match_parent, dùng cho lưới). */
+    private final int itemWidthPx;
+
     /** Constructor: nhận callback click */
-    public CategoriesAdapter(OnClick onClick) { this.onClick = onClick; }
+    public CategoriesAdapter(OnClick onClick) { this(onClick, 0); }
+
+    /** Constructor cho hàng cuộn ngang (kết quả tìm kiếm): thẻ rộng cố định itemWidthPx. */
+    public CategoriesAdapter(OnClick onClick, int itemWidthPx) {
+        this.onClick = onClick;
+        this.itemWidthPx = itemWidthPx;
+    }
 
     /**
      * Cập nhật dữ liệu hiển thị:
@@ -64,6 +73,7 @@ public class CategoriesAdapter extends RecyclerView.Adapter<CategoriesAdapter.VH
     public VH onCreateViewHolder(@NonNull ViewGroup p, int v) {
         View item = LayoutInflater.from(p.getContext())
                 .inflate(R.layout.item_category_card, p, false);
+        if (itemWidthPx > 0) item.getLayoutParams().width = itemWidthPx;
         return new VH(item);
     }
 
@@ -0,0 +1,57 @@
+package vn.khengandkhoi.musicplayer.adapter;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import vn.khengandkhoi.musicplayer.R;
+
+/**
+ * HorizontalRowAdapter:
+ * - Adapter 1 dòng chứa 1 RecyclerView cuộn ngang bọc adapter con (vd: AlbumsAdapter) -> đặt được 1 hàng thẻ
+ *   ngang vào giữa danh sách dọc (ConcatAdapter của màn tìm kiếm).
+ * - Adapter con rỗng -> 0 item (ẩn cả hàng); gọi refresh() sau mỗi lần submit() adapter con.
+ * - Layout item: `item_horizontal_row.xml` (RecyclerView id = rvRow).
+ */
+public class HorizontalRowAdapter extends RecyclerView.Adapter<HorizontalRowAdapter.VH> {
+
+    private final RecyclerView.Adapter<?> inner;
+    private boolean visible = false;
+
+    public HorizontalRowAdapter(RecyclerView.Adapter<?> inner) { this.inner = inner; }
+
+    /** Cập nhật hiện/ẩn hàng theo số item của adapter con. */
+    public void refresh() {
+        boolean show = inner.getItemCount() > 0;
+        if (show == visible) return;
+        visible = show;
+        if (show) notifyItemInserted(0);
+        else notifyItemRemoved(0);
+    }
+
+    @NonNull @Override
+    public VH onCreateViewHolder(@NonNull ViewGroup p, int viewType) {
+        View item = LayoutInflater.from(p.getContext()).inflate(R.layout.item_horizontal_row, p, false);
+        return new VH(item);
+    }
+
+    @Override public void onBindViewHolder(@NonNull VH h, int i) {
+        if (h.rv.getAdapter() != inner) h.rv.setAdapter(inner);
+        h.rv.scrollToPosition(0);
+    }
+
+    @Override public int getItemCount() { return visible ? 1 : 0; }
+
+    static class VH extends RecyclerView.ViewHolder {
+        RecyclerView rv;
+        VH(@NonNull View v) {
+            super(v);
+            rv = v.findViewById(R.id.rvRow);
+            rv.setLayoutManager(new LinearLayoutManager(v.getContext(), LinearLayoutManager.HORIZONTAL, false));
+        }
+    }
+}
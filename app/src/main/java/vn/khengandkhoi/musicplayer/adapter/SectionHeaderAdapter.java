@@ -0,0 +1,51 @@
+package vn.khengandkhoi.musicplayer.adapter;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import vn.khengandkhoi.musicplayer.R;
+
+/**
+ * SectionHeaderAdapter:
+ * - Adapter 1 dòng (tiêu đề mục: "Album", "Thể loại", "Bài hát") dùng trong ConcatAdapter của màn tìm kiếm.
+ * - setVisible(false) -> 0 item (mục rỗng thì ẩn luôn tiêu đề).
+ * - Layout item: `item_section_header.xml` (TextView id = tvSectionTitle).
+ */
+public class SectionHeaderAdapter extends RecyclerView.Adapter<SectionHeaderAdapter.VH> {
+
+    private final String title;
+    private boolean visible = false;
+
+    public SectionHeaderAdapter(String title) { this.title = title; }
+
+    /** Hiện/ẩn tiêu đề (chỉ notify khi trạng thái thực sự đổi). */
+    public void setVisible(boolean show) {
+        if (show == visible) return;
+        visible = show;
+        if (show) notifyItemInserted(0);
+        else notifyItemRemoved(0);
+    }
+
+    @NonNull @Override
+    public VH onCreateViewHolder(@NonNull ViewGroup p, int viewType) {
+        View item = LayoutInflater.from(p.getContext()).inflate(R.layout.item_section_header, p, false);
+        return new VH(item);
+    }
+
+    @Override public void onBindViewHolder(@NonNull VH h, int i) { h.tv.setText(title); }
+
+    @Override public int getItemCount() { return visible ? 1 : 0; }
+
+    static class VH extends RecyclerView.ViewHolder {
+        TextView tv;
+        VH(@NonNull View v) {
+            super(v);
+            tv = v.findViewById(R.id.tvSectionTitle);
+        }
+    }
+}
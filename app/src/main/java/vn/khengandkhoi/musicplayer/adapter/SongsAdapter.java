@@ -50,6 +50,17 @@ public class SongsAdapter extends RecyclerView.Adapter<SongsAdapter.VH> {
         notifyDataSetChanged(); // Cập nhật giao diện
     }
 
+    /**
+     * Nối thêm 1 trang bài hát vào cuối danh sách (load-more)
+     * Chỉ báo phần mới chèn → RecyclerView không vẽ lại các item cũ
+     */
+    public void append(List<SongRemote> list) {
+        if (list == null || list.isEmpty()) return;
+        int start = data.size();
+        data.addAll(list);
+        notifyItemRangeInserted(start, list.size());
+    }
+
     /**
      * Tạo ViewHolder mới khi cần hiển thị item
      * Inflate layout: item_single_row.xml
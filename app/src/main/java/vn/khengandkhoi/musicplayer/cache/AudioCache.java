@@ -0,0 +1,292 @@
+package vn.khengandkhoi.musicplayer.cache;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSink;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.DefaultDataSource;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.datasource.cache.CacheDataSink;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.SimpleCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import vn.khengandkhoi.musicplayer.AppExecutors;
+
+/**
+ * AudioCache:
+ * - Cache đĩa (SimpleCache) nằm dưới DataSource của ExoPlayer: bài đã tải được phát lại
+ *   (replay, repeat-one) mà không cần tải lại toàn bộ file từ mạng.
+ * - Ngân sách byte cấu hình qua SharedPreferences "prefs" -> "audioCacheMaxBytes" (mặc định 256MB).
+ * - Chính sách kiểu TinyLFU:
+ *   + FrequencySketch ước lượng tần suất phát của từng bài.
+ *   + Admission: khi cache đã đầy, bài mới chỉ được ghi nếu tần suất >= tần suất "nạn nhân" sắp bị đuổi
+ *     -> bài phát 1 lần từ Search không đẩy bài nghe thường xuyên ra khỏi cache; hoà thì nhận
+ *     (bài phát 1 lần thay bài phát 1 lần lâu chưa nghe, cache không "đóng băng" với bài cũ).
+ *   + Sketch lưu ra filesDir/audio_cache_sketch.bin sau mỗi lượt phát, nạp lại khi mở app
+ *     -> tần suất sống cùng dữ liệu cache trên đĩa, không về 0 sau khi khởi động lại.
+ *   + Eviction: FrequencyAwareCacheEvictor đuổi bài ít nghe nhất trước.
+ *   + Tải trước (TrackPreloader) cũng qua admission: đầu bài kế tiếp không chiếm chỗ của bài nghe thường xuyên.
+ * - Bộ đếm hit/miss/bytes tiết kiệm để kiểm chứng hiệu quả ngoài thực tế (getStats()).
+ *
+ * Lưu ý:
+ * - SimpleCache chỉ cho phép 1 instance/thư mục trong 1 process -> dùng singleton get(context).
+ * - Thư mục nằm trong filesDir (không phải cacheDir) để hệ thống không tự xoá khi thiếu bộ nhớ.
+ * - File sketch nằm cạnh (không nằm trong) thư mục cache: SimpleCache xoá mọi file lạ trong thư mục của nó.
+ */
+@UnstableApi
+public final class AudioCache {
+
+    private static final String TAG = "AudioCache";
+
+    public static final String PREF_MAX_BYTES = "audioCacheMaxBytes";
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024; // 256MB
+    // Ước lượng kích thước 1 bài khi server không trả Content-Length (mp3 ~4-5 phút)
+    private static final long ASSUMED_TRACK_BYTES = 8L * 1024 * 1024;
+
+    private static volatile AudioCache instance;
+
+    public static AudioCache get(Context context) {
+        if (instance == null) {
+            synchronized (AudioCache.class) {
+                if (instance == null) instance = new AudioCache(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    /** Snapshot bộ đếm để log/hiển thị. */
+    public static final class Stats {
+        public final long hits;             // số lần bắt đầu phát bài đã có sẵn trong cache
+        public final long misses;           // số lần bắt đầu phát bài chưa có trong cache
+        public final long bytesFromCache;   // byte đọc từ cache = byte mạng tiết kiệm được
+        public final long bytesFromNetwork; // byte thực tải từ mạng
+        public final long rejected;         // số lần admission từ chối ghi vào cache
+        public final long cacheBytes;       // dung lượng đang dùng
+        public final long maxBytes;         // ngân sách
+
+        Stats(long hits, long misses, long bytesFromCache, long bytesFromNetwork,
+              long rejected, long cacheBytes, long maxBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.bytesFromCache = bytesFromCache;
+            this.bytesFromNetwork = bytesFromNetwork;
+            this.rejected = rejected;
+            this.cacheBytes = cacheBytes;
+            this.maxBytes = maxBytes;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @NonNull @Override public String toString() {
+            return "hits=" + hits + " misses=" + misses
+                    + " saved=" + bytesFromCache + "B network=" + bytesFromNetwork + "B"
+                    + " rejected=" + rejected + " size=" + cacheBytes + "/" + maxBytes + "B";
+        }
+    }
+
+    private final SimpleCache cache;
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final FrequencyAwareCacheEvictor evictor;
+    private final CacheDataSource.Factory dataSourceFactory;
+    // Factory cho preload: cùng admission, tính trước lượt phát sắp tới của bài (admitPreload)
+    private final CacheDataSource.Factory preloadFactory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesFromCache = new AtomicLong();
+    private final AtomicLong bytesFromNetwork = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // Lưu sketch tuần tự trên lane io; nhiều lượt phát liên tiếp chỉ ghi 1 lần
+    private final AtomicFile sketchFile;
+    private final Executor io = AppExecutors.get().serial(AppExecutors.get().io(), "audio-cache-sketch");
+    private final AtomicBoolean saveQueued = new AtomicBoolean();
+
+    private AudioCache(Context app) {
+        long maxBytes = app.getSharedPreferences("prefs", Context.MODE_PRIVATE)
+                .getLong(PREF_MAX_BYTES, DEFAULT_MAX_BYTES);
+        sketchFile = new AtomicFile(new File(app.getFilesDir(), "audio_cache_sketch.bin"));
+        io.execute(this::loadSketch);
+        evictor = new FrequencyAwareCacheEvictor(maxBytes, sketch);
+        cache = new SimpleCache(new File(app.getFilesDir(), "audio_cache"),
+                evictor, new StandaloneDatabaseProvider(app));
+
+        // Upstream: http/file/raw như cũ, kèm TransferListener để đếm byte thực tải từ mạng
+        DefaultDataSource.Factory upstream = new DefaultDataSource.Factory(app)
+                .setTransferListener(new NetworkByteCounter());
+
+        dataSourceFactory = new CacheDataSource.Factory()
+                .setCache(cache)
+                .setUpstreamDataSourceFactory(upstream)
+                .setCacheWriteDataSinkFactory(new AdmissionSinkFactory(
+                        new CacheDataSink.Factory().setCache(cache), false))
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+                .setEventListener(new CacheDataSource.EventListener() {
+                    @Override public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+                        bytesFromCache.addAndGet(cachedBytesRead);
+                    }
+                    @Override public void onCacheIgnored(int reason) { /* không cần xử lý */ }
+                });
+
+        preloadFactory = new CacheDataSource.Factory()
+                .setCache(cache)
+                .setUpstreamDataSourceFactory(upstream)
+                .setCacheWriteDataSinkFactory(new AdmissionSinkFactory(
+                        new CacheDataSink.Factory().setCache(cache), true));
+    }
+
+    /** DataSource.Factory đọc qua cache, dùng cho DefaultMediaSourceFactory của player chính. */
+    public DataSource.Factory dataSourceFactory() {
+        return dataSourceFactory;
+    }
+
+    /** CacheDataSource dùng cho CacheWriter khi tải trước đầu bài kế tiếp (TrackPreloader). */
+    CacheDataSource createPreloadDataSource() {
+        return preloadFactory.createDataSourceForDownloading();
+    }
+
+    /**
+     * Ghi nhận 1 lần bắt đầu phát bài (gọi mỗi khi đổi bài, kể cả vòng lặp repeat-one).
+     * - Tăng tần suất trong sketch.
+     * - Đếm hit nếu bài đã có dữ liệu trong cache từ đầu file, ngược lại đếm miss.
+     */
+    public void recordPlay(@Nullable String key) {
+        if (key == null || key.isEmpty()) return;
+        sketch.increment(key);
+        if (cache.getCachedBytes(key, 0, C.LENGTH_UNSET) > 0) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        if (!saveQueued.getAndSet(true)) io.execute(this::saveSketch);
+    }
+
+    // Chạy trên lane io khi khởi tạo: nạp tần suất của lần chạy trước
+    private void loadSketch() {
+        try (FileInputStream in = sketchFile.openRead()) {
+            sketch.readFrom(in);
+        } catch (FileNotFoundException ignore) {
+            // lần chạy đầu tiên
+        } catch (IOException e) {
+            Log.d(TAG, "sketch read failed: " + e.getMessage());
+        }
+    }
+
+    private void saveSketch() {
+        saveQueued.set(false);
+        FileOutputStream out = null;
+        try {
+            out = sketchFile.startWrite();
+            sketch.writeTo(out);
+            sketchFile.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) sketchFile.failWrite(out);
+            Log.d(TAG, "sketch write failed: " + e.getMessage());
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), bytesFromCache.get(), bytesFromNetwork.get(),
+                rejected.get(), evictor.currentSize(), evictor.maxBytes());
+    }
+
+    public void logStats() {
+        Log.d(TAG, getStats().toString());
+    }
+
+    /**
+     * Tải trước đầu bài key có được ghi vào cache không (TrackPreloader hỏi trước khi tải -> bị từ chối thì
+     * không tốn mạng). Bài chưa phát nhưng sắp phát -> tính trước 1 lượt phát, nên chỉ đuổi được bài
+     * nghe không nhiều hơn mức đó, không bao giờ đẩy bài nghe thường xuyên ra khỏi cache.
+     */
+    boolean admitPreload(String key, long length) {
+        if (admit(key, length, true)) return true;
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Quyết định admission cho 1 lần ghi key vào cache:
+     * - Key đã nằm trong cache (đang ghi tiếp phần còn thiếu) -> luôn nhận.
+     * - Còn đủ chỗ trống -> nhận.
+     * - Cache đầy -> chỉ nhận nếu tần suất bài mới >= tần suất nạn nhân
+     *   (preload: tần suất + 1 cho lượt phát sắp tới).
+     */
+    private boolean admit(String key, long length, boolean preload) {
+        if (evictor.isResident(key)) return true;
+        long need = length == C.LENGTH_UNSET ? ASSUMED_TRACK_BYTES : length;
+        if (evictor.freeBytes() >= need) return true;
+        String victim = evictor.peekVictim(key);
+        int freq = sketch.frequency(key) + (preload ? 1 : 0);
+        return victim == null || freq >= sketch.frequency(victim);
+    }
+
+    // Bọc CacheDataSink: nếu admission từ chối thì bỏ qua mọi byte ghi (vẫn phát bình thường từ mạng)
+    private final class AdmissionSinkFactory implements DataSink.Factory {
+        private final DataSink.Factory delegate;
+        private final boolean preload;
+
+        AdmissionSinkFactory(DataSink.Factory delegate, boolean preload) {
+            this.delegate = delegate;
+            this.preload = preload;
+        }
+
+        @Override public DataSink createDataSink() {
+            return new AdmissionSink(delegate.createDataSink(), preload);
+        }
+    }
+
+    private final class AdmissionSink implements DataSink {
+        private final DataSink delegate;
+        private final boolean preload;
+        private boolean admitted;
+
+        AdmissionSink(DataSink delegate, boolean preload) {
+            this.delegate = delegate;
+            this.preload = preload;
+        }
+
+        @Override public void open(DataSpec dataSpec) throws IOException {
+            String key = dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString();
+            admitted = admit(key, dataSpec.length, preload);
+            if (admitted) delegate.open(dataSpec);
+            else rejected.incrementAndGet();
+        }
+
+        @Override public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (admitted) delegate.write(buffer, offset, length);
+        }
+
+        @Override public void close() throws IOException {
+            if (admitted) delegate.close();
+            admitted = false;
+        }
+    }
+
+    // Đếm byte upstream thực sự đi qua mạng
+    private final class NetworkByteCounter implements TransferListener {
+        @Override public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        @Override public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        @Override public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            if (isNetwork) bytesFromNetwork.addAndGet(bytesTransferred);
+        }
+        @Override public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+    }
+}
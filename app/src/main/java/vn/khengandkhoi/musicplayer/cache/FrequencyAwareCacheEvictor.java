@@ -0,0 +1,138 @@
+package vn.khengandkhoi.musicplayer.cache;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheEvictor;
+import androidx.media3.datasource.cache.CacheSpan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FrequencyAwareCacheEvictor:
+ * - Thay cho LeastRecentlyUsedCacheEvictor mặc định của ExoPlayer.
+ * - Gom các CacheSpan theo key (1 key = 1 bài hát) để evict nguyên bài thay vì từng mảnh.
+ * - Khi vượt ngân sách byte: chọn "nạn nhân" là bài có tần suất thấp nhất theo FrequencySketch,
+ *   hoà thì bài lâu chưa chạm nhất (LRU) bị đuổi trước.
+ * => Bài nghe thường xuyên được giữ lại, bài phát 1 lần từ màn Search bị đuổi trước.
+ *
+ * Lưu ý:
+ * - Số key trong cache chỉ vài trăm nên duyệt tuyến tính để chọn nạn nhân là đủ rẻ.
+ * - Mọi callback do SimpleCache gọi đã được đồng bộ sẵn; thêm synchronized để AudioCache đọc an toàn.
+ */
+@UnstableApi
+final class FrequencyAwareCacheEvictor implements CacheEvictor {
+
+    // Thông tin gộp của 1 key đang nằm trong cache
+    private static final class KeyEntry {
+        final Set<CacheSpan> spans = new HashSet<>();
+        long bytes;
+        long lastTouch;
+    }
+
+    private final long maxBytes;
+    private final FrequencySketch sketch;
+    private final Map<String, KeyEntry> entries = new HashMap<>();
+    private long currentSize;
+
+    FrequencyAwareCacheEvictor(long maxBytes, FrequencySketch sketch) {
+        this.maxBytes = maxBytes;
+        this.sketch = sketch;
+    }
+
+    @Override public boolean requiresCacheSpanTouches() { return true; }
+
+    @Override public void onCacheInitialized() { /* không cần xử lý */ }
+
+    // ExoPlayer sắp ghi 1 file mới cho key -> dọn chỗ trước nếu biết độ dài
+    @Override
+    public synchronized void onStartFile(Cache cache, String key, long position, long length) {
+        if (length != C.LENGTH_UNSET) evictCache(cache, key, length);
+    }
+
+    @Override
+    public synchronized void onSpanAdded(Cache cache, CacheSpan span) {
+        KeyEntry e = entries.get(span.key);
+        if (e == null) {
+            e = new KeyEntry();
+            entries.put(span.key, e);
+        }
+        e.spans.add(span);
+        e.bytes += span.length;
+        e.lastTouch = Math.max(e.lastTouch, span.lastTouchTimestamp);
+        currentSize += span.length;
+        evictCache(cache, span.key, 0);
+    }
+
+    @Override
+    public synchronized void onSpanRemoved(Cache cache, CacheSpan span) {
+        KeyEntry e = entries.get(span.key);
+        if (e != null && e.spans.remove(span)) {
+            e.bytes -= span.length;
+            currentSize -= span.length;
+            if (e.spans.isEmpty()) entries.remove(span.key);
+        }
+    }
+
+    @Override
+    public synchronized void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        onSpanRemoved(cache, oldSpan);
+        onSpanAdded(cache, newSpan);
+    }
+
+    // Key có đang nằm trong cache không (dùng cho admission)
+    synchronized boolean isResident(String key) {
+        return entries.containsKey(key);
+    }
+
+    // Dung lượng còn trống theo ngân sách
+    synchronized long freeBytes() {
+        return Math.max(0, maxBytes - currentSize);
+    }
+
+    synchronized long currentSize() { return currentSize; }
+
+    synchronized long maxBytes() { return maxBytes; }
+
+    /**
+     * Key sẽ bị đuổi tiếp theo nếu cần chỗ (bỏ qua key đang ghi).
+     * - Tần suất thấp nhất thắng; hoà thì lastTouch cũ nhất thắng.
+     */
+    @Nullable
+    synchronized String peekVictim(@Nullable String exclude) {
+        String victim = null;
+        int victimFreq = Integer.MAX_VALUE;
+        long victimTouch = Long.MAX_VALUE;
+        for (Map.Entry<String, KeyEntry> en : entries.entrySet()) {
+            String key = en.getKey();
+            if (key.equals(exclude)) continue;
+            int freq = sketch.frequency(key);
+            long touch = en.getValue().lastTouch;
+            if (freq < victimFreq || (freq == victimFreq && touch < victimTouch)) {
+                victim = key;
+                victimFreq = freq;
+                victimTouch = touch;
+            }
+        }
+        return victim;
+    }
+
+    // Đuổi nguyên bài theo thứ tự nạn nhân cho tới khi đủ chỗ cho requiredSpace
+    private void evictCache(Cache cache, String writingKey, long requiredSpace) {
+        while (currentSize + requiredSpace > maxBytes) {
+            String victim = peekVictim(writingKey);
+            if (victim == null) return; // chỉ còn key đang ghi -> chịu vượt ngân sách tạm thời
+            // Gỡ entry trước: onSpanRemoved gọi lại sẽ không tìm thấy key nên không trừ 2 lần
+            KeyEntry e = entries.remove(victim);
+            currentSize -= e.bytes;
+            for (CacheSpan span : new ArrayList<>(e.spans)) {
+                cache.removeSpan(span);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package vn.khengandkhoi.musicplayer.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * FrequencySketch:
+ * - Count-Min Sketch 4 hàng để ước lượng tần suất phát của từng cache key (URL bài hát).
+ * - Bộ nhớ cố định (4 x WIDTH int) bất kể số bài đã phát -> không phình theo lịch sử nghe.
+ * - "Lão hoá" (aging): khi tổng số lần ghi nhận đạt ngưỡng, chia đôi mọi bộ đếm
+ *   để bài từng hot trong quá khứ không chiếm chỗ mãi (giống TinyLFU).
+ *
+ * Lưu ý:
+ * - Ước lượng có thể lớn hơn thực tế (do va chạm hash), không bao giờ nhỏ hơn.
+ * - Các hàm synchronized vì được gọi từ main thread (MusicService) và thread loader của ExoPlayer.
+ * - Lưu/nạp được (writeTo/readFrom, 1 byte mỗi bộ đếm) -> tần suất không về 0 sau khi khởi động lại app
+ *   trong khi cache trên đĩa vẫn còn nguyên.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1024;                 // luỹ thừa của 2 -> dùng mask thay cho %
+    private static final int MAX_COUNT = 15;               // trần mỗi bộ đếm (4 bit như TinyLFU)
+    private static final int RESET_THRESHOLD = WIDTH * 10; // số lần ghi nhận trước khi chia đôi
+
+    private static final int FILE_MAGIC = 0x46534B31;     // "FSK1"
+
+    // seed khác nhau cho từng hàng để hash độc lập
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[][] table = new int[DEPTH][WIDTH];
+    private int additions = 0;
+
+    // Ghi nhận 1 lần truy cập key
+    synchronized void increment(String key) {
+        if (key == null) return;
+        int h = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int col = indexOf(h, row);
+            if (table[row][col] < MAX_COUNT) {
+                table[row][col]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= RESET_THRESHOLD) reset();
+    }
+
+    // Ước lượng tần suất key = min trên các hàng
+    synchronized int frequency(String key) {
+        if (key == null) return 0;
+        int h = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, table[row][indexOf(h, row)]);
+        }
+        return min;
+    }
+
+    // Ghi toàn bộ bộ đếm ra out (caller đóng stream); mỗi bộ đếm <= MAX_COUNT nên 1 byte là đủ
+    synchronized void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(DEPTH);
+        out.writeInt(WIDTH);
+        out.writeInt(additions);
+        for (int[] row : table) {
+            for (int v : row) out.writeByte(v);
+        }
+        out.flush();
+    }
+
+    /**
+     * Nạp bộ đếm đã lưu, gộp theo max với bộ đếm hiện tại (lượt phát ghi nhận trước khi nạp xong không mất).
+     * File hỏng / khác kích thước -> IOException, sketch giữ nguyên.
+     */
+    void readFrom(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != FILE_MAGIC || in.readInt() != DEPTH || in.readInt() != WIDTH) {
+            throw new IOException("bad sketch file");
+        }
+        int savedAdditions = in.readInt();
+        byte[][] saved = new byte[DEPTH][WIDTH];
+        for (byte[] row : saved) in.readFully(row);
+        synchronized (this) {
+            for (int row = 0; row < DEPTH; row++) {
+                for (int i = 0; i < WIDTH; i++) {
+                    table[row][i] = Math.max(table[row][i], Math.min(saved[row][i], MAX_COUNT));
+                }
+            }
+            additions = Math.min(Math.max(additions, savedAdditions), RESET_THRESHOLD - 1);
+        }
+    }
+
+    // Chia đôi toàn bộ bộ đếm (aging)
+    private void reset() {
+        for (int[] row : table) {
+            for (int i = 0; i < WIDTH; i++) row[i] >>>= 1;
+        }
+        additions >>>= 1;
+    }
+
+    // Trộn hash với seed của hàng rồi lấy WIDTH bit thấp
+    private static int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x45D9F3B;
+        h ^= h >>> 16;
+        return h & (WIDTH - 1);
+    }
+}
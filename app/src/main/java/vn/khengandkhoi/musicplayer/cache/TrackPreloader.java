@@ -0,0 +1,105 @@
+package vn.khengandkhoi.musicplayer.cache;
+
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.CacheWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import vn.khengandkhoi.musicplayer.AppExecutors;
+
+/**
+ * TrackPreloader:
+ * - Tải trước N giây đầu của 1–2 bài kế tiếp trong hàng đợi vào AudioCache trong khi bài hiện tại đang phát.
+ * - Khi ExoPlayer chuyển bài, phần đầu bài mới đã nằm sẵn trên đĩa -> bắt đầu phát gần như tức thì,
+ *   phần còn lại tiếp tục tải từ mạng như bình thường.
+ *
+ * Lưu ý:
+ * - Chạy tuần tự trên lane io của AppExecutors, mỗi lần gọi preload() sẽ huỷ các tác vụ cũ (người dùng skip liên tục).
+ * - Số byte ước lượng theo bitrate 320kbps vì không biết trước bitrate của file.
+ * - Cache đầy và bài kế tiếp không qua được admission (AudioCache.admitPreload) -> bỏ qua, không tải gì.
+ */
+@UnstableApi
+public final class TrackPreloader {
+
+    private static final String TAG = "TrackPreloader";
+    private static final long BYTES_PER_SECOND = 320_000L / 8; // ~320kbps
+
+    private final AudioCache audioCache;
+    private final Executor executor = AppExecutors.get().serial(AppExecutors.get().io(), "track-preload");
+    private final List<CacheWriter> active = new ArrayList<>();
+    private int generation = 0;
+    private boolean released = false;           // khoá bởi this
+
+    public TrackPreloader(AudioCache audioCache) {
+        this.audioCache = audioCache;
+    }
+
+    /**
+     * Huỷ tác vụ cũ rồi xếp hàng tải trước các URL (theo đúng thứ tự phát).
+     * @param urls    URL các bài kế tiếp (đã theo thứ tự shuffle nếu có)
+     * @param seconds số giây đầu cần tải trước cho mỗi bài
+     */
+    public void preload(List<String> urls, int seconds) {
+        cancel();
+        if (urls.isEmpty() || seconds <= 0) return;
+        final int gen;
+        synchronized (this) {
+            if (released) return; // executor dùng chung không shutdown được -> tự chặn sau release()
+            gen = generation;
+        }
+        long length = seconds * BYTES_PER_SECOND;
+        for (String url : urls) {
+            if (url == null || url.isEmpty()) continue;
+            executor.execute(() -> cacheHead(gen, url, length));
+        }
+    }
+
+    // Huỷ toàn bộ tác vụ đang chạy/đang chờ
+    public void cancel() {
+        synchronized (this) {
+            generation++;
+            for (CacheWriter w : active) w.cancel();
+            active.clear();
+        }
+    }
+
+    public void release() {
+        cancel();
+        synchronized (this) { released = true; }
+    }
+
+    // Chạy trên thread nền: ghi [0, length) của url vào cache (nếu admission cho phép)
+    private void cacheHead(int gen, String url, long length) {
+        synchronized (this) {
+            if (gen != generation) return; // lượt cũ: khỏi hỏi admission
+        }
+        if (!audioCache.admitPreload(url, length)) {
+            Log.d(TAG, "preload skipped (not admitted): " + url);
+            return;
+        }
+        DataSpec spec = new DataSpec.Builder()
+                .setUri(Uri.parse(url))
+                .setPosition(0)
+                .setLength(length)
+                .build();
+        CacheWriter writer = new CacheWriter(audioCache.createPreloadDataSource(), spec, null, null);
+        synchronized (this) {
+            if (gen != generation) return; // đã bị thay bởi lượt preload mới
+            active.add(writer);
+        }
+        try {
+            writer.cache();
+        } catch (Exception e) {
+            // Huỷ hoặc lỗi mạng: bỏ qua, player sẽ tự tải khi tới bài đó
+            Log.d(TAG, "preload stopped: " + url + " (" + e.getMessage() + ")");
+        } finally {
+            synchronized (this) { active.remove(writer); }
+        }
+    }
+}
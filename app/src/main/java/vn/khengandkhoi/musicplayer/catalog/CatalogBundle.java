@@ -0,0 +1,126 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.LoadBundleTaskProgress;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.R;
+
+/**
+ * CatalogBundle:
+ * - Nạp Firestore data bundle dựng sẵn (`./gradlew :tools:buildCatalogBundle`) vào cache cục bộ của Firestore
+ *   ở lần mở app đầu tiên -> CatalogSync lấy bản sao đầu tiên từ đây thay vì đọc từng document trên server.
+ * - Nguồn: asset ASSET trong APK; không có thì tải từ URL tĩnh R.string.catalog_bundle_url (rỗng = không dùng).
+ * - Bundle chứa 3 named query (Q_ALBUMS, Q_CATEGORIES, Q_SONGS); read() chạy chúng với Source.CACHE
+ *   -> không tốn lượt đọc server nào.
+ *
+ * Lưu ý:
+ * - Hàm chặn (Tasks.await): chỉ gọi trên thread nền của CatalogSync.
+ * - Nạp lại cùng 1 bundle là no-op (Firestore so id + thời điểm tạo bundle) -> không cần tự đánh dấu đã nạp.
+ * - Tên named query phải khớp CatalogBundleBuilder (module tools).
+ */
+final class CatalogBundle {
+
+    private static final String TAG = "CatalogBundle";
+
+    static final String ASSET = "catalog.bundle";
+    static final String Q_ALBUMS = "catalog-albums", Q_CATEGORIES = "catalog-categories", Q_SONGS = "catalog-songs";
+
+    private static final int TIMEOUT_MS = 15_000;
+
+    /** Mở bundle đóng gói sẵn; FileNotFoundException (hoặc IOException khác) = không có. */
+    interface Asset { InputStream open() throws IOException; }
+
+    private final FirebaseFirestore db;
+    private final Asset asset;
+    private final String url;
+    private Boolean hasAsset;                // kiểm tra 1 lần (khoá bởi this)
+
+    CatalogBundle(Context app, FirebaseFirestore db) {
+        this(db, () -> app.getAssets().open(ASSET), app.getString(R.string.catalog_bundle_url).trim());
+    }
+
+    /** Nguồn bundle tuỳ ý (benchmark androidTest nạp bundle tự dựng thay cho asset của APK). */
+    CatalogBundle(FirebaseFirestore db, Asset asset, String url) {
+        this.db = db;
+        this.asset = asset;
+        this.url = url;
+    }
+
+    /** Có nguồn bundle để thử không (asset trong APK hoặc URL đã cấu hình). */
+    synchronized boolean available() {
+        if (hasAsset == null) {
+            try (InputStream ignored = asset.open()) {
+                hasAsset = true;
+            } catch (IOException e) {
+                hasAsset = false;
+            }
+        }
+        return hasAsset || !url.isEmpty();
+    }
+
+    /**
+     * Nạp bundle rồi đọc 3 named query từ cache vào các danh sách (gồm cả tombstone, bên gọi tự bỏ).
+     * @return false nếu không có bundle / nạp lỗi / bundle thiếu named query (danh sách giữ nguyên rỗng)
+     */
+    boolean read(List<DocumentSnapshot> albums, List<DocumentSnapshot> categories,
+                 List<DocumentSnapshot> songs) {
+        if (!available()) return false;
+        try {
+            LoadBundleTaskProgress p = load();
+            Log.d(TAG, "bundle loaded: " + p.getDocumentsLoaded() + " docs, " + p.getBytesLoaded() + " bytes");
+            Query qa = Tasks.await(db.getNamedQuery(Q_ALBUMS));
+            Query qc = Tasks.await(db.getNamedQuery(Q_CATEGORIES));
+            Query qs = Tasks.await(db.getNamedQuery(Q_SONGS));
+            if (qa == null || qc == null || qs == null) {
+                Log.d(TAG, "bundle has no catalog named queries");
+                return false;
+            }
+            albums.addAll(Tasks.await(qa.get(Source.CACHE)).getDocuments());
+            categories.addAll(Tasks.await(qc.get(Source.CACHE)).getDocuments());
+            songs.addAll(Tasks.await(qs.get(Source.CACHE)).getDocuments());
+            return true;
+        } catch (Exception e) {
+            Log.d(TAG, "bundle read failed: " + e.getMessage());
+            albums.clear();
+            categories.clear();
+            songs.clear();
+            return false;
+        }
+    }
+
+    // Asset trước (không cần mạng), URL sau
+    private LoadBundleTaskProgress load() throws Exception {
+        if (hasAsset) {
+            try (InputStream in = new BufferedInputStream(asset.open())) {
+                return Tasks.await(db.loadBundle(in));
+            }
+        }
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(TIMEOUT_MS);
+        conn.setReadTimeout(TIMEOUT_MS);
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + conn.getResponseCode() + " " + url);
+            }
+            try (InputStream in = new BufferedInputStream(conn.getInputStream())) {
+                return Tasks.await(db.loadBundle(in));
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * CatalogJson:
+ * - Đọc/ghi model catalog (Album, Category, SongRemote) dạng JSON cho tầng đĩa của CatalogRepository
+ *   và bản sao catalog của CatalogSync -> 2 nơi dùng chung 1 định dạng.
+ * - Field null không được ghi; đọc lại field thiếu -> null (trackNum -> 0).
+ */
+final class CatalogJson {
+
+    private CatalogJson() {}
+
+    static JSONObject album(Album a) throws JSONException {
+        return new JSONObject()
+                .put("id", a.getId())
+                .put("title", a.getTitle())
+                .put("author", a.getAuthor())
+                .put("coverUrl", a.getCoverUrl());
+    }
+
+    static Album albumOf(JSONObject o) {
+        return new Album(o.optString("id", null), o.optString("title", null),
+                o.optString("author", null), o.optString("coverUrl", null));
+    }
+
+    static JSONArray albums(List<Album> list) throws JSONException {
+        JSONArray arr = new JSONArray();
+        for (Album a : list) arr.put(album(a));
+        return arr;
+    }
+
+    static List<Album> albumsOf(JSONArray arr) throws JSONException {
+        List<Album> list = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) list.add(albumOf(arr.getJSONObject(i)));
+        return list;
+    }
+
+    static JSONObject category(Category c) throws JSONException {
+        return new JSONObject()
+                .put("id", c.getId())
+                .put("name", c.getName())
+                .put("colorHex", c.getColorHex())
+                .put("coverUrl", c.getCoverUrl());
+    }
+
+    static Category categoryOf(JSONObject o) {
+        return new Category(o.optString("id", null), o.optString("name", null),
+                o.optString("colorHex", null), o.optString("coverUrl", null));
+    }
+
+    static JSONArray categories(List<Category> list) throws JSONException {
+        JSONArray arr = new JSONArray();
+        for (Category c : list) arr.put(category(c));
+        return arr;
+    }
+
+    static List<Category> categoriesOf(JSONArray arr) throws JSONException {
+        List<Category> list = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) list.add(categoryOf(arr.getJSONObject(i)));
+        return list;
+    }
+
+    static JSONObject song(SongRemote s) throws JSONException {
+        return new JSONObject()
+                .put("id", s.getId())
+                .put("title", s.getTitle())
+                .put("author", s.getAuthor())
+                .put("url", s.getUrl())
+                .put("coverUrl", s.getCoverUrl())
+                .put("trackNum", s.getTrackNum());
+    }
+
+    static SongRemote songOf(JSONObject o) {
+        return new SongRemote(o.optString("id", null), o.optString("title", null),
+                o.optString("author", null), o.optString("url", null),
+                o.optString("coverUrl", null), o.optInt("trackNum"));
+    }
+
+    static JSONArray songs(List<SongRemote> list) throws JSONException {
+        JSONArray arr = new JSONArray();
+        for (SongRemote s : list) arr.put(song(s));
+        return arr;
+    }
+
+    static List<SongRemote> songsOf(JSONArray arr) throws JSONException {
+        List<SongRemote> list = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) list.add(songOf(arr.getJSONObject(i)));
+        return list;
+    }
+
+    static JSONArray strings(List<String> list) {
+        JSONArray arr = new JSONArray();
+        for (String s : list) arr.put(s);
+        return arr;
+    }
+
+    static List<String> stringsOf(JSONArray arr) throws JSONException {
+        List<String> list = new ArrayList<>(arr.length());
+        for (int i = 0; i < arr.length(); i++) list.add(arr.getString(i));
+        return list;
+    }
+}
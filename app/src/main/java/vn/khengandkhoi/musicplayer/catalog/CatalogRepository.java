@@ -0,0 +1,572 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import vn.khengandkhoi.musicplayer.AppExecutors;
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.FirestoreMapper;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * CatalogRepository:
+ * - Nguồn dữ liệu catalog dùng chung (album, thể loại, bài hát của album) cho Home, Search, CategoryAlbums, SongList
+ *   thay cho việc mỗi màn tự gọi Firestore và không giữ lại gì.
+ * - Các tầng cache:
+ *   + Bộ nhớ: LruCache MEMORY_ENTRIES mục (theo key: "albums", "album_{id}", "songs_{albumId}", ...).
+ *   + Bản sao catalog của CatalogSync (khi đã đồng bộ ít nhất 1 lần, hoặc lần đầu nạp từ data bundle kèm APK):
+ *     dựng mọi key từ bản sao, không cần mạng.
+ *   + Đĩa: mỗi key 1 file JSON trong filesDir/catalog (AtomicFile) -> mở lại app vẫn hiện ngay dữ liệu lần trước.
+ * - Stale-while-revalidate: có cache -> trả ngay (fromCache = true), nếu bản cache quá FRESH_MS thì làm mới ở nền
+ *   (có bản sao -> 1 lần delta sync; chưa có -> tải lại key đó từ server) và trả lần 2 (fromCache = false)
+ *   CHỈ KHI dữ liệu thực sự đổi -> màn hình không nháy lại vô ích.
+ * - Các lời gọi cùng key trong lúc đang tải được gộp vào 1 request mạng.
+ * - Đếm hit bộ nhớ / hit đĩa / miss theo từng loại dữ liệu (stats()), log mỗi LOG_EVERY lượt đọc (tag CatalogRepository).
+ *
+ * Lưu ý:
+ * - Mọi hàm public gọi trên main thread, callback cũng về main thread; map snapshot / ghép thứ tự / mã hoá JSON
+ *   chạy trên AppExecutors.compute(), đọc/ghi file trên hàng đợi tuần tự của AppExecutors.io().
+ * - Callback có thể được gọi 2 lần (cache rồi server) -> phía UI phải submit lại danh sách, không tạo adapter mới.
+ * - Danh sách trả về dùng chung giữa các màn (nằm trong cache) -> chỉ đọc, muốn sửa thì copy.
+ * - Không tìm thấy document (album/thể loại bị xoá) -> onError với FirebaseFirestoreException NOT_FOUND
+ *   (xem isNotFound()); trường hợp này không ghi cache.
+ */
+public final class CatalogRepository {
+
+    private static final String TAG = "CatalogRepository";
+
+    private static final int MEMORY_ENTRIES = 64;
+    private static final long FRESH_MS = 5 * 60_000L;   // bản cache mới hơn 5 phút -> không tải lại
+    private static final int LOG_EVERY = 20;
+    private static final int WHERE_IN_LIMIT = 10;       // giới hạn whereIn của Firestore
+
+    /** Loại dữ liệu (dùng làm nhãn thống kê). */
+    public static final String ALBUMS = "albums", ALBUM = "album", CATEGORIES = "categories",
+            CATEGORY_ALBUMS = "categoryAlbums", SONGS = "songs";
+
+    /** Nhận dữ liệu trên main thread. */
+    public interface Callback<T> {
+        /** @param fromCache true = bản cache (có thể đã cũ), false = bản vừa tải từ server */
+        void onData(T data, boolean fromCache);
+
+        /** Chỉ gọi khi tải server lỗi mà chưa có bản cache nào để hiển thị. */
+        default void onError(Exception e) {}
+    }
+
+    /** Thể loại kèm danh sách album (đúng thứ tự cấu hình trong document thể loại). */
+    public static final class CategoryAlbums {
+        public final String name;
+        public final List<Album> albums;
+
+        public CategoryAlbums(String name, List<Album> albums) {
+            this.name = name;
+            this.albums = albums;
+        }
+    }
+
+    private static volatile CatalogRepository instance;
+
+    public static CatalogRepository get(Context context) {
+        if (instance == null) {
+            synchronized (CatalogRepository.class) {
+                if (instance == null) instance = new CatalogRepository(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    // 1 mục cache: giá trị đã dựng + bản JSON (để ghi đĩa và so sánh "có đổi không")
+    private static final class Entry {
+        final Object value;
+        final String json;
+        final long fetchedAt; // giờ máy (ms), giữ qua các lần mở app
+
+        Entry(Object value, String json, long fetchedAt) {
+            this.value = value;
+            this.json = json;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean fresh() {
+            long age = System.currentTimeMillis() - fetchedAt;
+            return age >= 0 && age < FRESH_MS;
+        }
+    }
+
+    // 1 lời gọi đang chờ bản server; delivered = JSON đã trả từ cache (null = chưa trả gì)
+    private static final class Waiter {
+        final Callback<Object> cb;
+        final String delivered;
+
+        Waiter(Callback<Object> cb, String delivered) {
+            this.cb = cb;
+            this.delivered = delivered;
+        }
+    }
+
+    private static final class Stat {
+        long memoryHits, syncHits, diskHits, misses, refreshed, changed, errors;
+
+        long hits() { return memoryHits + syncHits + diskHits; }
+        long requests() { return hits() + misses; }
+    }
+
+    // Cách dựng / đọc lại JSON và tải server cho 1 loại dữ liệu
+    private interface Codec<T> {
+        Object toJson(T value) throws JSONException;
+        T fromJson(String json) throws JSONException;
+    }
+
+    private interface Fetch<T> { Task<T> start(); }
+
+    // Dựng giá trị từ bản sao CatalogSync; null = bản sao không có
+    private interface Local<T> { T from(CatalogView v); }
+
+    private final FirebaseFirestore db;
+    private final CatalogSync sync;
+    private final File dir;
+    private final Executor compute = AppExecutors.get().compute();
+    private final Executor io = AppExecutors.get().serial(AppExecutors.get().io(), "catalog-disk");
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Entry> memory = new LruCache<>(MEMORY_ENTRIES);
+
+    // Chỉ truy cập trên main thread
+    private final Map<String, List<Waiter>> inflight = new HashMap<>();
+    private final Map<String, Stat> stats = new LinkedHashMap<>();
+    private long totalRequests = 0;
+
+    private CatalogRepository(Context app) {
+        this(FirebaseFirestore.getInstance(), CatalogSync.get(app), new File(app.getFilesDir(), "catalog"));
+    }
+
+    /** Firestore / CatalogSync / thư mục riêng (benchmark androidTest đo lần mở app đầu tiên). */
+    CatalogRepository(FirebaseFirestore db, CatalogSync sync, File dir) {
+        this.db = db;
+        this.dir = dir;
+        this.sync = sync;
+        // Bản sao vừa đổi -> bỏ các mục dựng từ bản cũ, lần đọc sau dựng lại từ bản mới
+        sync.addListener(albumIds -> memory.evictAll());
+        for (String t : new String[]{ALBUMS, ALBUM, CATEGORIES, CATEGORY_ALBUMS, SONGS}) stats.put(t, new Stat());
+    }
+
+    // ================== API ==================
+
+    /** Toàn bộ album (Home "Top picks"). */
+    public void albums(Callback<List<Album>> cb) {
+        load(ALBUMS, "albums", ALBUM_LIST, CatalogView::albumList,
+                () -> db.collection("albums").get().continueWith(compute, t -> toAlbums(t.getResult())), cb);
+    }
+
+    /** 1 album theo id; album đã có trong danh sách "albums" ở bộ nhớ thì không cần đọc riêng. */
+    public void album(String albumId, Callback<Album> cb) {
+        Entry all = memory.get("albums");
+        if (all != null && memory.get("album_" + albumId) == null) {
+            for (Album a : asAlbums(all.value)) {
+                if (albumId.equals(a.getId())) {
+                    store("album_" + albumId, encode("album_" + albumId, a, ALBUM_ONE, all.fetchedAt));
+                    break;
+                }
+            }
+        }
+        load(ALBUM, "album_" + albumId, ALBUM_ONE, v -> v.album(albumId),
+                () -> db.collection("albums").document(albumId).get().continueWith(compute, t -> {
+                    DocumentSnapshot d = t.getResult();
+                    if (!d.exists()) throw notFound("albums/" + albumId);
+                    return toAlbum(d);
+                }), cb);
+    }
+
+    /** Toàn bộ thể loại. */
+    public void categories(Callback<List<Category>> cb) {
+        load(CATEGORIES, "categories", CATEGORY_LIST, CatalogView::categoryList,
+                () -> db.collection("categories").get().continueWith(compute, t -> {
+                    List<Category> list = new ArrayList<>();
+                    for (DocumentSnapshot d : t.getResult()) {
+                        Category c = FirestoreMapper.category(d);
+                        if (c != null) list.add(c);
+                    }
+                    return list;
+                }), cb);
+    }
+
+    /** Tên + album của 1 thể loại, giữ đúng thứ tự albumIds trong document thể loại. */
+    public void categoryAlbums(String categoryId, Callback<CategoryAlbums> cb) {
+        load(CATEGORY_ALBUMS, "category_" + categoryId, CATEGORY_ALBUMS_CODEC, v -> v.categoryAlbums(categoryId),
+                () -> fetchCategoryAlbums(categoryId), cb);
+    }
+
+    /** Bài hát của 1 album, theo trackNum tăng dần. */
+    public void albumSongs(String albumId, Callback<List<SongRemote>> cb) {
+        load(SONGS, "songs_" + albumId, SONG_LIST, v -> v.songsOf(albumId),
+                () -> db.collection("albums").document(albumId).collection("songs")
+                        .orderBy("trackNum", Query.Direction.ASCENDING)
+                        .get()
+                        .continueWith(compute, t -> {
+                            List<SongRemote> list = new ArrayList<>();
+                            for (DocumentSnapshot d : t.getResult().getDocuments()) {
+                                SongRemote s = FirestoreMapper.song(d);
+                                if (s != null) list.add(s);
+                            }
+                            return list;
+                        }), cb);
+    }
+
+    /** Lỗi do document không tồn tại (không phải lỗi mạng). */
+    public static boolean isNotFound(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND;
+    }
+
+    /** Tỉ lệ hit theo từng loại dữ liệu. */
+    public String stats() {
+        StringBuilder sb = new StringBuilder("requests=").append(totalRequests);
+        for (Map.Entry<String, Stat> e : stats.entrySet()) {
+            Stat s = e.getValue();
+            long n = s.requests();
+            sb.append(" | ").append(e.getKey())
+                    .append(": n=").append(n)
+                    .append(" mem=").append(s.memoryHits)
+                    .append(" sync=").append(s.syncHits)
+                    .append(" disk=").append(s.diskHits)
+                    .append(" miss=").append(s.misses)
+                    .append(" hit=").append(n == 0 ? 0 : s.hits() * 100 / n).append('%')
+                    .append(" refreshed=").append(s.refreshed)
+                    .append(" changed=").append(s.changed)
+                    .append(" err=").append(s.errors);
+        }
+        return sb.toString();
+    }
+
+    // ================== LUỒNG CACHE ==================
+
+    @SuppressWarnings("unchecked")
+    private <T> void load(String type, String key, Codec<T> codec, Local<T> local, Fetch<T> fetch, Callback<T> cb) {
+        final Stat st = stats.get(type);
+        final Callback<Object> any = (Callback<Object>) (Callback<?>) cb;
+        if (++totalRequests % LOG_EVERY == 0) Log.d(TAG, stats());
+
+        // 1) Bộ nhớ
+        Entry e = memory.get(key);
+        if (e != null) {
+            st.memoryHits++;
+            any.onData(e.value, true);
+            if (!e.fresh()) revalidate(st, key, codec, local, fetch, new Waiter(any, e.json));
+            return;
+        }
+
+        // 2) Bản sao của CatalogSync / file đĩa theo key (thread nền) -> 3) server
+        io.execute(() -> {
+            Entry fromSync = fromReplica(key, codec, local);
+            Entry disk = fromSync != null ? fromSync : readDisk(key, codec);
+            main.post(() -> {
+                // Trong lúc đọc, 1 lời gọi khác có thể đã nạp key này
+                Entry now = memory.get(key);
+                Entry hit = now != null ? now : disk;
+                if (hit == null) {
+                    st.misses++;
+                    revalidate(st, key, codec, local, fetch, new Waiter(any, null));
+                    return;
+                }
+                if (now != null) {
+                    st.memoryHits++;
+                } else {
+                    if (fromSync != null) st.syncHits++;
+                    else st.diskHits++;
+                    memory.put(key, hit);
+                }
+                any.onData(hit.value, true);
+                if (!hit.fresh()) revalidate(st, key, codec, local, fetch, new Waiter(any, hit.json));
+            });
+        });
+    }
+
+    // Dựng giá trị từ bản sao catalog (null nếu chưa đồng bộ lần nào hoặc bản sao không có mục này)
+    private <T> Entry fromReplica(String key, Codec<T> codec, Local<T> local) {
+        CatalogView view = sync.view();
+        if (view == null) return null;
+        T v = local.from(view);
+        if (v == null) return null;
+        try {
+            return new Entry(v, codec.toJson(v).toString(), view.syncedAt());
+        } catch (JSONException e) {
+            Log.d(TAG, "encode " + key + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> void revalidate(Stat st, String key, Codec<T> codec, Local<T> local, Fetch<T> fetch, Waiter w) {
+        List<Waiter> waiting = inflight.get(key);
+        if (waiting != null) { waiting.add(w); return; } // đã có request cùng key đang chạy
+        waiting = new ArrayList<>();
+        waiting.add(w);
+        inflight.put(key, waiting);
+        st.refreshed++;
+
+        // view() lần đầu ánh xạ snapshot, seedsFromBundle() mở asset (đều có khoá chung với thread đồng bộ)
+        // -> hỏi trên hàng đợi io như load(), chỉ quyết định trên main
+        io.execute(() -> {
+            boolean hasReplica = sync.view() != null || sync.seedsFromBundle();
+            main.post(() -> {
+                if (!hasReplica) {
+                    fetchKey(st, key, codec, fetch);
+                    return;
+                }
+                // Đã có bản sao (hoặc sắp có từ data bundle) -> làm mới bằng 1 lần delta sync (vài lượt đọc)
+                // thay vì đọc lại cả collection
+                // Dựng giá trị từ bản sao + mã hoá JSON trên compute, chỉ cập nhật cache / trả kết quả trên main
+                sync.requestSync(() -> compute.execute(() -> {
+                    CatalogView view = sync.view();
+                    T v = view != null ? local.from(view) : null;
+                    Entry e = v != null ? encode(key, v, codec, System.currentTimeMillis()) : null;
+                    main.post(() -> {
+                        if (v == null) fetchKey(st, key, codec, fetch); // bản sao không có -> hỏi thẳng server
+                        else deliver(st, key, store(key, e));
+                    });
+                }));
+            });
+        });
+    }
+
+    private <T> void fetchKey(Stat st, String key, Codec<T> codec, Fetch<T> fetch) {
+        fetch.start()
+                .continueWith(compute, t -> encode(key, t.getResult(), codec, System.currentTimeMillis()))
+                .addOnCompleteListener(t -> {
+                    if (!t.isSuccessful()) {
+                        List<Waiter> ws = inflight.remove(key);
+                        st.errors++;
+                        Exception err = t.getException();
+                        Log.d(TAG, "fetch " + key + " failed: " + (err != null ? err.getMessage() : "?"));
+                        if (ws == null) return;
+                        for (Waiter x : ws) {
+                            if (x.delivered == null) x.cb.onError(err); // đã có bản cache thì giữ nguyên, im lặng
+                        }
+                        return;
+                    }
+                    deliver(st, key, store(key, t.getResult()));
+                });
+    }
+
+    // Trả bản mới cho các lời gọi đang chờ key, bỏ qua lời gọi đã có đúng bản này từ cache
+    private void deliver(Stat st, String key, Entry fresh) {
+        List<Waiter> ws = inflight.remove(key);
+        if (ws == null || fresh == null) return;
+        boolean changed = false;
+        for (Waiter x : ws) {
+            if (fresh.json.equals(x.delivered)) continue; // cache vẫn đúng -> không trả lại
+            if (x.delivered != null) changed = true;
+            x.cb.onData(fresh.value, false);
+        }
+        if (changed) st.changed++;
+    }
+
+    // Mã hoá JSON (thread bất kỳ); null nếu không dựng được JSON (khi đó chỉ bỏ qua cache)
+    private static <T> Entry encode(String key, T value, Codec<T> codec, long fetchedAt) {
+        try {
+            return new Entry(value, codec.toJson(value).toString(), fetchedAt);
+        } catch (JSONException e) {
+            Log.d(TAG, "encode " + key + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Ghi bộ nhớ + đĩa (main thread)
+    private Entry store(String key, Entry e) {
+        if (e == null) return null;
+        memory.put(key, e);
+        io.execute(() -> writeDisk(key, e));
+        return e;
+    }
+
+    // ================== TẦNG ĐĨA ==================
+
+    private AtomicFile fileOf(String key) {
+        return new AtomicFile(new File(dir, key + ".json"));
+    }
+
+    private <T> Entry readDisk(String key, Codec<T> codec) {
+        long t0 = SystemClock.elapsedRealtime();
+        try (FileInputStream in = fileOf(key).openRead()) {
+            byte[] bytes = new byte[in.available()];
+            int n = in.read(bytes);
+            JSONObject o = new JSONObject(new String(bytes, 0, Math.max(n, 0), StandardCharsets.UTF_8));
+            String json = o.getString("data");
+            Entry e = new Entry(codec.fromJson(json), json, o.getLong("fetchedAt"));
+            Log.d(TAG, "disk " + key + " " + (SystemClock.elapsedRealtime() - t0) + "ms");
+            return e;
+        } catch (FileNotFoundException ignore) {
+            return null;
+        } catch (Exception e) {
+            Log.d(TAG, "disk read " + key + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry e) {
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+        AtomicFile file = fileOf(key);
+        FileOutputStream out = null;
+        try {
+            JSONObject o = new JSONObject();
+            o.put("fetchedAt", e.fetchedAt);
+            o.put("data", e.json);
+            out = file.startWrite();
+            out.write(o.toString().getBytes(StandardCharsets.UTF_8));
+            file.finishWrite(out);
+        } catch (IOException | JSONException ex) {
+            if (out != null) file.failWrite(out);
+            Log.d(TAG, "disk write " + key + " failed: " + ex.getMessage());
+        }
+    }
+
+    // ================== TẢI SERVER ==================
+
+    private Task<CategoryAlbums> fetchCategoryAlbums(String categoryId) {
+        return db.collection("categories").document(categoryId).get().continueWithTask(compute, t -> {
+            DocumentSnapshot doc = t.getResult();
+            if (!doc.exists()) throw notFound("categories/" + categoryId);
+            final String name = doc.getString("name");
+            final List<String> ids = albumIdsOf(doc);
+            if (ids.isEmpty()) return Tasks.forResult(new CategoryAlbums(name, Collections.emptyList()));
+
+            // whereIn giới hạn 10 id/lần -> chia lô, chạy song song
+            List<Task<QuerySnapshot>> parts = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += WHERE_IN_LIMIT) {
+                parts.add(db.collection("albums")
+                        .whereIn(FieldPath.documentId(), ids.subList(i, Math.min(i + WHERE_IN_LIMIT, ids.size())))
+                        .get());
+            }
+            return Tasks.whenAllSuccess(parts).continueWith(compute, all -> {
+                Map<String, Album> byId = new HashMap<>();
+                for (Object snap : all.getResult()) {
+                    for (DocumentSnapshot d : ((QuerySnapshot) snap).getDocuments()) {
+                        Album a = toAlbum(d);
+                        if (a != null) byId.put(d.getId(), a);
+                    }
+                }
+                // Ghép lại theo đúng thứ tự albumIds ban đầu
+                List<Album> ordered = new ArrayList<>();
+                for (String id : ids) {
+                    Album a = byId.get(id);
+                    if (a != null) ordered.add(a);
+                }
+                return new CategoryAlbums(name, ordered);
+            });
+        });
+    }
+
+    /**
+     * Chấp nhận nhiều tên field: albumIds / albums (List), albumId / idAlbum (String).
+     * Loại trùng, giữ thứ tự xuất hiện.
+     */
+    static List<String> albumIdsOf(DocumentSnapshot doc) {
+        List<String> out = new ArrayList<>();
+        addAll(out, doc.get("albumIds"));
+        addAll(out, doc.get("albums"));
+        addOne(out, doc.getString("albumId"));
+        addOne(out, doc.getString("idAlbum"));
+        return out;
+    }
+
+    private static void addAll(List<String> out, Object o) {
+        if (!(o instanceof List)) return;
+        for (Object e : (List<?>) o) if (e != null) addOne(out, String.valueOf(e));
+    }
+
+    private static void addOne(List<String> out, String id) {
+        if (id != null && !id.isEmpty() && !out.contains(id)) out.add(id);
+    }
+
+    private static List<Album> toAlbums(QuerySnapshot snap) {
+        List<Album> list = new ArrayList<>();
+        for (DocumentSnapshot d : snap.getDocuments()) {
+            Album a = toAlbum(d);
+            if (a != null) list.add(a);
+        }
+        return list;
+    }
+
+    private static Album toAlbum(DocumentSnapshot d) {
+        return FirestoreMapper.album(d);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Album> asAlbums(Object value) { return (List<Album>) value; }
+
+    private static FirebaseFirestoreException notFound(String path) {
+        return new FirebaseFirestoreException(path + " not found", FirebaseFirestoreException.Code.NOT_FOUND);
+    }
+
+    // ================== JSON ==================
+
+    private static final Codec<List<Album>> ALBUM_LIST = new Codec<List<Album>>() {
+        @Override public Object toJson(List<Album> v) throws JSONException { return CatalogJson.albums(v); }
+        @Override public List<Album> fromJson(String json) throws JSONException {
+            return CatalogJson.albumsOf(new JSONArray(json));
+        }
+    };
+
+    private static final Codec<Album> ALBUM_ONE = new Codec<Album>() {
+        @Override public Object toJson(Album v) throws JSONException { return CatalogJson.album(v); }
+        @Override public Album fromJson(String json) throws JSONException {
+            return CatalogJson.albumOf(new JSONObject(json));
+        }
+    };
+
+    private static final Codec<List<Category>> CATEGORY_LIST = new Codec<List<Category>>() {
+        @Override public Object toJson(List<Category> v) throws JSONException { return CatalogJson.categories(v); }
+        @Override public List<Category> fromJson(String json) throws JSONException {
+            return CatalogJson.categoriesOf(new JSONArray(json));
+        }
+    };
+
+    private static final Codec<CategoryAlbums> CATEGORY_ALBUMS_CODEC = new Codec<CategoryAlbums>() {
+        @Override public Object toJson(CategoryAlbums v) throws JSONException {
+            return new JSONObject().put("name", v.name).put("albums", CatalogJson.albums(v.albums));
+        }
+
+        @Override public CategoryAlbums fromJson(String json) throws JSONException {
+            JSONObject o = new JSONObject(json);
+            return new CategoryAlbums(o.optString("name", null), CatalogJson.albumsOf(o.getJSONArray("albums")));
+        }
+    };
+
+    private static final Codec<List<SongRemote>> SONG_LIST = new Codec<List<SongRemote>>() {
+        @Override public Object toJson(List<SongRemote> v) throws JSONException { return CatalogJson.songs(v); }
+        @Override public List<SongRemote> fromJson(String json) throws JSONException {
+            return CatalogJson.songsOf(new JSONArray(json));
+        }
+    };
+}
@@ -0,0 +1,336 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import com.google.firebase.Timestamp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * CatalogSnapshot:
+ * - Ảnh chụp nhị phân của bản sao catalog (album, thể loại, metadata bài hát, bảng chuỗi), ghi sau mỗi lần
+ *   CatalogSync đồng bộ và được ánh xạ bộ nhớ (mmap, chỉ đọc) khi mở app.
+ * - Đọc tại chỗ, không có bước parse: mở file chỉ kiểm tra header; mỗi lần đọc 1 album/bài mới giải mã đúng
+ *   các chuỗi của bản ghi đó -> Home/Search có dữ liệu để vẽ ngay khi khởi động lạnh, không chờ Firestore.
+ * - Bảng chuỗi khử trùng lặp (tác giả, URL ảnh bìa lặp lại chỉ lưu 1 lần).
+ *
+ * Định dạng (big-endian, mọi offset tính từ đầu file):
+ *   header  : magic, version, syncedAt(long), fullSyncAt(long),
+ *             số mark/album/thể loại/tham chiếu album/bài/chuỗi (6 int),
+ *             offset các vùng mark/album/thể loại/tham chiếu/bài/bảng offset chuỗi/dữ liệu chuỗi + độ dài file (8 int)
+ *   marks   : [tên, seconds(long), nanos]                     -> mốc updatedAt của CatalogSync
+ *   albums  : [id, title, author, coverUrl, songStart, songCount]  sắp theo id -> tìm nhị phân
+ *   cats    : [id, name, colorHex, coverUrl, refStart, refCount]   sắp theo id
+ *   catRefs : [albumId]                                       -> albumIds gốc của thể loại (giữ thứ tự)
+ *   songs   : [albumIdx, docId, id, title, author, url, coverUrl, trackNum]  liền nhau theo album, theo trackNum
+ *   strOffs : stringCount + 1 offset byte vào vùng dữ liệu chuỗi (UTF-8); chỉ số chuỗi -1 = null
+ *
+ * Lưu ý:
+ * - Đổi định dạng thì tăng VERSION: file cũ bị bỏ qua, lần sync sau đọc lại toàn bộ và ghi file mới.
+ * - Buffer ánh xạ không bao giờ bị sửa; mọi lần đọc dùng vị trí tuyệt đối -> an toàn đa luồng.
+ */
+final class CatalogSnapshot implements CatalogView {
+
+    private static final int MAGIC = 0x4D504353; // "MPCS"
+    static final int VERSION = 1;
+
+    private static final int HEADER = 80;
+    private static final int MARK_SIZE = 16, ALBUM_SIZE = 24, CAT_SIZE = 24, REF_SIZE = 4, SONG_SIZE = 32;
+
+    private final ByteBuffer buf;
+    private final long syncedAt, fullSyncAt;
+    private final int markCount, albumCount, catCount, songCount, stringCount;
+    private final int marksOff, albumsOff, catsOff, refsOff, songsOff, strOffsOff, strDataOff;
+
+    private CatalogSnapshot(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC) throw new IOException("bad magic");
+        if (buf.getInt(4) != VERSION) throw new IOException("version " + buf.getInt(4));
+        syncedAt = buf.getLong(8);
+        fullSyncAt = buf.getLong(16);
+        markCount = buf.getInt(24);
+        albumCount = buf.getInt(28);
+        catCount = buf.getInt(32);
+        songCount = buf.getInt(40);
+        stringCount = buf.getInt(44);
+        marksOff = buf.getInt(48);
+        albumsOff = buf.getInt(52);
+        catsOff = buf.getInt(56);
+        refsOff = buf.getInt(60);
+        songsOff = buf.getInt(64);
+        strOffsOff = buf.getInt(68);
+        strDataOff = buf.getInt(72);
+        if (buf.getInt(76) != buf.capacity()) throw new IOException("truncated");
+    }
+
+    /** Ánh xạ file (chỉ đọc); ném IOException nếu file hỏng / khác phiên bản. */
+    static CatalogSnapshot open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            // Vùng ánh xạ vẫn hợp lệ sau khi đóng channel
+            return new CatalogSnapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    // ================== ĐỌC ==================
+
+    @Override public long syncedAt() { return syncedAt; }
+
+    @Override public long fullSyncAt() { return fullSyncAt; }
+
+    int albumCount() { return albumCount; }
+
+    int categoryCount() { return catCount; }
+
+    int songCount() { return songCount; }
+
+    @Override public Map<String, Timestamp> marks() {
+        Map<String, Timestamp> out = new HashMap<>();
+        for (int i = 0; i < markCount; i++) {
+            int p = marksOff + i * MARK_SIZE;
+            out.put(string(buf.getInt(p)), new Timestamp(buf.getLong(p + 4), buf.getInt(p + 12)));
+        }
+        return out;
+    }
+
+    @Override public List<Album> albumList() {
+        List<Album> out = new ArrayList<>(albumCount);
+        for (int i = 0; i < albumCount; i++) out.add(albumAt(i));
+        return out;
+    }
+
+    @Override public Album album(String albumId) {
+        int i = find(albumsOff, ALBUM_SIZE, albumCount, albumId);
+        return i < 0 ? null : albumAt(i);
+    }
+
+    @Override public List<Category> categoryList() {
+        List<Category> out = new ArrayList<>(catCount);
+        for (int i = 0; i < catCount; i++) out.add(categoryAt(i));
+        return out;
+    }
+
+    @Override public CatalogRepository.CategoryAlbums categoryAlbums(String categoryId) {
+        int i = find(catsOff, CAT_SIZE, catCount, categoryId);
+        if (i < 0) return null;
+        int p = catsOff + i * CAT_SIZE;
+        List<Album> out = new ArrayList<>();
+        for (String id : refsAt(buf.getInt(p + 16), buf.getInt(p + 20))) {
+            Album a = album(id);
+            if (a != null) out.add(a);
+        }
+        return new CatalogRepository.CategoryAlbums(string(buf.getInt(p + 4)), out);
+    }
+
+    @Override public List<SongRemote> songsOf(String albumId) {
+        int i = find(albumsOff, ALBUM_SIZE, albumCount, albumId);
+        if (i < 0) return null;
+        int p = albumsOff + i * ALBUM_SIZE;
+        int start = buf.getInt(p + 16), count = buf.getInt(p + 20);
+        List<SongRemote> out = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) out.add(songAt(start + k));
+        return out;
+    }
+
+    @Override public void forEachSong(SongVisitor v) {
+        for (int i = 0; i < albumCount; i++) visitSongsOf(i, v);
+    }
+
+    @Override public void forEachSongOf(String albumId, SongVisitor v) {
+        int i = find(albumsOff, ALBUM_SIZE, albumCount, albumId);
+        if (i >= 0) visitSongsOf(i, v);
+    }
+
+    // Bài của album thứ i nằm liền nhau trong vùng songs, đã theo trackNum
+    private void visitSongsOf(int i, SongVisitor v) {
+        int p = albumsOff + i * ALBUM_SIZE;
+        String albumId = string(buf.getInt(p));
+        int start = buf.getInt(p + 16), count = buf.getInt(p + 20);
+        for (int k = 0; k < count; k++) v.visit(albumId, songDocIdAt(start + k), songAt(start + k));
+    }
+
+    Album albumAt(int i) {
+        int p = albumsOff + i * ALBUM_SIZE;
+        return new Album(string(buf.getInt(p)), string(buf.getInt(p + 4)),
+                string(buf.getInt(p + 8)), string(buf.getInt(p + 12)));
+    }
+
+    Category categoryAt(int i) {
+        int p = catsOff + i * CAT_SIZE;
+        return new Category(string(buf.getInt(p)), string(buf.getInt(p + 4)),
+                string(buf.getInt(p + 8)), string(buf.getInt(p + 12)));
+    }
+
+    List<String> categoryAlbumIdsAt(int i) {
+        int p = catsOff + i * CAT_SIZE;
+        return refsAt(buf.getInt(p + 16), buf.getInt(p + 20));
+    }
+
+    SongRemote songAt(int i) {
+        int p = songsOff + i * SONG_SIZE;
+        return new SongRemote(string(buf.getInt(p + 8)), string(buf.getInt(p + 12)), string(buf.getInt(p + 16)),
+                string(buf.getInt(p + 20)), string(buf.getInt(p + 24)), buf.getInt(p + 28));
+    }
+
+    String songAlbumIdAt(int i) {
+        int albumIdx = buf.getInt(songsOff + i * SONG_SIZE);
+        return string(buf.getInt(albumsOff + albumIdx * ALBUM_SIZE));
+    }
+
+    String songDocIdAt(int i) {
+        return string(buf.getInt(songsOff + i * SONG_SIZE + 4));
+    }
+
+    private List<String> refsAt(int start, int count) {
+        List<String> out = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) out.add(string(buf.getInt(refsOff + (start + k) * REF_SIZE)));
+        return out;
+    }
+
+    // Tìm nhị phân theo id (chuỗi đầu tiên của bản ghi); bảng đã sắp theo String.compareTo khi ghi
+    private int find(int base, int size, int count, String id) {
+        if (id == null) return -1;
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = string(buf.getInt(base + mid * size)).compareTo(id);
+            if (c == 0) return mid;
+            if (c < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    private String string(int idx) {
+        if (idx < 0 || idx >= stringCount) return null;
+        int start = buf.getInt(strOffsOff + idx * 4);
+        int end = buf.getInt(strOffsOff + (idx + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buf.get(strDataOff + start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ================== GHI ==================
+
+    /**
+     * Ghi bản sao ra out (caller đóng stream).
+     * Bài của album không còn trong bản sao bị bỏ; albumIds của thể loại giữ nguyên (kể cả id chưa có album).
+     */
+    static void write(CatalogSync.Replica r, OutputStream os) throws IOException {
+        Strings strings = new Strings();
+
+        // Album theo id (TreeMap) -> vị trí album dùng cho songStart / albumIdx
+        List<Album> albums = new ArrayList<>(r.albums.values());
+        Map<String, Integer> albumIndex = new HashMap<>();
+        for (int i = 0; i < albums.size(); i++) albumIndex.put(albums.get(i).getId(), i);
+
+        int[][] albumRows = new int[albums.size()][];
+        List<int[]> songRows = new ArrayList<>();
+        for (int i = 0; i < albums.size(); i++) {
+            Album a = albums.get(i);
+            int start = songRows.size();
+            final int albumIdx = i;
+            // Album không bị đụng tới đọc thẳng từ snapshot gốc của Replica (không qua map trung gian)
+            r.forEachSongOf(a.getId(), (albumId, docId, s) ->
+                    songRows.add(new int[]{albumIdx, strings.add(docId), strings.add(s.getId()),
+                            strings.add(s.getTitle()), strings.add(s.getAuthor()), strings.add(s.getUrl()),
+                            strings.add(s.getCoverUrl()), s.getTrackNum()}));
+            albumRows[i] = new int[]{strings.add(a.getId()), strings.add(a.getTitle()), strings.add(a.getAuthor()),
+                    strings.add(a.getCoverUrl()), start, songRows.size() - start};
+        }
+
+        List<int[]> catRows = new ArrayList<>();
+        List<Integer> refs = new ArrayList<>();
+        for (CatalogSync.CategoryRecord c : r.categories.values()) {
+            int start = refs.size();
+            for (String id : c.albumIds) refs.add(strings.add(id));
+            Category cat = c.category;
+            catRows.add(new int[]{strings.add(cat.getId()), strings.add(cat.getName()), strings.add(cat.getColorHex()),
+                    strings.add(cat.getCoverUrl()), start, refs.size() - start});
+        }
+
+        List<Map.Entry<String, Timestamp>> marks = new ArrayList<>(r.marks.entrySet());
+        int[] markNames = new int[marks.size()];
+        for (int i = 0; i < marks.size(); i++) markNames[i] = strings.add(marks.get(i).getKey());
+
+        // Tính offset các vùng
+        int marksOff = HEADER;
+        int albumsOff = marksOff + marks.size() * MARK_SIZE;
+        int catsOff = albumsOff + albums.size() * ALBUM_SIZE;
+        int refsOff = catsOff + catRows.size() * CAT_SIZE;
+        int songsOff = refsOff + refs.size() * REF_SIZE;
+        int strOffsOff = songsOff + songRows.size() * SONG_SIZE;
+        int strDataOff = strOffsOff + (strings.size() + 1) * 4;
+        long total = (long) strDataOff + strings.bytes;
+        if (total > Integer.MAX_VALUE) throw new IOException("snapshot too large");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(r.syncedAt);
+        out.writeLong(r.fullSyncAt);
+        out.writeInt(marks.size());
+        out.writeInt(albums.size());
+        out.writeInt(catRows.size());
+        out.writeInt(refs.size());
+        out.writeInt(songRows.size());
+        out.writeInt(strings.size());
+        for (int off : new int[]{marksOff, albumsOff, catsOff, refsOff, songsOff, strOffsOff, strDataOff, (int) total}) {
+            out.writeInt(off);
+        }
+
+        for (int i = 0; i < marks.size(); i++) {
+            Timestamp t = marks.get(i).getValue();
+            out.writeInt(markNames[i]);
+            out.writeLong(t.getSeconds());
+            out.writeInt(t.getNanoseconds());
+        }
+        for (int[] row : albumRows) for (int v : row) out.writeInt(v);
+        for (int[] row : catRows) for (int v : row) out.writeInt(v);
+        for (int ref : refs) out.writeInt(ref);
+        for (int[] row : songRows) for (int v : row) out.writeInt(v);
+
+        int pos = 0;
+        out.writeInt(0);
+        for (byte[] b : strings.encoded) {
+            pos += b.length;
+            out.writeInt(pos);
+        }
+        for (byte[] b : strings.encoded) out.write(b);
+        out.flush();
+    }
+
+    // Bảng chuỗi khử trùng lặp (null -> -1)
+    private static final class Strings {
+        final Map<String, Integer> index = new HashMap<>();
+        final List<byte[]> encoded = new ArrayList<>();
+        long bytes = 0;
+
+        int add(String s) {
+            if (s == null) return -1;
+            Integer i = index.get(s);
+            if (i != null) return i;
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            index.put(s, encoded.size());
+            encoded.add(b);
+            bytes += b.length;
+            return encoded.size() - 1;
+        }
+
+        int size() { return encoded.size(); }
+    }
+}
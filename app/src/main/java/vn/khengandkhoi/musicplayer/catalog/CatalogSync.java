@@ -0,0 +1,503 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import vn.khengandkhoi.musicplayer.AppExecutors;
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.FirestoreMapper;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * CatalogSync:
+ * - Đồng bộ tăng dần (delta sync) bản sao catalog trên máy: albums, categories, collectionGroup("songs").
+ * - Mỗi collection giữ 1 mốc (high-water mark) = updatedAt lớn nhất đã thấy; lần sau chỉ query
+ *   whereGreaterThan("updatedAt", mốc) -> khởi động ấm chỉ tốn vài lượt đọc (3 query rỗng = 3 lượt, cộng số
+ *   document thực sự đổi) dù catalog lớn cỡ nào.
+ * - Xoá = tombstone: document được đánh dấu "deleted": true (kèm updatedAt mới) thay vì xoá thật
+ *   -> query delta thấy và gỡ khỏi bản sao. Xoá album thì gỡ luôn các bài của album đó.
+ * - Lần đầu (chưa có mốc) hoặc quá FULL_RESYNC_MS kể từ lần đồng bộ toàn bộ gần nhất -> đọc lại toàn bộ
+ *   (bắt được document bị xoá thật hoặc thiếu updatedAt).
+ * - Lần đầu mà APK có kèm data bundle (CatalogBundle) -> bản sao đầu tiên lấy từ bundle (0 lượt đọc server),
+ *   mốc = updatedAt lớn nhất trong bundle, rồi chỉ delta phần đổi sau lúc dựng bundle.
+ * - Bản sao + mốc lưu thành snapshot nhị phân filesDir/catalog/catalog.snap (CatalogSnapshot, AtomicFile),
+ *   ánh xạ bộ nhớ khi mở app; CatalogRepository và SongSearchEngine đọc từ view() khi đã có
+ *   -> khởi động lạnh hiện ngay dữ liệu cục bộ, tìm kiếm không cần listener Firestore riêng.
+ * - Sau mỗi lần đồng bộ làm bản sao đổi, Listener nhận danh sách album bị đụng tới (null = đổi toàn bộ)
+ *   -> index tìm kiếm chỉ cập nhật các album đó.
+ * - Chạy cơ hội (opportunistic): requestSync() gọi khi app lên foreground / khi cache hết hạn,
+ *   bỏ qua nếu vừa đồng bộ trong MIN_INTERVAL_MS hoặc đang chạy.
+ *
+ * Lưu ý:
+ * - Quy ước phía dữ liệu: mọi lần ghi album/thể loại/bài hát phải đặt updatedAt = serverTimestamp()
+ *   (dữ liệu cũ: chạy `./gradlew :tools:stampUpdatedAt`), xoá bằng deleted = true.
+ * - Query delta trên collectionGroup("songs") cần index 1 trường updatedAt phạm vi collection group
+ *   (Firestore không tự tạo cho collection group).
+ * - Toàn bộ đọc/ghi chạy tuần tự trên 1 hàng đợi nền (lane io của AppExecutors, Tasks.await). Snapshot là nguồn dữ liệu duy nhất:
+ *   Replica chỉ phủ phần delta (album/thể loại + bài của album bị đụng tới) lên snapshot lúc đồng bộ rồi bỏ đi;
+ *   view() (snapshot hoặc Replica bất biến) đọc được từ thread nào cũng được.
+ */
+public final class CatalogSync {
+
+    private static final String TAG = "CatalogSync";
+
+    /** Trường mốc thời gian sửa đổi cuối trên mọi document catalog. */
+    public static final String UPDATED_AT = "updatedAt";
+    /** Trường tombstone: true = document đã bị xoá (mềm). */
+    public static final String DELETED = "deleted";
+
+    private static final String ALBUMS = "albums", CATEGORIES = "categories", SONGS = "songs";
+
+    private static final int PAGE = 500;
+    private static final long MIN_INTERVAL_MS = 60_000L;
+    private static final long FULL_RESYNC_MS = 7L * 24 * 60 * 60_000L;
+
+    /** Thể loại + danh sách album id (đúng thứ tự trong document). */
+    static final class CategoryRecord {
+        final Category category;
+        final List<String> albumIds;
+
+        CategoryRecord(Category category, List<String> albumIds) {
+            this.category = category;
+            this.albumIds = albumIds;
+        }
+    }
+
+    /**
+     * Bản sao catalog dùng khi áp delta (chỉ dựng trên thread nền khi đồng bộ), bất biến sau khi dựng xong.
+     * Album + thể loại giữ đầy đủ (nhỏ); bài hát chỉ giữ các album bị đụng tới, album còn lại đọc thẳng
+     * từ snapshot gốc -> snapshot là nguồn dữ liệu duy nhất, không chép toàn bộ bài ra map mỗi lần sync.
+     */
+    static final class Replica implements CatalogView {
+        final CatalogSnapshot base;                                // null = không có bài nào ngoài songs
+        final TreeMap<String, Album> albums;                       // id -> album (thứ tự id như Firestore)
+        final TreeMap<String, CategoryRecord> categories;
+        final Map<String, TreeMap<String, SongRemote>> songs;      // albumId -> songDocId -> bài (đè lên base)
+        final Map<String, Timestamp> marks;                        // collection -> mốc updatedAt
+        final long syncedAt, fullSyncAt;                           // giờ máy (ms)
+
+        Replica(CatalogSnapshot base, TreeMap<String, Album> albums, TreeMap<String, CategoryRecord> categories,
+                Map<String, TreeMap<String, SongRemote>> songs, Map<String, Timestamp> marks,
+                long syncedAt, long fullSyncAt) {
+            this.base = base;
+            this.albums = albums;
+            this.categories = categories;
+            this.songs = songs;
+            this.marks = marks;
+            this.syncedAt = syncedAt;
+            this.fullSyncAt = fullSyncAt;
+        }
+
+        /** Bản sao trên nền snapshot (trước khi áp delta): chỉ đọc album + thể loại, bài vẫn nằm trong snapshot. */
+        static Replica of(CatalogSnapshot snap) {
+            TreeMap<String, Album> albums = new TreeMap<>();
+            for (int i = 0; i < snap.albumCount(); i++) {
+                Album a = snap.albumAt(i);
+                albums.put(a.getId(), a);
+            }
+            TreeMap<String, CategoryRecord> cats = new TreeMap<>();
+            for (int i = 0; i < snap.categoryCount(); i++) {
+                Category c = snap.categoryAt(i);
+                cats.put(c.getId(), new CategoryRecord(c, snap.categoryAlbumIdsAt(i)));
+            }
+            return new Replica(snap, albums, cats, new HashMap<>(), snap.marks(), snap.syncedAt(), snap.fullSyncAt());
+        }
+
+        @Override public long syncedAt() { return syncedAt; }
+
+        @Override public long fullSyncAt() { return fullSyncAt; }
+
+        @Override public Map<String, Timestamp> marks() { return marks; }
+
+        @Override public List<Album> albumList() { return new ArrayList<>(albums.values()); }
+
+        @Override public Album album(String albumId) { return albums.get(albumId); }
+
+        @Override public List<Category> categoryList() {
+            List<Category> out = new ArrayList<>(categories.size());
+            for (CategoryRecord r : categories.values()) out.add(r.category);
+            return out;
+        }
+
+        @Override public CatalogRepository.CategoryAlbums categoryAlbums(String categoryId) {
+            CategoryRecord r = categories.get(categoryId);
+            if (r == null) return null;
+            List<Album> out = new ArrayList<>(r.albumIds.size());
+            for (String id : r.albumIds) {
+                Album a = albums.get(id);
+                if (a != null) out.add(a);
+            }
+            return new CatalogRepository.CategoryAlbums(r.category.getName(), out);
+        }
+
+        @Override public List<SongRemote> songsOf(String albumId) {
+            if (!albums.containsKey(albumId)) return null;
+            List<SongRemote> out = new ArrayList<>();
+            forEachSongOf(albumId, (a, docId, s) -> out.add(s));
+            return out;
+        }
+
+        @Override public void forEachSong(SongVisitor v) {
+            for (String albumId : albums.keySet()) forEachSongOf(albumId, v);
+        }
+
+        @Override public void forEachSongOf(String albumId, SongVisitor v) {
+            if (!albums.containsKey(albumId)) return;
+            TreeMap<String, SongRemote> m = songs.get(albumId);
+            if (m == null) {
+                if (base != null) base.forEachSongOf(albumId, v);
+                return;
+            }
+            for (Map.Entry<String, SongRemote> e : byTrackNum(m)) v.visit(albumId, e.getKey(), e.getValue());
+        }
+    }
+
+    // songDocId -> bài, sắp theo trackNum (cùng trackNum giữ thứ tự docId) - thứ tự chung của songsOf và snapshot
+    static List<Map.Entry<String, SongRemote>> byTrackNum(TreeMap<String, SongRemote> byDoc) {
+        List<Map.Entry<String, SongRemote>> list = new ArrayList<>(byDoc.entrySet());
+        Collections.sort(list, (x, y) -> Integer.compare(x.getValue().getTrackNum(), y.getValue().getTrackNum()));
+        return list;
+    }
+
+    /**
+     * Nhận thông báo bản sao đổi (main thread).
+     * albumIds: các album có document album hoặc bài hát vừa đổi (kể cả bị xoá);
+     * null = có thể đổi toàn bộ (đồng bộ toàn bộ / nạp từ bundle).
+     */
+    public interface Listener { void onCatalogChanged(Set<String> albumIds); }
+
+    private static volatile CatalogSync instance;
+
+    public static CatalogSync get(Context context) {
+        if (instance == null) {
+            synchronized (CatalogSync.class) {
+                if (instance == null) instance = new CatalogSync(context.getApplicationContext(), FirebaseFirestore.getInstance());
+            }
+        }
+        return instance;
+    }
+
+    private final FirebaseFirestore db;
+    private final CatalogBundle bundle;
+    private final AtomicFile file;
+    // Tuần tự: phần lớn thời gian là chờ Tasks.await -> lane io
+    private final Executor worker = AppExecutors.get().serial(AppExecutors.get().io(), "catalog-sync");
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private volatile CatalogView view;
+    private boolean opened = false;          // đã thử mở snapshot (khoá bởi this)
+    private Replica replica;                 // chỉ thread nền: bản sao map khi chưa ghi được snapshot
+
+    // Chỉ truy cập trên main thread
+    private final List<Listener> listeners = new ArrayList<>();
+    private List<Runnable> waiting;          // != null: đang đồng bộ
+    private long lastAttempt = 0;            // elapsedRealtime của lần đồng bộ gần nhất
+
+    // Thống kê (thread nền)
+    private long syncs = 0, reads = 0;
+
+    private CatalogSync(Context app, FirebaseFirestore db) {
+        this(db, new CatalogBundle(app, db), new File(app.getFilesDir(), "catalog"));
+    }
+
+    /** Firestore / bundle / thư mục riêng (benchmark androidTest dựng bản "mới cài" không đụng dữ liệu của app). */
+    CatalogSync(FirebaseFirestore db, CatalogBundle bundle, File dir) {
+        this.db = db;
+        this.bundle = bundle;
+        this.file = new AtomicFile(new File(dir, "catalog.snap"));
+        worker.execute(() -> {
+            ensureOpen();
+            bundle.available(); // kiểm tra asset sẵn trên thread nền
+            new AtomicFile(new File(dir, "replica.json")).delete(); // định dạng JSON cũ
+        });
+    }
+
+    /**
+     * Bản sao hiện tại; null nếu chưa từng đồng bộ xong.
+     * Lần gọi đầu ánh xạ snapshot ngay trên thread gọi (chỉ đọc header, vài ms) -> không gọi trên main thread.
+     */
+    public CatalogView view() {
+        if (view == null) ensureOpen();
+        return view;
+    }
+
+    private synchronized void ensureOpen() {
+        if (opened) return;
+        opened = true;
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            CatalogSnapshot snap = CatalogSnapshot.open(file.getBaseFile());
+            if (view == null) view = snap;
+            Log.d(TAG, "snapshot mapped: " + snap.albumCount() + " albums, " + snap.songCount() + " songs, "
+                    + (SystemClock.elapsedRealtime() - t0) + "ms");
+        } catch (FileNotFoundException ignore) {
+            // chưa đồng bộ lần nào
+        } catch (IOException e) {
+            Log.d(TAG, "snapshot open failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chưa có bản sao nhưng có data bundle để nạp -> lần đồng bộ đầu sẽ nhanh và gần như không tốn lượt đọc,
+     * nên chờ nó thay vì tải riêng từng key.
+     * Như view(): có thể ánh xạ snapshot / mở asset ngay trên thread gọi -> không gọi trên main thread.
+     */
+    boolean seedsFromBundle() {
+        return view == null && bundle.available();
+    }
+
+    /** Đăng ký (gọi trên main thread) nhận thông báo mỗi khi 1 lần đồng bộ làm bản sao thay đổi. */
+    public void addListener(Listener l) { listeners.add(l); }
+
+    /** Đồng bộ nếu đã đủ lâu kể từ lần trước (gọi khi app lên foreground). */
+    public void syncSoon() { requestSync(null); }
+
+    /**
+     * Yêu cầu 1 lần đồng bộ; done (có thể null) chạy trên main thread khi xong
+     * -> ngay lập tức nếu vừa đồng bộ trong MIN_INTERVAL_MS, hoặc cùng lúc với lần đang chạy.
+     */
+    public void requestSync(Runnable done) {
+        if (waiting != null) {
+            if (done != null) waiting.add(done);
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (lastAttempt != 0 && now - lastAttempt < MIN_INTERVAL_MS) {
+            if (done != null) done.run();
+            return;
+        }
+        lastAttempt = now;
+        waiting = new ArrayList<>();
+        if (done != null) waiting.add(done);
+        worker.execute(this::runSync);
+    }
+
+    // ================== ĐỒNG BỘ (thread nền) ==================
+
+    private void runSync() {
+        long t0 = SystemClock.elapsedRealtime();
+        long reads0 = reads;
+        boolean changed = false;
+        boolean all = false;                        // đổi toàn bộ (bundle / đồng bộ toàn bộ)
+        Set<String> albumIds = new HashSet<>();     // album bị đụng tới khi chỉ áp delta
+        try {
+            CatalogView old = view();
+            if (old == null && seedFromBundle()) {
+                changed = all = true;
+                old = view();
+            }
+            long now = System.currentTimeMillis();
+            boolean full = old == null || now - old.fullSyncAt() > FULL_RESYNC_MS;
+            Map<String, Timestamp> marks = full ? new HashMap<>() : new HashMap<>(old.marks());
+
+            // Đọc delta trước; không có gì đổi thì khỏi dựng lại bản sao map
+            List<DocumentSnapshot> albumDocs = new ArrayList<>(), catDocs = new ArrayList<>(), songDocs = new ArrayList<>();
+            marks.put(ALBUMS, pull(db.collection(ALBUMS), marks.get(ALBUMS), albumDocs));
+            marks.put(CATEGORIES, pull(db.collection(CATEGORIES), marks.get(CATEGORIES), catDocs));
+            marks.put(SONGS, pull(db.collectionGroup(SONGS), marks.get(SONGS), songDocs));
+            int touched = albumDocs.size() + catDocs.size() + songDocs.size();
+            if (full || touched > 0) {
+                changed = true;
+                if (full) all = true;
+                for (DocumentSnapshot d : albumDocs) albumIds.add(d.getId());
+                for (DocumentSnapshot d : songDocs) {
+                    DocumentReference album = d.getReference().getParent().getParent();
+                    if (album != null) albumIds.add(album.getId());
+                }
+                publish(apply(full ? null : current(), albumDocs, catDocs, songDocs, marks, now,
+                        full ? now : old.fullSyncAt()));
+            }
+            syncs++;
+            Log.d(TAG, (full ? "full" : "delta") + " sync: " + touched + " docs, "
+                    + (reads - reads0) + " reads, " + (SystemClock.elapsedRealtime() - t0) + "ms"
+                    + " (syncs=" + syncs + " totalReads=" + reads + ")");
+        } catch (Exception e) {
+            // Offline / lỗi quyền: giữ bản sao + mốc cũ, lần sau thử lại
+            Log.d(TAG, "sync failed: " + e.getMessage());
+        }
+
+        final boolean notify = changed;
+        final Set<String> changedAlbums = all ? null : Collections.unmodifiableSet(albumIds);
+        main.post(() -> {
+            List<Runnable> done = waiting;
+            waiting = null;
+            if (notify) for (Listener l : listeners) l.onCatalogChanged(changedAlbums);
+            if (done != null) for (Runnable r : done) r.run();
+        });
+    }
+
+    /**
+     * Bản sao đầu tiên từ data bundle (đọc cache cục bộ, không tốn lượt đọc server).
+     * Bundle là ảnh chụp đầy đủ lúc dựng -> tính như 1 lần đồng bộ toàn bộ; document bị xoá thật sau đó
+     * được dọn ở lần đọc toàn bộ kế tiếp (FULL_RESYNC_MS).
+     */
+    private boolean seedFromBundle() {
+        long t0 = SystemClock.elapsedRealtime();
+        List<DocumentSnapshot> albumDocs = new ArrayList<>(), catDocs = new ArrayList<>(), songDocs = new ArrayList<>();
+        if (!bundle.read(albumDocs, catDocs, songDocs)) return false;
+        Map<String, Timestamp> marks = new HashMap<>();
+        marks.put(ALBUMS, maxUpdatedAt(albumDocs));
+        marks.put(CATEGORIES, maxUpdatedAt(catDocs));
+        marks.put(SONGS, maxUpdatedAt(songDocs));
+        long now = System.currentTimeMillis();
+        publish(apply(null, albumDocs, catDocs, songDocs, marks, now, now));
+        Log.d(TAG, "seeded from bundle: " + (albumDocs.size() + catDocs.size() + songDocs.size()) + " docs, "
+                + (SystemClock.elapsedRealtime() - t0) + "ms");
+        return true;
+    }
+
+    // Áp các document (theo thứ tự, tombstone = gỡ) lên base (null = bản sao rỗng) thành bản sao mới
+    private static Replica apply(Replica base, List<DocumentSnapshot> albumDocs, List<DocumentSnapshot> catDocs,
+                                 List<DocumentSnapshot> songDocs, Map<String, Timestamp> marks,
+                                 long syncedAt, long fullSyncAt) {
+        CatalogSnapshot snap = base == null ? null : base.base;
+        TreeMap<String, Album> albums = base == null ? new TreeMap<>() : new TreeMap<>(base.albums);
+        TreeMap<String, CategoryRecord> cats = base == null ? new TreeMap<>() : new TreeMap<>(base.categories);
+        Map<String, TreeMap<String, SongRemote>> songs = base == null ? new HashMap<>() : new HashMap<>(base.songs);
+
+        for (DocumentSnapshot d : albumDocs) {
+            if (isDeleted(d)) {
+                albums.remove(d.getId());
+                songs.put(d.getId(), new TreeMap<>()); // che bài cũ trong snapshot gốc
+                continue;
+            }
+            Album a = FirestoreMapper.album(d);
+            if (a != null) albums.put(d.getId(), a);
+        }
+
+        for (DocumentSnapshot d : catDocs) {
+            if (isDeleted(d)) { cats.remove(d.getId()); continue; }
+            Category c = FirestoreMapper.category(d);
+            if (c != null) cats.put(d.getId(), new CategoryRecord(c, CatalogRepository.albumIdsOf(d)));
+        }
+
+        // Copy-on-write map bài của album nào bị đụng tới (bản sao cũ giữ nguyên)
+        Map<String, TreeMap<String, SongRemote>> copied = new HashMap<>();
+        for (DocumentSnapshot d : songDocs) {
+            DocumentReference album = d.getReference().getParent().getParent();
+            if (album == null) continue;
+            String albumId = album.getId();
+            TreeMap<String, SongRemote> m = copied.get(albumId);
+            if (m == null) {
+                TreeMap<String, SongRemote> prev = songs.get(albumId);
+                TreeMap<String, SongRemote> copy = prev == null ? new TreeMap<>() : new TreeMap<>(prev);
+                // Album chưa nằm trong phần đè -> chép bài của nó từ snapshot gốc (chỉ album này)
+                if (prev == null && snap != null) snap.forEachSongOf(albumId, (a, docId, song) -> copy.put(docId, song));
+                m = copy;
+                copied.put(albumId, m);
+                songs.put(albumId, m);
+            }
+            if (isDeleted(d)) { m.remove(d.getId()); continue; }
+            SongRemote s = FirestoreMapper.song(d);
+            if (s != null) m.put(d.getId(), s);
+        }
+
+        return new Replica(snap, albums, cats, songs, marks, syncedAt, fullSyncAt);
+    }
+
+    // updatedAt lớn nhất trong docs (không document nào có -> epoch, như pull())
+    private static Timestamp maxUpdatedAt(List<DocumentSnapshot> docs) {
+        Timestamp max = new Timestamp(0, 0);
+        for (DocumentSnapshot d : docs) {
+            Timestamp ts = d.getTimestamp(UPDATED_AT);
+            if (ts != null && ts.compareTo(max) > 0) max = ts;
+        }
+        return max;
+    }
+
+    private static boolean isDeleted(DocumentSnapshot d) {
+        return Boolean.TRUE.equals(d.getBoolean(DELETED));
+    }
+
+    /**
+     * Đọc các document của base đã đổi từ mốc mark (null = đọc toàn bộ, bỏ qua tombstone) vào out,
+     * theo trang PAGE document.
+     * @return mốc mới (updatedAt lớn nhất đã thấy; đọc toàn bộ mà không document nào có updatedAt -> epoch)
+     */
+    private Timestamp pull(Query base, Timestamp mark, List<DocumentSnapshot> out) throws Exception {
+        // ">" là đủ: lần đọc trước đã thấy mọi commit có mốc <= mark, commit sau đó luôn có mốc lớn hơn
+        Query q = mark == null
+                ? base.orderBy(FieldPath.documentId())
+                : base.whereGreaterThan(UPDATED_AT, mark).orderBy(UPDATED_AT);
+        Timestamp max = mark;
+        DocumentSnapshot last = null;
+        while (true) {
+            Query page = q.limit(PAGE);
+            if (last != null) page = page.startAfter(last);
+            // Source.SERVER: không để cache cục bộ (có thể cũ) đẩy mốc lên
+            QuerySnapshot snap = Tasks.await(page.get(Source.SERVER));
+            List<DocumentSnapshot> docs = snap.getDocuments();
+            reads += Math.max(1, docs.size()); // query rỗng vẫn tính 1 lượt đọc
+            for (DocumentSnapshot d : docs) {
+                Timestamp ts = d.getTimestamp(UPDATED_AT);
+                if (ts != null && (max == null || ts.compareTo(max) > 0)) max = ts;
+                if (mark == null && isDeleted(d)) continue;
+                out.add(d);
+            }
+            if (docs.size() < PAGE) break;
+            last = docs.get(docs.size() - 1);
+        }
+        return max != null ? max : new Timestamp(0, 0);
+    }
+
+    // ================== SNAPSHOT ==================
+
+    // Bản sao để áp delta: giữ lại từ lần trước (nếu chưa ghi được snapshot) hoặc phủ lên snapshot hiện tại
+    private Replica current() {
+        if (replica != null) return replica;
+        CatalogView v = view();
+        if (v instanceof CatalogSnapshot) return Replica.of((CatalogSnapshot) v);
+        return null;
+    }
+
+    // Ghi snapshot mới rồi ánh xạ lại; lỗi ghi -> tạm phục vụ từ bản sao map
+    private void publish(Replica next) {
+        long t0 = SystemClock.elapsedRealtime();
+        FileOutputStream out = null;
+        try {
+            File dir = file.getBaseFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("mkdirs " + dir);
+            out = file.startWrite();
+            CatalogSnapshot.write(next, out);
+            file.finishWrite(out);
+            out = null;
+            view = CatalogSnapshot.open(file.getBaseFile());
+            replica = null;
+            Log.d(TAG, "snapshot written: " + file.getBaseFile().length() + " bytes, "
+                    + (SystemClock.elapsedRealtime() - t0) + "ms");
+        } catch (IOException e) {
+            if (out != null) file.failWrite(out);
+            Log.d(TAG, "snapshot write failed: " + e.getMessage());
+            view = replica = next;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import com.google.firebase.Timestamp;
+
+import java.util.List;
+import java.util.Map;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * CatalogView:
+ * - Góc nhìn chỉ đọc lên bản sao catalog đã đồng bộ (CatalogSnapshot ánh xạ từ file, hoặc Replica trong bộ nhớ)
+ *   -> CatalogRepository dựng mọi key từ đây mà không cần biết dữ liệu nằm ở đâu.
+ * - SongSearchEngine duyệt bài qua forEachSong()/forEachSongOf() để dựng index từ cùng bản sao,
+ *   không tự nghe Firestore.
+ * - Các hàm trả null khi bản sao không có mục tương ứng; đọc được từ thread bất kỳ.
+ */
+public interface CatalogView {
+
+    /** Nhận từng bài khi duyệt bản sao (docId = id document trong albums/{albumId}/songs). */
+    interface SongVisitor { void visit(String albumId, String docId, SongRemote song); }
+
+    /** Giờ máy (ms) của lần đồng bộ tạo ra bản sao này. */
+    long syncedAt();
+
+    /** Giờ máy (ms) của lần đọc toàn bộ gần nhất (CatalogSync). */
+    long fullSyncAt();
+
+    /** Mốc updatedAt theo collection (CatalogSync). */
+    Map<String, Timestamp> marks();
+
+    List<Album> albumList();
+
+    Album album(String albumId);
+
+    List<Category> categoryList();
+
+    /** Album theo thứ tự albumIds của thể loại. */
+    CatalogRepository.CategoryAlbums categoryAlbums(String categoryId);
+
+    /** Bài của album theo trackNum (album không có bài -> danh sách rỗng). */
+    List<SongRemote> songsOf(String albumId);
+
+    /** Duyệt mọi bài của các album hiện có (theo album, trong album theo trackNum). */
+    void forEachSong(SongVisitor v);
+
+    /** Duyệt bài của 1 album theo trackNum (album không có -> không gọi v lần nào). */
+    void forEachSongOf(String albumId, SongVisitor v);
+}
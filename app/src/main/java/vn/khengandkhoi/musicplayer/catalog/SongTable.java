@@ -0,0 +1,82 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import java.util.Arrays;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * SongTable:
+ * - Bảng bài hát dạng cột (struct-of-arrays) cho catalog lớn (~100k bài): mỗi bài là 1 dòng int,
+ *   mỗi thuộc tính là 1 mảng int song song; chuỗi (id, tiêu đề, tác giả, URL, ảnh bìa, albumId)
+ *   chỉ là id trong StringPool dùng chung -> tác giả / ảnh bìa / albumId lặp lại không tốn thêm chuỗi.
+ * - Không giữ object SongRemote nào: song(row) dựng 1 SongRemote mới khi cần đưa cho adapter / player,
+ *   nên chỉ các bài đang hiển thị (1 trang kết quả) mới tồn tại dưới dạng object.
+ *
+ * Lưu ý:
+ * - Chỉ thêm dòng, không xoá: chủ sở hữu (SongIndex) tự đánh dấu dòng chết và dựng bảng mới khi dọn.
+ * - Không thread-safe: dùng trên 1 thread duy nhất (giống SongIndex).
+ */
+public final class SongTable {
+
+    private final StringPool pool;
+    private int size = 0;
+    // Cột chuỗi: id trong pool (StringPool.NULL = không có)
+    private int[] ids = new int[256];
+    private int[] titles = new int[256];
+    private int[] authors = new int[256];
+    private int[] urls = new int[256];
+    private int[] covers = new int[256];
+    private int[] albumIds = new int[256];
+    // Cột số
+    private int[] trackNums = new int[256];
+
+    public SongTable(StringPool pool) {
+        this.pool = pool;
+    }
+
+    /** Thêm 1 bài. @return số dòng của bài (0, 1, 2... theo thứ tự thêm) */
+    public int add(String albumId, SongRemote s) {
+        if (size == ids.length) grow();
+        int row = size++;
+        ids[row] = pool.intern(s.getId());
+        titles[row] = pool.intern(s.getTitle());
+        authors[row] = pool.intern(s.getAuthor());
+        urls[row] = pool.intern(s.getUrl());
+        covers[row] = pool.intern(s.getCoverUrl());
+        albumIds[row] = pool.intern(albumId);
+        trackNums[row] = s.getTrackNum();
+        return row;
+    }
+
+    /** Bài ở dòng row dưới dạng object (tạo mới mỗi lần gọi). */
+    public SongRemote song(int row) {
+        return new SongRemote(pool.get(ids[row]), pool.get(titles[row]), pool.get(authors[row]),
+                pool.get(urls[row]), pool.get(covers[row]), trackNums[row]);
+    }
+
+    public String title(int row) { return pool.get(titles[row]); }
+
+    public String author(int row) { return pool.get(authors[row]); }
+
+    public String albumId(int row) { return pool.get(albumIds[row]); }
+
+    public StringPool pool() { return pool; }
+
+    public int size() { return size; }
+
+    /** Ước lượng bộ nhớ heap của bảng, tính cả pool (byte). */
+    public long heapBytes() {
+        return 7L * 4 * ids.length + pool.heapBytes();
+    }
+
+    private void grow() {
+        int cap = size * 2;
+        ids = Arrays.copyOf(ids, cap);
+        titles = Arrays.copyOf(titles, cap);
+        authors = Arrays.copyOf(authors, cap);
+        urls = Arrays.copyOf(urls, cap);
+        covers = Arrays.copyOf(covers, cap);
+        albumIds = Arrays.copyOf(albumIds, cap);
+        trackNums = Arrays.copyOf(trackNums, cap);
+    }
+}
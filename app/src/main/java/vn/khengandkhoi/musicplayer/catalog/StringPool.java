@@ -0,0 +1,126 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * StringPool:
+ * - Kho chuỗi không trùng lặp: mỗi chuỗi khác nhau chỉ lưu 1 lần, được gọi bằng id int (0, 1, 2...).
+ * - Toàn bộ nội dung nằm liền trong 1 mảng byte UTF-8 (start của chuỗi thứ i = offsets[i])
+ *   -> không có object String / mảng con nào cho từng chuỗi; tên tác giả, URL ảnh bìa lặp lại hàng nghìn lần
+ *   chỉ tốn 1 id 4 byte mỗi lần.
+ * - Tra cứu chuỗi -> id bằng bảng băm địa chỉ mở (mảng int), không boxing, không HashMap.Entry.
+ *
+ * Lưu ý:
+ * - Chỉ thêm, không xoá: chuỗi không còn ai dùng vẫn nằm trong pool tới khi chủ sở hữu dựng pool mới
+ *   (SongIndex dựng lại khi compact()).
+ * - get() tạo String mới mỗi lần gọi -> chỉ gọi cho phần tử thật sự hiển thị / so khớp.
+ * - Không thread-safe.
+ */
+public final class StringPool {
+
+    /** Id của null (intern(null) / get(NULL)). */
+    public static final int NULL = -1;
+
+    private byte[] data = new byte[1024];
+    private int dataSize = 0;
+    private int[] offsets = new int[65];     // offsets[i]..offsets[i + 1] = byte của chuỗi i
+    private int[] hashes = new int[64];      // hash theo id (giãn bảng không phải băm lại nội dung)
+    private int count = 0;
+    private int[] table = new int[128];      // id + 1, 0 = ô trống; luôn là luỹ thừa của 2
+
+    /** Id của s, thêm mới nếu chưa có. */
+    public int intern(String s) {
+        if (s == null) return NULL;
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int h = hash(b);
+        int mask = table.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == 0) break;
+            if (hashes[slot - 1] == h && sameBytes(slot - 1, b)) return slot - 1;
+        }
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2 + 1);
+        }
+        int id = count++;
+        if (dataSize + b.length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataSize + b.length));
+        }
+        System.arraycopy(b, 0, data, dataSize, b.length);
+        dataSize += b.length;
+        offsets[id + 1] = dataSize;
+        hashes[id] = h;
+        // Giữ tải <= 1/2 để chuỗi dò ngắn
+        if (count * 2 > table.length) rehash(table.length * 2);
+        else place(table, id, h);
+        return id;
+    }
+
+    /** Id của s nếu đã có trong pool, NULL nếu chưa. */
+    public int find(String s) {
+        if (s == null) return NULL;
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int h = hash(b);
+        int mask = table.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == 0) return NULL;
+            if (hashes[slot - 1] == h && sameBytes(slot - 1, b)) return slot - 1;
+        }
+    }
+
+    /** Chuỗi của id (String mới mỗi lần gọi). */
+    public String get(int id) {
+        if (id == NULL) return null;
+        return new String(data, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /** Ghi chuỗi của id vào sb (không cấp phát String trung gian cho chuỗi ASCII). */
+    public void appendTo(int id, StringBuilder sb) {
+        if (id == NULL) return;
+        int from = offsets[id], to = offsets[id + 1];
+        for (int i = from; i < to; i++) {
+            if (data[i] < 0) { // có ký tự ngoài ASCII -> giải mã cả chuỗi
+                sb.append(get(id));
+                return;
+            }
+        }
+        for (int i = from; i < to; i++) sb.append((char) data[i]);
+    }
+
+    public int size() { return count; }
+
+    /** Ước lượng bộ nhớ heap các mảng của pool đang giữ (byte). */
+    public long heapBytes() {
+        return data.length + 4L * (offsets.length + hashes.length + table.length);
+    }
+
+    private boolean sameBytes(int id, byte[] b) {
+        int from = offsets[id];
+        if (offsets[id + 1] - from != b.length) return false;
+        for (int i = 0; i < b.length; i++) if (data[from + i] != b[i]) return false;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] t = new int[capacity];
+        for (int id = 0; id < count; id++) place(t, id, hashes[id]);
+        table = t;
+    }
+
+    private static void place(int[] t, int id, int h) {
+        int mask = t.length - 1;
+        int i = h & mask;
+        while (t[i] != 0) i = (i + 1) & mask;
+        t[i] = id + 1;
+    }
+
+    // FNV-1a + trộn bit cao xuống (bảng dùng bit thấp)
+    private static int hash(byte[] b) {
+        int h = 0x811C9DC5;
+        for (byte x : b) h = (h ^ (x & 0xFF)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+}
@@ -15,8 +15,12 @@ import com.google.firebase.firestore.*;
 import java.util.*;
 
 import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.AppExecutors;
 import vn.khengandkhoi.musicplayer.MusicService;
 import vn.khengandkhoi.musicplayer.R;
+import vn.khengandkhoi.musicplayer.RecentPlayLog;
+import vn.khengandkhoi.musicplayer.catalog.CatalogRepository;
+import vn.khengandkhoi.musicplayer.object.FirestoreMapper;
 import vn.khengandkhoi.musicplayer.object.SongRemote;
 import vn.khengandkhoi.musicplayer.activity.PlayerActivity;
 import vn.khengandkhoi.musicplayer.activity.SongListActivity;
@@ -30,7 +34,7 @@ import vn.khengandkhoi.musicplayer.adapter.RecentSongsAdapter;
  *
  * Nguồn dữ liệu:
  * - "albums" (collection gốc) để tải Top Picks.
- * - "users/{uid}/recent" (subcollection) để tải các bài gần đây, sắp xếp theo "lastPlayed".
+ * - "users/{uid}/meta/recent" (1 document, danh sách có giới hạn) để tải các bài gần đây.
  *
  * Tương tác:
  * - Click album -> mở SongListActivity với extra "albumId".
@@ -39,7 +43,8 @@ import vn.khengandkhoi.musicplayer.adapter.RecentSongsAdapter;
  * Lưu ý vòng đời:
  * - Khởi tạo adapter & layoutManager trong onViewCreated (sau khi inflate view xong).
  * - Dùng requireContext()/requireActivity() khi chắc chắn fragment đã attach (trong onViewCreated là an toàn).
- * - Các cuộc gọi Firestore .get() là async, trả về trong addOnSuccessListener.
+ * - Các cuộc gọi Firestore .get() là async; map snapshot chạy trên AppExecutors.compute() (continueWith),
+ *   addOnSuccessListener (main thread) chỉ còn submit vào adapter.
  */
 public class HomeFragment extends Fragment {
     // RecyclerView cho Top Picks (album ngang) và Recent (bài gần đây dọc)
@@ -53,6 +58,9 @@ public class HomeFragment extends Fragment {
     private FirebaseFirestore db;
     private FirebaseAuth mAuth;
 
+    // Số bài gần đây hiển thị trên Home
+    private static final int RECENT_SHOWN = 10;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle s) {
@@ -100,15 +108,14 @@ public class HomeFragment extends Fragment {
 
         // Khởi tạo RecentSongsAdapter với callback khi click 1 bài:
         // - Tìm index bài trong list (để phát đúng vị trí)
-        // - startService(MusicService) với "songs" (toàn bộ list recent) + "index" (vị trí chọn)
+        // - startService(MusicService) với handle hàng đợi (toàn bộ list recent) + "index" (vị trí chọn)
         // - Sau đó startActivity(PlayerActivity) để mở màn hình trình phát
         recentAdapter = new RecentSongsAdapter(song -> {
             int index = recentAdapter.getData().indexOf(song); // Tính vị trí bài trong danh sách hiện tại
 
-            // Intent tới Service phát nhạc: truyền danh sách và index
-            Intent svc = new Intent(requireContext(), MusicService.class);
-            svc.putExtra("songs", new ArrayList<>(recentAdapter.getData())); // Sao chép list để đảm bảo Serializable/Parcelable an toàn
-            svc.putExtra("index", index);
+            // Intent tới Service phát nhạc: danh sách đi qua QueueRegistry, Intent chỉ mang handle + index
+            // (getData() đã trả bản sao nên Service không bị ảnh hưởng khi adapter đổi dữ liệu)
+            Intent svc = MusicService.newPlayIntent(requireContext(), recentAdapter.getData(), index);
             requireActivity().startService(svc); // Bắt đầu Service phát nhạc (Foreground service nếu MusicService triển khai như vậy)
 
             // Mở PlayerActivity để hiển thị UI điều khiển
@@ -127,71 +134,72 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * Tải danh sách album đề xuất từ collection "albums".
-     * - .get(): đọc toàn bộ snapshot một lần (không realtime).
-     * - Mapping: DocumentSnapshot -> Album (POJO) qua toObject().
-     * - Sau đó set id document vào model (a.setId(d.getId())) để adapter có thể dùng id.
-     * - submit(list): cập nhật adapter.
+     * Tải danh sách album đề xuất qua CatalogRepository (collection "albums").
+     * - Có cache (bộ nhớ/đĩa) -> hiện ngay, repository tự tải lại ở nền khi bản cache đã cũ
+     *   và gọi lại callback nếu dữ liệu đổi -> chỉ cần submit(list) mỗi lần.
+     * - Chuyển tab / mở lại app không phải đọc lại toàn bộ "albums" từ mạng.
      *
      * Lưu ý:
-     * - Nếu muốn realtime, dùng addSnapshotListener thay vì .get().
-     * - Có thể thêm .orderBy(...) nếu cần sắp xếp (ví dụ theo lượt nghe).
+     * - Callback có thể về sau khi view đã huỷ -> kiểm tra isAdded() trước khi cập nhật adapter.
+     * - Có thể thêm .orderBy(...) trong repository nếu cần sắp xếp (ví dụ theo lượt nghe).
      */
     private void loadTopPicks() {
-        db.collection("albums")
-                .get()
-                .addOnSuccessListener(snap -> {
-                    List<Album> list = new ArrayList<>();
-                    for (DocumentSnapshot d : snap.getDocuments()) {
-                        Album a = d.toObject(Album.class);
-                        if (a != null) {
-                            a.setId(d.getId()); // 👈 dùng setter để gắn id tài liệu Firestore vào model
-                            list.add(a);
-                        }
-                    }
-                    albumsAdapter.submit(list); // Cập nhật dữ liệu cho adapter (nên dùng DiffUtil bên trong adapter để mượt hơn)
-                })
-                .addOnFailureListener(e -> {
-                    // optional: show toast/log
-                    // Ví dụ: Toast.makeText(requireContext(), "Lỗi tải albums: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    // Hoặc ghi log để debug.
-                });
+        CatalogRepository.get(requireContext()).albums((list, fromCache) -> {
+            if (!isAdded()) return;
+            albumsAdapter.submit(list); // Cập nhật dữ liệu cho adapter (nên dùng DiffUtil bên trong adapter để mượt hơn)
+        });
     }
 
     /**
      * Tải danh sách 10 bài hát người dùng đã phát gần đây từ:
-     * "users/{uid}/recent"
+     * "users/{uid}/meta/recent" (1 document, xem RecentPlayLog.historyDoc)
      * - Yêu cầu user đã đăng nhập (mAuth.getCurrentUser() != null).
-     * - Sắp xếp theo "lastPlayed" giảm dần để bài mới nhất lên đầu.
-     * - .limit(10) để tránh tải quá nhiều (tối ưu hiệu năng & UI).
+     * - items đã được sắp mới nhất lên đầu khi ghi -> chỉ cần lấy RECENT_SHOWN phần tử đầu.
+     * - 1 lần đọc document duy nhất (không query + orderBy trên subcollection như trước).
      *
      * Mapping:
-     * - DocumentSnapshot -> SongRemote (POJO)
+     * - DocumentSnapshot -> RecentHistory (POJO) -> List<SongRemote>
      * - recentAdapter.submit(list) để hiển thị.
      *
      * Lưu ý:
-     * - Trường "lastPlayed" trong Firestore nên là Timestamp để orderBy chính xác.
-     * - Nếu cần realtime, chuyển sang addSnapshotListener.
-     * - Nên xử lý addOnFailureListener để thông báo lỗi mạng/quyền truy cập.
+     * - Tài khoản cũ chưa có document này (lịch sử còn nằm ở "users/{uid}/recent") -> đọc kiểu cũ 1 lần
+     *   cho tới khi lần phát kế tiếp tạo document mới.
      */
     private void loadRecentSongs() {
         FirebaseUser u = mAuth.getCurrentUser();
         if (u == null) return; // Chưa đăng nhập -> không có dữ liệu recent để tải
 
-        db.collection("users").document(u.getUid())
+        RecentPlayLog.historyDoc(db, u.getUid())
+                .get()
+                .continueWith(AppExecutors.get().compute(), t -> FirestoreMapper.recentHistory(t.getResult()))
+                .addOnSuccessListener(h -> {
+                    if (h == null) {
+                        loadLegacyRecentSongs(u.getUid());
+                        return;
+                    }
+                    List<SongRemote> items = h.getItems();
+                    recentAdapter.submit(new ArrayList<>(
+                            items.subList(0, Math.min(RECENT_SHOWN, items.size()))));
+                });
+        // (Có thể thêm .addOnFailureListener để hiển thị lỗi nếu cần)
+    }
+
+    // Lịch sử kiểu cũ: mỗi bài 1 document trong subcollection "recent"
+    private void loadLegacyRecentSongs(String uid) {
+        db.collection("users").document(uid)
                 .collection("recent")
                 .orderBy("lastPlayed", Query.Direction.DESCENDING) // Sắp xếp bài phát gần đây nhất lên đầu
-                .limit(10)
+                .limit(RECENT_SHOWN)
                 .get()
-                .addOnSuccessListener(snap -> {
+                .continueWith(AppExecutors.get().compute(), t -> {
                     List<SongRemote> list = new ArrayList<>();
-                    for (DocumentSnapshot d : snap.getDocuments()) {
-                        SongRemote s = d.toObject(SongRemote.class);
+                    for (DocumentSnapshot d : t.getResult().getDocuments()) {
+                        SongRemote s = FirestoreMapper.song(d);
                         if (s != null) list.add(s);
                     }
-                    recentAdapter.submit(list); // Cập nhật danh sách recent
-                });
-        // (Có thể thêm .addOnFailureListener để hiển thị lỗi nếu cần)
+                    return list;
+                })
+                .addOnSuccessListener(list -> recentAdapter.submit(list)); // Cập nhật danh sách recent
     }
 
 }
@@ -9,7 +9,9 @@ import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.Log;
 import android.view.*;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
+import android.widget.ListPopupWindow;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -19,6 +21,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.OptIn;
 import androidx.fragment.app.Fragment;
 import androidx.media3.common.util.UnstableApi;
+import androidx.recyclerview.widget.ConcatAdapter;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -26,13 +29,26 @@ import com.google.firebase.firestore.*;
 import java.util.*;
 
 import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.AppExecutors;
 import vn.khengandkhoi.musicplayer.MusicService;
 import vn.khengandkhoi.musicplayer.R;
+import vn.khengandkhoi.musicplayer.object.FirestoreMapper;
 import vn.khengandkhoi.musicplayer.object.SongRemote;
 import vn.khengandkhoi.musicplayer.activity.CategoryAlbumsActivity;
 import vn.khengandkhoi.musicplayer.activity.PlayerActivity;
+import vn.khengandkhoi.musicplayer.activity.SongListActivity;
+import vn.khengandkhoi.musicplayer.adapter.AlbumsAdapter;
 import vn.khengandkhoi.musicplayer.adapter.CategoriesAdapter;
+import vn.khengandkhoi.musicplayer.adapter.HorizontalRowAdapter;
+import vn.khengandkhoi.musicplayer.adapter.SectionHeaderAdapter;
 import vn.khengandkhoi.musicplayer.adapter.SongsAdapter;
+import vn.khengandkhoi.musicplayer.catalog.CatalogRepository;
+import vn.khengandkhoi.musicplayer.search.FederatedSearch;
+import vn.khengandkhoi.musicplayer.search.SearchMetrics;
+import vn.khengandkhoi.musicplayer.search.SearchTokens;
+import vn.khengandkhoi.musicplayer.search.SongSearchEngine;
+import vn.khengandkhoi.musicplayer.search.SuggestTrie;
+import vn.khengandkhoi.musicplayer.search.VnText;
 
 /**
  * SearchFragment:
@@ -41,13 +57,16 @@ import vn.khengandkhoi.musicplayer.adapter.SongsAdapter;
  *    (2) Danh sách bài hát (rvSongsList) khi có từ khoá
  *
  * - Debounce tìm kiếm: chờ 300ms sau khi người dùng gõ xong mới query.
- * - Tải bài hát bằng Firestore collectionGroup("songs"), sau đó LỌC CỤC BỘ theo từ khoá đã chuẩn hoá tiếng Việt (bỏ dấu).
+ * - Tìm bài hát trên index trigram cục bộ (SongSearchEngine) theo từ khoá đã chuẩn hoá tiếng Việt (bỏ dấu):
+ *   catalog chỉ nạp 1 lần rồi cập nhật tăng dần, không tải lại collectionGroup("songs") mỗi lần gõ.
  * - Có ProgressBar khi đang tải, và TextView "trống" khi không có kết quả.
- * - Có cơ chế "load-more" đơn giản (dựa trên scroll), hiện đang gọi lại querySongs (placeholder—vì chưa dùng startAfter cho phân trang thực).
- *
- * Lưu ý:
- * - Để phân trang thực sự, cần query Firestore với .orderBy(...).limit(PAGE_SIZE).startAfter(lastDoc).
- * - Ở đây vì dùng collectionGroup().get() (lấy tất cả rồi lọc cục bộ) -> dễ demo nhưng không tối ưu khi dữ liệu lớn.
+ * - Phân trang thực: mỗi lần tải PAGE_SIZE bài, cuộn còn PREFETCH_ROWS dòng thì tải trang kế tiếp
+ *   (con trỏ vị trí xếp hạng trên index cục bộ, hoặc startAfter(lastDoc) trên server khi index chưa sẵn sàng).
+ * - Gợi ý typeahead (nghệ sĩ / album / bài hát) hiện ngay theo từng phím gõ, không chờ debounce;
+ *   chọn 1 gợi ý -> điền vào ô tìm kiếm và tìm luôn.
+ * - Tìm kiếm gộp: album, thể loại (FederatedSearch) và bài hát chạy song song, kết quả chia mục
+ *   (ConcatAdapter: tiêu đề + hàng ngang album + hàng ngang thể loại + danh sách bài hát);
+ *   mục nào xong trước hiện trước. Độ trễ từng mục ghi vào SearchMetrics (Logcat tag SearchMetrics).
  */
 public class SearchFragment extends Fragment {
 
@@ -64,17 +83,43 @@ public class SearchFragment extends Fragment {
     private CategoriesAdapter catAdapter;
     private SongsAdapter songsAdapter;
 
+    // Tìm kiếm gộp: mỗi mục = tiêu đề + nội dung, ghép bằng ConcatAdapter trong rvSongsList
+    private static final int SECTION_LIMIT = 10;
+    private static final int CATEGORY_CARD_WIDTH_DP = 160; // = item_album_card
+    private static final SearchMetrics METRICS = new SearchMetrics(); // dùng chung cả process
+    private FederatedSearch federated;
+    private AlbumsAdapter albumResults;
+    private CategoriesAdapter catResults;
+    private HorizontalRowAdapter albumsRow, catsRow;
+    private SectionHeaderAdapter albumsHeader, catsHeader, songsHeader;
+    private int metricsId;
+    private boolean songsFirstPage = false; // trang bài hát đầu tiên của query chưa về (để đo độ trễ)
+
     // Debounce: handler UI và runnable trì hoãn
     private final Handler ui = new Handler(Looper.getMainLooper());
     private Runnable pending;
 
-    // Trạng thái/paging (hiện dùng làm placeholder vì querySongs đang load-all)
+    // Trạng thái/paging: mỗi lần chỉ tải PAGE_SIZE bài, kéo gần cuối mới tải trang tiếp
     private static final int PAGE_SIZE = 24;
-    private DocumentSnapshot lastDoc; // sẽ dùng khi chuyển sang query phân trang thực
+    private static final int PREFETCH_ROWS = 6;    // còn 6 dòng nữa là hết -> tải trước trang sau
+    private boolean fromServer = false;            // query hiện tại đang phân trang trên server hay index cục bộ
+    private DocumentSnapshot lastDoc;              // con trỏ startAfter cho trang server kế tiếp
+    private int localCursor = -1;                  // con trỏ (vị trí xếp hạng) cho trang kế tiếp trên index cục bộ
+    private boolean hasMore = false;
     private boolean isLoading = false;
+    // Thế hệ tìm kiếm: tăng mỗi khi có query mới/quay về categories; phản hồi mang thế hệ cũ bị bỏ ngay
+    // (chỉ ghi trên main thread; volatile để bước map trang server trên lane ui đọc được giá trị mới nhất)
+    private volatile int searchGen = 0;
     private String currentQuery = "";
     private final List<SongRemote> currentPage = new ArrayList<>(); // dữ liệu hiện hiển thị
 
+    // Gợi ý typeahead (popup dưới ô tìm kiếm)
+    private static final int SUGGEST_LIMIT = 6;
+    private ListPopupWindow suggestPopup;
+    private ArrayAdapter<String> suggestAdapter;
+    private final List<SuggestTrie.Suggestion> suggestions = new ArrayList<>();
+    private boolean applyingSuggestion = false; // setText() từ gợi ý -> không bật lại popup
+
     // Danh sách tất cả categories (để đổ vào grid)
     private final List<Category> allCats = new ArrayList<>();
 
@@ -90,6 +135,7 @@ public class SearchFragment extends Fragment {
     public void onViewCreated(@NonNull View v, @Nullable Bundle s) {
         super.onViewCreated(v, s);
         db = FirebaseFirestore.getInstance(); // Khởi tạo Firestore
+        SongSearchEngine.get().start(requireContext()); // Dựng index cục bộ từ bản sao catalog (chỉ lần đầu)
 
         // Ánh xạ view
         edtSearch       = v.findViewById(R.id.edtSearch);
@@ -120,10 +166,8 @@ public class SearchFragment extends Fragment {
             List<SongRemote> playlist = new ArrayList<>(currentPage);
             int index = playlist.indexOf(song); // vị trí bài click
 
-            // Gửi danh sách & index sang MusicService để phát nhạc
-            Intent serviceIntent = new Intent(requireContext(), MusicService.class);
-            serviceIntent.putExtra("songs", new ArrayList<>(playlist));
-            serviceIntent.putExtra("index", index);
+            // Gửi danh sách (qua QueueRegistry, Intent chỉ mang handle) & index sang MusicService để phát nhạc
+            Intent serviceIntent = MusicService.newPlayIntent(requireContext(), playlist, index);
 
             // Android O+ cần startForegroundService cho media playback
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -137,17 +181,51 @@ public class SearchFragment extends Fragment {
             startActivity(playerIntent);
             requireActivity().overridePendingTransition(R.anim.slide_in_up, 0);
         });
-        rvSongsList.setAdapter(songsAdapter);
+
+        // Kết quả album / thể loại của tìm kiếm gộp (hàng cuộn ngang phía trên danh sách bài hát)
+        albumResults = new AlbumsAdapter(album -> {
+            Intent i = new Intent(requireContext(), SongListActivity.class);
+            i.putExtra("albumId", album.getId());
+            startActivity(i);
+        });
+        catResults = new CategoriesAdapter(c -> {
+            Intent i = new Intent(requireContext(), CategoryAlbumsActivity.class);
+            i.putExtra("categoryId", c.getId());
+            i.putExtra("categoryName", c.getName());
+            startActivity(i);
+            requireActivity().overridePendingTransition(R.anim.slide_in_up, R.anim.no_change);
+        }, Math.round(CATEGORY_CARD_WIDTH_DP * getResources().getDisplayMetrics().density));
+        albumsHeader = new SectionHeaderAdapter("Album");
+        catsHeader = new SectionHeaderAdapter("Thể loại");
+        songsHeader = new SectionHeaderAdapter("Bài hát");
+        albumsRow = new HorizontalRowAdapter(albumResults);
+        catsRow = new HorizontalRowAdapter(catResults);
+        rvSongsList.setAdapter(new ConcatAdapter(
+                albumsHeader, albumsRow, catsHeader, catsRow, songsHeader, songsAdapter));
+        federated = new FederatedSearch(SongSearchEngine.get());
 
         // Mặc định: chưa gõ gì -> hiển thị categories
         showCategories(true);
 
+        // ============== TYPEAHEAD ==============
+        suggestAdapter = new ArrayAdapter<>(requireContext(), android.R.layout.simple_list_item_1, new ArrayList<>());
+        suggestPopup = new ListPopupWindow(requireContext());
+        suggestPopup.setAnchorView(edtSearch);
+        suggestPopup.setAdapter(suggestAdapter);
+        suggestPopup.setModal(false); // vẫn gõ tiếp được khi popup đang mở
+        suggestPopup.setOnItemClickListener((parent, view, pos, id) -> {
+            if (pos < 0 || pos >= suggestions.size()) return;
+            applySuggestion(suggestions.get(pos).text);
+        });
+
         // ============== DEBOUNCE SEARCH ==============
         // Chỉ chạy query sau 300ms kể từ lần gõ cuối -> giảm số lần gọi Firestore
         edtSearch.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int st, int c, int a) {}
             @Override public void onTextChanged(CharSequence s, int st, int b, int c) {}
             @Override public void afterTextChanged(Editable s) {
+                if (applyingSuggestion) return;
+                updateSuggestions(s.toString()); // gợi ý không cần debounce: tra trie chỉ vài micro giây
                 if (pending != null) ui.removeCallbacks(pending); // huỷ runnable cũ nếu user tiếp tục gõ
                 pending = () -> {
                     String q = s.toString().trim();
@@ -155,9 +233,8 @@ public class SearchFragment extends Fragment {
                         // Nếu rỗng -> quay lại màn categories
                         showCategories(true);
                     } else {
-                        // Có từ khoá -> chuyển sang danh sách bài hát và query
-                        showCategories(false);
-                        querySongs(q, true);
+                        // Có từ khoá -> chuyển sang danh sách kết quả và tìm gộp
+                        runSearch(q);
                     }
                 };
                 ui.postDelayed(pending, 300); // trì hoãn 300ms
@@ -165,24 +242,113 @@ public class SearchFragment extends Fragment {
         });
 
         // ============== LOAD MORE CHO SONGS LIST ==============
-        // Khi kéo gần cuối danh sách -> gọi queryNextPage()
-        // Hiện tại queryNextPage chỉ gọi lại querySongs (vì chưa có startAfter/limit),
-        // để phân trang thực sự, cần thay đổi query Firestore tương ứng.
+        // Khi kéo còn < PREFETCH_ROWS dòng là tới cuối -> gọi queryNextPage() tải trang tiếp theo
         rvSongsList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override public void onScrollStateChanged(@NonNull RecyclerView rv, int state) {
+                // Người dùng bắt đầu cuộn kết quả -> ẩn gợi ý
+                if (state == RecyclerView.SCROLL_STATE_DRAGGING) suggestPopup.dismiss();
+            }
+
             @Override public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
                 if (dy <= 0) return; // chỉ quan tâm scroll xuống
                 LinearLayoutManager lm = (LinearLayoutManager) rv.getLayoutManager();
                 int visible = lm.getChildCount();
                 int total   = lm.getItemCount();
                 int first   = lm.findFirstVisibleItemPosition();
-                // Nếu còn <6 item là chạm đáy -> load thêm
-                if (!isLoading && total - (visible + first) < 6) {
+                // Nếu còn < PREFETCH_ROWS item là chạm đáy -> load thêm
+                if (!isLoading && total - (visible + first) < PREFETCH_ROWS) {
                     queryNextPage();
                 }
             }
         });
     }
 
+    @Override
+    public void onDestroyView() {
+        if (pending != null) ui.removeCallbacks(pending);
+        if (suggestPopup != null) suggestPopup.dismiss();
+        if (federated != null) federated.release();
+        super.onDestroyView();
+    }
+
+    // Đổ gợi ý cho chuỗi đang gõ vào popup (ẩn popup nếu không có gợi ý)
+    private void updateSuggestions(String typed) {
+        suggestions.clear();
+        if (!typed.trim().isEmpty()) suggestions.addAll(SongSearchEngine.get().suggest(typed, SUGGEST_LIMIT));
+        if (suggestions.isEmpty()) {
+            suggestPopup.dismiss();
+            return;
+        }
+        List<String> rows = new ArrayList<>(suggestions.size());
+        for (SuggestTrie.Suggestion sg : suggestions) rows.add(sg.text + " · " + kindLabel(sg.kind));
+        suggestAdapter.clear();
+        suggestAdapter.addAll(rows);
+        if (!suggestPopup.isShowing()) suggestPopup.show();
+    }
+
+    private static String kindLabel(int kind) {
+        switch (kind) {
+            case SuggestTrie.KIND_ARTIST: return "Nghệ sĩ";
+            case SuggestTrie.KIND_ALBUM:  return "Album";
+            default:                      return "Bài hát";
+        }
+    }
+
+    // Chọn 1 gợi ý: điền vào ô tìm kiếm và tìm ngay (bỏ qua debounce)
+    private void applySuggestion(String text) {
+        suggestPopup.dismiss();
+        if (pending != null) ui.removeCallbacks(pending);
+        applyingSuggestion = true;
+        edtSearch.setText(text);
+        edtSearch.setSelection(text.length());
+        applyingSuggestion = false;
+        runSearch(text);
+    }
+
+    /**
+     * Tìm gộp cho q: bài hát (querySongs) + album + thể loại (FederatedSearch) chạy song song,
+     * mỗi mục tự hiển thị khi xong và ghi độ trễ vào METRICS.
+     */
+    private void runSearch(String q) {
+        showCategories(false);
+        clearSections();
+        metricsId = METRICS.begin();
+        songsFirstPage = true;
+        querySongs(q, true);
+        final int id = metricsId;
+        federated.search(q, SECTION_LIMIT, albums -> {
+            if (!isAdded()) return;
+            METRICS.record(id, SearchMetrics.ALBUMS);
+            albumResults.submit(albums);
+            albumsRow.refresh();
+            albumsHeader.setVisible(!albums.isEmpty());
+            updateEmpty();
+        }, cats -> {
+            if (!isAdded()) return;
+            METRICS.record(id, SearchMetrics.CATEGORIES);
+            catResults.submit(cats);
+            catsRow.refresh();
+            catsHeader.setVisible(!cats.isEmpty());
+            updateEmpty();
+        });
+    }
+
+    // Xoá kết quả album/thể loại của query trước
+    private void clearSections() {
+        albumResults.submit(Collections.emptyList());
+        catResults.submit(Collections.emptyList());
+        albumsRow.refresh();
+        catsRow.refresh();
+        albumsHeader.setVisible(false);
+        catsHeader.setVisible(false);
+    }
+
+    // "Không có kết quả" chỉ khi cả 3 mục đều rỗng và bài hát không còn đang tải
+    private void updateEmpty() {
+        boolean none = currentPage.isEmpty() && albumResults.getItemCount() == 0 && catResults.getItemCount() == 0;
+        showEmpty(none && !isLoading);
+    }
+
     /**
      * Bật/tắt chế độ hiển thị categories.
      * - show=true: hiện lưới categories và ẩn danh sách bài hát, đồng thời xoá kết quả cũ.
@@ -197,6 +363,14 @@ public class SearchFragment extends Fragment {
             songsAdapter.submit(Collections.emptyList());
             currentPage.clear();
             currentQuery = "";
+            hasMore = false;
+            lastDoc = null;
+            searchGen++;
+            SongSearchEngine.get().cancelSearches();
+            federated.cancel();
+            clearSections();
+            songsHeader.setVisible(false);
+            setLoading(false);
         }
     }
 
@@ -211,134 +385,162 @@ public class SearchFragment extends Fragment {
 
     private static final String TAG = "SearchQuery";
 
-    // Chuẩn hoá tiếng Việt: lower-case, bỏ dấu, đổi 'đ'->'d', gom khoảng trắng
-    private static String vnNorm(String s) {
-        if (s == null) return "";
-        String lower = s.toLowerCase(Locale.US).trim();
-        String norm = java.text.Normalizer.normalize(lower, java.text.Normalizer.Form.NFD)
-                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-        norm = norm.replace('đ', 'd');
-        return norm.replaceAll("\\s+", " ");
-    }
-
     /**
-     * Thực hiện tìm kiếm bài hát theo từ khoá q.
-     * - reset=true: xoá trang hiện tại & UI trước khi tải
-     * - Chuẩn hoá query (vnNorm)
-     * - Dùng collectionGroup("songs") để lấy tất cả tài liệu trong mọi subcollection "songs" thuộc các album.
-     * - Sau khi lấy, lọc cục bộ theo tiêu đề/tác giả đã chuẩn hoá.
+     * Thực hiện tìm kiếm bài hát theo từ khoá q (tải 1 trang PAGE_SIZE bài).
+     * - reset=true: query mới -> xoá trang hiện tại & UI, bắt đầu lại từ trang đầu
+     * - reset=false: tải trang kế tiếp của currentQuery (load-more)
+     * - Index cục bộ đã sẵn sàng (SongSearchEngine): kết quả xếp hạng theo độ liên quan, chịu lỗi gõ 1–2 ký tự,
+     *   phân trang bằng con trỏ vị trí, không có round trip mạng.
+     * - Index chưa nạp xong (lần đầu mở màn hình): phân trang trên server bằng
+     *   .whereArrayContains("searchTokens", từ dài nhất).limit(PAGE_SIZE).startAfter(lastDoc),
+     *   các từ còn lại lọc ở client (SearchTokens.matches) -> mỗi trang đọc tối đa PAGE_SIZE document.
      *
      * Lưu ý:
-     * - Cách này dễ triển khai, nhưng tốn băng thông khi dữ liệu lớn. Để tối ưu, có thể index hoá/truy vấn theo trường "normTitle"/"tokens".
+     * - Đường server cần trường "searchTokens" trên mỗi bài (ghi bằng công cụ :tools SearchTokensBackfill)
+     *   + bật index array-contains phạm vi collection group cho trường này.
+     * - Query đã bắt đầu ở đường nào thì các trang sau đi tiếp đường đó (con trỏ 2 bên không đổi chéo được).
      */
     private void querySongs(String q, boolean reset) {
-        Log.d(TAG, "=== TÌM KIẾM: \"" + q + "\" ===");
+        Log.d(TAG, "=== TÌM KIẾM: \"" + q + "\" (reset=" + reset + ") ===");
 
-        if (reset) {
-            currentPage.clear();
+        String queryNorm = VnText.fold(q);
+        if (queryNorm.isEmpty()) {
+            Log.d(TAG, "Query rỗng");
             songsAdapter.submit(Collections.emptyList());
             showEmpty(false);
+            return;
         }
 
-        String queryNorm = vnNorm(q);
-        Log.d(TAG, "Query chuẩn hóa: \"" + queryNorm + "\"");
-
-        if (queryNorm.isEmpty()) {
-            Log.d(TAG, "Query rỗng");
+        if (reset) {
+            currentPage.clear();
             songsAdapter.submit(Collections.emptyList());
+            songsHeader.setVisible(false);
             showEmpty(false);
-            return;
+            currentQuery = q;
+            searchGen++;
+            fromServer = !SongSearchEngine.get().isReady();
+            lastDoc = null;
+            localCursor = -1;
+            hasMore = false;
         }
 
         setLoading(true);
+        final int gen = searchGen;
+        if (fromServer) queryServerPage(gen, queryNorm);
+        else queryLocalPage(gen, q);
+    }
 
-        // LẤY TOÀN BỘ "songs" QUA collectionGroup:
-        // Ưu: gom dữ liệu từ mọi albums/*/songs/*; Nhược: không có filter ở server-side -> phải lọc local
-        db.collectionGroup("songs").get()
-                .addOnSuccessListener(snap -> {
-                    setLoading(false);
+    // Phản hồi còn thuộc về lần tìm kiếm hiện tại không (fragment còn gắn + chưa có query mới hơn)
+    private boolean isCurrent(int gen) {
+        return isAdded() && gen == searchGen;
+    }
 
-                    int total = snap.size();
-                    Log.d(TAG, "LẤY ĐƯỢC: " + total + " bài hát từ albums/*/songs/*");
+    // 1 trang trên index cục bộ, bắt đầu sau localCursor
+    // (engine tự bỏ lời gọi cũ khi có lời gọi mới -> không tốn CPU cho query đã lỗi thời)
+    private void queryLocalPage(int gen, String q) {
+        SongSearchEngine.get().search(q, localCursor, PAGE_SIZE, page -> {
+            if (!isCurrent(gen)) return;
+            localCursor = page.nextCursor;
+            onPageLoaded(page.items, page.hasMore());
+        });
+    }
 
-                    if (total == 0) {
-                        Log.w(TAG, "KHÔNG CÓ BÀI HÁT NÀO TRONG collectionGroup('songs')");
-                        showEmpty(true);
-                        return;
-                    }
+    // 1 trang server đã map + lọc (dựng ngoài main thread)
+    private static final class ServerPage {
+        // Phản hồi của thế hệ đã bị thay thế: không map gì cả
+        static final ServerPage STALE = new ServerPage(Collections.emptyList(), null, false);
 
-                    // Chuyển snapshot -> list SongRemote
-                    List<SongRemote> allSongs = new ArrayList<>();
-                    for (DocumentSnapshot d : snap) {
-                        SongRemote s = d.toObject(SongRemote.class);
-                        if (s != null) {
-                            allSongs.add(s);
-                            // Log sample vài phần tử đầu để debug
-                            if (allSongs.size() <= 3) {
-                                Log.d(TAG, "Sample: \"" + s.getTitle() + "\" - " + s.getAuthor());
-                            }
-                        }
-                    }
+        final List<SongRemote> items;
+        final DocumentSnapshot last;   // document cuối của trang (kể cả bài bị lọc) -> startAfter lần sau
+        final boolean more;
 
-                    // LỌC LOCAL THEO VN-NORM (tiêu đề + tác giả)
-                    List<SongRemote> filtered = new ArrayList<>();
-                    for (SongRemote s : allSongs) {
-                        String haystack = vnNorm(s.getTitle()) + " " + vnNorm(s.getAuthor());
-                        if (haystack.contains(queryNorm)) {
-                            filtered.add(s);
-                        }
-                    }
+        ServerPage(List<SongRemote> items, DocumentSnapshot last, boolean more) {
+            this.items = items;
+            this.last = last;
+            this.more = more;
+        }
+    }
 
-                    Log.d(TAG, "SAU LỌC: " + filtered.size() + " bài");
-                    for (int i = 0; i < Math.min(3, filtered.size()); i++) {
-                        SongRemote s2 = filtered.get(i);
-                        Log.d(TAG, "→ \"" + s2.getTitle() + "\" - " + s2.getAuthor());
+    // 1 trang trên server, bắt đầu sau lastDoc
+    // (Task Firestore không huỷ được -> bỏ phản hồi cũ trước khi map snapshot)
+    private void queryServerPage(int gen, String queryNorm) {
+        String token = SearchTokens.queryToken(queryNorm);
+        if (token == null) {
+            onPageLoaded(Collections.emptyList(), false);
+            return;
+        }
+        Query query = db.collectionGroup("songs").whereArrayContains(SearchTokens.FIELD, token);
+        if (lastDoc != null) query = query.startAfter(lastDoc);
+        query.limit(PAGE_SIZE).get()
+                // Map + lọc trên lane ui của AppExecutors (người dùng đang chờ), main thread chỉ nhận trang đã lọc
+                .continueWith(AppExecutors.get().ui(), t -> {
+                    if (gen != searchGen) return ServerPage.STALE; // đã có query mới hơn -> bỏ trước khi map
+                    QuerySnapshot snap = t.getResult();
+                    List<SongRemote> items = new ArrayList<>(snap.size());
+                    for (DocumentSnapshot d : snap) {
+                        SongRemote s = FirestoreMapper.song(d);
+                        // Server chỉ lọc theo 1 từ -> các từ còn lại lọc ở đây
+                        if (s != null && SearchTokens.matches(queryNorm, s.getTitle(), s.getAuthor())) items.add(s);
                     }
-
-                    // Cập nhật dữ liệu hiển thị
-                    currentPage.clear();
-                    currentPage.addAll(filtered);
-                    songsAdapter.submit(new ArrayList<>(currentPage));
-                    showEmpty(filtered.isEmpty());
-
-                    Log.d(TAG, "=== HOÀN TẤT ===");
+                    List<DocumentSnapshot> docs = snap.getDocuments();
+                    return new ServerPage(items, docs.isEmpty() ? null : docs.get(docs.size() - 1),
+                            docs.size() == PAGE_SIZE);
+                })
+                .addOnSuccessListener(page -> {
+                    if (page == ServerPage.STALE || !isCurrent(gen)) return;
+                    if (page.last != null) lastDoc = page.last;
+                    // Cả trang bị lọc hết nhưng server còn -> tải tiếp luôn (danh sách rỗng thì không cuộn được)
+                    if (page.items.isEmpty() && page.more) {
+                        queryServerPage(gen, queryNorm);
+                        return;
+                    }
+                    onPageLoaded(page.items, page.more);
                 })
                 .addOnFailureListener(e -> {
+                    if (!isCurrent(gen)) return; // isCurrent() đã gồm isAdded() -> requireContext() an toàn
                     setLoading(false);
                     Log.e(TAG, "LỖI LẤY DỮ LIỆU", e);
                     Toast.makeText(requireContext(), "Lỗi kết nối!", Toast.LENGTH_SHORT).show();
-                    showEmpty(true);
+                    updateEmpty();
                 });
     }
 
+    // Nối trang vừa tải vào danh sách hiển thị
+    private void onPageLoaded(List<SongRemote> items, boolean more) {
+        setLoading(false);
+        hasMore = more;
+        currentPage.addAll(items);
+        songsAdapter.append(items);
+        songsHeader.setVisible(!currentPage.isEmpty());
+        if (songsFirstPage) {
+            songsFirstPage = false;
+            METRICS.record(metricsId, SearchMetrics.SONGS);
+        }
+        updateEmpty();
+        Log.d(TAG, "TRANG: +" + items.size() + " bài (tổng " + currentPage.size() + ", còn nữa=" + more + ")");
+    }
+
     /**
-     * Gọi khi cuộn gần cuối danh sách:
-     * - Hiện tại: nếu đã có currentQuery + lastDoc -> gọi lại querySongs(currentQuery, false)
-     * - Để phân trang thực: cần thay querySongs bằng query có .orderBy().limit().startAfter(lastDoc)
+     * Gọi khi cuộn gần cuối danh sách: tải trang kế tiếp của currentQuery (nếu còn).
      */
     private void queryNextPage() {
-        if (isLoading || lastDoc == null || currentQuery.isEmpty()) return;
+        if (isLoading || !hasMore || currentQuery.isEmpty()) return;
         querySongs(currentQuery, false);
     }
 
     /**
-     * Tải danh mục (categories) từ collection "categories".
-     * - Map DocumentSnapshot -> Category (POJO), set id từ d.getId()
-     * - Đổ vào adapter grid.
+     * Tải danh mục (categories) qua CatalogRepository (collection "categories").
+     * - Đổ vào adapter grid + cấp cho tìm kiếm gộp.
+     * - Callback có thể gọi 2 lần (cache rồi bản mới từ server) -> luôn thay toàn bộ allCats.
      */
     private void loadCategories() {
-        db.collection("categories").get()
-                .addOnSuccessListener(snap -> {
-                    List<Category> list = new ArrayList<>();
-                    for (DocumentSnapshot d : snap) {
-                        Category c = d.toObject(Category.class);
-                        if (c != null) { c.setId(d.getId()); list.add(c); }
-                    }
-
-                    allCats.clear();
-                    allCats.addAll(list);
-                    catAdapter.submit(allCats);
-                });
+        CatalogRepository.get(requireContext()).categories((list, fromCache) -> {
+            if (!isAdded()) return;
+            allCats.clear();
+            allCats.addAll(list);
+            catAdapter.submit(allCats);
+            if (federated != null) federated.setCategories(allCats);
+        });
     }
 
 }
@@ -8,6 +8,13 @@ public class Album {
 
     public Album() {}
 
+    public Album(String id, String title, String author, String coverUrl) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.coverUrl = coverUrl;
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getTitle() { return title; }
@@ -8,6 +8,13 @@ public class Category {
 
     public Category() {}
 
+    public Category(String id, String name, String colorHex, String coverUrl) {
+        this.id = id;
+        this.name = name;
+        this.colorHex = colorHex;
+        this.coverUrl = coverUrl;
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getName() { return name; }
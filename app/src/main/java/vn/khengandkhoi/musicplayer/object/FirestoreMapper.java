@@ -0,0 +1,76 @@
+package vn.khengandkhoi.musicplayer.object;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FirestoreMapper:
+ * - Map DocumentSnapshot -> Album / Category / SongRemote / RecentHistory bằng tay, thay cho toObject()
+ *   (toObject dò class + setter/field bằng reflection cho từng document -> chậm khi map hàng nghìn bài).
+ * - Đọc thẳng từng trường cần dùng (FieldPath dựng sẵn 1 lần), không dựng cả map getData()
+ *   -> bỏ qua trường lớn không dùng tới như searchTokens.
+ * - Album / Category nhận id document (như toObject() + setId(d.getId()) trước đây);
+ *   SongRemote giữ id từ trường "id" trong dữ liệu như toObject().
+ *
+ * Lưu ý:
+ * - Document không tồn tại -> null (giống toObject()).
+ * - Trường sai kiểu (vd trackNum lưu dạng chuỗi) được bỏ qua thay vì ném lỗi như toObject().
+ * - Thêm trường vào model thì phải thêm ở đây.
+ */
+public final class FirestoreMapper {
+
+    private static final FieldPath ID = FieldPath.of("id"), TITLE = FieldPath.of("title"),
+            AUTHOR = FieldPath.of("author"), URL = FieldPath.of("url"), COVER_URL = FieldPath.of("coverUrl"),
+            TRACK_NUM = FieldPath.of("trackNum"), NAME = FieldPath.of("name"), COLOR_HEX = FieldPath.of("colorHex"),
+            ITEMS = FieldPath.of("items");
+
+    private FirestoreMapper() {}
+
+    public static Album album(DocumentSnapshot d) {
+        if (!d.exists()) return null;
+        return new Album(d.getId(), string(d, TITLE), string(d, AUTHOR), string(d, COVER_URL));
+    }
+
+    public static Category category(DocumentSnapshot d) {
+        if (!d.exists()) return null;
+        return new Category(d.getId(), string(d, NAME), string(d, COLOR_HEX), string(d, COVER_URL));
+    }
+
+    public static SongRemote song(DocumentSnapshot d) {
+        if (!d.exists()) return null;
+        Object track = d.get(TRACK_NUM);
+        return new SongRemote(string(d, ID), string(d, TITLE), string(d, AUTHOR), string(d, URL),
+                string(d, COVER_URL), track instanceof Number ? ((Number) track).intValue() : 0);
+    }
+
+    /** Bài lồng trong document khác (vd phần tử của RecentHistory.items). */
+    public static SongRemote song(Map<?, ?> m) {
+        Object track = m.get("trackNum");
+        return new SongRemote(string(m.get("id")), string(m.get("title")), string(m.get("author")),
+                string(m.get("url")), string(m.get("coverUrl")),
+                track instanceof Number ? ((Number) track).intValue() : 0);
+    }
+
+    public static RecentHistory recentHistory(DocumentSnapshot d) {
+        if (!d.exists()) return null;
+        RecentHistory h = new RecentHistory();
+        Object items = d.get(ITEMS);
+        if (items instanceof List) {
+            for (Object o : (List<?>) items) {
+                if (o instanceof Map) h.getItems().add(song((Map<?, ?>) o));
+            }
+        }
+        return h;
+    }
+
+    private static String string(Object v) {
+        return v instanceof String ? (String) v : null;
+    }
+
+    private static String string(DocumentSnapshot d, FieldPath field) {
+        return string(d.get(field));
+    }
+}
@@ -0,0 +1,16 @@
+package vn.khengandkhoi.musicplayer.object;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lịch sử phát gần đây của 1 user, lưu gọn trong 1 document "users/{uid}/meta/recent".
+ * - items: mới nhất đứng đầu, tối đa RecentPlayLog.RECENT_LIMIT bài (mỗi bài 1 map SongRemote + lastPlayed).
+ */
+public class RecentHistory {
+    private List<SongRemote> items = new ArrayList<>();
+
+    public RecentHistory() {}
+
+    public List<SongRemote> getItems() { return items; }
+}
@@ -10,6 +10,15 @@ public class SongRemote implements java.io.Serializable {
 
     public SongRemote() {}
 
+    public SongRemote(String id, String title, String author, String url, String coverUrl, int trackNum) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.url = url;
+        this.coverUrl = coverUrl;
+        this.trackNum = trackNum;
+    }
+
     public String getId() { return id; }
     public String getTitle() { return title; }
     public String getAuthor() { return author; }
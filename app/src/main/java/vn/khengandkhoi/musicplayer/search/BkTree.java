@@ -0,0 +1,118 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BkTree:
+ * - Cây Burkhard–Keller trên từ điển term (đã chuẩn hoá) để tìm các term cách query <= maxEdits phép sửa
+ *   (Levenshtein) mà không phải so với toàn bộ từ điển.
+ * - Bất đẳng thức tam giác: tại node có khoảng cách d, chỉ cần đi vào nhánh con có nhãn trong [d - r, d + r].
+ *
+ * Lưu ý:
+ * - Chỉ thêm, không xoá: term không còn bài nào thì posting list rỗng, kết quả tự bị bỏ qua khi chấm điểm.
+ * - Không thread-safe (SongIndex gọi trên 1 thread).
+ */
+final class BkTree {
+
+    /** Nhận term khớp cùng số phép sửa. */
+    interface Visitor { void visit(int termId, int edits); }
+
+    private static final class Node {
+        final String word;
+        final int termId;
+        // Con theo khoảng cách tới node này (index = khoảng cách); hầu hết node chỉ có vài con
+        Node[] children = null;
+
+        Node(String word, int termId) {
+            this.word = word;
+            this.termId = termId;
+        }
+    }
+
+    private Node root;
+    private int size = 0;
+
+    void add(String word, int termId) {
+        size++;
+        if (root == null) {
+            root = new Node(word, termId);
+            return;
+        }
+        Node cur = root;
+        while (true) {
+            int d = Levenshtein.distance(word, cur.word, Math.max(word.length(), cur.word.length()));
+            if (d == 0) return; // term đã có
+            if (cur.children == null) cur.children = new Node[d + 1];
+            else if (cur.children.length <= d) cur.children = java.util.Arrays.copyOf(cur.children, d + 1);
+            Node next = cur.children[d];
+            if (next == null) {
+                cur.children[d] = new Node(word, termId);
+                return;
+            }
+            cur = next;
+        }
+    }
+
+    int size() { return size; }
+
+    /** Duyệt mọi term cách word <= maxEdits phép sửa. */
+    void search(String word, int maxEdits, Visitor visitor) {
+        if (root == null) return;
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            // Chặn trên = d tối đa cần biết chính xác để chọn nhánh con
+            int bound = n.children == null ? maxEdits : n.children.length - 1 + maxEdits;
+            int d = Levenshtein.distance(word, n.word, bound);
+            if (d <= maxEdits) visitor.visit(n.termId, d);
+            if (n.children == null) continue;
+            int lo = Math.max(1, d - maxEdits), hi = Math.min(n.children.length - 1, d + maxEdits);
+            for (int i = lo; i <= hi; i++) {
+                if (n.children[i] != null) stack.push(n.children[i]);
+            }
+        }
+    }
+
+    /** Khoảng cách Levenshtein có chặn trên (dừng sớm khi mọi ô của 1 hàng đã vượt bound). */
+    static final class Levenshtein {
+        private Levenshtein() {}
+
+        // Buffer tái sử dụng theo thread (tránh cấp phát mỗi lần so)
+        private static final ThreadLocal<List<int[]>> ROWS = ThreadLocal.withInitial(() -> {
+            List<int[]> l = new ArrayList<>(2);
+            l.add(new int[32]);
+            l.add(new int[32]);
+            return l;
+        });
+
+        /** @return khoảng cách, hoặc bound + 1 nếu chắc chắn vượt bound */
+        static int distance(String a, String b, int bound) {
+            int n = a.length(), m = b.length();
+            if (Math.abs(n - m) > bound) return bound + 1;
+            List<int[]> rows = ROWS.get();
+            if (rows.get(0).length < m + 1) {
+                rows.set(0, new int[m + 1]);
+                rows.set(1, new int[m + 1]);
+            }
+            int[] prev = rows.get(0), cur = rows.get(1);
+            for (int j = 0; j <= m; j++) prev[j] = j;
+            for (int i = 1; i <= n; i++) {
+                cur[0] = i;
+                int rowMin = cur[0];
+                char ca = a.charAt(i - 1);
+                for (int j = 1; j <= m; j++) {
+                    int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                    int v = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                    cur[j] = v;
+                    if (v < rowMin) rowMin = v;
+                }
+                if (rowMin > bound) return bound + 1;
+                int[] t = prev; prev = cur; cur = t;
+            }
+            return Math.min(prev[m], bound + 1);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import vn.khengandkhoi.musicplayer.AppExecutors;
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+
+/**
+ * FederatedSearch:
+ * - Phần album + thể loại của tìm kiếm gộp (phần bài hát vẫn đi qua SongSearchEngine / server như cũ).
+ * - Mỗi mục chạy song song trên lane ui của AppExecutors (tách khỏi worker xếp hạng bài hát) và trả kết quả
+ *   về main thread ngay khi xong -> mục nhanh hiển thị trước, không chờ mục chậm nhất.
+ * - Xếp hạng theo tên đã chuẩn hoá (VnText): trùng khớp > bắt đầu bằng query > mọi từ là tiền tố > chứa chuỗi con.
+ *
+ * Lưu ý:
+ * - Album lấy từ ảnh chụp của SongSearchEngine (bản sao catalog của CatalogSync), thể loại do màn hình cấp qua
+ *   setCategories() -> không tốn thêm lượt đọc Firestore nào.
+ * - Mục chưa có dữ liệu thì chờ, có dữ liệu sẽ tự chạy lại cho query mới nhất.
+ */
+public final class FederatedSearch {
+
+    /** Nhận kết quả 1 mục trên main thread. */
+    public interface Callback<T> { void onResult(List<T> items); }
+
+    private static final int MATCH_EXACT = 4, MATCH_PREFIX = 3, MATCH_WORDS = 2, MATCH_SUBSTRING = 1;
+
+    private final SongSearchEngine engine;
+    private final Executor lookup = AppExecutors.get().ui();
+    private volatile boolean released = false;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile List<Category> categories;
+    private Runnable pendingCategories; // chỉ truy cập trên main thread
+
+    public FederatedSearch(SongSearchEngine engine) {
+        this.engine = engine;
+    }
+
+    /** Cấp danh sách thể loại (gọi trên main thread, khi loadCategories() xong). */
+    public void setCategories(List<Category> list) {
+        categories = Collections.unmodifiableList(new ArrayList<>(list));
+        if (pendingCategories != null) {
+            Runnable r = pendingCategories;
+            pendingCategories = null;
+            r.run();
+        }
+    }
+
+    /**
+     * Tìm album + thể loại cho query (chưa chuẩn hoá); mỗi mục gọi callback riêng khi xong.
+     * Lời gọi mới thay thế lời gọi cũ: kết quả cũ về muộn bị bỏ.
+     */
+    public void search(String query, int limit, Callback<Album> onAlbums, Callback<Category> onCategories) {
+        final int gen = generation.incrementAndGet();
+        final String q = VnText.fold(query);
+
+        engine.whenAlbumsLoaded(() -> submit(() -> {
+            if (gen != generation.get()) return;
+            deliver(gen, onAlbums, rank(engine.albums(), q, limit,
+                    a -> a.getAuthor() == null ? a.getTitle() : a.getTitle() + " " + a.getAuthor()));
+        }));
+
+        Runnable cats = () -> submit(() -> {
+            if (gen != generation.get()) return;
+            deliver(gen, onCategories, rank(categories, q, limit, Category::getName));
+        });
+        if (categories != null) cats.run();
+        else pendingCategories = cats;
+    }
+
+    /** Bỏ mọi kết quả đang chờ (vd: người dùng xoá ô tìm kiếm). */
+    public void cancel() {
+        generation.incrementAndGet();
+        pendingCategories = null;
+    }
+
+    public void release() {
+        cancel();
+        released = true;
+    }
+
+    // Lời gọi chờ dữ liệu có thể chạy sau release() -> bỏ qua
+    private void submit(Runnable r) {
+        if (!released) lookup.execute(r);
+    }
+
+    private <T> void deliver(int gen, Callback<T> cb, List<T> items) {
+        main.post(() -> {
+            if (gen == generation.get()) cb.onResult(items);
+        });
+    }
+
+    private interface NameOf<T> { String name(T item); }
+
+    // Lọc + xếp hạng theo tên; cùng mức khớp -> tên ngắn hơn trước, rồi giữ thứ tự gốc
+    private static <T> List<T> rank(List<T> items, String q, int limit, NameOf<T> nameOf) {
+        if (q.isEmpty() || items == null) return Collections.emptyList();
+        List<String> qWords = VnText.words(q);
+        List<T> hits = new ArrayList<>();
+        List<long[]> keys = new ArrayList<>(); // {mức khớp, độ dài tên, vị trí gốc, vị trí trong hits}
+        for (int i = 0; i < items.size(); i++) {
+            String name = VnText.fold(nameOf.name(items.get(i)));
+            int m = matchLevel(name, q, qWords);
+            if (m == 0) continue;
+            keys.add(new long[]{m, name.length(), i, hits.size()});
+            hits.add(items.get(i));
+        }
+        Collections.sort(keys, (a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0])
+                : a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[2], b[2]));
+        List<T> out = new ArrayList<>(Math.min(limit, keys.size()));
+        for (int i = 0; i < keys.size() && out.size() < limit; i++) out.add(hits.get((int) keys.get(i)[3]));
+        return out;
+    }
+
+    private static int matchLevel(String name, String q, List<String> qWords) {
+        if (name.equals(q)) return MATCH_EXACT;
+        if (name.startsWith(q)) return MATCH_PREFIX;
+        List<String> words = VnText.words(name);
+        boolean all = !qWords.isEmpty();
+        for (int i = 0; i < qWords.size() && all; i++) {
+            boolean hit = false;
+            for (int j = 0; j < words.size() && !hit; j++) hit = words.get(j).startsWith(qWords.get(i));
+            all = hit;
+        }
+        if (all) return MATCH_WORDS;
+        return name.contains(q) ? MATCH_SUBSTRING : 0;
+    }
+}
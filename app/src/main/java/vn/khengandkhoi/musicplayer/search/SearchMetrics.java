@@ -0,0 +1,103 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SearchMetrics:
+ * - Đo độ trễ từng mục (section) của tìm kiếm gộp: từ lúc bắt đầu query tới khi mục đó có kết quả.
+ * - Giữ WINDOW mẫu gần nhất mỗi mục -> p50/p95, kèm max và số lần mục đó về chậm nhất (mục "chi phối" độ trễ).
+ * - Cứ LOG_EVERY query đủ mục thì ghi 1 dòng tổng hợp ra Logcat (tag SearchMetrics).
+ *
+ * Lưu ý:
+ * - Query bị thay thế trước khi đủ mục thì không tính "chậm nhất" (chỉ tính mẫu của mục đã về).
+ */
+public final class SearchMetrics {
+
+    private static final String TAG = "SearchMetrics";
+
+    public static final String SONGS = "songs", ALBUMS = "albums", CATEGORIES = "categories";
+    private static final String[] SECTIONS = {SONGS, ALBUMS, CATEGORIES};
+
+    private static final int WINDOW = 64;
+    private static final int LOG_EVERY = 10;
+
+    private static final class Stat {
+        final long[] ring = new long[WINDOW];
+        int n = 0;          // số mẫu trong ring (<= WINDOW)
+        int next = 0;
+        long count = 0, max = 0, slowest = 0;
+
+        void add(long ms) {
+            ring[next] = ms;
+            next = (next + 1) % WINDOW;
+            if (n < WINDOW) n++;
+            count++;
+            if (ms > max) max = ms;
+        }
+
+        long percentile(int p) {
+            if (n == 0) return 0;
+            long[] s = Arrays.copyOf(ring, n);
+            Arrays.sort(s);
+            return s[Math.min(n - 1, (n * p) / 100)];
+        }
+    }
+
+    private final Map<String, Stat> stats = new LinkedHashMap<>();
+
+    // Query đang đo
+    private int queryId = 0;
+    private long queryStart;
+    private int pending;            // số mục chưa về
+    private String lastArrived;
+    private int completedQueries = 0;
+
+    public SearchMetrics() {
+        for (String s : SECTIONS) stats.put(s, new Stat());
+    }
+
+    /** Bắt đầu đo 1 query gộp mới. @return id truyền lại cho record() */
+    public synchronized int begin() {
+        queryStart = SystemClock.elapsedRealtime();
+        pending = SECTIONS.length;
+        lastArrived = null;
+        return ++queryId;
+    }
+
+    /**
+     * Ghi nhận mục section của query id đã có kết quả.
+     * @return độ trễ (ms), -1 nếu id đã cũ
+     */
+    public synchronized long record(int id, String section) {
+        if (id != queryId) return -1;
+        Stat st = stats.get(section);
+        if (st == null) return -1;
+        long ms = SystemClock.elapsedRealtime() - queryStart;
+        st.add(ms);
+        lastArrived = section;
+        if (--pending == 0) {
+            stats.get(lastArrived).slowest++;
+            if (++completedQueries % LOG_EVERY == 0) Log.d(TAG, summary());
+        }
+        return ms;
+    }
+
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("queries=").append(completedQueries);
+        for (Map.Entry<String, Stat> e : stats.entrySet()) {
+            Stat s = e.getValue();
+            sb.append(" | ").append(e.getKey())
+                    .append(": n=").append(s.count)
+                    .append(" p50=").append(s.percentile(50)).append("ms")
+                    .append(" p95=").append(s.percentile(95)).append("ms")
+                    .append(" max=").append(s.max).append("ms")
+                    .append(" slowest=").append(s.slowest);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,151 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * SearchResultCache:
+ * - LRU (tối đa MAX_ENTRIES query) giữ danh sách slot đã xếp hạng theo query đã chuẩn hoá -> xoá lùi / gõ lại
+ *   query vừa tìm chỉ cần cắt trang từ mảng có sẵn, không chấm điểm lại.
+ * - Hết hiệu lực khi: quá TTL_MS, hoặc catalog đổi (SongIndex.version() khác lúc cache) vì slot có thể đã đổi.
+ * - Thu hẹp tăng dần: gõ tiếp 1 query đã cache (vd "so" -> "son", "son" -> "son tung") thì chỉ chấm lại
+ *   các bài trong kết quả cũ (SongIndex.rankWithin) thay vì duyệt lại toàn bộ posting list.
+ *
+ * Lưu ý:
+ * - Chỉ thu hẹp khi chắc chắn kết quả mới là tập con của kết quả cũ (xem canNarrow()); không chắc thì chạy đầy đủ.
+ * - Không thread-safe: SongSearchEngine chỉ gọi trên thread worker (giống SongIndex).
+ */
+final class SearchResultCache {
+
+    private static final int MAX_ENTRIES = 64;
+    private static final long TTL_MS = 10 * 60_000L;
+    // Số kết quả xếp hạng sẵn cho 1 query; trang vượt quá -> xếp hạng lại sâu gấp đôi
+    private static final int INITIAL_DEPTH = 500;
+    // Giữ toàn bộ tập khớp (chưa xếp hạng) để thu hẹp nếu không quá lớn
+    private static final int MAX_NARROW_BASE = 5000;
+
+    private static final class Entry {
+        final int version;
+        final long createdAt;
+        final int[] slots;          // top đã xếp hạng, tốt nhất trước
+        final boolean complete;     // slots chứa toàn bộ bài khớp
+        final int[] matches;        // toàn bộ bài khớp (không thứ tự); null = không dùng để thu hẹp được
+
+        Entry(int version, int[] slots, boolean complete, int[] matches) {
+            this.version = version;
+            this.createdAt = SystemClock.elapsedRealtime();
+            this.slots = slots;
+            this.complete = complete;
+            this.matches = matches;
+        }
+    }
+
+    private final SongIndex index;
+    private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // Thống kê (log)
+    private long hits = 0, narrowed = 0, misses = 0;
+
+    SearchResultCache(SongIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * 1 trang kết quả cho q (đã qua VnText.fold).
+     * @param offset vị trí bắt đầu trong danh sách đã xếp hạng (0 = trang đầu)
+     * @return offset cho trang kế tiếp, -1 nếu đã hết
+     */
+    int page(String q, int offset, int limit, List<SongRemote> out) {
+        if (q.isEmpty() || limit <= 0) return -1;
+        offset = Math.max(0, offset);
+        int need = offset + limit;
+
+        Entry e = fresh(q);
+        if (e != null && (e.complete || e.slots.length >= need)) {
+            hits++;
+        } else {
+            int depth = Math.max(Math.max(INITIAL_DEPTH, need), e != null ? e.slots.length * 2 : 0);
+            e = compute(q, depth);
+            lru.put(q, e);
+        }
+        for (int i = offset; i < e.slots.length && i < need; i++) out.add(index.songAt(e.slots[i]));
+        // Chưa đủ hết (complete=false) -> chắc chắn còn bài sau vị trí slots.length
+        return need < e.slots.length || !e.complete ? need : -1;
+    }
+
+    String stats() {
+        return "hits=" + hits + " narrowed=" + narrowed + " misses=" + misses + " size=" + lru.size();
+    }
+
+    private Entry compute(String q, int depth) {
+        SongIndex.IntList top = new SongIndex.IntList();
+        Entry base = narrowingBase(q);
+        int count = 0;
+        if (base != null) {
+            count = index.rankWithin(q, base.matches, depth, top);
+            // Không bài nào trong tập cũ khớp -> cũng không bài nào trong catalog khớp theo từ; để match() chạy dự phòng
+            if (count > 0) narrowed++;
+        }
+        if (count == 0) {
+            top.size = 0;
+            count = index.match(q, depth, top);
+            misses++;
+        }
+        // Chỉ dùng làm gốc thu hẹp khi khớp theo từ, tiền tố không bị cắt và tập khớp không quá lớn
+        int[] matches = index.lastMatchByTerms && !index.lastPrefixCapped && count <= MAX_NARROW_BASE
+                ? index.lastMatches() : null;
+        return new Entry(index.version(), Arrays.copyOf(top.items, top.size), count <= depth, matches);
+    }
+
+    // Entry còn hiệu lực của q (bỏ luôn entry hết hạn)
+    private Entry fresh(String q) {
+        Entry e = lru.get(q);
+        if (e == null) return null;
+        if (e.version != index.version() || SystemClock.elapsedRealtime() - e.createdAt > TTL_MS) {
+            lru.remove(q);
+            return null;
+        }
+        return e;
+    }
+
+    // Entry của tiền tố dài nhất của q mà kết quả của q chắc chắn nằm trong đó
+    private Entry narrowingBase(String q) {
+        List<String> qTokens = null;
+        for (int len = q.length() - 1; len > 0; len--) {
+            String p = q.substring(0, len);
+            if (!lru.containsKey(p)) continue;
+            Entry e = fresh(p);
+            if (e == null || e.matches == null) continue;
+            if (qTokens == null) qTokens = SongIndex.tokenize(q);
+            if (canNarrow(SongIndex.tokenize(p), qTokens)) return e;
+        }
+        return null;
+    }
+
+    /**
+     * Kết quả của q có chắc chắn là tập con kết quả của p không (p là tiền tố của q).
+     * - Các từ của p trừ từ cuối phải giữ nguyên trong q (cùng cách khớp: chính xác / sai chữ).
+     * - Từ cuối của p (khớp theo tiền tố) giữ nguyên, hoặc được gõ dài thêm nhưng vẫn ngắn tới mức
+     *   không được chịu lỗi gõ (maxEdits = 0) -> mọi term khớp đều bắt đầu bằng từ cũ.
+     * - Từ thêm sau đó chỉ thêm điều kiện AND -> chỉ thu hẹp.
+     */
+    static boolean canNarrow(List<String> pTokens, List<String> qTokens) {
+        int m = pTokens.size();
+        if (m == 0 || qTokens.size() < m) return false;
+        for (int i = 0; i < m - 1; i++) {
+            if (!pTokens.get(i).equals(qTokens.get(i))) return false;
+        }
+        String pl = pTokens.get(m - 1), ql = qTokens.get(m - 1);
+        return ql.equals(pl) || (ql.startsWith(pl) && SongIndex.maxEdits(ql) == 0);
+    }
+}
@@ -0,0 +1,68 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * SearchTokens:
+ * - Quy ước trường "searchTokens" trên document bài hát (albums/{albumId}/songs/{songId}) để tìm trên server
+ *   bằng 1 query whereArrayContains(...).limit(n) thay vì tải cả collectionGroup("songs").
+ * - Token = mọi tiền tố (1..MAX_PREFIX ký tự) của mỗi từ trong tiêu đề + tác giả, đã chuẩn hoá bằng VnText
+ *   ("Sơn Tùng" -> s, so, son, t, tu, tun, tung) -> gõ dở 1 từ bất kỳ vẫn khớp.
+ * - Dùng chung cho app (sinh token của query + lọc lại phía client) và công cụ backfill (module :tools)
+ *   để 2 phía luôn sinh token giống hệt nhau.
+ *
+ * Lưu ý:
+ * - Firestore chỉ cho 1 điều kiện array-contains mỗi query -> server lọc theo từ dài nhất (ít bài khớp nhất),
+ *   các từ còn lại lọc ở client bằng matches().
+ * - Đổi cách sinh token thì tăng VERSION rồi chạy lại backfill (document có searchTokensVersion cũ sẽ được ghi lại).
+ */
+public final class SearchTokens {
+
+    public static final String FIELD = "searchTokens";
+    public static final String VERSION_FIELD = "searchTokensVersion";
+    public static final int VERSION = 1;
+    public static final int MAX_PREFIX = 12;
+
+    private SearchTokens() {}
+
+    /** Token của 1 bài (đã sắp xếp, không trùng). */
+    public static List<String> forSong(String title, String author) {
+        TreeSet<String> out = new TreeSet<>();
+        addPrefixes(VnText.fold(title), out);
+        addPrefixes(VnText.fold(author), out);
+        return new ArrayList<>(out);
+    }
+
+    private static void addPrefixes(String folded, TreeSet<String> out) {
+        for (String w : VnText.words(folded)) {
+            for (int len = 1, n = Math.min(w.length(), MAX_PREFIX); len <= n; len++) out.add(w.substring(0, len));
+        }
+    }
+
+    /**
+     * Token dùng cho điều kiện array-contains của query đã chuẩn hoá: từ dài nhất (cắt ở MAX_PREFIX).
+     * @return null nếu query không có từ nào
+     */
+    public static String queryToken(String foldedQuery) {
+        String best = null;
+        for (String w : VnText.words(foldedQuery)) {
+            if (best == null || w.length() > best.length()) best = w;
+        }
+        if (best == null) return null;
+        return best.length() > MAX_PREFIX ? best.substring(0, MAX_PREFIX) : best;
+    }
+
+    /** Lọc phía client: mọi từ của query phải là tiền tố của 1 từ trong tiêu đề hoặc tác giả. */
+    public static boolean matches(String foldedQuery, String title, String author) {
+        List<String> words = VnText.words(VnText.fold(title));
+        words.addAll(VnText.words(VnText.fold(author)));
+        for (String q : VnText.words(foldedQuery)) {
+            boolean hit = false;
+            for (int i = 0; i < words.size() && !hit; i++) hit = words.get(i).startsWith(q);
+            if (!hit) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,569 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import vn.khengandkhoi.musicplayer.catalog.SongTable;
+import vn.khengandkhoi.musicplayer.catalog.StringPool;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * SongIndex:
+ * - Index bài hát trong bộ nhớ, 2 tầng:
+ *   (1) Term index theo từng trường (tiêu đề / tác giả / album) -> chấm điểm BM25F, chịu lỗi gõ 1–2 ký tự
+ *       (BkTree trên từ điển term) và mở rộng tiền tố cho từ cuối đang gõ dở.
+ *   (2) Trigram index trên chuỗi "tiêu đề tác giả tên-album" -> dự phòng so khớp chuỗi con khi (1) không ra kết quả
+ *       (vd: gõ giữa 1 từ).
+ * - Chỉ giữ top-K bằng heap có kích thước cố định, không sort toàn bộ tập khớp.
+ * - Mỗi bài chiếm 1 slot (số nguyên tăng dần); posting list là mảng slot tăng dần.
+ * - Dữ liệu bài lưu dạng cột: slot = dòng của SongTable, 3 trường đã chuẩn hoá là id trong cùng StringPool
+ *   -> không giữ List<SongRemote> / chuỗi haystack riêng cho từng bài; songAt() dựng object khi cần hiển thị.
+ * - Cập nhật tăng dần: put() cho bài thêm/sửa, remove()/removeAlbum() cho bài bị xoá; slot cũ chỉ bị đánh dấu chết
+ *   và được dọn khi số slot chết vượt số slot sống (compact()).
+ *
+ * Lưu ý:
+ * - Không thread-safe: chỉ SongSearchEngine gọi, luôn trên 1 thread nền duy nhất.
+ * - Các mảng chấm điểm (total/stamp...) được tái sử dụng giữa các query -> không cấp phát theo số bài.
+ */
+final class SongIndex {
+
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    // Trường được index + trọng số BM25F
+    static final int F_TITLE = 0, F_AUTHOR = 1, F_ALBUM = 2, FIELDS = 3;
+    private static final float[] FIELD_WEIGHT = {3f, 2f, 1f};
+    private static final float K1 = 1.2f, B = 0.75f;
+
+    // Trọng số theo kiểu khớp term
+    private static final float W_EXACT = 1f, W_PREFIX = 0.75f, W_EDIT1 = 0.6f, W_EDIT2 = 0.4f;
+    private static final int MAX_PREFIX_TERMS = 64;
+
+    // Dữ liệu theo slot: bài ở dòng slot của table; slotTerms null = slot đã chết
+    private StringPool pool = new StringPool();
+    private SongTable table = new SongTable(pool);
+    private int[] foldedRefs = new int[FIELDS * 256];               // FIELDS id chuỗi đã chuẩn hoá mỗi slot
+    private final ArrayList<int[][]> slotTerms = new ArrayList<>(); // term id theo từng trường
+
+    // path -> slot: id path trong pathPool -> slot + 1 (0 = không có), và ngược lại
+    private StringPool pathPool = new StringPool();
+    private int[] slotOfPath = new int[256];
+    private int[] pathOfSlot = new int[256];
+    private int live = 0;
+
+    private final HashMap<String, IntList> slotsByAlbum = new HashMap<>();
+    private final HashMap<Long, IntList> trigrams = new HashMap<>();
+
+    // Từ điển term (sắp xếp để mở rộng tiền tố) + posting list theo term + BkTree cho lỗi gõ
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    private final ArrayList<IntList> termPostings = new ArrayList<>();
+    private final BkTree bkTree = new BkTree();
+
+    // Tổng độ dài (số term) từng trường của các bài còn sống -> độ dài trung bình cho BM25
+    private final long[] fieldLengthSum = new long[FIELDS];
+    private int dead = 0;
+    // Tăng mỗi lần index đổi (thêm/xoá/dọn slot) -> kết quả đã cache theo slot hết hiệu lực
+    private int version = 0;
+    private final StringBuilder buf = new StringBuilder(128);
+
+    // Bộ nhớ chấm điểm tái sử dụng (theo slot)
+    private float[] total = new float[0];
+    private float[] tokenBest = new float[0];
+    private int[] matched = new int[0];
+    private int[] docStamp = new int[0];
+    private int[] tokenStamp = new int[0];
+    private int stamp = 0;
+    private final IntList candidates = new IntList();
+    private final IntList touched = new IntList();
+
+    // Thông tin về lần match() gần nhất (SearchResultCache dùng để biết có thu hẹp tiếp được không)
+    boolean lastMatchByTerms = false;   // true = khớp theo từ, false = dự phòng chuỗi con
+    boolean lastPrefixCapped = false;   // mở rộng tiền tố bị cắt ở MAX_PREFIX_TERMS
+
+    /** Thêm hoặc thay thế bài tại path (đường dẫn document albums/{albumId}/songs/{songId}). */
+    void put(String path, String albumId, SongRemote song, String albumTitle) {
+        remove(path);
+        String[] f = new String[FIELDS];
+        f[F_TITLE] = VnText.fold(song.getTitle());
+        f[F_AUTHOR] = VnText.fold(song.getAuthor());
+        f[F_ALBUM] = VnText.fold(albumTitle);
+        add(path, albumId, song, f);
+    }
+
+    private void add(String path, String albumId, SongRemote song, String[] f) {
+        int slot = table.add(albumId, song);
+        version++;
+        if (slot == pathOfSlot.length) {
+            foldedRefs = Arrays.copyOf(foldedRefs, FIELDS * slot * 2);
+            pathOfSlot = Arrays.copyOf(pathOfSlot, slot * 2);
+        }
+
+        int[][] terms = new int[FIELDS][];
+        for (int k = 0; k < FIELDS; k++) {
+            terms[k] = termsOf(f[k], slot);
+            fieldLengthSum[k] += terms[k].length;
+            foldedRefs[FIELDS * slot + k] = pool.intern(f[k]);
+        }
+        slotTerms.add(terms);
+
+        int p = pathPool.intern(path);
+        if (p >= slotOfPath.length) slotOfPath = Arrays.copyOf(slotOfPath, Math.max(p + 1, slotOfPath.length * 2));
+        slotOfPath[p] = slot + 1;
+        pathOfSlot[slot] = p;
+        live++;
+        listFor(slotsByAlbum, albumId).add(slot);
+
+        // Trigram đọc thẳng từ buffer tái sử dụng -> không cấp phát chuỗi haystack
+        haystack(slot);
+        for (int i = 0; i + 3 <= buf.length(); i++) {
+            IntList list = listFor(trigrams, trigram(buf, i));
+            // slot tăng dần -> trigram lặp lại trong cùng bài chỉ cần so với phần tử cuối
+            if (list.size == 0 || list.last() != slot) list.add(slot);
+        }
+    }
+
+    // Tách term của 1 trường, đăng ký term mới vào từ điển + BkTree, ghi posting list cho slot
+    private int[] termsOf(String text, int slot) {
+        List<String> tokens = tokenize(text);
+        int[] ids = new int[tokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String t = tokens.get(i);
+            Integer id = termIds.get(t);
+            if (id == null) {
+                id = termPostings.size();
+                termIds.put(t, id);
+                termPostings.add(new IntList());
+                bkTree.add(t, id);
+            }
+            ids[i] = id;
+            IntList p = termPostings.get(id);
+            if (p.size == 0 || p.last() != slot) p.add(slot);
+        }
+        return ids;
+    }
+
+    void remove(String path) {
+        int p = pathPool.find(path);
+        if (p == StringPool.NULL || slotOfPath[p] == 0) return;
+        int slot = slotOfPath[p] - 1;
+        slotOfPath[p] = 0;
+        int[][] terms = slotTerms.get(slot);
+        for (int k = 0; k < FIELDS; k++) fieldLengthSum[k] -= terms[k].length;
+        slotTerms.set(slot, null);
+        live--;
+        version++;
+        dead++;
+        if (dead > MIN_COMPACT_DEAD && dead > live) compact();
+    }
+
+    // "tiêu đề tác giả tên-album" đã chuẩn hoá của slot -> buf (dùng chung cho trigram và so khớp chuỗi con)
+    private void haystack(int slot) {
+        buf.setLength(0);
+        for (int k = 0; k < FIELDS; k++) {
+            if (k > 0) buf.append(' ');
+            pool.appendTo(foldedRefs[FIELDS * slot + k], buf);
+        }
+    }
+
+    /** Gỡ mọi bài của album (trước khi index lại album từ bản sao catalog, hoặc album bị xoá). */
+    void removeAlbum(String albumId) {
+        IntList slots = slotsByAlbum.get(albumId);
+        if (slots == null) return;
+        // Lấy path trước: remove() có thể compact() giữa chừng làm đổi slot
+        List<String> paths = new ArrayList<>(slots.size);
+        for (int i = 0; i < slots.size; i++) {
+            int slot = slots.items[i];
+            if (slotTerms.get(slot) != null) paths.add(pathPool.get(pathOfSlot[slot]));
+        }
+        for (String path : paths) remove(path);
+        slotsByAlbum.remove(albumId);
+    }
+
+    int size() { return live; }
+
+    int version() { return version; }
+
+    /** Bài ở slot dưới dạng object mới (null = slot đã chết). */
+    SongRemote songAt(int slot) { return slotTerms.get(slot) != null ? table.song(slot) : null; }
+
+    /** Ước lượng bộ nhớ heap của dữ liệu bài (bảng cột + pool + mảng theo slot), không tính term/trigram. */
+    long storeBytes() {
+        return table.heapBytes() + pathPool.heapBytes() + 4L * (foldedRefs.length + pathOfSlot.length + slotOfPath.length);
+    }
+
+    /** Toàn bộ slot khớp (chưa xếp hạng) của lần match()/rankWithin() theo từ gần nhất. */
+    int[] lastMatches() {
+        return lastMatchByTerms ? Arrays.copyOf(candidates.items, candidates.size) : new int[0];
+    }
+
+    /** Duyệt các bài còn sống (dùng để dựng SuggestTrie). */
+    interface LiveVisitor { void visit(String title, String author, String albumId); }
+
+    void forEachLive(LiveVisitor v) {
+        for (int slot = 0; slot < slotTerms.size(); slot++) {
+            if (slotTerms.get(slot) != null) v.visit(table.title(slot), table.author(slot), table.albumId(slot));
+        }
+    }
+
+    /**
+     * Tìm và xếp hạng các bài khớp q (q đã qua VnText.fold), lấy tối đa k slot theo thứ hạng.
+     * - Mọi từ trong query phải khớp (chính xác / tiền tố với từ cuối / sai 1–2 ký tự) ở ít nhất 1 trường.
+     * - Không có bài nào khớp theo từ -> dự phòng so khớp chuỗi con qua trigram (giữ thứ tự catalog).
+     * @param out nhận slot đã xếp hạng (tốt nhất trước)
+     * @return tổng số bài khớp; > k nghĩa là out chưa đủ hết
+     */
+    int match(String q, int k, IntList out) {
+        lastMatchByTerms = false;
+        lastPrefixCapped = false;
+        if (q.isEmpty() || k <= 0) return 0;
+        int count = rank(q, k, out);
+        if (count > 0) {
+            lastMatchByTerms = true;
+            return count;
+        }
+        out.size = 0;
+        // Lấy dư 1 bài để biết còn nữa hay không
+        count = substring(q, k + 1, out);
+        if (out.size > k) out.size = k;
+        return count;
+    }
+
+    /**
+     * Như match() nhưng chỉ chấm lại điểm các slot trong within (tập kết quả của 1 query ngắn hơn đã cache)
+     * -> không duyệt posting list, chi phí tỉ lệ với |within| thay vì kích thước catalog.
+     * - Cùng công thức/trọng số với rank() nên thứ tự kết quả trùng khớp với chạy đầy đủ.
+     * @return tổng số bài khớp (0 = không bài nào trong within khớp đủ các từ)
+     */
+    int rankWithin(String q, int[] within, int k, IntList out) {
+        lastMatchByTerms = true;
+        lastPrefixCapped = false;
+        List<String> tokens = tokenize(q);
+        if (tokens.isEmpty() || k <= 0) return 0;
+        ensureCapacity(slotTerms.size());
+        int live = Math.max(1, this.live);
+        float[] avgLen = averageLengths(live);
+
+        List<Map<Integer, Float>> expansions = new ArrayList<>(tokens.size());
+        for (int ti = 0; ti < tokens.size(); ti++) {
+            Map<Integer, Float> ex = expand(tokens.get(ti), ti == tokens.size() - 1);
+            if (ex.isEmpty()) return 0;
+            expansions.add(ex);
+        }
+
+        candidates.size = 0;
+        for (int slot : within) {
+            int[][] terms = slotTerms.get(slot);
+            if (terms == null) continue;
+            float sum = 0f;
+            boolean all = true;
+            for (Map<Integer, Float> ex : expansions) {
+                float best = -1f;
+                for (int f = 0; f < FIELDS; f++) {
+                    for (int term : terms[f]) {
+                        Float w = ex.get(term);
+                        if (w == null) continue;
+                        float c = w * idf(termPostings.get(term).size, live) * fieldScore(terms, term, avgLen);
+                        if (c > best) best = c;
+                    }
+                }
+                if (best < 0f) {
+                    all = false;
+                    break;
+                }
+                sum += best;
+            }
+            if (!all) continue;
+            total[slot] = sum;
+            candidates.add(slot);
+        }
+        return selectTop(candidates, k, out);
+    }
+
+    // Số phép sửa cho phép với 1 từ của query (từ ngắn -> phải khớp đúng)
+    static int maxEdits(String token) {
+        return token.length() >= 8 ? 2 : token.length() >= 4 ? 1 : 0;
+    }
+
+    /**
+     * Chấm điểm BM25F cho mọi bài khớp đủ các từ của query, giữ top-k trong min-heap.
+     * @return tổng số bài khớp (để biết còn trang sau không)
+     */
+    private int rank(String q, int k, IntList out) {
+        List<String> tokens = tokenize(q);
+        if (tokens.isEmpty()) return 0;
+        ensureCapacity(slotTerms.size());
+        int live = Math.max(1, this.live);
+        float[] avgLen = averageLengths(live);
+
+        int queryStamp = ++stamp;
+        candidates.size = 0;
+        for (int ti = 0; ti < tokens.size(); ti++) {
+            boolean last = ti == tokens.size() - 1;
+            Map<Integer, Float> expansions = expand(tokens.get(ti), last);
+            if (expansions.isEmpty()) return 0; // có từ không khớp term nào -> không bài nào đủ điều kiện
+
+            int tokStamp = ++stamp;
+            touched.size = 0;
+            for (Map.Entry<Integer, Float> ex : expansions.entrySet()) {
+                int term = ex.getKey();
+                IntList posting = termPostings.get(term);
+                float idf = idf(posting.size, live);
+                for (int i = 0; i < posting.size; i++) {
+                    int slot = posting.items[i];
+                    int[][] terms = slotTerms.get(slot);
+                    if (terms == null) continue; // slot chết
+                    // Từ thứ ti chỉ xét bài đã khớp đủ ti từ trước (AND)
+                    if (ti > 0 && (docStamp[slot] != queryStamp || matched[slot] != ti)) continue;
+                    float c = ex.getValue() * idf * fieldScore(terms, term, avgLen);
+                    if (tokenStamp[slot] != tokStamp) {
+                        tokenStamp[slot] = tokStamp;
+                        tokenBest[slot] = c;
+                        touched.add(slot);
+                    } else if (c > tokenBest[slot]) {
+                        tokenBest[slot] = c;
+                    }
+                }
+            }
+            for (int i = 0; i < touched.size; i++) {
+                int slot = touched.items[i];
+                if (ti == 0) {
+                    docStamp[slot] = queryStamp;
+                    matched[slot] = 1;
+                    total[slot] = tokenBest[slot];
+                    candidates.add(slot);
+                } else {
+                    matched[slot]++;
+                    total[slot] += tokenBest[slot];
+                }
+            }
+        }
+
+        // Chỉ giữ bài khớp đủ mọi từ
+        int n = tokens.size(), kept = 0;
+        for (int i = 0; i < candidates.size; i++) {
+            int slot = candidates.items[i];
+            if (matched[slot] == n) candidates.items[kept++] = slot;
+        }
+        candidates.size = kept;
+        return selectTop(candidates, k, out);
+    }
+
+    private float[] averageLengths(int live) {
+        float[] avgLen = new float[FIELDS];
+        for (int f = 0; f < FIELDS; f++) avgLen[f] = Math.max(1f, (float) fieldLengthSum[f] / live);
+        return avgLen;
+    }
+
+    // Top-k (theo total[]) của cands bằng min-heap kích thước k: O(n log k) thay vì sort toàn bộ O(n log n)
+    private int selectTop(IntList cands, int k, IntList out) {
+        int[] heap = new int[Math.max(1, k)];
+        int heapSize = 0;
+        for (int i = 0; i < cands.size; i++) {
+            int slot = cands.items[i];
+            if (heapSize < k) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (better(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        // Lấy ra từ heap (kém nhất trước) và điền ngược -> điểm cao nhất đứng đầu
+        int[] sorted = new int[heapSize];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        for (int slot : sorted) out.add(slot);
+        return cands.size;
+    }
+
+    // Các term ứng viên cho 1 từ của query -> trọng số khớp tốt nhất
+    private Map<Integer, Float> expand(String token, boolean last) {
+        HashMap<Integer, Float> out = new HashMap<>();
+        Integer exact = termIds.get(token);
+        if (exact != null) out.put(exact, W_EXACT);
+        // Từ cuối có thể đang gõ dở -> mở rộng theo tiền tố
+        if (last) {
+            int n = 0;
+            for (Map.Entry<String, Integer> e : termIds.tailMap(token, false).entrySet()) {
+                if (!e.getKey().startsWith(token)) break;
+                if (n++ >= MAX_PREFIX_TERMS) {
+                    lastPrefixCapped = true;
+                    break;
+                }
+                out.put(e.getValue(), W_PREFIX);
+            }
+        }
+        int maxEdits = maxEdits(token);
+        if (maxEdits > 0) {
+            bkTree.search(token, maxEdits, (term, edits) -> {
+                if (edits == 0) return;
+                float w = edits == 1 ? W_EDIT1 : W_EDIT2;
+                Float old = out.get(term);
+                if (old == null || old < w) out.put(term, w);
+            });
+        }
+        return out;
+    }
+
+    // BM25F: tổng có trọng số theo trường của thành phần tf đã chuẩn hoá độ dài
+    private static float fieldScore(int[][] terms, int term, float[] avgLen) {
+        float s = 0f;
+        for (int f = 0; f < FIELDS; f++) {
+            int[] t = terms[f];
+            int tf = 0;
+            for (int id : t) if (id == term) tf++;
+            if (tf == 0) continue;
+            float norm = K1 * (1 - B + B * t.length / avgLen[f]);
+            s += FIELD_WEIGHT[f] * (tf * (K1 + 1)) / (tf + norm);
+        }
+        return s;
+    }
+
+    private static float idf(int df, int n) {
+        return (float) Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    // Điểm cao hơn đứng trước; bằng điểm -> slot nhỏ hơn (thêm vào catalog sớm hơn) đứng trước
+    private boolean better(int a, int b) {
+        return total[a] != total[b] ? total[a] > total[b] : a < b;
+    }
+
+    // Min-heap theo "better": gốc là phần tử kém nhất trong top-k
+    private void siftUp(int[] h, int i) {
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (!better(h[p], h[i])) break;
+            int t = h[p]; h[p] = h[i]; h[i] = t;
+            i = p;
+        }
+    }
+
+    private void siftDown(int[] h, int size) {
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, worst = i;
+            if (l < size && better(h[worst], h[l])) worst = l;
+            if (r < size && better(h[worst], h[r])) worst = r;
+            if (worst == i) return;
+            int t = h[i]; h[i] = h[worst]; h[worst] = t;
+            i = worst;
+        }
+    }
+
+    // Đường dự phòng: các bài có chuỗi chuẩn hoá chứa q (giao posting list trigram + kiểm tra contains())
+    private int substring(String q, int max, IntList out) {
+        if (q.length() < 3) {
+            for (int slot = 0; slot < slotTerms.size() && out.size < max; slot++) {
+                if (slotTerms.get(slot) == null) continue;
+                haystack(slot);
+                if (buf.indexOf(q) >= 0) out.add(slot);
+            }
+            return out.size;
+        }
+
+        // Posting list của các trigram khác nhau trong query, ngắn nhất đứng đầu
+        Set<Long> keys = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= q.length(); i++) keys.add(trigram(q, i));
+        IntList[] lists = new IntList[keys.size()];
+        int n = 0;
+        for (long key : keys) {
+            IntList list = trigrams.get(key);
+            if (list == null) return 0; // có trigram không xuất hiện ở bài nào
+            lists[n++] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        IntList first = lists[0];
+        for (int i = 0; i < first.size && out.size < max; i++) {
+            int slot = first.items[i];
+            boolean all = true;
+            for (int k = 1; k < lists.length && all; k++) {
+                all = Arrays.binarySearch(lists[k].items, 0, lists[k].size, slot) >= 0;
+            }
+            if (!all || slotTerms.get(slot) == null) continue;
+            haystack(slot);
+            if (buf.indexOf(q) >= 0) out.add(slot);
+        }
+        return out.size;
+    }
+
+    private void ensureCapacity(int n) {
+        if (total.length >= n) return;
+        int cap = Math.max(n, total.length * 2);
+        total = Arrays.copyOf(total, cap);
+        tokenBest = Arrays.copyOf(tokenBest, cap);
+        matched = Arrays.copyOf(matched, cap);
+        docStamp = Arrays.copyOf(docStamp, cap);
+        tokenStamp = Arrays.copyOf(tokenStamp, cap);
+    }
+
+    // Dựng lại index chỉ với các slot còn sống (posting list bỏ hết slot chết)
+    // Bảng cột + pool cũng dựng mới -> chuỗi chỉ bài chết còn dùng được giải phóng
+    private void compact() {
+        SongTable oldTable = table;
+        StringPool oldPool = pool, oldPaths = pathPool;
+        int[] oldFolded = foldedRefs, oldPathOf = pathOfSlot;
+        ArrayList<int[][]> oldTerms = new ArrayList<>(slotTerms);
+        pool = new StringPool();
+        table = new SongTable(pool);
+        pathPool = new StringPool();
+        foldedRefs = new int[FIELDS * Math.max(256, live)];
+        pathOfSlot = new int[Math.max(256, live)];
+        slotOfPath = new int[Math.max(256, live)];
+        live = 0;
+        slotTerms.clear(); slotsByAlbum.clear(); trigrams.clear();
+        // Giữ nguyên từ điển term + BkTree (id term không đổi), chỉ làm rỗng posting list
+        for (IntList p : termPostings) p.size = 0;
+        Arrays.fill(fieldLengthSum, 0);
+        Arrays.fill(docStamp, 0);
+        Arrays.fill(tokenStamp, 0);
+        dead = 0;
+        version++;
+        String[] f = new String[FIELDS];
+        for (int i = 0; i < oldTerms.size(); i++) {
+            if (oldTerms.get(i) == null) continue;
+            for (int k = 0; k < FIELDS; k++) f[k] = oldPool.get(oldFolded[FIELDS * i + k]);
+            add(oldPaths.get(oldPathOf[i]), oldTable.albumId(i), oldTable.song(i), f);
+        }
+    }
+
+    // Tách từ: chuỗi đã chuẩn hoá -> các đoạn chữ/số liên tiếp (dùng chung với SearchTokens phía server)
+    static List<String> tokenize(String s) {
+        return VnText.words(s);
+    }
+
+    // Gói 3 ký tự (16 bit mỗi ký tự) vào 1 long
+    private static long trigram(CharSequence s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static <K> IntList listFor(HashMap<K, IntList> map, K key) {
+        IntList list = map.get(key);
+        if (list == null) {
+            list = new IntList();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    // Mảng int tự giãn (tránh boxing Integer trong posting list)
+    static final class IntList {
+        int[] items = new int[4];
+        int size = 0;
+
+        void add(int v) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = v;
+        }
+
+        int last() { return items[size - 1]; }
+    }
+}
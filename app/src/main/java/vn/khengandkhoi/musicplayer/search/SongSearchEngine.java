@@ -0,0 +1,281 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import vn.khengandkhoi.musicplayer.AppExecutors;
+import vn.khengandkhoi.musicplayer.catalog.CatalogSync;
+import vn.khengandkhoi.musicplayer.catalog.CatalogView;
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * SongSearchEngine:
+ * - Máy tìm kiếm bài hát chạy hoàn toàn trên máy: giữ SongIndex (term + trigram) của toàn bộ catalog trong bộ nhớ.
+ * - Nguồn dữ liệu là bản sao catalog của CatalogSync (không tự nghe Firestore):
+ *   + start(): dựng index từ view() hiện có (snapshot đã ánh xạ) -> khởi động ấm có kết quả ngay, 0 lượt đọc.
+ *   + Sau mỗi lần delta sync: CatalogSync báo các album bị đụng tới -> chỉ index lại bài của các album đó
+ *     (null = đổi toàn bộ -> dựng lại index mới).
+ * - Mọi việc đọc bản sao, chuẩn hoá chuỗi, index và query chạy tuần tự trên lane compute (AppExecutors);
+ *   kết quả được post về main thread.
+ *
+ * Lưu ý:
+ * - Singleton theo process (get()); start() gọi nhiều lần chỉ đăng ký 1 lần, phải gọi trên main thread.
+ * - Chưa có bản sao (cài mới, không có bundle) -> index sẵn sàng sau lần đồng bộ đầu tiên;
+ *   query gửi tới trước đó được xếp hàng và chạy ngay khi index sẵn sàng.
+ */
+public final class SongSearchEngine {
+
+    private static final String TAG = "SongSearchEngine";
+
+    /** 1 trang kết quả; nextCursor truyền lại cho search() để lấy trang kế tiếp (-1 = hết). */
+    public static final class Page {
+        public final String query;
+        public final List<SongRemote> items;
+        public final int nextCursor;
+
+        Page(String query, List<SongRemote> items, int nextCursor) {
+            this.query = query;
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public boolean hasMore() { return nextCursor >= 0; }
+    }
+
+    /** Nhận kết quả tìm kiếm trên main thread. */
+    public interface Callback { void onResult(Page page); }
+
+    private static volatile SongSearchEngine instance;
+
+    public static SongSearchEngine get() {
+        if (instance == null) {
+            synchronized (SongSearchEngine.class) {
+                if (instance == null) instance = new SongSearchEngine();
+            }
+        }
+        return instance;
+    }
+
+    // Tuần tự trên lane compute: index chỉ bị 1 thread chạm tới tại 1 thời điểm
+    private final Executor worker;
+    private final Handler main;
+
+    // Chỉ truy cập trên worker; đổi toàn bộ -> thay cả index lẫn cache kết quả
+    private SongIndex index = new SongIndex();
+    private SearchResultCache results = new SearchResultCache(index);
+    private final Map<String, String> albumTitles = new HashMap<>();
+    private final List<Runnable> waiting = new ArrayList<>();
+    private volatile boolean ready = false;
+    // Thế hệ của lời gọi search() mới nhất: mọi lời gọi cũ hơn bị bỏ trước khi chuẩn hoá/query
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private CatalogSync sync;
+    private volatile List<Album> albums;
+    private final List<Runnable> albumWaiters = new ArrayList<>();
+
+    // Gợi ý typeahead: bất biến, thay cả instance khi catalog đổi -> đọc trên main thread không cần khoá
+    private static final long SUGGEST_REBUILD_DELAY_MS = 2000L;
+    private volatile SuggestTrie suggestTrie = SuggestTrie.empty();
+    private AtomicFile suggestFile;
+    private final Runnable rebuildSuggestions;
+
+    private SongSearchEngine() {
+        this(AppExecutors.get().serial(AppExecutors.get().compute(), "search-index"), new Handler(Looper.getMainLooper()));
+    }
+
+    /** Cho test: worker tuần tự và handler main tuỳ chọn, nạp catalog bằng apply(view, null) trên worker. */
+    SongSearchEngine(Executor worker, Handler main) {
+        this.worker = worker;
+        this.main = main;
+        rebuildSuggestions = () -> worker.execute(this::rebuildSuggestTrie);
+    }
+
+    /** Bắt đầu dựng index từ bản sao catalog và theo dõi thay đổi (idempotent, gọi trên main thread). */
+    public synchronized void start(Context context) {
+        if (sync != null) return;
+        Context app = context.getApplicationContext();
+        // Gợi ý đã lưu từ lần chạy trước -> có ngay khi mở màn hình, không chờ catalog
+        suggestFile = new AtomicFile(new File(app.getFilesDir(), "suggest.bin"));
+        worker.execute(this::loadSuggestTrie);
+        sync = CatalogSync.get(app);
+        // Đăng ký trước khi dựng lần đầu -> không lỡ lần đồng bộ nào xong giữa chừng (áp lại album thì vô hại)
+        sync.addListener(albumIds -> worker.execute(() -> apply(sync.view(), albumIds)));
+        worker.execute(() -> apply(sync.view(), null));
+        sync.syncSoon();
+    }
+
+    // Chạy trên worker: đưa index về khớp bản sao view (albumIds null = dựng lại toàn bộ)
+    void apply(CatalogView view, Set<String> albumIds) {
+        if (view == null) return; // chưa có bản sao: chờ lần đồng bộ đầu tiên báo về
+        if (ready && albumIds != null && albumIds.isEmpty()) return; // chỉ thể loại đổi
+        long t0 = SystemClock.elapsedRealtime();
+        List<Album> list = view.albumList();
+        albumTitles.clear();
+        for (Album a : list) albumTitles.put(a.getId(), a.getTitle());
+
+        if (albumIds == null || !ready) {
+            SongIndex next = new SongIndex();
+            view.forEachSong((albumId, docId, s) -> next.put(pathOf(albumId, docId), albumId, s, albumTitles.get(albumId)));
+            index = next;
+            results = new SearchResultCache(next);
+        } else {
+            for (String albumId : albumIds) {
+                index.removeAlbum(albumId); // album bị xoá thì dừng ở đây
+                view.forEachSongOf(albumId, (a, docId, s) -> index.put(pathOf(a, docId), a, s, albumTitles.get(a)));
+            }
+        }
+        Log.d(TAG, "index " + (albumIds == null ? "built" : "updated (" + albumIds.size() + " albums)") + ": "
+                + index.size() + " songs (store ~" + index.storeBytes() / 1024 + "KB), "
+                + (SystemClock.elapsedRealtime() - t0) + "ms");
+
+        publishAlbums(list);
+        scheduleSuggestRebuild();
+        if (!ready) {
+            ready = true;
+            // Mốc khởi động lạnh: từ lúc process bắt đầu tới khi tìm kiếm cục bộ trả lời được
+            Log.d(TAG, "index ready " + (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime())
+                    + "ms after process start, " + index.size() + " songs");
+            for (Runnable r : waiting) r.run();
+            waiting.clear();
+        }
+    }
+
+    // Ảnh chụp bất biến danh sách album cho FederatedSearch (đọc từ thread khác)
+    private void publishAlbums(List<Album> list) {
+        List<Runnable> run;
+        synchronized (albumWaiters) {
+            albums = Collections.unmodifiableList(list);
+            run = new ArrayList<>(albumWaiters);
+            albumWaiters.clear();
+        }
+        for (Runnable r : run) r.run();
+    }
+
+    /** Danh sách album hiện có (null = chưa nạp lần đầu). */
+    List<Album> albums() { return albums; }
+
+    /** Chạy r ngay khi danh sách album đã nạp (ngay lập tức nếu đã có); r chạy trên thread gọi hoặc worker. */
+    void whenAlbumsLoaded(Runnable r) {
+        synchronized (albumWaiters) {
+            if (albums == null) {
+                albumWaiters.clear(); // chỉ giữ lời gọi mới nhất
+                albumWaiters.add(r);
+                return;
+            }
+        }
+        r.run();
+    }
+
+    /** Index đã nạp xong catalog lần đầu chưa (UI có thể dùng đường server trong lúc chờ). */
+    public boolean isReady() { return ready; }
+
+    /**
+     * Tìm 1 trang bài hát theo từ khoá (chưa chuẩn hoá), trả kết quả về main thread.
+     * - Mỗi lời gọi mang 1 thế hệ mới và thay thế mọi lời gọi trước đó: lời gọi cũ còn trong hàng đợi
+     *   bị bỏ trước khi làm bất kỳ việc gì, kết quả cũ về muộn không bao giờ tới callback.
+     * - Kết quả đã xếp hạng (BM25F, chịu lỗi gõ), con trỏ là vị trí trong danh sách xếp hạng.
+     * - Query vừa tìm gần đây lấy thẳng từ SearchResultCache; gõ tiếp 1 query đã cache chỉ chấm lại tập cũ.
+     * @param cursor   -1 cho trang đầu, hoặc Page.nextCursor của trang trước
+     * @param pageSize số kết quả tối đa của trang
+     */
+    public void search(String query, int cursor, int pageSize, Callback cb) {
+        final int gen = generation.incrementAndGet();
+        worker.execute(() -> {
+            Runnable run = () -> {
+                if (gen != generation.get()) return; // đã có query mới hơn
+                long t0 = SystemClock.elapsedRealtime();
+                List<SongRemote> items = new ArrayList<>(pageSize);
+                int next = results.page(VnText.fold(query), cursor, pageSize, items);
+                Log.d(TAG, "query \"" + query + "\" @" + cursor + ": " + items.size() + " results in "
+                        + (SystemClock.elapsedRealtime() - t0) + "ms (" + results.stats() + ")");
+                Page page = new Page(query, items, next);
+                main.post(() -> {
+                    if (gen == generation.get()) cb.onResult(page);
+                });
+            };
+            if (ready) run.run();
+            else {
+                waiting.clear(); // chỉ giữ query mới nhất chờ index
+                waiting.add(run);
+            }
+        });
+    }
+
+    /**
+     * Gợi ý typeahead cho chuỗi đang gõ (gọi thẳng trên main thread, chỉ tốn vài micro giây).
+     * @param limit số gợi ý tối đa
+     */
+    public List<SuggestTrie.Suggestion> suggest(String typed, int limit) {
+        return suggestTrie.suggest(typed, limit);
+    }
+
+    // Gom nhiều đợt thay đổi liên tiếp thành 1 lần dựng lại gợi ý
+    private void scheduleSuggestRebuild() {
+        main.removeCallbacks(rebuildSuggestions);
+        main.postDelayed(rebuildSuggestions, SUGGEST_REBUILD_DELAY_MS);
+    }
+
+    // Chạy trên worker: dựng SuggestTrie từ index (độ phổ biến = số bài của nghệ sĩ/album), lưu file
+    private void rebuildSuggestTrie() {
+        long t0 = SystemClock.elapsedRealtime();
+        SuggestTrie.Builder b = new SuggestTrie.Builder();
+        index.forEachLive((title, author, albumId) -> {
+            b.add(title, SuggestTrie.KIND_SONG, 1);
+            b.add(author, SuggestTrie.KIND_ARTIST, 1);
+            b.add(albumTitles.get(albumId), SuggestTrie.KIND_ALBUM, 1);
+        });
+        SuggestTrie trie = b.build();
+        suggestTrie = trie;
+        FileOutputStream out = null;
+        try {
+            out = suggestFile.startWrite();
+            trie.write(out);
+            suggestFile.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) suggestFile.failWrite(out);
+            Log.d(TAG, "suggest write failed: " + e.getMessage());
+        }
+        Log.d(TAG, "suggest rebuilt: " + trie.size() + " entries in " + (SystemClock.elapsedRealtime() - t0) + "ms");
+    }
+
+    private void loadSuggestTrie() {
+        if (!suggestFile.getBaseFile().exists()) return;
+        long t0 = SystemClock.elapsedRealtime();
+        try (FileInputStream in = suggestFile.openRead()) {
+            suggestTrie = SuggestTrie.read(in);
+            Log.d(TAG, "suggest loaded: " + suggestTrie.size() + " entries in "
+                    + (SystemClock.elapsedRealtime() - t0) + "ms");
+        } catch (IOException e) {
+            Log.d(TAG, "suggest read failed: " + e.getMessage());
+        }
+    }
+
+    /** Huỷ mọi lời gọi search() đang chờ/đang chạy (vd: người dùng xoá ô tìm kiếm). */
+    public void cancelSearches() {
+        generation.incrementAndGet();
+    }
+
+    // Khoá của bài trong index = đường dẫn document albums/{albumId}/songs/{docId}
+    private static String pathOf(String albumId, String docId) {
+        return "albums/" + albumId + "/songs/" + docId;
+    }
+}
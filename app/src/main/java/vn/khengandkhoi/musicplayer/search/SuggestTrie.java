@@ -0,0 +1,229 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SuggestTrie:
+ * - Bộ gợi ý gõ-tới-đâu-gợi-ý-tới-đó (typeahead) cho tên nghệ sĩ / album / bài hát, bất biến sau khi dựng.
+ * - Dạng "trie phẳng": mọi khoá (đã chuẩn hoá) được sắp xếp trong 1 mảng -> các khoá cùng tiền tố nằm liền nhau
+ *   (đúng thứ tự lá của trie), tìm đoạn tiền tố bằng 2 lần tìm nhị phân thay cho con trỏ node.
+ * - Với tiền tố ngắn (<= PRECOMPUTED_DEPTH ký tự, đoạn khớp rất dài) top-N theo độ phổ biến được tính sẵn lúc dựng;
+ *   tiền tố dài hơn chỉ còn đoạn ngắn -> quét đoạn đó -> mỗi phím gõ chỉ tốn vài micro giây.
+ * - Mỗi tên được đăng ký thêm khoá cho từng từ bên trong ("son tung mtp" -> "tung mtp", "mtp")
+ *   để gõ tên giữa chừng vẫn ra gợi ý.
+ * - Lưu/đọc nhị phân gọn (write/read) để mở app là có gợi ý ngay, không chờ nạp catalog.
+ *
+ * Lưu ý:
+ * - Bất biến -> đọc từ nhiều thread an toàn; muốn cập nhật thì dựng instance mới (Builder) và thay tham chiếu.
+ */
+public final class SuggestTrie {
+
+    public static final int KIND_SONG = 0, KIND_ARTIST = 1, KIND_ALBUM = 2;
+
+    private static final int PRECOMPUTED_DEPTH = 2;
+    private static final int PRECOMPUTED_TOP = 8;
+    private static final int FILE_VERSION = 1;
+
+    /** 1 gợi ý hiển thị cho người dùng. */
+    public static final class Suggestion {
+        public final String text;   // tên gốc (có dấu) để hiển thị/điền vào ô tìm kiếm
+        public final int kind;      // KIND_SONG / KIND_ARTIST / KIND_ALBUM
+        public final int weight;    // độ phổ biến đã tính sẵn
+
+        Suggestion(String text, int kind, int weight) {
+            this.text = text;
+            this.kind = kind;
+            this.weight = weight;
+        }
+    }
+
+    // Mục (entry) gốc: mỗi tên 1 mục; khoá (key) trỏ về mục
+    private final Suggestion[] entries;
+    // Khoá đã sắp xếp + mục tương ứng
+    private final String[] keys;
+    private final int[] keyEntry;
+    // Top-N tính sẵn cho tiền tố ngắn
+    private final Map<String, int[]> precomputed;
+
+    private SuggestTrie(Suggestion[] entries, String[] keys, int[] keyEntry) {
+        this.entries = entries;
+        this.keys = keys;
+        this.keyEntry = keyEntry;
+        this.precomputed = new HashMap<>();
+        precompute();
+    }
+
+    public static SuggestTrie empty() {
+        return new SuggestTrie(new Suggestion[0], new String[0], new int[0]);
+    }
+
+    public int size() { return entries.length; }
+
+    /**
+     * Gợi ý cho chuỗi người dùng đang gõ (chưa chuẩn hoá), điểm phổ biến cao trước.
+     * @param limit số gợi ý tối đa
+     */
+    public List<Suggestion> suggest(String typed, int limit) {
+        String p = VnText.fold(typed);
+        List<Suggestion> out = new ArrayList<>(limit);
+        if (p.isEmpty() || limit <= 0) return out;
+
+        int[] pre = p.length() <= PRECOMPUTED_DEPTH ? precomputed.get(p) : null;
+        if (pre != null) {
+            for (int i = 0; i < pre.length && out.size() < limit; i++) out.add(entries[pre[i]]);
+            return out;
+        }
+        int from = lowerBound(p);
+        int to = upperBound(p, from);
+        int[] best = topEntries(from, to, limit);
+        for (int e : best) out.add(entries[e]);
+        return out;
+    }
+
+    // Top-n mục (khử trùng lặp vì 1 mục có nhiều khoá) trong đoạn khoá [from, to)
+    private int[] topEntries(int from, int to, int n) {
+        int[] best = new int[n];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            int e = keyEntry[i];
+            boolean dup = false;
+            for (int j = 0; j < size && !dup; j++) dup = best[j] == e;
+            if (dup) continue;
+            // Chèn vào mảng nhỏ đã sắp xếp giảm dần theo weight (n rất nhỏ -> chèn tuyến tính)
+            int pos = size < n ? size : n;
+            while (pos > 0 && entries[best[pos - 1]].weight < entries[e].weight) pos--;
+            if (pos >= n) continue;
+            int end = Math.min(size, n - 1);
+            System.arraycopy(best, pos, best, pos + 1, end - pos);
+            best[pos] = e;
+            if (size < n) size++;
+        }
+        return Arrays.copyOf(best, size);
+    }
+
+    private void precompute() {
+        for (int i = 0; i < keys.length; i++) {
+            // Mỗi tiền tố độ dài 1..PRECOMPUTED_DEPTH chỉ tính tại khoá đầu tiên mang tiền tố đó
+            for (int d = 1; d <= PRECOMPUTED_DEPTH && d <= keys[i].length(); d++) {
+                if (i > 0 && keys[i - 1].length() >= d && keys[i - 1].regionMatches(0, keys[i], 0, d)) continue;
+                String p = keys[i].substring(0, d);
+                precomputed.put(p, topEntries(i, upperBound(p, i), PRECOMPUTED_TOP));
+            }
+        }
+    }
+
+    // Khoá đầu tiên >= p
+    private int lowerBound(String p) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(p) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Khoá đầu tiên (từ from) không bắt đầu bằng p
+    private int upperBound(String p, int from) {
+        int lo = from, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].startsWith(p) || keys[mid].compareTo(p) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ====== Lưu/đọc file ======
+
+    /** Ghi ra stream (người gọi đóng/commit stream, vd: AtomicFile). */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(FILE_VERSION);
+        out.writeInt(entries.length);
+        for (Suggestion s : entries) {
+            out.writeUTF(s.text);
+            out.writeByte(s.kind);
+            out.writeInt(s.weight);
+        }
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeUTF(keys[i]);
+            out.writeInt(keyEntry[i]);
+        }
+        out.flush();
+    }
+
+    /** Đọc lại file do write() ghi (người gọi đóng stream). */
+    public static SuggestTrie read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is, 64 * 1024));
+        if (in.readInt() != FILE_VERSION) throw new IOException("suggest file version mismatch");
+        Suggestion[] entries = new Suggestion[in.readInt()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Suggestion(in.readUTF(), in.readByte(), in.readInt());
+        }
+        int n = in.readInt();
+        String[] keys = new String[n];
+        int[] keyEntry = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = in.readUTF();
+            keyEntry[i] = in.readInt();
+        }
+        return new SuggestTrie(entries, keys, keyEntry); // file đã lưu theo thứ tự sắp xếp
+    }
+
+    // ====== Dựng ======
+
+    /** Gom tên + độ phổ biến rồi dựng SuggestTrie bất biến. */
+    public static final class Builder {
+        // (kind + tên chuẩn hoá) -> mục; cộng dồn weight khi cùng tên xuất hiện nhiều lần
+        private final HashMap<String, Suggestion> byKey = new HashMap<>();
+
+        /** Thêm 1 tên (có dấu) với độ phổ biến weight; gọi lại cùng tên sẽ cộng dồn weight. */
+        public Builder add(String text, int kind, int weight) {
+            if (text == null) return this;
+            String folded = VnText.fold(text);
+            if (folded.isEmpty()) return this;
+            String k = kind + "|" + folded;
+            Suggestion old = byKey.get(k);
+            byKey.put(k, new Suggestion(old != null ? old.text : text.trim(), kind,
+                    (old != null ? old.weight : 0) + weight));
+            return this;
+        }
+
+        public SuggestTrie build() {
+            Suggestion[] entries = byKey.values().toArray(new Suggestion[0]);
+            // Khoá: toàn bộ tên + phần đuôi bắt đầu từ mỗi từ bên trong
+            ArrayList<String> ks = new ArrayList<>();
+            ArrayList<Integer> ke = new ArrayList<>();
+            for (int e = 0; e < entries.length; e++) {
+                String f = VnText.fold(entries[e].text);
+                ks.add(f);
+                ke.add(e);
+                for (int i = f.indexOf(' '); i >= 0; i = f.indexOf(' ', i + 1)) {
+                    ks.add(f.substring(i + 1));
+                    ke.add(e);
+                }
+            }
+            Integer[] order = new Integer[ks.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> ks.get(a).compareTo(ks.get(b)));
+            String[] keys = new String[order.length];
+            int[] keyEntry = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = ks.get(order[i]);
+                keyEntry[i] = ke.get(order[i]);
+            }
+            return new SuggestTrie(entries, keys, keyEntry);
+        }
+    }
+}
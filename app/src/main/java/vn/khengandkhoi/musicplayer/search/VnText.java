@@ -0,0 +1,105 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * VnText:
+ * - Chuẩn hoá chuỗi tiếng Việt cho tìm kiếm: lower-case, bỏ dấu, đổi 'đ'->'d', gom khoảng trắng.
+ * - Dùng chung cho index (SongIndex) và query để 2 phía luôn chuẩn hoá giống hệt nhau.
+ * - Tra bảng: mỗi code point trong vùng Latin (U+0000–U+1EFF, gồm toàn bộ chữ có dấu tiếng Việt dựng sẵn)
+ *   được map thẳng sang chữ cái gốc viết thường -> 1 lượt duyệt, không regex, không Normalizer lúc chạy.
+ *
+ * Lưu ý:
+ * - Bảng được dựng 1 lần khi nạp class (dùng Normalizer NFD đúng như cách cũ) nên kết quả khớp với vnNorm trước đây.
+ * - foldInto() ghi vào StringBuilder do người gọi cấp (tái sử dụng được) -> không cấp phát chuỗi trung gian.
+ * - fold() trả lại chính chuỗi đầu vào nếu nó đã ở dạng chuẩn hoá (trường hợp phổ biến với query không dấu).
+ */
+public final class VnText {
+
+    private static final int TABLE_SIZE = 0x1F00;
+    // 0 = bỏ ký tự (dấu kết hợp U+0300–U+036F khi chuỗi vào đã ở dạng NFD)
+    private static final char[] FOLD = new char[TABLE_SIZE];
+
+    static {
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            char ch = (char) c;
+            if (c >= 0x0300 && c <= 0x036F) { FOLD[c] = 0; continue; }
+            String nfd = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
+            FOLD[c] = Character.toLowerCase(nfd.isEmpty() ? ch : nfd.charAt(0));
+        }
+        FOLD['đ'] = 'd';
+        FOLD['Đ'] = 'd';
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    private VnText() {}
+
+    public static String fold(String s) {
+        if (s == null) return "";
+        if (isFolded(s)) return s;
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        foldInto(s, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Nối bản chuẩn hoá của s vào cuối out (bỏ khoảng trắng đầu/cuối, gom khoảng trắng giữa thành 1 dấu cách).
+     */
+    public static void foldInto(CharSequence s, StringBuilder out) {
+        if (s == null) return;
+        boolean any = false, space = false;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = any;
+                continue;
+            }
+            char f = map(c);
+            if (f == 0) continue;
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+            out.append(f);
+            any = true;
+        }
+    }
+
+    /** Tách chuỗi đã chuẩn hoá thành các từ (đoạn chữ/số liên tiếp). */
+    public static List<String> words(String folded) {
+        List<String> out = new ArrayList<>();
+        int start = -1;
+        for (int i = 0, n = folded.length(); i <= n; i++) {
+            boolean word = i < n && Character.isLetterOrDigit(folded.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                out.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    private static char map(char c) {
+        return c < TABLE_SIZE ? FOLD[c] : Character.toLowerCase(c);
+    }
+
+    // Chuỗi đã chuẩn hoá: mọi ký tự map ra chính nó, không khoảng trắng thừa/đầu/cuối
+    private static boolean isFolded(String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == ' ') {
+                if (i == 0 || i == n - 1 || s.charAt(i - 1) == ' ') return false;
+            } else if (Character.isWhitespace(c) || map(c) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
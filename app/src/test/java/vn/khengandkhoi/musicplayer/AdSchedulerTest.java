@@ -0,0 +1,153 @@
+package vn.khengandkhoi.musicplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * AdScheduler trên main looper của Robolectric (chế độ PAUSED, đồng hồ ảo):
+ * - Giữa 2 quảng cáo hàng đợi của looper không có callback nào (0 wakeup khi IDLE/PAUSED/DISABLED).
+ * - Đến hạn đúng tại mốc deadline, tạm dừng/tiếp tục giữ đúng phần còn lại.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class AdSchedulerTest {
+
+    private static final long INTERVAL_MS = 10 * 60_000L;
+
+    private ShadowLooper looper;
+    private AdScheduler scheduler;
+    private int adsDue;
+
+    @Before
+    public void setUp() {
+        looper = shadowOf(Looper.getMainLooper());
+        scheduler = new AdScheduler(new Handler(Looper.getMainLooper()), SystemClock::elapsedRealtime,
+                () -> INTERVAL_MS, () -> adsDue++);
+    }
+
+    @Test
+    public void idleSchedulesNothing() {
+        assertEquals(AdScheduler.State.IDLE, scheduler.getState());
+        assertNothingScheduled();
+        looper.idleFor(Duration.ofHours(2));
+        assertEquals(0, scheduler.getWakeupCount());
+        assertEquals(0, adsDue);
+    }
+
+    @Test
+    public void armedPostsExactlyOneCallbackAtDeadline() {
+        scheduler.resume();
+        assertEquals(AdScheduler.State.ARMED, scheduler.getState());
+        assertEquals(Duration.ofMillis(INTERVAL_MS), looper.getNextScheduledTaskTime().minusMillis(SystemClock.uptimeMillis()));
+
+        looper.idleFor(Duration.ofMillis(INTERVAL_MS - 1));
+        assertEquals(0, scheduler.getWakeupCount());
+        assertEquals(1, scheduler.getRemainingMs());
+
+        looper.idleFor(Duration.ofMillis(1));
+        assertEquals(1, scheduler.getWakeupCount());
+        assertEquals(1, adsDue);
+        assertEquals(AdScheduler.State.FIRING, scheduler.getState());
+        assertNothingScheduled(); // đang phát quảng cáo: không hẹn gì thêm
+    }
+
+    @Test
+    public void pausedSchedulesNothingAndKeepsRemainder() {
+        scheduler.resume();
+        looper.idleFor(Duration.ofMillis(150_000));
+        scheduler.pause();
+        assertEquals(AdScheduler.State.PAUSED, scheduler.getState());
+        assertEquals(INTERVAL_MS - 150_000, scheduler.getRemainingMs());
+        assertNothingScheduled();
+
+        looper.idleFor(Duration.ofHours(5));
+        assertEquals(0, scheduler.getWakeupCount());
+        assertEquals(INTERVAL_MS - 150_000, scheduler.getRemainingMs());
+
+        scheduler.resume();
+        looper.idleFor(Duration.ofMillis(INTERVAL_MS - 150_000 - 1));
+        assertEquals(0, adsDue);
+        looper.idleFor(Duration.ofMillis(1));
+        assertEquals(1, adsDue);
+        assertEquals(1, scheduler.getWakeupCount());
+    }
+
+    @Test
+    public void resumeWhileArmedKeepsDeadline() {
+        scheduler.resume();
+        long deadline = scheduler.getDeadlineMs();
+        looper.idleFor(Duration.ofMillis(60_000));
+        scheduler.resume();
+        assertEquals(deadline, scheduler.getDeadlineMs());
+        looper.idleFor(Duration.ofMillis(INTERVAL_MS - 60_000));
+        assertEquals(1, adsDue);
+        assertEquals(1, scheduler.getWakeupCount());
+    }
+
+    @Test
+    public void adFinishedRearmsNextCycle() {
+        scheduler.resume();
+        looper.idleFor(Duration.ofMillis(INTERVAL_MS));
+        assertEquals(1, adsDue);
+
+        looper.idleFor(Duration.ofMillis(30_000)); // quảng cáo đang phát
+        scheduler.onAdFinished();
+        assertEquals(AdScheduler.State.ARMED, scheduler.getState());
+        assertEquals(INTERVAL_MS, scheduler.getRemainingMs());
+
+        looper.idleFor(Duration.ofMillis(INTERVAL_MS));
+        assertEquals(2, adsDue);
+        assertEquals(2, scheduler.getWakeupCount()); // đúng 1 wakeup cho mỗi quảng cáo
+    }
+
+    @Test
+    public void disablingCancelsAndStaysQuiet() {
+        scheduler.resume();
+        looper.idleFor(Duration.ofMillis(60_000));
+        scheduler.setEnabled(false);
+        assertEquals(AdScheduler.State.DISABLED, scheduler.getState());
+        assertEquals(-1L, scheduler.getRemainingMs());
+        assertNothingScheduled();
+
+        scheduler.resume(); // premium: resume không hẹn gì
+        looper.idleFor(Duration.ofMillis(3 * INTERVAL_MS));
+        assertEquals(0, scheduler.getWakeupCount());
+        assertEquals(0, adsDue);
+
+        scheduler.setEnabled(true);
+        assertEquals(AdScheduler.State.IDLE, scheduler.getState());
+        scheduler.resume();
+        looper.idleFor(Duration.ofMillis(INTERVAL_MS));
+        assertEquals(1, adsDue);
+    }
+
+    @Test
+    public void cancelForgetsRemainder() {
+        scheduler.resume();
+        looper.idleFor(Duration.ofMillis(60_000));
+        scheduler.pause();
+        scheduler.cancel();
+        assertEquals(AdScheduler.State.IDLE, scheduler.getState());
+        assertNothingScheduled();
+        scheduler.resume();
+        assertEquals(INTERVAL_MS, scheduler.getRemainingMs());
+    }
+
+    // Hàng đợi main looper trống = không có lần đánh thức nào đang chờ
+    private void assertNothingScheduled() {
+        assertEquals(Duration.ZERO, looper.getNextScheduledTaskTime());
+    }
+}
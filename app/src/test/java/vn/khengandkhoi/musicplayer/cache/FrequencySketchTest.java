@@ -0,0 +1,82 @@
+package vn.khengandkhoi.musicplayer.cache;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void countsAreNeverUnderestimated() {
+        FrequencySketch sketch = new FrequencySketch();
+        for (int i = 0; i < 5; i++) sketch.increment("https://a/hot.mp3");
+        sketch.increment("https://a/cold.mp3");
+        assertTrue(sketch.frequency("https://a/hot.mp3") >= 5);
+        assertTrue(sketch.frequency("https://a/cold.mp3") >= 1);
+        assertEquals(0, sketch.frequency(null));
+    }
+
+    @Test
+    public void countersSaturate() {
+        FrequencySketch sketch = new FrequencySketch();
+        for (int i = 0; i < 100; i++) sketch.increment("k");
+        assertEquals(15, sketch.frequency("k"));
+    }
+
+    @Test
+    public void survivesSaveAndLoad() throws Exception {
+        FrequencySketch before = new FrequencySketch();
+        for (int i = 0; i < 7; i++) before.increment("https://a/hot.mp3");
+        before.increment("https://a/once.mp3");
+
+        FrequencySketch after = new FrequencySketch();
+        after.readFrom(new ByteArrayInputStream(bytes(before)));
+        assertEquals(before.frequency("https://a/hot.mp3"), after.frequency("https://a/hot.mp3"));
+        assertEquals(before.frequency("https://a/once.mp3"), after.frequency("https://a/once.mp3"));
+        assertArrayEquals(bytes(before), bytes(after));
+    }
+
+    @Test
+    public void loadKeepsPlaysRecordedBeforeIt() throws Exception {
+        FrequencySketch saved = new FrequencySketch();
+        saved.increment("old");
+
+        FrequencySketch live = new FrequencySketch();
+        for (int i = 0; i < 3; i++) live.increment("new");
+        live.readFrom(new ByteArrayInputStream(bytes(saved)));
+        assertTrue(live.frequency("new") >= 3);
+        assertTrue(live.frequency("old") >= 1);
+    }
+
+    @Test
+    public void corruptFileIsRejectedAndIgnored() throws Exception {
+        FrequencySketch sketch = new FrequencySketch();
+        sketch.increment("k");
+        byte[] data = bytes(sketch);
+        data[0] ^= 1;
+        FrequencySketch target = new FrequencySketch();
+        try {
+            target.readFrom(new ByteArrayInputStream(data));
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals(0, target.frequency("k"));
+        }
+        try {
+            target.readFrom(new ByteArrayInputStream(Arrays.copyOf(bytes(sketch), 100)));
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals(0, target.frequency("k"));
+        }
+    }
+
+    private static byte[] bytes(FrequencySketch sketch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sketch.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import com.google.firebase.Timestamp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * CatalogFixtures:
+ * - Dựng bản sao catalog giả (album "a000".., mỗi album vài bài, 1 thể loại) và ghi/mở snapshot cho test.
+ * - Public để test của package khác (search) lấy được CatalogView mà không cần Firestore.
+ */
+public final class CatalogFixtures {
+
+    private CatalogFixtures() {}
+
+    /** Tên album thứ i. */
+    public static String albumId(int i) {
+        return String.format("a%03d", i);
+    }
+
+    /** Bản sao albums album x songsPerAlbum bài; trackNum ngược thứ tự docId để kiểm tra sắp xếp. */
+    static CatalogSync.Replica replica(int albums, int songsPerAlbum) {
+        TreeMap<String, Album> albumMap = new TreeMap<>();
+        Map<String, TreeMap<String, SongRemote>> songs = new HashMap<>();
+        for (int i = 0; i < albums; i++) {
+            String id = albumId(i);
+            albumMap.put(id, new Album(id, "Album " + i, "Nghệ sĩ " + (i % 3), "https://img/" + id));
+            TreeMap<String, SongRemote> m = new TreeMap<>();
+            for (int k = 0; k < songsPerAlbum; k++) {
+                m.put("s" + k, new SongRemote(id + "-" + k, "Bài hát " + i + "." + k, "Nghệ sĩ " + (i % 3),
+                        "https://audio/" + id + "/" + k, "https://img/" + id, songsPerAlbum - k));
+            }
+            songs.put(id, m);
+        }
+        TreeMap<String, CatalogSync.CategoryRecord> cats = new TreeMap<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = albums - 1; i >= 0; i -= 2) ids.add(albumId(i));
+        ids.add("missing");
+        cats.put("pop", new CatalogSync.CategoryRecord(new Category("pop", "Nhạc Pop", "#FF0000", null), ids));
+        Map<String, Timestamp> marks = new HashMap<>();
+        marks.put("albums", new Timestamp(1700000000L, 5));
+        marks.put("songs", new Timestamp(1700000100L, 0));
+        return new CatalogSync.Replica(null, albumMap, cats, songs, marks, 111L, 222L);
+    }
+
+    /** Ghi r ra file rồi ánh xạ lại. */
+    static CatalogSnapshot writeAndOpen(CatalogSync.Replica r, File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            CatalogSnapshot.write(r, out);
+        }
+        return CatalogSnapshot.open(file);
+    }
+
+    /** Snapshot albums x songsPerAlbum ghi vào file, dạng CatalogView. */
+    public static CatalogView snapshot(int albums, int songsPerAlbum, File file) throws IOException {
+        return writeAndOpen(replica(albums, songsPerAlbum), file);
+    }
+}
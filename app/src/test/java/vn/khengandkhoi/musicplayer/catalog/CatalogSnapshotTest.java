@@ -0,0 +1,128 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.object.Album;
+import vn.khengandkhoi.musicplayer.object.Category;
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/** Ghi bản sao ra snapshot rồi ánh xạ đọc lại: mọi trường, thứ tự và mốc phải giữ nguyên. */
+public class CatalogSnapshotTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("catalog", ".snap");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void headerAndMarksRoundTrip() throws Exception {
+        CatalogSync.Replica r = CatalogFixtures.replica(5, 3);
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(r, file);
+        assertEquals(111L, snap.syncedAt());
+        assertEquals(222L, snap.fullSyncAt());
+        assertEquals(5, snap.albumCount());
+        assertEquals(15, snap.songCount());
+        assertEquals(r.marks.size(), snap.marks().size());
+        assertEquals(0, r.marks.get("albums").compareTo(snap.marks().get("albums")));
+        assertEquals(5, snap.marks().get("albums").getNanoseconds());
+    }
+
+    @Test
+    public void albumsRoundTripSortedById() throws Exception {
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(CatalogFixtures.replica(12, 1), file);
+        List<Album> albums = snap.albumList();
+        assertEquals(12, albums.size());
+        for (int i = 0; i < albums.size(); i++) {
+            Album a = albums.get(i);
+            assertEquals(CatalogFixtures.albumId(i), a.getId());
+            assertEquals("Album " + i, a.getTitle());
+            assertEquals("Nghệ sĩ " + (i % 3), a.getAuthor());
+            assertEquals("https://img/" + a.getId(), a.getCoverUrl());
+        }
+        assertEquals("Album 7", snap.album(CatalogFixtures.albumId(7)).getTitle());
+        assertNull(snap.album("nope"));
+        assertNull(snap.album(null));
+    }
+
+    @Test
+    public void songsFollowTrackNumWithinAlbum() throws Exception {
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(CatalogFixtures.replica(3, 4), file);
+        List<SongRemote> songs = snap.songsOf(CatalogFixtures.albumId(1));
+        assertEquals(4, songs.size());
+        for (int k = 0; k < songs.size(); k++) assertEquals(k + 1, songs.get(k).getTrackNum());
+        // trackNum ngược docId: s3 có trackNum 1
+        SongRemote first = songs.get(0);
+        assertEquals(CatalogFixtures.albumId(1) + "-3", first.getId());
+        assertEquals("Bài hát 1.3", first.getTitle());
+        assertEquals("https://audio/" + CatalogFixtures.albumId(1) + "/3", first.getUrl());
+        assertNull(snap.songsOf("nope"));
+
+        List<String> docIds = new ArrayList<>();
+        snap.forEachSongOf(CatalogFixtures.albumId(1), (albumId, docId, s) -> docIds.add(docId));
+        assertEquals(4, docIds.size());
+        assertEquals("s3", docIds.get(0));
+        assertEquals("s0", docIds.get(3));
+        assertEquals(CatalogFixtures.albumId(2), snap.songAlbumIdAt(snap.songCount() - 1));
+    }
+
+    @Test
+    public void categoriesKeepAlbumOrderAndSkipMissingAlbums() throws Exception {
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(CatalogFixtures.replica(5, 1), file);
+        List<Category> cats = snap.categoryList();
+        assertEquals(1, cats.size());
+        assertEquals("Nhạc Pop", cats.get(0).getName());
+        assertEquals("#FF0000", cats.get(0).getColorHex());
+        assertNull(cats.get(0).getCoverUrl());
+        // Id gốc giữ cả "missing"; categoryAlbums chỉ trả album có thật, đúng thứ tự
+        assertEquals(4, snap.categoryAlbumIdsAt(0).size());
+        CatalogRepository.CategoryAlbums ca = snap.categoryAlbums("pop");
+        assertEquals("Nhạc Pop", ca.name);
+        assertEquals(3, ca.albums.size());
+        assertEquals(CatalogFixtures.albumId(4), ca.albums.get(0).getId());
+        assertEquals(CatalogFixtures.albumId(0), ca.albums.get(2).getId());
+        assertNull(snap.categoryAlbums("rock"));
+    }
+
+    @Test
+    public void emptyReplicaRoundTrips() throws Exception {
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(CatalogFixtures.replica(0, 0), file);
+        assertTrue(snap.albumList().isEmpty());
+        assertEquals(0, snap.songCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFileIsRejected() throws Exception {
+        CatalogFixtures.writeAndOpen(CatalogFixtures.replica(3, 2), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        CatalogSnapshot.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherVersionIsRejected() throws Exception {
+        CatalogFixtures.writeAndOpen(CatalogFixtures.replica(1, 1), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(CatalogSnapshot.VERSION + 1);
+        }
+        CatalogSnapshot.open(file);
+    }
+}
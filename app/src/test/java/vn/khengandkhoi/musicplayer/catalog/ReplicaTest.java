@@ -0,0 +1,97 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/** Replica phủ lên snapshot: chỉ album bị đụng tới nằm trong bộ nhớ, phần còn lại đọc từ snapshot gốc. */
+public class ReplicaTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("catalog", ".snap");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void replicaOverSnapshotHoldsNoSongs() throws Exception {
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(CatalogFixtures.replica(20, 5), file);
+        CatalogSync.Replica r = CatalogSync.Replica.of(snap);
+        assertSame(snap, r.base);
+        assertTrue(r.songs.isEmpty());
+        assertEquals(20, r.albums.size());
+        assertEquals(5, r.songsOf(CatalogFixtures.albumId(3)).size());
+    }
+
+    @Test
+    public void rewritingUntouchedReplicaIsByteIdentical() throws Exception {
+        CatalogSync.Replica original = CatalogFixtures.replica(20, 5);
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(original, file);
+        assertArrayEquals(bytes(original), bytes(CatalogSync.Replica.of(snap)));
+    }
+
+    @Test
+    public void overlayShadowsBaseForTouchedAlbumsOnly() throws Exception {
+        CatalogSnapshot snap = CatalogFixtures.writeAndOpen(CatalogFixtures.replica(4, 3), file);
+        CatalogSync.Replica base = CatalogSync.Replica.of(snap);
+        String changed = CatalogFixtures.albumId(1), hidden = CatalogFixtures.albumId(2);
+
+        TreeMap<String, SongRemote> m = new TreeMap<>();
+        m.put("new", new SongRemote("n", "Bài mới", "X", "u", null, 1));
+        base.songs.put(changed, m);
+        base.songs.put(hidden, new TreeMap<>()); // album bị xoá hết bài
+
+        assertEquals(1, base.songsOf(changed).size());
+        assertEquals("Bài mới", base.songsOf(changed).get(0).getTitle());
+        assertTrue(base.songsOf(hidden).isEmpty());
+        assertEquals(3, base.songsOf(CatalogFixtures.albumId(0)).size());
+
+        List<String> seen = new ArrayList<>();
+        base.forEachSong((albumId, docId, s) -> seen.add(albumId + "/" + docId));
+        assertEquals(3 + 1 + 0 + 3, seen.size());
+        assertTrue(seen.contains(changed + "/new"));
+
+        // Ghi lại: snapshot mới phản ánh phần phủ
+        File next = File.createTempFile("catalog", ".snap");
+        try {
+            CatalogSnapshot out = CatalogFixtures.writeAndOpen(base, next);
+            assertEquals(7, out.songCount());
+            assertEquals("Bài mới", out.songsOf(changed).get(0).getTitle());
+            assertTrue(out.songsOf(hidden).isEmpty());
+        } finally {
+            next.delete();
+        }
+    }
+
+    @Test
+    public void albumsMissingFromReplicaHaveNoSongs() throws Exception {
+        CatalogSync.Replica r = CatalogSync.Replica.of(CatalogFixtures.writeAndOpen(CatalogFixtures.replica(3, 2), file));
+        r.albums.remove(CatalogFixtures.albumId(0));
+        assertNull(r.songsOf(CatalogFixtures.albumId(0)));
+        List<String> seen = new ArrayList<>();
+        r.forEachSongOf(CatalogFixtures.albumId(0), (albumId, docId, s) -> seen.add(docId));
+        assertTrue(seen.isEmpty());
+    }
+
+    private static byte[] bytes(CatalogSync.Replica r) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogSnapshot.write(r, out);
+        return out.toByteArray();
+    }
+}
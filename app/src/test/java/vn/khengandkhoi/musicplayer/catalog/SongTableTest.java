@@ -0,0 +1,55 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import org.junit.Test;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+public class SongTableTest {
+
+    @Test
+    public void rowsRoundTripAllColumns() {
+        SongTable table = new SongTable(new StringPool());
+        int r0 = table.add("album1", new SongRemote("id0", "Lạc Trôi", "Sơn Tùng", "https://a/0", "https://c/1", 3));
+        int r1 = table.add("album1", new SongRemote("id1", "Nơi Này Có Anh", "Sơn Tùng", "https://a/1", null, 7));
+        assertEquals(0, r0);
+        assertEquals(1, r1);
+        assertEquals(2, table.size());
+
+        SongRemote s = table.song(r1);
+        assertEquals("id1", s.getId());
+        assertEquals("Nơi Này Có Anh", s.getTitle());
+        assertEquals("Sơn Tùng", s.getAuthor());
+        assertEquals("https://a/1", s.getUrl());
+        assertNull(s.getCoverUrl());
+        assertEquals(7, s.getTrackNum());
+        assertEquals("Lạc Trôi", table.title(r0));
+        assertEquals("Sơn Tùng", table.author(r0));
+        assertEquals("album1", table.albumId(r0));
+    }
+
+    @Test
+    public void repeatedStringsAreStoredOnce() {
+        StringPool pool = new StringPool();
+        SongTable table = new SongTable(pool);
+        for (int i = 0; i < 1000; i++) {
+            table.add("album", new SongRemote("id" + i, "t" + i, "Cùng tác giả", "u" + i, "cover", i));
+        }
+        // id + tiêu đề + url riêng từng bài; albumId, tác giả, ảnh bìa dùng chung
+        assertEquals(3 * 1000 + 3, pool.size());
+        assertEquals(1000, table.size());
+        assertEquals("Cùng tác giả", table.author(999));
+    }
+
+    @Test
+    public void tablesCanSharePool() {
+        StringPool pool = new StringPool();
+        SongTable a = new SongTable(pool), b = new SongTable(pool);
+        a.add("x", new SongRemote("1", "Tên", "Nghệ sĩ", "u", null, 1));
+        b.add("x", new SongRemote("1", "Tên", "Nghệ sĩ", "u", null, 1));
+        assertSame(pool, a.pool());
+        assertEquals(5, pool.size());
+        assertEquals(a.title(0), b.title(0));
+    }
+}
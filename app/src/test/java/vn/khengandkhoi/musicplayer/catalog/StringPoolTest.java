@@ -0,0 +1,69 @@
+package vn.khengandkhoi.musicplayer.catalog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringPoolTest {
+
+    @Test
+    public void internReturnsSameIdForEqualStrings() {
+        StringPool pool = new StringPool();
+        int a = pool.intern("Sơn Tùng M-TP");
+        int b = pool.intern("Đen Vâu");
+        assertNotEquals(a, b);
+        assertEquals(a, pool.intern(new String("Sơn Tùng M-TP")));
+        assertEquals(2, pool.size());
+        assertEquals("Sơn Tùng M-TP", pool.get(a));
+        assertEquals("Đen Vâu", pool.get(b));
+    }
+
+    @Test
+    public void nullMapsToNullId() {
+        StringPool pool = new StringPool();
+        assertEquals(StringPool.NULL, pool.intern(null));
+        assertNull(pool.get(StringPool.NULL));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void findDoesNotAdd() {
+        StringPool pool = new StringPool();
+        int id = pool.intern("abc");
+        assertEquals(id, pool.find("abc"));
+        assertEquals(StringPool.NULL, pool.find("abd"));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void emptyStringIsDistinctFromNull() {
+        StringPool pool = new StringPool();
+        int id = pool.intern("");
+        assertNotEquals(StringPool.NULL, id);
+        assertEquals("", pool.get(id));
+    }
+
+    @Test
+    public void survivesGrowthOfTableAndData() {
+        StringPool pool = new StringPool();
+        int n = 20_000;
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) ids[i] = pool.intern("https://cdn.example/cover/" + i + ".jpg");
+        assertEquals(n, pool.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, ids[i]);
+            assertEquals(ids[i], pool.intern("https://cdn.example/cover/" + i + ".jpg"));
+            assertEquals("https://cdn.example/cover/" + i + ".jpg", pool.get(ids[i]));
+        }
+    }
+
+    @Test
+    public void appendToHandlesAsciiAndUnicode() {
+        StringPool pool = new StringPool();
+        StringBuilder sb = new StringBuilder();
+        pool.appendTo(pool.intern("Hello "), sb);
+        pool.appendTo(pool.intern("Việt Nam"), sb);
+        pool.appendTo(StringPool.NULL, sb);
+        assertEquals("Hello Việt Nam", sb.toString());
+    }
+}
@@ -0,0 +1,99 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/**
+ * Điều kiện thu hẹp (canNarrow) theo maxEdits và kết quả thu hẹp trùng với chạy đầy đủ.
+ * Chạy trên Robolectric: SearchResultCache đọc SystemClock cho TTL của mục cache.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SearchResultCacheTest {
+
+    private SongIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SongIndex();
+        String[] titles = {"Lạc trôi", "Lách cách", "Lanh lảnh", "Sơn Tùng", "Sóng gió", "Sông quê",
+                "Son môi", "Tùng tùng", "Tung cánh"};
+        for (int i = 0; i < titles.length; i++) {
+            index.put("albums/a/songs/s" + i, "a", new SongRemote("s" + i, titles[i], "X", "u" + i, null, i + 1), "Y");
+        }
+    }
+
+    @Test
+    public void sameOrMoreWordsNarrow() {
+        assertTrue(narrows("son", "son"));
+        assertTrue(narrows("son", "son tung"));
+        assertTrue(narrows("lac troi", "lac troi x"));
+    }
+
+    @Test
+    public void shortLastWordTypedFurtherNarrows() {
+        // "son" chưa được chịu lỗi gõ -> mọi term khớp đều bắt đầu bằng "so"
+        assertEquals(0, SongIndex.maxEdits("son"));
+        assertTrue(narrows("so", "son"));
+        assertTrue(narrows("s", "son tung"));
+    }
+
+    @Test
+    public void lastWordReachingTypoLengthDoesNotNarrow() {
+        // "lach" (4 ký tự) được sai 1 ký tự -> khớp cả "lanh", không nằm trong kết quả của "lac"
+        assertEquals(1, SongIndex.maxEdits("lach"));
+        assertFalse(narrows("lac", "lach"));
+        assertFalse(narrows("son", "song"));
+        assertFalse(narrows("lac", "lach troi"));
+    }
+
+    @Test
+    public void changedOrMissingWordsDoNotNarrow() {
+        assertFalse(narrows("lac troi", "lac tr"));
+        assertFalse(narrows("son tung", "song tung"));
+        assertFalse(narrows("son tung", "son"));
+        assertFalse(narrows("", "son"));
+    }
+
+    @Test
+    public void narrowedPagesMatchFreshRanking() {
+        SearchResultCache cache = new SearchResultCache(index);
+        page(cache, "s");
+        page(cache, "so");
+        List<String> narrowed = page(cache, "son");
+        assertTrue(cache.stats(), cache.stats().contains("narrowed=2"));
+        assertEquals(page(new SearchResultCache(index), "son"), narrowed);
+    }
+
+    @Test
+    public void typoLengthQueryRunsFullAndFindsTypoMatches() {
+        SearchResultCache cache = new SearchResultCache(index);
+        page(cache, "lac");
+        List<String> lach = page(cache, "lach");
+        assertTrue(cache.stats(), cache.stats().contains("narrowed=0"));
+        assertTrue(lach.contains("s2")); // "lanh" cách "lach" 1 ký tự
+        assertEquals(page(new SearchResultCache(index), "lach"), lach);
+    }
+
+    private static boolean narrows(String p, String q) {
+        return SearchResultCache.canNarrow(SongIndex.tokenize(p), SongIndex.tokenize(q));
+    }
+
+    private static List<String> page(SearchResultCache cache, String q) {
+        List<SongRemote> out = new ArrayList<>();
+        cache.page(VnText.fold(q), 0, 20, out);
+        List<String> ids = new ArrayList<>();
+        for (SongRemote s : out) ids.add(s.getId());
+        return ids;
+    }
+}
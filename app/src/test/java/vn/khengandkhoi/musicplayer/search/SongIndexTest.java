@@ -0,0 +1,190 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+import static org.junit.Assert.*;
+
+/** Xếp hạng BM25F, mở rộng tiền tố / lỗi gõ, dự phòng chuỗi con và dọn slot chết của SongIndex. */
+public class SongIndexTest {
+
+    private SongIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SongIndex();
+    }
+
+    @Test
+    public void titleMatchOutranksAuthorAndAlbum() {
+        put("alb", "album", "Mưa", "Ca sĩ A", "Tuyển tập");
+        put("art", "album", "Bài khác", "Mưa", "Tuyển tập");
+        put("alb2", "album2", "Bài nữa", "Ca sĩ B", "Mưa");
+        assertEquals(List.of("alb", "art", "alb2"), ids("mua", 10));
+    }
+
+    @Test
+    public void shorterFieldRanksHigherOnEqualTerms() {
+        put("long", "a", "Chiều nay không có mưa bay", "X", "Y");
+        put("short", "a", "Mưa bay", "X", "Y");
+        assertEquals(List.of("short", "long"), ids("mua bay", 10));
+    }
+
+    @Test
+    public void equalScoresKeepCatalogOrder() {
+        for (int i = 0; i < 5; i++) put("s" + i, "a", "Hà Nội", "X", "Y");
+        assertEquals(List.of("s0", "s1", "s2", "s3", "s4"), ids("ha noi", 10));
+        assertEquals(List.of("s0", "s1"), ids("ha noi", 2));
+    }
+
+    @Test
+    public void everyQueryWordMustMatch() {
+        put("both", "a", "Em của ngày hôm qua", "Sơn Tùng", "M-TP");
+        put("one", "a", "Em gái mưa", "Hương Tràm", "Single");
+        assertEquals(List.of("both"), ids("em hom qua", 10));
+        assertEquals(List.of("one", "both"), ids("em", 10)); // tiêu đề ngắn hơn xếp trước
+    }
+
+    @Test
+    public void onlyLastWordExpandsAsPrefix() {
+        put("s", "a", "Em của ngày hôm qua", "Sơn Tùng", "M-TP");
+        assertEquals(List.of("s"), ids("em cua ngay ho", 10));
+        assertTrue(ids("ho qua", 10).isEmpty());
+    }
+
+    @Test
+    public void exactMatchOutranksPrefixMatch() {
+        put("prefix", "a", "Hoa", "X", "Y");
+        put("exact", "a", "Ho", "X", "Y");
+        assertEquals(List.of("exact", "prefix"), ids("ho", 10));
+    }
+
+    @Test
+    public void oneTypoToleratedFromFourLetters() {
+        put("s", "a", "Lạc trôi", "Sơn Tùng", "Single");
+        assertEquals(List.of("s"), ids("lac troj", 10));
+        assertEquals(List.of("s"), ids("sonn tung", 10));
+    }
+
+    @Test
+    public void shortWordsMustMatchExactly() {
+        put("s", "a", "Anh ơi", "X", "Y");
+        assertTrue(ids("anb oi", 10).isEmpty());
+        assertEquals(0, SongIndex.maxEdits("anh"));
+        assertEquals(1, SongIndex.maxEdits("tung"));
+        assertEquals(2, SongIndex.maxEdits("nguyenha"));
+    }
+
+    @Test
+    public void twoTyposToleratedFromEightLetters() {
+        put("s", "a", "Trường Sơn", "Nguyễnhà", "Y");
+        assertEquals(List.of("s"), ids("nguyrnhq", 10));
+        assertTrue(ids("nguyrnqq", 10).isEmpty());
+    }
+
+    @Test
+    public void exactMatchOutranksTypoMatch() {
+        put("typo", "a", "Lạc trôj", "X", "Y");
+        put("exact", "a", "Lạc trôi", "X", "Y");
+        assertEquals(List.of("exact", "typo"), ids("lac troi", 10));
+    }
+
+    @Test
+    public void substringFallbackWhenNoWordMatches() {
+        put("s", "a", "Chúng ta của hiện tại", "Sơn Tùng", "Single");
+        put("t", "a", "Nơi này có anh", "Sơn Tùng", "Single");
+        assertEquals(List.of("s"), ids("ung ta", 10));
+        assertFalse(index.lastMatchByTerms);
+        assertEquals(List.of("s"), ids("ie", 10)); // ngắn hơn 1 trigram -> quét tuần tự
+    }
+
+    @Test
+    public void rankWithinMatchesFullRanking() {
+        for (int i = 0; i < 50; i++) put("s" + i, "a" + (i % 5), "Bài hát số " + i, "Ca sĩ " + (i % 7), "Album " + (i % 5));
+        SongIndex.IntList out = new SongIndex.IntList();
+        int count = index.match(VnText.fold("bai hat"), 100, out);
+        int[] within = index.lastMatches();
+        assertEquals(count, within.length);
+
+        SongIndex.IntList full = new SongIndex.IntList();
+        index.match(VnText.fold("bai hat so 1"), 100, full);
+        SongIndex.IntList narrowed = new SongIndex.IntList();
+        index.rankWithin(VnText.fold("bai hat so 1"), within, 100, narrowed);
+        assertEquals(idsOf(full), idsOf(narrowed));
+    }
+
+    @Test
+    public void putReplacesSongAtSamePath() {
+        put("s", "a", "Tên cũ", "X", "Y");
+        put("s", "a", "Tên mới", "X", "Y");
+        assertEquals(1, index.size());
+        assertTrue(ids("cu", 10).isEmpty());
+        assertEquals(List.of("s"), ids("moi", 10));
+    }
+
+    @Test
+    public void removeAlbumDropsOnlyItsSongs() {
+        put("a1", "a", "Mưa", "X", "Y");
+        put("b1", "b", "Mưa", "X", "Y");
+        index.removeAlbum("a");
+        assertEquals(1, index.size());
+        assertEquals(List.of("b1"), ids("mua", 10));
+    }
+
+    @Test
+    public void compactionKeepsLiveSongsAndPaths() {
+        // 30 album x 100 bài, xoá 20 album -> số slot chết vượt số slot sống và MIN_COMPACT_DEAD
+        for (int a = 0; a < 30; a++) {
+            for (int i = 0; i < 100; i++) put(a + "-" + i, "al" + a, "Bài " + a + " số " + i, "Ca sĩ " + a, "Album " + a);
+        }
+        long before = index.storeBytes();
+        int version = index.version();
+        for (int a = 0; a < 20; a++) index.removeAlbum("al" + a);
+        assertEquals(1000, index.size());
+        assertTrue(index.version() > version);
+        assertTrue(index.storeBytes() < before);
+
+        assertTrue(ids("bai 5 so 7", 10).isEmpty());
+        List<String> hit = ids("bai 25 so 7", 10);
+        assertEquals("25-7", hit.get(0));
+
+        // Path vẫn trỏ đúng slot mới: xoá / thay / gỡ album sau khi dọn
+        index.remove(path("al25", "25-7"));
+        assertFalse(ids("bai 25 so 7", 10).contains("25-7"));
+        put("26-3", "al26", "Bài đã sửa", "Ca sĩ 26", "Album 26");
+        assertEquals(List.of("26-3"), ids("da sua", 10));
+        index.removeAlbum("al29");
+        assertEquals(899, index.size());
+
+        List<String> live = new ArrayList<>();
+        index.forEachLive((title, author, albumId) -> live.add(albumId));
+        assertEquals(899, live.size());
+        assertFalse(live.contains("al0"));
+        assertFalse(live.contains("al29"));
+    }
+
+    private void put(String id, String albumId, String title, String author, String albumTitle) {
+        index.put(path(albumId, id), albumId, new SongRemote(id, title, author, "https://audio/" + id, null, 1), albumTitle);
+    }
+
+    private static String path(String albumId, String id) {
+        return "albums/" + albumId + "/songs/" + id;
+    }
+
+    private List<String> ids(String query, int k) {
+        SongIndex.IntList out = new SongIndex.IntList();
+        index.match(VnText.fold(query), k, out);
+        return idsOf(out);
+    }
+
+    private List<String> idsOf(SongIndex.IntList slots) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < slots.size; i++) ids.add(index.songAt(slots.items[i]).getId());
+        return ids;
+    }
+}
@@ -0,0 +1,128 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import vn.khengandkhoi.musicplayer.catalog.CatalogFixtures;
+import vn.khengandkhoi.musicplayer.catalog.CatalogView;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Thế hệ của search(): chỉ lời gọi mới nhất được trả về callback.
+ * - Worker là hàng đợi chạy tay, main looper ở chế độ paused -> test tự quyết thứ tự worker / main.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SongSearchEngineTest {
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final List<SongSearchEngine.Page> delivered = new ArrayList<>();
+    private final SongSearchEngine.Callback cb = delivered::add;
+    private ShadowLooper looper;
+    private SongSearchEngine engine;
+    private CatalogView view;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        looper = shadowOf(Looper.getMainLooper());
+        engine = new SongSearchEngine(tasks::add, new Handler(Looper.getMainLooper()));
+        file = File.createTempFile("catalog", ".snap");
+        view = CatalogFixtures.snapshot(20, 5, file);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void onlyLatestQueuedSearchReportsBack() {
+        load();
+        engine.search("bai hat 1", -1, 10, cb);
+        engine.search("bai hat 2", -1, 10, cb);
+        drainWorker();
+        looper.idle();
+        assertEquals(1, delivered.size());
+        assertEquals("bai hat 2", delivered.get(0).query);
+        assertFalse(delivered.get(0).items.isEmpty());
+    }
+
+    @Test
+    public void postedResultIsDroppedWhenNewerSearchArrives() {
+        load();
+        engine.search("bai hat 1", -1, 10, cb);
+        drainWorker(); // kết quả cũ đã nằm trong hàng đợi main
+        engine.search("bai hat 2", -1, 10, cb);
+        looper.idle();
+        assertTrue(delivered.isEmpty());
+        drainWorker();
+        looper.idle();
+        assertEquals(1, delivered.size());
+        assertEquals("bai hat 2", delivered.get(0).query);
+    }
+
+    @Test
+    public void searchesBeforeIndexReadyKeepOnlyLatest() {
+        engine.search("bai hat 1", -1, 10, cb);
+        engine.search("bai hat 2", -1, 10, cb);
+        drainWorker();
+        looper.idle();
+        assertTrue(delivered.isEmpty());
+        load();
+        looper.idle();
+        assertEquals(1, delivered.size());
+        assertEquals("bai hat 2", delivered.get(0).query);
+        assertFalse(delivered.get(0).items.isEmpty());
+    }
+
+    @Test
+    public void cancelDropsInFlightResult() {
+        load();
+        engine.search("bai hat 1", -1, 10, cb);
+        drainWorker();
+        engine.cancelSearches();
+        looper.idle();
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void pagesOfLatestSearchAllArrive() {
+        load();
+        engine.search("bai hat", -1, 10, cb);
+        drainWorker();
+        looper.idle();
+        assertEquals(1, delivered.size());
+        assertTrue(delivered.get(0).hasMore());
+        engine.search("bai hat", delivered.get(0).nextCursor, 10, cb);
+        drainWorker();
+        looper.idle();
+        assertEquals(2, delivered.size());
+        assertEquals(10, delivered.get(1).items.size());
+    }
+
+    private void load() {
+        tasks.add(() -> engine.apply(view, null));
+        drainWorker();
+    }
+
+    private void drainWorker() {
+        Runnable r;
+        while ((r = tasks.poll()) != null) r.run();
+    }
+}
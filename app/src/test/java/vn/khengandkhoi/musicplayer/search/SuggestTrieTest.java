@@ -0,0 +1,158 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Gợi ý theo tiền tố (có/không dấu, giữa tên), thứ tự độ phổ biến, top-N tính sẵn và lưu/đọc file của SuggestTrie. */
+public class SuggestTrieTest {
+
+    @Test
+    public void prefixMatchIgnoresCaseAndDiacritics() {
+        SuggestTrie t = new SuggestTrie.Builder()
+                .add("Sơn Tùng M-TP", SuggestTrie.KIND_ARTIST, 5)
+                .add("Sóng gió", SuggestTrie.KIND_SONG, 1)
+                .add("Mỹ Tâm", SuggestTrie.KIND_ARTIST, 3)
+                .build();
+        assertEquals(List.of("Sơn Tùng M-TP"), texts(t.suggest("SƠN TÙ", 10)));
+        assertEquals(List.of("Sơn Tùng M-TP"), texts(t.suggest("son t", 10)));
+        assertEquals(List.of("Sơn Tùng M-TP", "Sóng gió"), texts(t.suggest("so", 10)));
+        assertTrue(t.suggest("xyz", 10).isEmpty());
+    }
+
+    @Test
+    public void matchesWordsInsideName() {
+        SuggestTrie t = new SuggestTrie.Builder()
+                .add("Sơn Tùng M-TP", SuggestTrie.KIND_ARTIST, 1)
+                .add("Em của ngày hôm qua", SuggestTrie.KIND_SONG, 1)
+                .build();
+        assertEquals(List.of("Sơn Tùng M-TP"), texts(t.suggest("tung", 10)));
+        assertEquals(List.of("Em của ngày hôm qua"), texts(t.suggest("ngay hom", 10)));
+        assertTrue(t.suggest("ung", 10).isEmpty()); // chỉ khớp từ đầu mỗi từ
+    }
+
+    @Test
+    public void weightsAccumulateAndOrderResults() {
+        SuggestTrie.Builder b = new SuggestTrie.Builder();
+        b.add("Mưa hồng", SuggestTrie.KIND_SONG, 1);
+        for (int i = 0; i < 3; i++) b.add("Mỹ Tâm", SuggestTrie.KIND_ARTIST, 1);
+        b.add("my tam", SuggestTrie.KIND_ARTIST, 1); // cùng tên sau chuẩn hoá -> cộng dồn, giữ cách viết đầu tiên
+        b.add("Mùa thu", SuggestTrie.KIND_ALBUM, 2);
+        SuggestTrie t = b.build();
+        assertEquals(3, t.size());
+        List<SuggestTrie.Suggestion> s = t.suggest("m", 10);
+        assertEquals(List.of("Mỹ Tâm", "Mùa thu", "Mưa hồng"), texts(s));
+        assertEquals(4, s.get(0).weight);
+        assertEquals(SuggestTrie.KIND_ARTIST, s.get(0).kind);
+    }
+
+    @Test
+    public void sameNameDifferentKindsAreSeparate() {
+        SuggestTrie t = new SuggestTrie.Builder()
+                .add("Lạc trôi", SuggestTrie.KIND_SONG, 2)
+                .add("Lạc trôi", SuggestTrie.KIND_ALBUM, 1)
+                .build();
+        List<SuggestTrie.Suggestion> s = t.suggest("lac", 10);
+        assertEquals(2, s.size());
+        assertEquals(SuggestTrie.KIND_SONG, s.get(0).kind);
+        assertEquals(SuggestTrie.KIND_ALBUM, s.get(1).kind);
+    }
+
+    @Test
+    public void nameWithRepeatedWordAppearsOnce() {
+        SuggestTrie t = new SuggestTrie.Builder().add("Em em em", SuggestTrie.KIND_SONG, 1).build();
+        assertEquals(1, t.suggest("em", 10).size());
+        assertEquals(1, t.suggest("em e", 10).size());
+    }
+
+    @Test
+    public void limitAndBlankInput() {
+        SuggestTrie.Builder b = new SuggestTrie.Builder();
+        for (int i = 0; i < 20; i++) b.add("Bài " + i, SuggestTrie.KIND_SONG, i);
+        b.add(null, SuggestTrie.KIND_SONG, 1).add("  ", SuggestTrie.KIND_SONG, 1);
+        SuggestTrie t = b.build();
+        assertEquals(20, t.size());
+        assertEquals(3, t.suggest("bai", 3).size());
+        assertEquals("Bài 19", t.suggest("bai", 3).get(0).text);
+        assertTrue(t.suggest("", 5).isEmpty());
+        assertTrue(t.suggest("   ", 5).isEmpty());
+        assertTrue(t.suggest("bai", 0).isEmpty());
+        assertTrue(SuggestTrie.empty().suggest("a", 5).isEmpty());
+    }
+
+    @Test
+    public void shortAndLongPrefixesAgreeWithLinearScan() {
+        Random rnd = new Random(7);
+        String[] words = {"anh", "em", "mưa", "mùa", "mai", "nắng", "nhớ", "hoa", "hồng", "hôm", "qua", "sơn", "sông"};
+        SuggestTrie.Builder b = new SuggestTrie.Builder();
+        Map<String, Integer> weights = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            String name = words[rnd.nextInt(words.length)] + " " + words[rnd.nextInt(words.length)] + " " + i;
+            int w = rnd.nextInt(50);
+            b.add(name, SuggestTrie.KIND_SONG, w);
+            weights.put(VnText.fold(name), w);
+        }
+        SuggestTrie t = b.build();
+        for (String p : new String[]{"a", "m", "mu", "ho", "hon", "nho", "son", "qua m", "mua 1"}) {
+            List<Integer> expected = new ArrayList<>();
+            for (Map.Entry<String, Integer> e : weights.entrySet()) {
+                String key = " " + e.getKey();
+                if (key.contains(" " + p)) expected.add(e.getValue());
+            }
+            expected.sort((x, y) -> y - x);
+            List<SuggestTrie.Suggestion> got = t.suggest(p, 8);
+            assertEquals(p, expected.subList(0, Math.min(8, expected.size())), weightsOf(got));
+        }
+    }
+
+    @Test
+    public void writeReadRoundTrip() throws Exception {
+        SuggestTrie t = new SuggestTrie.Builder()
+                .add("Sơn Tùng M-TP", SuggestTrie.KIND_ARTIST, 9)
+                .add("Sóng gió", SuggestTrie.KIND_SONG, 4)
+                .add("Hà Anh Tuấn", SuggestTrie.KIND_ARTIST, 7)
+                .add("Tuyển tập", SuggestTrie.KIND_ALBUM, 2)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        t.write(bytes);
+        SuggestTrie r = SuggestTrie.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(t.size(), r.size());
+        for (String p : new String[]{"s", "so", "son", "tu", "tuan", "anh", "h"}) {
+            List<SuggestTrie.Suggestion> a = t.suggest(p, 10), c = r.suggest(p, 10);
+            assertEquals(p, texts(a), texts(c));
+            for (int i = 0; i < a.size(); i++) {
+                assertEquals(a.get(i).kind, c.get(i).kind);
+                assertEquals(a.get(i).weight, c.get(i).weight);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readRejectsOtherVersion() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeInt(99);
+        SuggestTrie.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static List<String> texts(List<SuggestTrie.Suggestion> s) {
+        List<String> out = new ArrayList<>();
+        for (SuggestTrie.Suggestion x : s) out.add(x.text);
+        return out;
+    }
+
+    private static List<Integer> weightsOf(List<SuggestTrie.Suggestion> s) {
+        List<Integer> out = new ArrayList<>();
+        for (SuggestTrie.Suggestion x : s) out.add(x.weight);
+        return out;
+    }
+}
@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "MusicPlayer"
 include(":app")
+include(":tools")
@@ -0,0 +1,80 @@
+// Công cụ dòng lệnh (JVM) bảo trì dữ liệu Firestore của app, chạy bằng:
+//   ./gradlew :tools:run --args="--project <projectId> [--dry-run] [--force]"            (searchTokens)
+//   ./gradlew :tools:stampUpdatedAt --args="--project <projectId> [--dry-run] [--force]" (updatedAt cho delta sync)
+//   ./gradlew :tools:buildCatalogBundle --args="--project <projectId> [--out <file>]"     (data bundle kèm APK)
+//   ./gradlew :tools:benchTokenizer --args="[-p corpus=100000] [-f 1]"                    (JMH: chuẩn hoá/tách từ VnText)
+//   ./gradlew :tools:benchRanking --args="[--songs 1000,10000,50000] [--iterations 300]"  (độ trễ xếp hạng SongIndex)
+// Chạy trên Firestore emulator: đặt FIRESTORE_EMULATOR_HOST=localhost:8080 trước khi chạy.
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            // Dùng lại đúng mã chuẩn hoá/sinh token của app -> token server khớp với query phía app
+            // Benchmark (*Bench.java) nằm cùng package với lớp được đo -> gọi được API package-private
+            srcDir("../app/src/main/java")
+            include(
+                "vn/khengandkhoi/musicplayer/search/VnText.java",
+                "vn/khengandkhoi/musicplayer/search/SearchTokens.java",
+                "vn/khengandkhoi/musicplayer/search/SongIndex.java",
+                "vn/khengandkhoi/musicplayer/search/BkTree.java",
+                "vn/khengandkhoi/musicplayer/catalog/SongTable.java",
+                "vn/khengandkhoi/musicplayer/catalog/StringPool.java",
+                "vn/khengandkhoi/musicplayer/object/SongRemote.java",
+                "vn/khengandkhoi/musicplayer/**/*Bench.java",
+                "vn/khengandkhoi/musicplayer/tools/**"
+            )
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation("com.google.firebase:firebase-admin:9.4.3")
+    implementation("org.openjdk.jmh:jmh-core:1.37")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+application {
+    mainClass.set("vn.khengandkhoi.musicplayer.tools.SearchTokensBackfill")
+}
+
+// Đóng dấu updatedAt cho document catalog cũ (CatalogSync của app đồng bộ theo trường này)
+tasks.register<JavaExec>("stampUpdatedAt") {
+    group = "application"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("vn.khengandkhoi.musicplayer.tools.UpdatedAtBackfill")
+}
+
+// Dựng Firestore data bundle của catalog (mặc định ghi vào app/src/main/assets/catalog.bundle)
+tasks.register<JavaExec>("buildCatalogBundle") {
+    group = "application"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("vn.khengandkhoi.musicplayer.tools.CatalogBundleBuilder")
+}
+
+// JMH: chuẩn hoá + tách từ, VnText so với cách cũ (NFD + regex), kèm SearchTokens.forSong()
+tasks.register<JavaExec>("benchTokenizer") {
+    group = "verification"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("vn.khengandkhoi.musicplayer.search.TokenizerBench")
+    jvmArgs("-Dstdout.encoding=UTF-8")
+}
+
+// Độ trễ xếp hạng của SongIndex trên catalog giả 1k / 10k / 50k bài (JVM, không cần Firestore)
+tasks.register<JavaExec>("benchRanking") {
+    group = "verification"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("vn.khengandkhoi.musicplayer.search.SearchRankingBench")
+    jvmArgs("-Dstdout.encoding=UTF-8")
+}
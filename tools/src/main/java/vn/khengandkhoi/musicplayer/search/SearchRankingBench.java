@@ -0,0 +1,111 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import vn.khengandkhoi.musicplayer.object.SongRemote;
+
+/**
+ * SearchRankingBench:
+ * - Đo độ trễ xếp hạng của SongIndex (BM25F + tiền tố + lỗi gõ + dự phòng chuỗi con) trên JVM với catalog giả
+ *   1k / 10k / 50k bài, tiêu đề ghép từ các âm tiết tiếng Việt thường gặp (seed cố định -> chạy lại ra cùng dữ liệu).
+ * - Mỗi cỡ catalog: thời gian dựng index, rồi trung vị / p95 / max (micro giây) cho từng kiểu query,
+ *   lấy top 30 như 1 trang kết quả của SongSearchEngine.
+ *
+ * Cách chạy:
+ *   ./gradlew :tools:benchRanking --args="[--songs 1000,10000,50000] [--iterations 300]"
+ *
+ * Lưu ý:
+ * - Chạy JIT của JVM desktop, không phải ART: dùng để so sánh giữa các lần sửa SongIndex, không phải số trên máy.
+ * - Khởi động nóng (warm-up) bằng cùng bộ query trước khi đo.
+ */
+public final class SearchRankingBench {
+
+    private static final String[] SYLLABLES = {
+            "em", "anh", "yêu", "mưa", "nắng", "chiều", "hôm", "qua", "ngày", "mai", "trời", "xanh", "biển",
+            "nhớ", "thương", "lạc", "trôi", "phố", "đêm", "trăng", "gió", "mây", "hoa", "sen", "hồng", "tình",
+            "buồn", "vui", "xuân", "thu", "đông", "hạ", "quê", "hương", "sông", "núi", "đường", "về", "đi", "bên",
+            "người", "ấy", "một", "hai", "ba", "cánh", "chim", "lá", "vàng", "rơi", "mùa", "cuối", "đầu", "tiên"};
+    private static final String[] ARTISTS = {
+            "Sơn Tùng M-TP", "Mỹ Tâm", "Hà Anh Tuấn", "Đen Vâu", "Hoàng Thuỳ Linh", "Vũ", "Bích Phương",
+            "Noo Phước Thịnh", "Trúc Nhân", "Hương Tràm", "Tùng Dương", "Thanh Lam", "Hồ Ngọc Hà", "Min"};
+    private static final String[][] QUERIES = {
+            {"1 từ đúng", "mua"},
+            {"2 từ đúng", "mua chieu"},
+            {"tiền tố", "nho thuo"},
+            {"nghệ sĩ + tiêu đề", "son tung lac"},
+            {"lỗi gõ 1 ký tự", "thuwng nho"},
+            {"lỗi gõ nghệ sĩ", "hoangg thuyy"},
+            {"chuỗi con", "uong ve"},
+            {"không khớp", "zzzz"}};
+    private static final int PAGE = 30;
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000, 10_000, 50_000};
+        int iterations = 300;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--songs":
+                    sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Tham số không hợp lệ: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        for (int n : sizes) run(n, iterations);
+    }
+
+    private static void run(int songs, int iterations) {
+        long t0 = System.nanoTime();
+        SongIndex index = build(songs);
+        long buildMs = (System.nanoTime() - t0) / 1_000_000;
+        System.out.println(songs + " bài: dựng index " + buildMs + "ms, store ~" + index.storeBytes() / 1024 + "KB");
+
+        SongIndex.IntList out = new SongIndex.IntList();
+        for (int w = 0; w < iterations; w++) {
+            for (String[] q : QUERIES) {
+                out.size = 0;
+                index.match(VnText.fold(q[1]), PAGE, out);
+            }
+        }
+        for (String[] q : QUERIES) {
+            String folded = VnText.fold(q[1]);
+            long[] us = new long[iterations];
+            int count = 0;
+            for (int i = 0; i < iterations; i++) {
+                out.size = 0;
+                long s = System.nanoTime();
+                count = index.match(folded, PAGE, out);
+                us[i] = (System.nanoTime() - s) / 1_000;
+            }
+            Arrays.sort(us);
+            System.out.println(String.format("  %-18s \"%s\": %6d khớp, trung vị %6dus, p95 %6dus, max %6dus",
+                    q[0], q[1], count, us[iterations / 2], us[iterations * 95 / 100], us[iterations - 1]));
+        }
+    }
+
+    // Album 10 bài; tiêu đề 2–5 âm tiết, nghệ sĩ và tên album lặp lại như catalog thật
+    private static SongIndex build(int songs) {
+        Random rnd = new Random(42);
+        SongIndex index = new SongIndex();
+        List<String> words = new ArrayList<>(5);
+        for (int i = 0; i < songs; i++) {
+            String albumId = "al" + (i / 10);
+            words.clear();
+            int len = 2 + rnd.nextInt(4);
+            for (int k = 0; k < len; k++) words.add(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+            String title = String.join(" ", words);
+            String author = ARTISTS[(i / 10) % ARTISTS.length];
+            String albumTitle = SYLLABLES[(i / 10) % SYLLABLES.length] + " " + SYLLABLES[(i / 7) % SYLLABLES.length];
+            SongRemote s = new SongRemote("s" + i, title, author, "https://audio/" + i, null, i % 10 + 1);
+            index.put("albums/" + albumId + "/songs/s" + i, albumId, s, albumTitle);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,146 @@
+package vn.khengandkhoi.musicplayer.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenizerBench (JMH):
+ * - Đo chuẩn hoá tiếng Việt trên JVM: cách cũ (toLowerCase + Normalizer NFD + regex) so với VnText.fold() /
+ *   foldInto() (tra bảng 1 lượt), cùng các bước dùng nó: fold + words() và SearchTokens.forSong().
+ * - Dữ liệu: `corpus` tiêu đề có dấu sinh từ âm tiết thường gặp (seed cố định, mặc định 100k);
+ *   `input = folded` dùng cùng bộ đó ở dạng đã chuẩn hoá (như query gõ không dấu) để đo đường tắt của fold().
+ * - Mỗi lần gọi @Benchmark xử lý 1 chuỗi, lần lượt qua cả corpus -> kết quả là ns / chuỗi.
+ *
+ * Cách chạy (tham số là tham số dòng lệnh của JMH):
+ *   ./gradlew :tools:benchTokenizer --args="[-p corpus=20000] [-f 1] [-wi 5] [-i 5]"
+ *
+ * Lưu ý:
+ * - @Setup kiểm tra VnText.fold() cho ra đúng chuỗi như cách cũ trên toàn bộ corpus; lệch -> benchmark dừng với lỗi.
+ * - Số đo trên JIT desktop, dùng để so sánh tương đối, không phải số trên máy Android.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBench {
+
+    private static final String[] SYLLABLES = {
+            "Em", "anh", "yêu", "mưa", "nắng", "chiều", "hôm", "qua", "ngày", "mai", "trời", "xanh", "biển",
+            "nhớ", "thương", "lạc", "trôi", "phố", "đêm", "trăng", "gió", "mây", "hoa", "sen", "hồng", "tình",
+            "buồn", "vui", "Xuân", "thu", "Đông", "hạ", "quê", "hương", "sông", "núi", "đường", "về", "đi", "bên",
+            "NGƯỜI", "ấy", "một", "hai", "ba", "cánh", "chim", "lá", "vàng", "rơi", "mùa", "cuối", "đầu", "tiên"};
+
+    @Param("100000")
+    public int corpus;
+
+    @Param({"accented", "folded"})
+    public String input;
+
+    private String[] texts;
+    private int next;
+    private final StringBuilder buf = new StringBuilder(128);
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(TokenizerBench.class.getName())
+                .build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        texts = corpus(corpus, new Random(42));
+        if (input.equals("folded")) {
+            for (int i = 0; i < texts.length; i++) texts[i] = legacyFold(texts[i]);
+        }
+        for (String s : texts) {
+            String expected = legacyFold(s), actual = VnText.fold(s);
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Lệch: \"" + s + "\" -> \"" + expected + "\" / \"" + actual + "\"");
+            }
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public String legacyFold() {
+        return legacyFold(nextText());
+    }
+
+    @Benchmark
+    public String fold() {
+        return VnText.fold(nextText());
+    }
+
+    @Benchmark
+    public int foldInto() {
+        buf.setLength(0);
+        VnText.foldInto(nextText(), buf);
+        return buf.length();
+    }
+
+    @Benchmark
+    public int foldWords() {
+        return VnText.words(VnText.fold(nextText())).size();
+    }
+
+    @Benchmark
+    public int forSong() {
+        String s = nextText();
+        return SearchTokens.forSong(s, s).size();
+    }
+
+    private String nextText() {
+        String s = texts[next];
+        if (++next == texts.length) next = 0;
+        return s;
+    }
+
+    // Hàm chuẩn hoá trước khi có VnText (giữ lại để làm mốc so sánh)
+    private static String legacyFold(String s) {
+        if (s == null) return "";
+        String lower = s.toLowerCase(Locale.US).trim();
+        String norm = Normalizer.normalize(lower, Normalizer.Form.NFD)
+                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+        norm = norm.replace('đ', 'd');
+        return norm.replaceAll("\\s+", " ");
+    }
+
+    // Tiêu đề 2–6 âm tiết có dấu, đôi khi thừa khoảng trắng / tab như dữ liệu nhập tay
+    private static String[] corpus(int n, Random rnd) {
+        String[] out = new String[n];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            if (rnd.nextInt(10) == 0) sb.append(' ');
+            int len = 2 + rnd.nextInt(5);
+            for (int k = 0; k < len; k++) {
+                if (k > 0) sb.append(rnd.nextInt(20) == 0 ? "  " : rnd.nextInt(40) == 0 ? "\t" : " ");
+                sb.append(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+            }
+            if (rnd.nextInt(5) == 0) sb.append(' ').append(1 + rnd.nextInt(20));
+            out[i] = sb.toString();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,98 @@
+package vn.khengandkhoi.musicplayer.tools;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreBundle;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * CatalogBundleBuilder:
+ * - Dựng Firestore data bundle của toàn bộ catalog (albums, categories, collectionGroup("songs")) để kèm vào APK
+ *   (app/src/main/assets/catalog.bundle) hoặc đặt ở URL tĩnh -> lần mở app đầu tiên, CatalogBundle của app nạp
+ *   bundle vào cache cục bộ thay vì đọc từng document trên server.
+ * - Mỗi collection là 1 named query; app đọc lại bằng getNamedQuery() + Source.CACHE.
+ *
+ * Cách chạy:
+ *   ./gradlew :tools:buildCatalogBundle --args="--project <projectId> [--out <file>] [--bundle-id <id>]"
+ * - Mặc định --out ../app/src/main/assets/catalog.bundle (tính từ thư mục tools), --bundle-id catalog.
+ * - Dựng từ bộ dữ liệu emulator: đặt FIRESTORE_EMULATOR_HOST=localhost:8080 (như SearchTokensBackfill).
+ *
+ * Lưu ý:
+ * - Tên named query phải khớp CatalogBundle.Q_* của app.
+ * - Nên chạy :tools:stampUpdatedAt trước: app lấy updatedAt lớn nhất trong bundle làm mốc delta sync,
+ *   document thiếu updatedAt sẽ bị tải lại ở lần đồng bộ đầu.
+ * - Tombstone (deleted = true) vẫn nằm trong bundle; app tự bỏ qua.
+ */
+public final class CatalogBundleBuilder {
+
+    private static final String UPDATED_AT = "updatedAt"; // = CatalogSync.UPDATED_AT
+    private static final String Q_ALBUMS = "catalog-albums", Q_CATEGORIES = "catalog-categories",
+            Q_SONGS = "catalog-songs";                     // = CatalogBundle.Q_*
+
+    public static void main(String[] args) throws Exception {
+        String projectId = null, out = "../app/src/main/assets/catalog.bundle", bundleId = "catalog";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--project":   projectId = args[++i]; break;
+                case "--out":       out = args[++i]; break;
+                case "--bundle-id": bundleId = args[++i]; break;
+                default:
+                    System.err.println("Tham số không hợp lệ: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (projectId == null) {
+            System.err.println("Thiếu --project <projectId>");
+            System.exit(2);
+        }
+
+        Firestore db = FirestoreClient.getFirestore(FirebaseApp.initializeApp(options(projectId)));
+        long t0 = System.currentTimeMillis();
+        FirestoreBundle.Builder builder = db.bundleBuilder(bundleId);
+        long docs = 0;
+        docs += add(builder, Q_ALBUMS, db.collection("albums"));
+        docs += add(builder, Q_CATEGORIES, db.collection("categories"));
+        docs += add(builder, Q_SONGS, db.collectionGroup("songs"));
+        ByteBuffer bytes = builder.build().toByteBuffer();
+
+        File file = new File(out);
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("mkdirs " + dir);
+        try (FileChannel ch = new FileOutputStream(file).getChannel()) {
+            while (bytes.hasRemaining()) ch.write(bytes);
+        }
+        System.out.println("Bundle \"" + bundleId + "\": " + docs + " document, " + file.length() + " byte -> "
+                + file.getPath() + ", " + (System.currentTimeMillis() - t0) + "ms");
+        db.close();
+    }
+
+    private static FirebaseOptions options(String projectId) throws Exception {
+        // Emulator không kiểm tra token; "owner" = quyền admin, bỏ qua security rules
+        GoogleCredentials creds = System.getenv("FIRESTORE_EMULATOR_HOST") != null
+                ? GoogleCredentials.create(new AccessToken("owner", null))
+                : GoogleCredentials.getApplicationDefault();
+        return FirebaseOptions.builder().setProjectId(projectId).setCredentials(creds).build();
+    }
+
+    // Chạy query, thêm kết quả vào bundle dưới tên name
+    private static int add(FirestoreBundle.Builder builder, String name, Query query) throws Exception {
+        QuerySnapshot snap = query.get().get();
+        int missing = 0;
+        for (QueryDocumentSnapshot d : snap) if (!d.contains(UPDATED_AT)) missing++;
+        builder.add(name, snap);
+        System.out.println("... " + name + ": " + snap.size() + " document"
+                + (missing > 0 ? " (" + missing + " thiếu " + UPDATED_AT + ")" : ""));
+        return snap.size();
+    }
+}
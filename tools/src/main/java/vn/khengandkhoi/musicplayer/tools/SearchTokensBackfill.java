@@ -0,0 +1,163 @@
+package vn.khengandkhoi.musicplayer.tools;
+
+import com.google.api.core.ApiFuture;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import vn.khengandkhoi.musicplayer.search.SearchTokens;
+import vn.khengandkhoi.musicplayer.search.VnText;
+
+/**
+ * SearchTokensBackfill:
+ * - Duyệt toàn bộ collectionGroup("songs") theo trang (orderBy documentId + startAfter) và ghi trường
+ *   searchTokens (+ searchTokensVersion) cho các bài còn thiếu hoặc token đã cũ, theo lô WriteBatch.
+ * - Token sinh bằng đúng SearchTokens/VnText của app (module này biên dịch chung 2 file đó).
+ * - --report "q1,q2": đo số document phải đọc cho mỗi query: cách cũ (tải cả collectionGroup) so với
+ *   query array-contains + limit của SearchFragment.
+ *
+ * Cách chạy:
+ *   ./gradlew :tools:run --args="--project <projectId> [--dry-run] [--force] [--report 'son tung,em cua']"
+ * - Emulator: đặt FIRESTORE_EMULATOR_HOST=localhost:8080 (không cần service account).
+ * - Production: dùng Application Default Credentials (GOOGLE_APPLICATION_CREDENTIALS).
+ *
+ * Lưu ý:
+ * - Chạy lại nhiều lần an toàn: bài đã có token đúng VERSION và không đổi sẽ được bỏ qua (trừ khi --force).
+ * - Bài mới thêm qua console cũng cần chạy lại công cụ này (app không tự ghi token).
+ */
+public final class SearchTokensBackfill {
+
+    private static final int READ_PAGE = 500;
+    private static final int BATCH_SIZE = 400;   // giới hạn Firestore: 500 thao tác / batch
+    private static final int APP_PAGE_SIZE = 24; // = SearchFragment.PAGE_SIZE
+
+    private final Firestore db;
+    private final boolean dryRun;
+    private final boolean force;
+
+    private long scanned = 0, updated = 0, skipped = 0, batches = 0;
+
+    private SearchTokensBackfill(Firestore db, boolean dryRun, boolean force) {
+        this.db = db;
+        this.dryRun = dryRun;
+        this.force = force;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String projectId = null, report = null;
+        boolean dryRun = false, force = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--project": projectId = args[++i]; break;
+                case "--dry-run": dryRun = true; break;
+                case "--force":   force = true; break;
+                case "--report":  report = args[++i]; break;
+                default:
+                    System.err.println("Tham số không hợp lệ: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (projectId == null) {
+            System.err.println("Thiếu --project <projectId>");
+            System.exit(2);
+        }
+
+        Firestore db = FirestoreClient.getFirestore(FirebaseApp.initializeApp(options(projectId)));
+        SearchTokensBackfill tool = new SearchTokensBackfill(db, dryRun, force);
+        tool.backfill();
+        if (report != null) tool.report(report.split(","));
+        db.close();
+    }
+
+    private static FirebaseOptions options(String projectId) throws Exception {
+        // Emulator không kiểm tra token; "owner" = quyền admin, bỏ qua security rules
+        GoogleCredentials creds = System.getenv("FIRESTORE_EMULATOR_HOST") != null
+                ? GoogleCredentials.create(new AccessToken("owner", null))
+                : GoogleCredentials.getApplicationDefault();
+        return FirebaseOptions.builder().setProjectId(projectId).setCredentials(creds).build();
+    }
+
+    private void backfill() throws Exception {
+        long t0 = System.currentTimeMillis();
+        WriteBatch batch = db.batch();
+        int inBatch = 0;
+        List<ApiFuture<List<WriteResult>>> commits = new ArrayList<>();
+        QueryDocumentSnapshot last = null;
+        while (true) {
+            Query q = db.collectionGroup("songs").orderBy(FieldPath.documentId()).limit(READ_PAGE);
+            if (last != null) q = q.startAfter(last);
+            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
+            if (docs.isEmpty()) break;
+            for (QueryDocumentSnapshot d : docs) {
+                scanned++;
+                List<String> tokens = SearchTokens.forSong(d.getString("title"), d.getString("author"));
+                if (!force && upToDate(d, tokens)) {
+                    skipped++;
+                    continue;
+                }
+                updated++;
+                if (dryRun) continue;
+                Map<String, Object> fields = new HashMap<>();
+                fields.put(SearchTokens.FIELD, tokens);
+                fields.put(SearchTokens.VERSION_FIELD, SearchTokens.VERSION);
+                batch.update(d.getReference(), fields);
+                if (++inBatch == BATCH_SIZE) {
+                    commits.add(batch.commit());
+                    batches++;
+                    batch = db.batch();
+                    inBatch = 0;
+                }
+            }
+            last = docs.get(docs.size() - 1);
+            System.out.println("... đã quét " + scanned + " bài");
+        }
+        if (inBatch > 0) {
+            commits.add(batch.commit());
+            batches++;
+        }
+        for (ApiFuture<List<WriteResult>> c : commits) c.get(); // chờ mọi batch ghi xong (lỗi -> ném ra)
+
+        System.out.println("Backfill" + (dryRun ? " (dry-run)" : "") + ": quét " + scanned + ", cập nhật " + updated
+                + ", bỏ qua " + skipped + ", " + batches + " batch, " + (System.currentTimeMillis() - t0) + "ms");
+    }
+
+    private static boolean upToDate(QueryDocumentSnapshot d, List<String> tokens) {
+        Long v = d.getLong(SearchTokens.VERSION_FIELD);
+        return v != null && v == SearchTokens.VERSION && tokens.equals(d.get(SearchTokens.FIELD));
+    }
+
+    // Số document đọc cho trang đầu của mỗi query: trước (cả collectionGroup) và sau (array-contains + limit)
+    private void report(String[] queries) throws Exception {
+        long catalog = db.collectionGroup("songs").count().get().get().getCount();
+        System.out.println();
+        System.out.println(String.format("%-24s %10s %10s %10s", "query", "reads cũ", "reads mới", "kết quả"));
+        for (String raw : queries) {
+            String folded = VnText.fold(raw);
+            String token = SearchTokens.queryToken(folded);
+            if (token == null) continue;
+            List<QueryDocumentSnapshot> docs = db.collectionGroup("songs")
+                    .whereArrayContains(SearchTokens.FIELD, token)
+                    .limit(APP_PAGE_SIZE).get().get().getDocuments();
+            int hits = 0;
+            for (QueryDocumentSnapshot d : docs) {
+                if (SearchTokens.matches(folded, d.getString("title"), d.getString("author"))) hits++;
+            }
+            // Truy vấn trả về 0 document vẫn bị tính 1 lượt đọc
+            System.out.println(String.format("%-24s %10d %10d %10d", raw.trim(), catalog,
+                    Math.max(1, docs.size()), hits));
+        }
+    }
+}
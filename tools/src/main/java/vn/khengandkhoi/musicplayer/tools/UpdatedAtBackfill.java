@@ -0,0 +1,124 @@
+package vn.khengandkhoi.musicplayer.tools;
+
+import com.google.api.core.ApiFuture;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UpdatedAtBackfill:
+ * - Ghi updatedAt = serverTimestamp() cho mọi document catalog (albums, categories, collectionGroup("songs"))
+ *   còn thiếu trường này -> delta sync của app (CatalogSync) mới thấy được các document đó khi chúng đổi.
+ * - Duyệt theo trang (orderBy documentId + startAfter), ghi theo lô WriteBatch.
+ *
+ * Cách chạy:
+ *   ./gradlew :tools:stampUpdatedAt --args="--project <projectId> [--dry-run] [--force]"
+ * - --force: ghi lại cả document đã có updatedAt (mọi máy sẽ tải lại document đó ở lần sync sau).
+ * - Emulator / production: như SearchTokensBackfill.
+ *
+ * Lưu ý:
+ * - Tên trường phải khớp CatalogSync.UPDATED_AT / CatalogSync.DELETED của app.
+ * - Document tombstone (deleted = true) vẫn được đóng dấu nếu thiếu updatedAt.
+ */
+public final class UpdatedAtBackfill {
+
+    private static final String UPDATED_AT = "updatedAt"; // = CatalogSync.UPDATED_AT
+    private static final int READ_PAGE = 500;
+    private static final int BATCH_SIZE = 400;           // giới hạn Firestore: 500 thao tác / batch
+
+    private final Firestore db;
+    private final boolean dryRun;
+    private final boolean force;
+
+    private long scanned = 0, updated = 0, batches = 0;
+
+    private UpdatedAtBackfill(Firestore db, boolean dryRun, boolean force) {
+        this.db = db;
+        this.dryRun = dryRun;
+        this.force = force;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String projectId = null;
+        boolean dryRun = false, force = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--project": projectId = args[++i]; break;
+                case "--dry-run": dryRun = true; break;
+                case "--force":   force = true; break;
+                default:
+                    System.err.println("Tham số không hợp lệ: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (projectId == null) {
+            System.err.println("Thiếu --project <projectId>");
+            System.exit(2);
+        }
+
+        Firestore db = FirestoreClient.getFirestore(FirebaseApp.initializeApp(options(projectId)));
+        UpdatedAtBackfill tool = new UpdatedAtBackfill(db, dryRun, force);
+        long t0 = System.currentTimeMillis();
+        tool.stamp("albums", db.collection("albums"));
+        tool.stamp("categories", db.collection("categories"));
+        tool.stamp("songs", db.collectionGroup("songs"));
+        System.out.println("Stamp" + (dryRun ? " (dry-run)" : "") + ": quét " + tool.scanned + ", cập nhật "
+                + tool.updated + ", " + tool.batches + " batch, " + (System.currentTimeMillis() - t0) + "ms");
+        db.close();
+    }
+
+    private static FirebaseOptions options(String projectId) throws Exception {
+        // Emulator không kiểm tra token; "owner" = quyền admin, bỏ qua security rules
+        GoogleCredentials creds = System.getenv("FIRESTORE_EMULATOR_HOST") != null
+                ? GoogleCredentials.create(new AccessToken("owner", null))
+                : GoogleCredentials.getApplicationDefault();
+        return FirebaseOptions.builder().setProjectId(projectId).setCredentials(creds).build();
+    }
+
+    private void stamp(String name, Query base) throws Exception {
+        WriteBatch batch = db.batch();
+        int inBatch = 0;
+        long stamped = 0;
+        List<ApiFuture<List<WriteResult>>> commits = new ArrayList<>();
+        QueryDocumentSnapshot last = null;
+        while (true) {
+            Query q = base.orderBy(FieldPath.documentId()).limit(READ_PAGE);
+            if (last != null) q = q.startAfter(last);
+            List<QueryDocumentSnapshot> docs = q.get().get().getDocuments();
+            if (docs.isEmpty()) break;
+            for (QueryDocumentSnapshot d : docs) {
+                scanned++;
+                if (!force && d.contains(UPDATED_AT)) continue;
+                updated++;
+                stamped++;
+                if (dryRun) continue;
+                batch.update(d.getReference(), UPDATED_AT, FieldValue.serverTimestamp());
+                if (++inBatch == BATCH_SIZE) {
+                    commits.add(batch.commit());
+                    batches++;
+                    batch = db.batch();
+                    inBatch = 0;
+                }
+            }
+            last = docs.get(docs.size() - 1);
+        }
+        if (inBatch > 0) {
+            commits.add(batch.commit());
+            batches++;
+        }
+        for (ApiFuture<List<WriteResult>> c : commits) c.get(); // chờ mọi batch ghi xong (lỗi -> ném ra)
+        System.out.println("... " + name + ": đóng dấu " + stamped);
+    }
+}